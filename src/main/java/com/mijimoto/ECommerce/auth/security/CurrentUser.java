@@ -0,0 +1,57 @@
+package com.mijimoto.ECommerce.auth.security;
+
+import com.mijimoto.ECommerce.user.persistence.entities.Users;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * The caller authenticated by {@link JwtAuthFilter} for the current request, and the
+ * ownership / admin checks built on it.
+ */
+public final class CurrentUser {
+
+    public static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+    private CurrentUser() {
+    }
+
+    /**
+     * id of the authenticated user, or null for anonymous requests
+     */
+    public static Integer id() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.getPrincipal() instanceof Users user ? user.getId() : null;
+    }
+
+    public static boolean isAdmin() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) return false;
+        for (GrantedAuthority authority : auth.getAuthorities()) {
+            if (ROLE_ADMIN.equals(authority.getAuthority())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * true when the caller is the given owner; a null owner (system data) is owned by nobody
+     */
+    public static boolean owns(Number ownerId) {
+        Integer id = id();
+        return id != null && ownerId != null && ownerId.longValue() == id.longValue();
+    }
+
+    public static boolean ownsOrAdmin(Number ownerId) {
+        return owns(ownerId) || isAdmin();
+    }
+
+    public static void requireAdmin() {
+        if (!isAdmin()) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Admin role required");
+    }
+
+    public static void requireOwnerOrAdmin(Number ownerId) {
+        if (!ownsOrAdmin(ownerId)) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not the owner");
+    }
+}
@@ -0,0 +1,72 @@
+package com.mijimoto.ECommerce.catalogue.events;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent.Change;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent.Scope;
+import com.mijimoto.ECommerce.catalogue.persistence.entities.*;
+import com.mijimoto.ECommerce.customer.persistence.entities.ProductReviews;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener attached to every entity that contributes to the public catalogue.
+ * Turns each write into a {@link CatalogueChangedEvent}; consumers should listen
+ * after commit so they never observe rolled-back data.
+ *
+ * Writes that bypass JPA (JDBC batches, bulk JPQL) must publish events themselves.
+ */
+@Component
+public class CatalogueChangeListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public CatalogueChangeListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    public void onCreated(Object entity) {
+        publish(entity, Change.CREATED);
+    }
+
+    @PostUpdate
+    public void onUpdated(Object entity) {
+        publish(entity, Change.UPDATED);
+    }
+
+    @PostRemove
+    public void onDeleted(Object entity) {
+        publish(entity, Change.DELETED);
+    }
+
+    private void publish(Object entity, Change change) {
+        CatalogueChangedEvent event = toEvent(entity, change);
+        if (event != null) publisher.publishEvent(event);
+    }
+
+    private static CatalogueChangedEvent toEvent(Object entity, Change change) {
+        String name = entity.getClass().getSimpleName();
+        if (entity instanceof Products p) return new CatalogueChangedEvent(Scope.PRODUCT, p.getId(), name, change);
+        if (entity instanceof ProductVariants v) return new CatalogueChangedEvent(Scope.PRODUCT, v.getProductId(), name, change);
+        if (entity instanceof ProductImages i) return new CatalogueChangedEvent(Scope.PRODUCT, i.getProductId(), name, change);
+        if (entity instanceof ProductAttributeValues a) return new CatalogueChangedEvent(Scope.PRODUCT, a.getProductId(), name, change);
+        if (entity instanceof ProductAttributeOptions o) return new CatalogueChangedEvent(Scope.PRODUCT, o.getProductId(), name, change);
+        if (entity instanceof ProductRelations r) return new CatalogueChangedEvent(Scope.PRODUCT, r.getProductId(), name, change);
+        if (entity instanceof ProductReviews r) return new CatalogueChangedEvent(Scope.PRODUCT, r.getProductId(), name, change);
+        if (entity instanceof VariantOptionGroups g) {
+            return g.getProductId() != null
+                    ? new CatalogueChangedEvent(Scope.PRODUCT, g.getProductId(), name, change)
+                    : CatalogueChangedEvent.global(name, change);
+        }
+        if (entity instanceof ProductVariantValues v) return new CatalogueChangedEvent(Scope.VARIANT, v.getVariantId(), name, change);
+        if (entity instanceof ProductVariantImages i) return new CatalogueChangedEvent(Scope.VARIANT, i.getVariantId(), name, change);
+        if (entity instanceof VariantPrices p) return new CatalogueChangedEvent(Scope.VARIANT, p.getVariantId(), name, change);
+        if (entity instanceof VariantOptionValues v) return new CatalogueChangedEvent(Scope.OPTION_GROUP, v.getGroupId(), name, change);
+        if (entity instanceof Attributes || entity instanceof AttributeOptions || entity instanceof Categories) {
+            return CatalogueChangedEvent.global(name, change);
+        }
+        return null;
+    }
+}
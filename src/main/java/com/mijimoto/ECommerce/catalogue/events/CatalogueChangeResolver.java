@@ -0,0 +1,51 @@
+package com.mijimoto.ECommerce.catalogue.events;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Maps a {@link CatalogueChangedEvent} to the product(s) it affects.
+ */
+@Component
+public class CatalogueChangeResolver {
+
+    /**
+     * @param all       every product may be affected
+     * @param productId the single affected product, null if {@code all} or the parent row is already gone
+     */
+    public record Target(boolean all, Integer productId) {
+        static final Target ALL = new Target(true, null);
+        static final Target NONE = new Target(false, null);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CatalogueChangeResolver(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Target resolve(CatalogueChangedEvent event) {
+        if (event.isGlobal()) return Target.ALL;
+        if (event.id() == null) return Target.NONE;
+        switch (event.scope()) {
+            case PRODUCT:
+                return new Target(false, event.id());
+            case VARIANT: {
+                List<Integer> ids = jdbcTemplate.queryForList(
+                        "SELECT product_id FROM product_variants WHERE id = ?", Integer.class, event.id());
+                return ids.isEmpty() ? Target.NONE : new Target(false, ids.get(0));
+            }
+            case OPTION_GROUP: {
+                List<Integer> ids = jdbcTemplate.queryForList(
+                        "SELECT product_id FROM variant_option_groups WHERE id = ?", Integer.class, event.id());
+                if (ids.isEmpty()) return Target.NONE;
+                // shared groups (no product) are used by many products
+                return ids.get(0) == null ? Target.ALL : new Target(false, ids.get(0));
+            }
+            default:
+                return Target.NONE;
+        }
+    }
+}
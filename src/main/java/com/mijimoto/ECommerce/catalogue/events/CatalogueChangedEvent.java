@@ -0,0 +1,38 @@
+package com.mijimoto.ECommerce.catalogue.events;
+
+/**
+ * Published whenever a row contributing to the public catalogue is written.
+ *
+ * The event carries the narrowest id known at write time; {@link CatalogueChangeResolver}
+ * maps it to the affected product. GLOBAL changes (attributes, categories) may touch any product.
+ *
+ * @param scope  what {@code id} refers to
+ * @param id     product, variant or option group id (null for GLOBAL)
+ * @param entity simple name of the entity that changed
+ * @param change kind of write
+ */
+public record CatalogueChangedEvent(Scope scope, Integer id, String entity, Change change) {
+
+    public enum Scope { PRODUCT, VARIANT, OPTION_GROUP, GLOBAL }
+
+    public enum Change { CREATED, UPDATED, DELETED }
+
+    public static CatalogueChangedEvent product(Integer productId, String entity, Change change) {
+        return new CatalogueChangedEvent(Scope.PRODUCT, productId, entity, change);
+    }
+
+    public static CatalogueChangedEvent global(String entity, Change change) {
+        return new CatalogueChangedEvent(Scope.GLOBAL, null, entity, change);
+    }
+
+    public boolean isGlobal() {
+        return scope == Scope.GLOBAL;
+    }
+
+    /**
+     * @return true if the product row itself was deleted
+     */
+    public boolean isProductDeleted() {
+        return scope == Scope.PRODUCT && change == Change.DELETED && "Products".equals(entity);
+    }
+}
@@ -0,0 +1,48 @@
+package com.mijimoto.ECommerce.catalogue.facets.controllers;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.catalogue.facets.dto.FacetResultDTO;
+import com.mijimoto.ECommerce.catalogue.facets.models.FacetQuery;
+import com.mijimoto.ECommerce.catalogue.facets.services.FacetService;
+
+/**
+ * Storefront facet counts
+ */
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping(value = "/api/v1/facets", produces = MediaType.APPLICATION_JSON_VALUE)
+public class FacetRestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacetRestController.class);
+
+    private final FacetService service;
+
+    public FacetRestController(FacetService service) {
+        this.service = service;
+    }
+
+    /**
+     * GET facet counts for a filter selection
+     *
+     * @param categoryId category, including its subcategories
+     * @param option     repeated attribute option ids
+     * @return counts per attribute option, price bucket and child category
+     */
+    @GetMapping
+    public ResponseEntity<FacetResultDTO> facets(@RequestParam(value = "categoryId", required = false) Integer categoryId,
+                                                 @RequestParam(value = "option", required = false) List<Integer> option,
+                                                 @RequestParam(value = "minPrice", required = false) Double minPrice,
+                                                 @RequestParam(value = "maxPrice", required = false) Double maxPrice) {
+        logger.debug("GET - facets: categoryId={}, options={}", categoryId, option);
+        FacetQuery query = new FacetQuery(categoryId, option != null ? new LinkedHashSet<>(option) : null, minPrice, maxPrice);
+        return ResponseEntity.ok(service.count(query));
+    }
+}
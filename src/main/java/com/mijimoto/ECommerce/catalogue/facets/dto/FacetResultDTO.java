@@ -0,0 +1,67 @@
+package com.mijimoto.ECommerce.catalogue.facets.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Facet counts for one filter selection. Counts for an attribute ignore that attribute's own
+ * selection, so alternatives stay visible ("multi-select" facets).
+ */
+@Data
+@NoArgsConstructor
+public class FacetResultDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long total;
+    private List<AttributeFacet> attributes = new ArrayList<>();
+    private List<PriceBucket> prices = new ArrayList<>();
+    private List<CategoryCount> categories = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class AttributeFacet implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String code;
+        private String name;
+        private List<OptionCount> options = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OptionCount implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String value;
+        private long count;
+        private boolean selected;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private double from;
+        /** exclusive; null for the open-ended last bucket */
+        private Double to;
+        private long count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryCount implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String name;
+        private long count;
+    }
+}
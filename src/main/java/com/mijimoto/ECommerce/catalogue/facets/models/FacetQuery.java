@@ -0,0 +1,18 @@
+package com.mijimoto.ECommerce.catalogue.facets.models;
+
+import java.util.Set;
+
+/**
+ * Current filter selection on a category page.
+ *
+ * @param categoryId restricts to the category subtree (null = whole catalogue)
+ * @param optionIds  selected attribute options; options of one attribute are OR'ed, attributes AND'ed
+ * @param minPrice   inclusive, matched against the product's variant price range
+ * @param maxPrice   inclusive
+ */
+public record FacetQuery(Integer categoryId, Set<Integer> optionIds, Double minPrice, Double maxPrice) {
+
+    public boolean hasPriceFilter() {
+        return minPrice != null || maxPrice != null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.mijimoto.ECommerce.catalogue.facets.models;
+
+import java.util.Arrays;
+
+/**
+ * Set of product ordinals with two representations, in the spirit of roaring bitmaps:
+ *  - sparse: sorted int[] while that is smaller than a bitmap over the universe
+ *  - dense: long[] bitmap once the array would outgrow it
+ * Counting is always done against a dense mask ({@link #andCardinality(long[])}) so a query
+ * never materialises intermediate sets for the options it counts.
+ *
+ * Not thread-safe; {@code FacetIndex} guards access.
+ */
+public final class PostingList {
+
+    private int[] sparse = new int[4];
+    private int size;
+    private long[] dense;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isDense() {
+        return dense != null;
+    }
+
+    public void add(int ordinal) {
+        if (dense != null) {
+            ensureWords(ordinal);
+            long bit = 1L << ordinal;
+            int w = ordinal >>> 6;
+            if ((dense[w] & bit) == 0) {
+                dense[w] |= bit;
+                size++;
+            }
+            return;
+        }
+        int pos = Arrays.binarySearch(sparse, 0, size, ordinal);
+        if (pos >= 0) return;
+        pos = -pos - 1;
+        if (size == sparse.length) sparse = Arrays.copyOf(sparse, size * 2);
+        System.arraycopy(sparse, pos, sparse, pos + 1, size - pos);
+        sparse[pos] = ordinal;
+        size++;
+        // 32 bits per array entry vs 1 bit per ordinal up to the largest one
+        if ((long) size * 32 > (long) sparse[size - 1] + 64) toDense();
+    }
+
+    public void remove(int ordinal) {
+        if (dense != null) {
+            int w = ordinal >>> 6;
+            if (w >= dense.length) return;
+            long bit = 1L << ordinal;
+            if ((dense[w] & bit) != 0) {
+                dense[w] &= ~bit;
+                size--;
+            }
+            return;
+        }
+        int pos = Arrays.binarySearch(sparse, 0, size, ordinal);
+        if (pos < 0) return;
+        System.arraycopy(sparse, pos + 1, sparse, pos, size - pos - 1);
+        size--;
+    }
+
+    /**
+     * ORs this set into {@code mask}.
+     */
+    public void orInto(long[] mask) {
+        if (dense != null) {
+            int n = Math.min(mask.length, dense.length);
+            for (int i = 0; i < n; i++) mask[i] |= dense[i];
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            int o = sparse[i];
+            if ((o >>> 6) < mask.length) mask[o >>> 6] |= 1L << o;
+        }
+    }
+
+    /**
+     * ANDs {@code mask} with this set in place.
+     */
+    public void andInto(long[] mask) {
+        if (dense != null) {
+            int n = Math.min(mask.length, dense.length);
+            for (int i = 0; i < n; i++) mask[i] &= dense[i];
+            for (int i = n; i < mask.length; i++) mask[i] = 0;
+            return;
+        }
+        long[] tmp = new long[mask.length];
+        for (int i = 0; i < size; i++) {
+            int o = sparse[i];
+            int w = o >>> 6;
+            if (w < mask.length) tmp[w] |= mask[w] & (1L << o);
+        }
+        System.arraycopy(tmp, 0, mask, 0, mask.length);
+    }
+
+    /**
+     * @return number of ordinals in both this set and {@code mask}
+     */
+    public int andCardinality(long[] mask) {
+        int count = 0;
+        if (dense != null) {
+            int n = Math.min(mask.length, dense.length);
+            for (int i = 0; i < n; i++) count += Long.bitCount(mask[i] & dense[i]);
+            return count;
+        }
+        for (int i = 0; i < size; i++) {
+            int o = sparse[i];
+            int w = o >>> 6;
+            if (w < mask.length && (mask[w] & (1L << o)) != 0) count++;
+        }
+        return count;
+    }
+
+    public static int cardinality(long[] mask) {
+        int count = 0;
+        for (long w : mask) count += Long.bitCount(w);
+        return count;
+    }
+
+    private void toDense() {
+        dense = new long[(sparse[size - 1] >>> 6) + 1];
+        for (int i = 0; i < size; i++) dense[sparse[i] >>> 6] |= 1L << sparse[i];
+        sparse = null;
+    }
+
+    private void ensureWords(int ordinal) {
+        int w = ordinal >>> 6;
+        if (w >= dense.length) dense = Arrays.copyOf(dense, Math.max(w + 1, dense.length * 2));
+    }
+}
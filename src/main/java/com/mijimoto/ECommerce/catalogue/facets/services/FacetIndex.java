@@ -0,0 +1,265 @@
+package com.mijimoto.ECommerce.catalogue.facets.services;
+
+import com.mijimoto.ECommerce.catalogue.facets.dto.FacetResultDTO;
+import com.mijimoto.ECommerce.catalogue.facets.models.FacetQuery;
+import com.mijimoto.ECommerce.catalogue.facets.models.PostingList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory facet data for the published catalogue.
+ *
+ * Each product gets a dense ordinal; every attribute option and category holds a
+ * {@link PostingList} of ordinals, and variant price ranges sit in parallel arrays.
+ * A query turns each filter into a bitmap over ordinals and counts by intersecting.
+ * Products removed from the index leave a dead ordinal behind until the next full build.
+ *
+ * Not thread-safe; {@link FacetService} guards access.
+ */
+class FacetIndex {
+
+    private static final int[] NO_OPTIONS = new int[0];
+
+    private final Map<Integer, FacetRowLoader.AttributeMeta> attributes;
+    private final Map<Integer, FacetRowLoader.OptionMeta> options;
+    private final Map<Integer, FacetRowLoader.CategoryMeta> categories;
+    private final Map<Integer, List<Integer>> optionsByAttribute = new LinkedHashMap<>();
+    private final Map<Integer, List<Integer>> childCategories = new HashMap<>();
+    private final List<Integer> rootCategories = new ArrayList<>();
+    private final double[] bucketBounds;
+
+    private final Map<Integer, Integer> ordinalOf = new HashMap<>();
+    private final PostingList live = new PostingList();
+    private final Map<Integer, PostingList> byOption = new HashMap<>();
+    private final Map<Integer, PostingList> byCategory = new HashMap<>();
+    private int nextOrdinal;
+    private int[] categoryAt = new int[1024];
+    private int[][] optionsAt = new int[1024][];
+    private double[] minPriceAt = new double[1024];
+    private double[] maxPriceAt = new double[1024];
+
+    FacetIndex(Map<Integer, FacetRowLoader.AttributeMeta> attributes,
+               Map<Integer, FacetRowLoader.OptionMeta> options,
+               Map<Integer, FacetRowLoader.CategoryMeta> categories,
+               double[] bucketBounds) {
+        this.attributes = attributes;
+        this.options = options;
+        this.categories = categories;
+        this.bucketBounds = bucketBounds;
+        for (FacetRowLoader.OptionMeta o : options.values()) {
+            optionsByAttribute.computeIfAbsent(o.attributeId(), k -> new ArrayList<>()).add(o.id());
+        }
+        for (FacetRowLoader.CategoryMeta c : categories.values()) {
+            if (c.parentId() == null || !categories.containsKey(c.parentId())) {
+                rootCategories.add(c.id());
+            } else {
+                childCategories.computeIfAbsent(c.parentId(), k -> new ArrayList<>()).add(c.id());
+            }
+        }
+    }
+
+    int size() {
+        return live.size();
+    }
+
+    int deadOrdinals() {
+        return nextOrdinal - live.size();
+    }
+
+    /**
+     * Adds or replaces a product; an existing product keeps its ordinal.
+     */
+    void put(FacetRowLoader.ProductRow row, List<Integer> optionIds) {
+        Integer existing = ordinalOf.get(row.id());
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            unlink(ordinal);
+        } else {
+            ordinal = nextOrdinal++;
+            ensureCapacity(ordinal);
+            ordinalOf.put(row.id(), ordinal);
+        }
+        int[] opts = NO_OPTIONS;
+        if (optionIds != null && !optionIds.isEmpty()) {
+            opts = optionIds.stream().filter(options::containsKey).mapToInt(Integer::intValue).distinct().toArray();
+        }
+        optionsAt[ordinal] = opts;
+        for (int o : opts) byOption.computeIfAbsent(o, k -> new PostingList()).add(ordinal);
+        categoryAt[ordinal] = row.categoryId() != null ? row.categoryId() : -1;
+        if (row.categoryId() != null) byCategory.computeIfAbsent(row.categoryId(), k -> new PostingList()).add(ordinal);
+        minPriceAt[ordinal] = row.minPrice();
+        maxPriceAt[ordinal] = row.maxPrice();
+        live.add(ordinal);
+    }
+
+    void remove(int productId) {
+        Integer ordinal = ordinalOf.remove(productId);
+        if (ordinal == null) return;
+        unlink(ordinal);
+        live.remove(ordinal);
+    }
+
+    FacetResultDTO count(FacetQuery q) {
+        int words = (nextOrdinal >>> 6) + 1;
+
+        long[] scope = new long[words];
+        live.orInto(scope);
+        if (q.categoryId() != null) andAll(scope, subtree(q.categoryId(), words));
+
+        long[] price = null;
+        if (q.hasPriceFilter()) {
+            long[] inRange = new long[words];
+            forEach(scope, o -> {
+                if (inRange(o, q.minPrice(), q.maxPrice())) inRange[o >>> 6] |= 1L << o;
+            });
+            price = inRange;
+        }
+
+        // selected options of one attribute are OR'ed into one mask per attribute
+        Map<Integer, long[]> selectedByAttribute = new LinkedHashMap<>();
+        Set<Integer> selected = q.optionIds() != null ? q.optionIds() : Set.of();
+        for (Integer optionId : selected) {
+            FacetRowLoader.OptionMeta meta = options.get(optionId);
+            if (meta == null) continue;
+            long[] mask = selectedByAttribute.computeIfAbsent(meta.attributeId(), k -> new long[words]);
+            PostingList postings = byOption.get(optionId);
+            if (postings != null) postings.orInto(mask);
+        }
+
+        long[] all = filtered(scope, price, selectedByAttribute, null);
+        FacetResultDTO result = new FacetResultDTO();
+        result.setTotal(PostingList.cardinality(all));
+
+        for (Map.Entry<Integer, List<Integer>> e : optionsByAttribute.entrySet()) {
+            FacetRowLoader.AttributeMeta attribute = attributes.get(e.getKey());
+            if (attribute == null) continue;
+            // an attribute's own selection must not hide its alternatives
+            long[] mask = selectedByAttribute.containsKey(e.getKey())
+                    ? filtered(scope, price, selectedByAttribute, e.getKey())
+                    : all;
+            FacetResultDTO.AttributeFacet facet = new FacetResultDTO.AttributeFacet();
+            facet.setId(attribute.id());
+            facet.setCode(attribute.code());
+            facet.setName(attribute.name());
+            for (Integer optionId : e.getValue()) {
+                PostingList postings = byOption.get(optionId);
+                int count = postings != null ? postings.andCardinality(mask) : 0;
+                boolean isSelected = selected.contains(optionId);
+                if (count > 0 || isSelected) {
+                    facet.getOptions().add(new FacetResultDTO.OptionCount(optionId, options.get(optionId).value(), count, isSelected));
+                }
+            }
+            if (!facet.getOptions().isEmpty()) result.getAttributes().add(facet);
+        }
+
+        if (bucketBounds.length > 0) {
+            long[] withoutPrice = filtered(scope, null, selectedByAttribute, null);
+            long[] counts = new long[bucketBounds.length];
+            forEach(withoutPrice, o -> {
+                // a product whose variants span several buckets counts in each of them
+                for (int b = 0; b < bucketBounds.length; b++) {
+                    double from = bucketBounds[b];
+                    double to = b + 1 < bucketBounds.length ? bucketBounds[b + 1] : Double.POSITIVE_INFINITY;
+                    if (maxPriceAt[o] >= from && minPriceAt[o] < to) counts[b]++;
+                }
+            });
+            for (int b = 0; b < bucketBounds.length; b++) {
+                Double to = b + 1 < bucketBounds.length ? bucketBounds[b + 1] : null;
+                result.getPrices().add(new FacetResultDTO.PriceBucket(bucketBounds[b], to, counts[b]));
+            }
+        }
+
+        List<Integer> children = q.categoryId() != null
+                ? childCategories.getOrDefault(q.categoryId(), List.of())
+                : rootCategories;
+        for (Integer child : children) {
+            long[] mask = subtree(child, words);
+            andAll(mask, all);
+            int count = PostingList.cardinality(mask);
+            if (count > 0) result.getCategories().add(new FacetResultDTO.CategoryCount(child, categories.get(child).name(), count));
+        }
+        return result;
+    }
+
+    private long[] filtered(long[] scope, long[] price, Map<Integer, long[]> selectedByAttribute, Integer skipAttribute) {
+        long[] mask = scope.clone();
+        if (price != null) andAll(mask, price);
+        for (Map.Entry<Integer, long[]> e : selectedByAttribute.entrySet()) {
+            if (!e.getKey().equals(skipAttribute)) andAll(mask, e.getValue());
+        }
+        return mask;
+    }
+
+    /**
+     * @return products in the category or any of its descendants
+     */
+    private long[] subtree(int categoryId, int words) {
+        long[] mask = new long[words];
+        Set<Integer> seen = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(categoryId);
+        while (!stack.isEmpty()) {
+            Integer c = stack.pop();
+            if (!seen.add(c)) continue;
+            PostingList postings = byCategory.get(c);
+            if (postings != null) postings.orInto(mask);
+            for (Integer child : childCategories.getOrDefault(c, List.of())) stack.push(child);
+        }
+        return mask;
+    }
+
+    private boolean inRange(int ordinal, Double min, Double max) {
+        // product matches when any active variant price falls inside [min, max]
+        return (min == null || maxPriceAt[ordinal] >= min) && (max == null || minPriceAt[ordinal] <= max);
+    }
+
+    private void unlink(int ordinal) {
+        for (int o : optionsAt[ordinal]) {
+            PostingList postings = byOption.get(o);
+            if (postings != null) postings.remove(ordinal);
+        }
+        optionsAt[ordinal] = NO_OPTIONS;
+        if (categoryAt[ordinal] >= 0) {
+            PostingList postings = byCategory.get(categoryAt[ordinal]);
+            if (postings != null) postings.remove(ordinal);
+        }
+        categoryAt[ordinal] = -1;
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal < categoryAt.length) return;
+        int n = Math.max(ordinal + 1, categoryAt.length * 2);
+        categoryAt = Arrays.copyOf(categoryAt, n);
+        optionsAt = Arrays.copyOf(optionsAt, n);
+        minPriceAt = Arrays.copyOf(minPriceAt, n);
+        maxPriceAt = Arrays.copyOf(maxPriceAt, n);
+    }
+
+    private static void andAll(long[] mask, long[] other) {
+        for (int i = 0; i < mask.length; i++) mask[i] &= other[i];
+    }
+
+    private interface OrdinalConsumer {
+        void accept(int ordinal);
+    }
+
+    private static void forEach(long[] mask, OrdinalConsumer consumer) {
+        for (int w = 0; w < mask.length; w++) {
+            long word = mask[w];
+            while (word != 0) {
+                consumer.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+}
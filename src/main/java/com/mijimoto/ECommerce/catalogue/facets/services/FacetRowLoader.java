@@ -0,0 +1,110 @@
+package com.mijimoto.ECommerce.catalogue.facets.services;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads what the facet index needs, either for the whole catalogue or for a set of products.
+ */
+@Component
+public class FacetRowLoader {
+
+    private static final String SQL_PRODUCTS =
+            "SELECT p.id, p.category_id, p.price, " +
+            "       MIN(CASE WHEN v.is_active = 1 THEN COALESCE(v.price_override, p.price) END) AS min_price, " +
+            "       MAX(CASE WHEN v.is_active = 1 THEN COALESCE(v.price_override, p.price) END) AS max_price " +
+            "FROM products p LEFT JOIN product_variants v ON v.product_id = p.id " +
+            "WHERE p.is_published = 1 %s " +
+            "GROUP BY p.id, p.category_id, p.price";
+
+    private static final String SQL_PRODUCT_OPTIONS =
+            "SELECT pao.product_id, pao.attribute_option_id FROM product_attribute_options pao " +
+            "JOIN products p ON p.id = pao.product_id WHERE p.is_published = 1 %s";
+
+    record ProductRow(int id, Integer categoryId, double minPrice, double maxPrice) {}
+
+    record AttributeMeta(int id, String code, String name) {}
+
+    record OptionMeta(int id, int attributeId, String value, int sortOrder) {}
+
+    record CategoryMeta(int id, Integer parentId, String name, int sortOrder) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public FacetRowLoader(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * @param productIds restrict to these products; null for all published products
+     */
+    Map<Integer, ProductRow> loadProducts(Collection<Integer> productIds) {
+        Map<Integer, ProductRow> rows = new LinkedHashMap<>();
+        jdbc.query(String.format(SQL_PRODUCTS, productIds != null ? "AND p.id IN (:ids)" : ""), params(productIds), rs -> {
+            int id = rs.getInt("id");
+            int category = rs.getInt("category_id");
+            Integer categoryId = rs.wasNull() ? null : category;
+            BigDecimal price = rs.getBigDecimal("price");
+            BigDecimal min = rs.getBigDecimal("min_price");
+            BigDecimal max = rs.getBigDecimal("max_price");
+            double base = price != null ? price.doubleValue() : 0;
+            rows.put(id, new ProductRow(id, categoryId,
+                    min != null ? min.doubleValue() : base,
+                    max != null ? max.doubleValue() : base));
+        });
+        return rows;
+    }
+
+    /**
+     * @return selected attribute option ids per product
+     */
+    Map<Integer, List<Integer>> loadProductOptions(Collection<Integer> productIds) {
+        Map<Integer, List<Integer>> byProduct = new HashMap<>();
+        jdbc.query(String.format(SQL_PRODUCT_OPTIONS, productIds != null ? "AND p.id IN (:ids)" : ""), params(productIds), rs -> {
+            byProduct.computeIfAbsent(rs.getInt("product_id"), k -> new ArrayList<>()).add(rs.getInt("attribute_option_id"));
+        });
+        return byProduct;
+    }
+
+    Map<Integer, AttributeMeta> loadAttributes() {
+        Map<Integer, AttributeMeta> map = new LinkedHashMap<>();
+        jdbc.getJdbcTemplate().query("SELECT id, code, name FROM attributes ORDER BY name, id", rs -> {
+            map.put(rs.getInt("id"), new AttributeMeta(rs.getInt("id"), rs.getString("code"), rs.getString("name")));
+        });
+        return map;
+    }
+
+    Map<Integer, OptionMeta> loadOptions() {
+        Map<Integer, OptionMeta> map = new LinkedHashMap<>();
+        jdbc.getJdbcTemplate().query("SELECT id, attribute_id, value, sort_order FROM attribute_options " +
+                "ORDER BY attribute_id, sort_order, id", rs -> {
+            map.put(rs.getInt("id"), new OptionMeta(rs.getInt("id"), rs.getInt("attribute_id"),
+                    rs.getString("value"), rs.getInt("sort_order")));
+        });
+        return map;
+    }
+
+    Map<Integer, CategoryMeta> loadCategories() {
+        Map<Integer, CategoryMeta> map = new LinkedHashMap<>();
+        jdbc.getJdbcTemplate().query("SELECT id, parent_id, name, sort_order FROM categories WHERE is_published = 1 " +
+                "ORDER BY sort_order, name, id", rs -> {
+            int parent = rs.getInt("parent_id");
+            Integer parentId = rs.wasNull() ? null : parent;
+            map.put(rs.getInt("id"), new CategoryMeta(rs.getInt("id"), parentId, rs.getString("name"), rs.getInt("sort_order")));
+        });
+        return map;
+    }
+
+    private static MapSqlParameterSource params(Collection<Integer> productIds) {
+        return productIds != null ? new MapSqlParameterSource("ids", productIds) : new MapSqlParameterSource();
+    }
+}
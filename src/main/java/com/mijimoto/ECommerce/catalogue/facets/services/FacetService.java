@@ -0,0 +1,246 @@
+package com.mijimoto.ECommerce.catalogue.facets.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.facets.dto.FacetResultDTO;
+import com.mijimoto.ECommerce.catalogue.facets.models.FacetQuery;
+import com.mijimoto.ECommerce.catalogue.rest.services.ProductDetailService;
+import com.mijimoto.ECommerce.catalogue.snapshot.models.CatalogueSnapshot;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet counts for category pages, served from {@link FacetIndex}.
+ *
+ * The index is built once at startup and then patched: committed catalogue writes mark the
+ * product dirty and a scheduled refresh reloads dirty products in batches under the write lock.
+ * Changes to attributes, options or categories rebuild the whole index off-lock and swap it in,
+ * as does a pile-up of dead ordinals left by unpublished products. Writes committed on other
+ * instances arrive through the catalogue invalidation channel and are handled the same way.
+ */
+@Service
+public class FacetService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacetService.class);
+
+    private static final int REFRESH_BATCH = 1000;
+
+    private final FacetRowLoader loader;
+    private final CatalogueChangeResolver resolver;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final double[] bucketBounds;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile FacetIndex index;
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean(true);
+
+    public FacetService(FacetRowLoader loader,
+                        CatalogueChangeResolver resolver,
+                        RedisMessageListenerContainer listenerContainer,
+                        @Value("${app.facets.price-buckets:0,25,50,100,200,500}") String priceBuckets) {
+        this.loader = loader;
+        this.resolver = resolver;
+        this.listenerContainer = listenerContainer;
+        this.bucketBounds = Arrays.stream(priceBuckets.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .mapToDouble(Double::parseDouble)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this::onInvalidateMessage,
+                new ChannelTopic(ProductDetailService.CHANNEL_INVALIDATE));
+    }
+
+    public FacetResultDTO count(FacetQuery query) {
+        if (query.minPrice() != null && query.maxPrice() != null && query.minPrice() > query.maxPrice()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "minPrice must not exceed maxPrice");
+        }
+        FacetIndex current = index;
+        if (current == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Facet index is still loading");
+        }
+        lock.readLock().lock();
+        try {
+            return current.count(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Serves a catalogue snapshot until the first build from the database replaces it;
+     * does nothing once an index exists.
+     */
+    public void warm(CatalogueSnapshot snapshot) {
+        Map<Integer, FacetRowLoader.AttributeMeta> attributes = new LinkedHashMap<>();
+        for (CatalogueSnapshot.Attribute a : snapshot.attributes()) {
+            attributes.put(a.id(), new FacetRowLoader.AttributeMeta(a.id(), a.code(), a.name()));
+        }
+        Map<Integer, FacetRowLoader.OptionMeta> options = new LinkedHashMap<>();
+        for (CatalogueSnapshot.AttributeOption o : snapshot.attributeOptions()) {
+            options.put(o.id(), new FacetRowLoader.OptionMeta(o.id(), o.attributeId(), o.value(), o.sortOrder()));
+        }
+        Map<Integer, FacetRowLoader.CategoryMeta> categories = new LinkedHashMap<>();
+        snapshot.categories().stream()
+                .sorted(Comparator.comparingInt(CatalogueSnapshot.Category::sortOrder)
+                        .thenComparing(CatalogueSnapshot.Category::name, Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparingInt(CatalogueSnapshot.Category::id))
+                .forEach(c -> categories.put(c.id(), new FacetRowLoader.CategoryMeta(c.id(), c.parentId(), c.name(), c.sortOrder())));
+        // price range over active variants, else the product price
+        Map<Integer, double[]> ranges = new HashMap<>();
+        for (CatalogueSnapshot.Variant v : snapshot.variants()) {
+            if (!v.active()) continue;
+            double price = v.price().doubleValue();
+            double[] range = ranges.computeIfAbsent(v.productId(), k -> new double[] { price, price });
+            range[0] = Math.min(range[0], price);
+            range[1] = Math.max(range[1], price);
+        }
+        Map<Integer, List<Integer>> productOptions = new HashMap<>();
+        for (CatalogueSnapshot.ProductOption po : snapshot.productOptions()) {
+            productOptions.computeIfAbsent(po.productId(), k -> new ArrayList<>()).add(po.optionId());
+        }
+        FacetIndex warm = new FacetIndex(attributes, options, categories, bucketBounds);
+        for (CatalogueSnapshot.Product p : snapshot.products()) {
+            double base = p.price() != null ? p.price().doubleValue() : 0;
+            double[] range = ranges.getOrDefault(p.id(), new double[] { base, base });
+            warm.put(new FacetRowLoader.ProductRow(p.id(), p.categoryId(), range[0], range[1]), productOptions.get(p.id()));
+        }
+        lock.writeLock().lock();
+        try {
+            if (index == null) index = warm;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        CatalogueChangeResolver.Target target = resolver.resolve(event);
+        if (target.all()) {
+            rebuildRequested.set(true);
+        } else if (target.productId() != null) {
+            dirty.add(target.productId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.facets.refresh-interval-ms:2000}")
+    public void refresh() {
+        try {
+            FacetIndex current = index;
+            boolean compact = current != null && current.deadOrdinals() > Math.max(1024, current.size() / 4);
+            if (rebuildRequested.getAndSet(false) || compact) {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    rebuildRequested.set(true);
+                    throw e;
+                }
+            }
+            while (!dirty.isEmpty()) applyDirty(drain(dirty, REFRESH_BATCH));
+        } catch (Exception e) {
+            // failed product batches were put back as dirty
+            logger.warn("Facet refresh failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        // anything that changes from here on is replayed on top of the new index
+        dirty.clear();
+        FacetIndex next = new FacetIndex(loader.loadAttributes(), loader.loadOptions(), loader.loadCategories(), bucketBounds);
+        Map<Integer, List<Integer>> options = loader.loadProductOptions(null);
+        for (FacetRowLoader.ProductRow row : loader.loadProducts(null).values()) {
+            next.put(row, options.get(row.id()));
+        }
+        lock.writeLock().lock();
+        try {
+            index = next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Facet index built: {} products in {} ms", next.size(), System.currentTimeMillis() - started);
+    }
+
+    private void applyDirty(List<Integer> ids) {
+        FacetIndex current = index;
+        if (current == null) return;
+        Map<Integer, FacetRowLoader.ProductRow> rows;
+        Map<Integer, List<Integer>> options;
+        try {
+            rows = loader.loadProducts(ids);
+            options = loader.loadProductOptions(ids);
+        } catch (RuntimeException e) {
+            dirty.addAll(ids);
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Integer id : ids) {
+                FacetRowLoader.ProductRow row = rows.get(id);
+                if (row != null) {
+                    current.put(row, options.get(id));
+                } else {
+                    // deleted or unpublished
+                    current.remove(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // published by ProductDetailService on every instance's committed writes, including our own
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "").trim();
+        if ("*".equals(body)) {
+            rebuildRequested.set(true);
+            return;
+        }
+        try {
+            dirty.add(Integer.parseInt(body));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed invalidation message: {}", body);
+        }
+    }
+
+    private static List<Integer> drain(Set<Integer> set, int max) {
+        List<Integer> batch = new ArrayList<>(Math.min(max, set.size()));
+        Iterator<Integer> it = set.iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,49 @@
+package com.mijimoto.ECommerce.catalogue.imports.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.catalogue.imports.dto.ImportJobDTO;
+import com.mijimoto.ECommerce.catalogue.imports.services.CatalogueImportService;
+
+/**
+ * Bulk catalogue imports (admin)
+ */
+@RestController
+@RequestMapping(value = "/api/catalogue/imports", produces = MediaType.APPLICATION_JSON_VALUE)
+public class CatalogueImportController {
+
+    private final CatalogueImportService importService;
+
+    public CatalogueImportController(CatalogueImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * POST - upload a CSV or NDJSON file and import it in the background
+     *
+     * @param format CSV or NDJSON; defaults to the file extension
+     * @param dryRun validate and resolve references only, write nothing
+     * @return 202 with the job to poll, 409 if an import is already running
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportJobDTO> start(@RequestParam("file") MultipartFile file,
+                                              @RequestParam(value = "format", required = false) String format,
+                                              @RequestParam(value = "dryRun", required = false, defaultValue = "false") boolean dryRun) {
+        CurrentUser.requireAdmin();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(importService.start(file, format, dryRun));
+    }
+
+    /**
+     * GET - progress and per-row errors of an import
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportJobDTO> get(@PathVariable("id") String id) {
+        CurrentUser.requireAdmin();
+        return ResponseEntity.ok(importService.getJob(id));
+    }
+}
@@ -0,0 +1,40 @@
+package com.mijimoto.ECommerce.catalogue.imports.dto;
+
+import com.mijimoto.ECommerce.catalogue.imports.models.ImportError;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of one catalogue import. Counts are in products unless named otherwise; errors are
+ * capped, errorCount is not.
+ */
+@Data
+@NoArgsConstructor
+public class ImportJobDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private String id;
+    private Status status;
+    private String format;
+    private String filename;
+    private boolean dryRun;
+    private long read;
+    private long valid;
+    private long rejected;
+    private long written;
+    private long variantsWritten;
+    private long errorCount;
+    private List<ImportError> errors = new ArrayList<>();
+    private String failure;
+    private OffsetDateTime startedAt;
+    private OffsetDateTime finishedAt;
+    private double productsPerSecond;
+}
@@ -0,0 +1,12 @@
+package com.mijimoto.ECommerce.catalogue.imports.models;
+
+import java.io.Serializable;
+
+/**
+ * One rejected row.
+ *
+ * @param line 1-based line in the file (the header is line 1 for CSV)
+ * @param sku  product or variant SKU the row was about, when known
+ */
+public record ImportError(long line, String sku, String message) implements Serializable {
+}
@@ -0,0 +1,23 @@
+package com.mijimoto.ECommerce.catalogue.imports.models;
+
+import java.util.Locale;
+
+/**
+ * Supported import file formats.
+ *
+ * CSV: one row per variant; consecutive rows with the same product key form one product.
+ * NDJSON: one product per line with its variants nested.
+ */
+public enum ImportFormat {
+    CSV, NDJSON;
+
+    /**
+     * @param name explicit format, or null to infer from the file name
+     */
+    public static ImportFormat resolve(String name, String filename) {
+        if (name != null && !name.isBlank()) return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        String f = filename != null ? filename.toLowerCase(Locale.ROOT) : "";
+        if (f.endsWith(".ndjson") || f.endsWith(".jsonl") || f.endsWith(".json")) return NDJSON;
+        return CSV;
+    }
+}
@@ -0,0 +1,48 @@
+package com.mijimoto.ECommerce.catalogue.imports.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One product as read from an import file, plus the references resolved during validation.
+ *
+ * Products are matched on SKU, or on slug when the SKU is empty. Null collections leave the
+ * stored rows alone; a present one replaces them (attributes, images) or is upserted by SKU
+ * (variants).
+ */
+@Data
+@NoArgsConstructor
+public class ProductImportRecord {
+
+    private long line;
+    private String sku;
+    private String slug;
+    private String name;
+    private String shortDescription;
+    private String longDescription;
+    /** category id or slug */
+    private String category;
+    private BigDecimal price;
+    private Boolean published;
+    /** attribute code to value */
+    private Map<String, String> attributes;
+    private List<String> images;
+    private List<VariantImportRecord> variants = new ArrayList<>();
+
+    // resolved
+    private Integer categoryId;
+    /** attribute id to value */
+    private Map<Integer, String> attributeValues;
+
+    /**
+     * @return what the product is matched on
+     */
+    public String key() {
+        return sku != null ? "sku:" + sku : "slug:" + slug;
+    }
+}
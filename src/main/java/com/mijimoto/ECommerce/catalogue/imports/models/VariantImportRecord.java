@@ -0,0 +1,25 @@
+package com.mijimoto.ECommerce.catalogue.imports.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One variant of an imported product. Null fields keep the stored value.
+ */
+@Data
+@NoArgsConstructor
+public class VariantImportRecord {
+
+    private long line;
+    private String sku;
+    /** null = use the product price */
+    private BigDecimal price;
+    private Boolean active;
+    private Boolean allowBackorder;
+    /** option group name to value, e.g. Size=M; groups are created on the product if missing */
+    private Map<String, String> options = new LinkedHashMap<>();
+}
@@ -0,0 +1,408 @@
+package com.mijimoto.ECommerce.catalogue.imports.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mijimoto.ECommerce.catalogue.imports.dto.ImportJobDTO;
+import com.mijimoto.ECommerce.catalogue.imports.models.ImportError;
+import com.mijimoto.ECommerce.catalogue.imports.models.ImportFormat;
+import com.mijimoto.ECommerce.catalogue.imports.models.ProductImportRecord;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk catalogue import from CSV or NDJSON.
+ *
+ * The upload is spooled to a temp file and processed in the background as a pipeline:
+ *  1. one reader parses the file into products
+ *  2. validator workers check them and resolve categories and attributes
+ *  3. writer workers batch-upsert them ({@link CatalogueImportWriter}); products are routed to
+ *     writers by key, so one product is never written by two transactions at once
+ * Stages are connected by bounded queues, so a slow database back-pressures the parser instead
+ * of filling the heap. A dry run goes through the same stages but writes nothing.
+ */
+@Service
+public class CatalogueImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogueImportService.class);
+
+    // marks the end of a queue; compared by identity
+    private static final ProductImportRecord END = new ProductImportRecord();
+    private static final long POLL_MS = 200;
+
+    private final CatalogueImportWriter writer;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int validateWorkers;
+    private final int writeWorkers;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final int maxReportedErrors;
+    private final Duration retention;
+    private final Semaphore slots;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "catalogue-import");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CatalogueImportService(CatalogueImportWriter writer,
+                                  JdbcTemplate jdbcTemplate,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.catalogue.import.validate-workers:4}") int validateWorkers,
+                                  @Value("${app.catalogue.import.write-workers:4}") int writeWorkers,
+                                  @Value("${app.catalogue.import.batch-size:500}") int batchSize,
+                                  @Value("${app.catalogue.import.queue-capacity:2000}") int queueCapacity,
+                                  @Value("${app.catalogue.import.max-reported-errors:10000}") int maxReportedErrors,
+                                  @Value("${app.catalogue.import.max-concurrent-jobs:1}") int maxConcurrentJobs,
+                                  @Value("${app.catalogue.import.retention-minutes:1440}") long retentionMinutes) {
+        this.writer = writer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.validateWorkers = Math.max(1, validateWorkers);
+        this.writeWorkers = Math.max(1, writeWorkers);
+        this.batchSize = Math.max(1, batchSize);
+        this.queueCapacity = Math.max(this.batchSize, queueCapacity);
+        this.maxReportedErrors = maxReportedErrors;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.slots = new Semaphore(Math.max(1, maxConcurrentJobs));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Spools the file and starts the import in the background.
+     *
+     * @param format CSV or NDJSON, or null to go by the file extension
+     * @throws ResponseStatusException 400 for an empty file or unknown format,
+     *                                 409 when the maximum number of imports is already running
+     */
+    public ImportJobDTO start(MultipartFile file, String format, boolean dryRun) {
+        if (file == null || file.isEmpty()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is empty");
+        ImportFormat importFormat;
+        try {
+            importFormat = ImportFormat.resolve(format, file.getOriginalFilename());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported format: " + format);
+        }
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another catalogue import is running");
+        }
+        Path path = null;
+        try {
+            path = Files.createTempFile("catalogue-import-", "." + importFormat.name().toLowerCase(Locale.ROOT));
+            file.transferTo(path);
+        } catch (IOException e) {
+            slots.release();
+            deleteQuietly(path);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not store upload: " + e.getMessage());
+        }
+
+        purgeFinished();
+        Job job = new Job(UUID.randomUUID().toString(), importFormat, file.getOriginalFilename(), dryRun);
+        jobs.put(job.id, job);
+        Path spooled = path;
+        try {
+            executor.execute(() -> run(job, spooled));
+        } catch (RuntimeException e) {
+            jobs.remove(job.id);
+            slots.release();
+            deleteQuietly(spooled);
+            throw e;
+        }
+        logger.info("Catalogue import {} started: {} ({}){}", job.id, job.filename, importFormat, dryRun ? ", dry run" : "");
+        return job.toDTO();
+    }
+
+    /**
+     * @throws ResponseStatusException 404 for unknown or expired jobs
+     */
+    public ImportJobDTO getJob(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("Import with id %s not found", id));
+        }
+        return job.toDTO();
+    }
+
+    private void run(Job job, Path path) {
+        try {
+            runPipeline(job, path);
+            job.finish(job.failure == null ? ImportJobDTO.Status.COMPLETED : ImportJobDTO.Status.FAILED, null);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            job.finish(ImportJobDTO.Status.FAILED, e.getMessage());
+            logger.error("Catalogue import {} failed: {}", job.id, e.getMessage(), e);
+        } finally {
+            slots.release();
+            deleteQuietly(path);
+        }
+        logger.info("Catalogue import {} {}: read={} rejected={} written={} variants={} errors={}",
+                job.id, job.status, job.read.get(), job.rejected.get(), job.written.get(),
+                job.variantsWritten.get(), job.errorCount.get());
+    }
+
+    private void runPipeline(Job job, Path path) throws Exception {
+        ImportReferenceResolver resolver = new ImportReferenceResolver(jdbcTemplate);
+        BlockingQueue<ProductImportRecord> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        List<BlockingQueue<ProductImportRecord>> toWrite = new ArrayList<>(writeWorkers);
+        for (int i = 0; i < writeWorkers; i++) {
+            toWrite.add(new ArrayBlockingQueue<>(Math.max(batchSize, queueCapacity / writeWorkers)));
+        }
+        AtomicInteger validatorsLeft = new AtomicInteger(validateWorkers);
+
+        List<Future<?>> stages = new ArrayList<>();
+        stages.add(executor.submit(() -> {
+            stage(job, () -> read(job, path, parsed));
+        }));
+        for (int i = 0; i < validateWorkers; i++) {
+            stages.add(executor.submit(() -> {
+                stage(job, () -> validate(job, resolver, parsed, toWrite, validatorsLeft));
+            }));
+        }
+        for (BlockingQueue<ProductImportRecord> queue : toWrite) {
+            stages.add(executor.submit(() -> {
+                stage(job, () -> write(job, queue));
+            }));
+        }
+        for (Future<?> stage : stages) {
+            try {
+                stage.get();
+            } catch (ExecutionException e) {
+                job.abort(e.getCause().getMessage());
+            }
+        }
+    }
+
+    private void read(Job job, Path path, BlockingQueue<ProductImportRecord> parsed) throws Exception {
+        try (ImportRecordReader reader = open(job, path)) {
+            ProductImportRecord p;
+            while ((p = reader.next()) != null) {
+                job.read.incrementAndGet();
+                if (!put(parsed, p, job)) return;
+            }
+        } finally {
+            for (int i = 0; i < validateWorkers; i++) put(parsed, END, job);
+        }
+    }
+
+    private void validate(Job job, ImportReferenceResolver resolver, BlockingQueue<ProductImportRecord> parsed,
+                          List<BlockingQueue<ProductImportRecord>> toWrite, AtomicInteger validatorsLeft) throws Exception {
+        try {
+            ProductImportRecord p;
+            while ((p = take(parsed, job)) != null && p != END) {
+                if (!resolver.resolve(p, job::report)) {
+                    job.rejected.incrementAndGet();
+                    continue;
+                }
+                job.valid.incrementAndGet();
+                BlockingQueue<ProductImportRecord> queue = toWrite.get(Math.floorMod(p.key().toLowerCase(Locale.ROOT).hashCode(), toWrite.size()));
+                if (!put(queue, p, job)) return;
+            }
+        } finally {
+            // the last validator out closes the writer queues
+            if (validatorsLeft.decrementAndGet() == 0) {
+                for (BlockingQueue<ProductImportRecord> queue : toWrite) put(queue, END, job);
+            }
+        }
+    }
+
+    private void write(Job job, BlockingQueue<ProductImportRecord> queue) throws Exception {
+        List<ProductImportRecord> batch = new ArrayList<>(batchSize);
+        ProductImportRecord p;
+        while ((p = take(queue, job)) != null) {
+            if (p != END) batch.add(p);
+            if (batch.size() >= batchSize || (p == END && !batch.isEmpty())) {
+                flush(job, batch);
+                batch = new ArrayList<>(batchSize);
+            }
+            if (p == END) return;
+        }
+    }
+
+    private void flush(Job job, List<ProductImportRecord> batch) {
+        if (job.dryRun) {
+            int accepted = writer.rejectConflicts(batch, job::report).size();
+            job.rejected.addAndGet(batch.size() - accepted);
+            return;
+        }
+        CatalogueImportWriter.Written written = writer.write(batch, job::report);
+        job.written.addAndGet(written.products());
+        job.variantsWritten.addAndGet(written.variants());
+        job.rejected.addAndGet(batch.size() - written.products());
+    }
+
+    private ImportRecordReader open(Job job, Path path) throws IOException {
+        BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        try {
+            // spreadsheet exports often start with a byte order mark
+            in.mark(1);
+            if (in.read() != '\uFEFF') in.reset();
+            return job.format == ImportFormat.NDJSON
+                    ? new NdjsonImportRecordReader(in, objectMapper, job::report)
+                    : new CsvImportRecordReader(in, job::report);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return false if the job was aborted while waiting for space
+     */
+    private static boolean put(BlockingQueue<ProductImportRecord> queue, ProductImportRecord p, Job job)
+            throws InterruptedException {
+        while (!queue.offer(p, POLL_MS, TimeUnit.MILLISECONDS)) {
+            if (job.aborted) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return null if the job was aborted while waiting
+     */
+    private static ProductImportRecord take(BlockingQueue<ProductImportRecord> queue, Job job)
+            throws InterruptedException {
+        ProductImportRecord p;
+        while ((p = queue.poll(POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+            if (job.aborted) return null;
+        }
+        return p;
+    }
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs a stage; a failing stage aborts the job so the others stop waiting on it.
+     */
+    private static void stage(Job job, Stage stage) {
+        try {
+            stage.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.abort("Interrupted");
+        } catch (Exception e) {
+            logger.error("Catalogue import {} stage failed: {}", job.id, e.getMessage(), e);
+            job.abort(e.getMessage());
+        }
+    }
+
+    private void purgeFinished() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(retention);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private final class Job {
+        final String id;
+        final ImportFormat format;
+        final String filename;
+        final boolean dryRun;
+        final OffsetDateTime startedAt = OffsetDateTime.now();
+        final AtomicLong read = new AtomicLong();
+        final AtomicLong valid = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong written = new AtomicLong();
+        final AtomicLong variantsWritten = new AtomicLong();
+        final AtomicLong errorCount = new AtomicLong();
+        final List<ImportError> errors = new ArrayList<>();
+        volatile boolean aborted;
+        volatile String failure;
+        volatile ImportJobDTO.Status status = ImportJobDTO.Status.RUNNING;
+        volatile OffsetDateTime finishedAt;
+
+        Job(String id, ImportFormat format, String filename, boolean dryRun) {
+            this.id = id;
+            this.format = format;
+            this.filename = filename;
+            this.dryRun = dryRun;
+        }
+
+        void report(ImportError error) {
+            if (errorCount.incrementAndGet() > maxReportedErrors) return;
+            synchronized (errors) {
+                errors.add(error);
+            }
+        }
+
+        void abort(String message) {
+            if (failure == null) failure = message != null ? message : "Import aborted";
+            aborted = true;
+        }
+
+        void finish(ImportJobDTO.Status status, String message) {
+            if (message != null && failure == null) failure = message;
+            this.finishedAt = OffsetDateTime.now();
+            this.status = status;
+        }
+
+        ImportJobDTO toDTO() {
+            ImportJobDTO dto = new ImportJobDTO();
+            dto.setId(id);
+            dto.setStatus(status);
+            dto.setFormat(format.name());
+            dto.setFilename(filename);
+            dto.setDryRun(dryRun);
+            dto.setRead(read.get());
+            dto.setValid(valid.get());
+            dto.setRejected(rejected.get());
+            dto.setWritten(written.get());
+            dto.setVariantsWritten(variantsWritten.get());
+            dto.setErrorCount(errorCount.get());
+            synchronized (errors) {
+                dto.setErrors(new ArrayList<>(errors));
+            }
+            dto.setFailure(failure);
+            dto.setStartedAt(startedAt);
+            OffsetDateTime end = finishedAt;
+            dto.setFinishedAt(end);
+            double seconds = Duration.between(startedAt, end != null ? end : OffsetDateTime.now()).toMillis() / 1000.0;
+            dto.setProductsPerSecond(seconds > 0 ? (dryRun ? valid.get() : written.get()) / seconds : 0);
+            return dto;
+        }
+    }
+}
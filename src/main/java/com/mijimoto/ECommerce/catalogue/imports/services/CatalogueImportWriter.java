@@ -0,0 +1,465 @@
+package com.mijimoto.ECommerce.catalogue.imports.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.imports.models.ImportError;
+import com.mijimoto.ECommerce.catalogue.imports.models.ProductImportRecord;
+import com.mijimoto.ECommerce.catalogue.imports.models.VariantImportRecord;
+import com.mijimoto.ECommerce.catalogue.variants.models.VariantHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Upserts validated import records with JDBC batches, one transaction per batch.
+ *
+ * Products are merged on SKU (or slug when the SKU is empty) and variants on SKU. Option
+ * groups and values are created per product as needed. Attribute values and images are
+ * replaced only when the record carries them. If a batch fails, its products are retried
+ * one by one so a single bad row cannot sink the rest; a product whose rows cannot be read
+ * back after the merge is reported as a row error like any failed write.
+ *
+ * These writes bypass JPA, so a product change event is published for every product once
+ * its batch has committed.
+ */
+@Component
+public class CatalogueImportWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogueImportWriter.class);
+
+    // SQL Server accepts at most 2100 parameters per statement
+    private static final int IN_CHUNK = 1000;
+
+    public record Written(int products, int variants) {}
+
+    /** the product an existing row belongs to */
+    private record Owner(String sku, String slug) {
+        /** true if the record would be merged into this product */
+        boolean is(ProductImportRecord p) {
+            return p.getSku() != null ? p.getSku().equalsIgnoreCase(sku) : p.getSlug().equalsIgnoreCase(slug);
+        }
+    }
+
+    private static final String SQL_MERGE_PRODUCT =
+            "MERGE products WITH (HOLDLOCK) AS t " +
+            "USING (SELECT :sku AS sku, :slug AS slug, :defaultSlug AS default_slug, :name AS name, " +
+            "              :shortDescription AS short_description, :longDescription AS long_description, " +
+            "              :categoryId AS category_id, :price AS price, :published AS is_published, " +
+            "              :hasVariants AS has_variants, :now AS now) AS s " +
+            "ON (s.sku IS NOT NULL AND t.sku = s.sku) OR (s.sku IS NULL AND t.slug = s.slug) " +
+            "WHEN MATCHED THEN UPDATE SET " +
+            "    t.name = s.name, t.slug = COALESCE(s.slug, t.slug), " +
+            "    t.short_description = COALESCE(s.short_description, t.short_description), " +
+            "    t.long_description = COALESCE(s.long_description, t.long_description), " +
+            "    t.category_id = COALESCE(s.category_id, t.category_id), t.price = s.price, " +
+            "    t.is_published = COALESCE(s.is_published, t.is_published), " +
+            "    t.has_variants = CASE WHEN s.has_variants = 1 THEN 1 ELSE t.has_variants END, " +
+            "    t.updated_at = s.now " +
+            "WHEN NOT MATCHED THEN INSERT (sku, name, slug, short_description, long_description, category_id, " +
+            "    price, has_variants, is_published, created_at, updated_at) " +
+            "VALUES (s.sku, s.name, COALESCE(s.slug, s.default_slug), s.short_description, s.long_description, " +
+            "    s.category_id, s.price, s.has_variants, COALESCE(s.is_published, 0), s.now, s.now);";
+
+    private static final String SQL_MERGE_GROUP =
+            "MERGE variant_option_groups WITH (HOLDLOCK) AS t " +
+            "USING (SELECT :productId AS product_id, :name AS name, :position AS position) AS s " +
+            "ON t.product_id = s.product_id AND t.name = s.name " +
+            "WHEN NOT MATCHED THEN INSERT (product_id, name, position, is_required) " +
+            "VALUES (s.product_id, s.name, s.position, 1);";
+
+    private static final String SQL_MERGE_VALUE =
+            "MERGE variant_option_values WITH (HOLDLOCK) AS t " +
+            "USING (SELECT :groupId AS group_id, :value AS value, :position AS position) AS s " +
+            "ON t.group_id = s.group_id AND t.value = s.value " +
+            "WHEN NOT MATCHED THEN INSERT (group_id, value, position) VALUES (s.group_id, s.value, s.position);";
+
+    // a variant without a price follows the product price
+    private static final String SQL_MERGE_VARIANT =
+            "MERGE product_variants WITH (HOLDLOCK) AS t " +
+            "USING (SELECT :productId AS product_id, :sku AS sku, :hash AS variant_hash, :price AS price_override, " +
+            "              :active AS is_active, :allowBackorder AS allow_backorder, :now AS now) AS s " +
+            "ON t.sku = s.sku " +
+            "WHEN MATCHED THEN UPDATE SET " +
+            "    t.variant_hash = s.variant_hash, t.price_override = s.price_override, " +
+            "    t.is_active = COALESCE(s.is_active, t.is_active), " +
+            "    t.allow_backorder = COALESCE(s.allow_backorder, t.allow_backorder) " +
+            "WHEN NOT MATCHED THEN INSERT (product_id, sku, variant_hash, price_override, is_active, allow_backorder, created_at) " +
+            "VALUES (s.product_id, s.sku, s.variant_hash, s.price_override, COALESCE(s.is_active, 1), " +
+            "    COALESCE(s.allow_backorder, 0), s.now);";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+
+    public CatalogueImportWriter(NamedParameterJdbcTemplate jdbc,
+                                 PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher publisher) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+    }
+
+    /**
+     * Writes the batch, reporting products that conflict with existing rows or fail to write.
+     */
+    public Written write(List<ProductImportRecord> batch, Consumer<ImportError> errors) {
+        List<ProductImportRecord> accepted = rejectConflicts(batch, errors);
+        if (accepted.isEmpty()) return new Written(0, 0);
+        try {
+            publish(transactionTemplate.execute(status -> writeAll(accepted)));
+            return count(accepted);
+        } catch (DataAccessException | TransactionException | IllegalStateException e) {
+            if (accepted.size() == 1) {
+                report(accepted.get(0), e, errors);
+                return new Written(0, 0);
+            }
+            logger.debug("Import batch of {} failed, retrying products one by one: {}", accepted.size(), e.getMessage());
+        }
+        int products = 0;
+        int variants = 0;
+        for (ProductImportRecord p : accepted) {
+            try {
+                publish(transactionTemplate.execute(status -> writeAll(List.of(p))));
+                products++;
+                variants += p.getVariants().size();
+            } catch (DataAccessException | TransactionException | IllegalStateException e) {
+                report(p, e, errors);
+            }
+        }
+        return new Written(products, variants);
+    }
+
+    /**
+     * Drops products whose slug or variant SKUs already belong to a different product.
+     * Also used on its own by dry runs.
+     */
+    List<ProductImportRecord> rejectConflicts(List<ProductImportRecord> batch, Consumer<ImportError> errors) {
+        Map<String, Owner> variantOwners = new HashMap<>();
+        List<String> variantSkus = new ArrayList<>();
+        for (ProductImportRecord p : batch) {
+            for (VariantImportRecord v : p.getVariants()) variantSkus.add(v.getSku());
+        }
+        for (List<String> chunk : chunks(variantSkus)) {
+            jdbc.query("SELECT v.sku, p.sku AS product_sku, p.slug AS product_slug FROM product_variants v " +
+                       "JOIN products p ON p.id = v.product_id WHERE v.sku IN (:skus)",
+                    new MapSqlParameterSource("skus", chunk), rs -> {
+                        variantOwners.put(lower(rs.getString("sku")),
+                                new Owner(rs.getString("product_sku"), rs.getString("product_slug")));
+                    });
+        }
+        Map<String, Owner> slugOwners = new HashMap<>();
+        List<String> slugs = new ArrayList<>();
+        for (ProductImportRecord p : batch) {
+            if (p.getSku() != null && p.getSlug() != null) slugs.add(p.getSlug());
+        }
+        for (List<String> chunk : chunks(slugs)) {
+            jdbc.query("SELECT sku, slug FROM products WHERE slug IN (:slugs)", new MapSqlParameterSource("slugs", chunk),
+                    rs -> {
+                        slugOwners.put(lower(rs.getString("slug")), new Owner(rs.getString("sku"), rs.getString("slug")));
+                    });
+        }
+
+        List<ProductImportRecord> accepted = new ArrayList<>(batch.size());
+        for (ProductImportRecord p : batch) {
+            boolean ok = true;
+            if (p.getSku() != null && p.getSlug() != null) {
+                Owner owner = slugOwners.get(lower(p.getSlug()));
+                if (owner != null && !owner.is(p)) {
+                    errors.accept(new ImportError(p.getLine(), p.getSku(), "slug " + p.getSlug() + " is used by another product"));
+                    ok = false;
+                }
+            }
+            for (VariantImportRecord v : p.getVariants()) {
+                Owner owner = variantOwners.get(lower(v.getSku()));
+                if (owner != null && !owner.is(p)) {
+                    errors.accept(new ImportError(v.getLine(), v.getSku(), "variant sku " + v.getSku() + " belongs to another product"));
+                    ok = false;
+                }
+            }
+            if (ok) accepted.add(p);
+        }
+        return accepted;
+    }
+
+    /**
+     * @return ids of the written products
+     */
+    private List<Integer> writeAll(List<ProductImportRecord> products) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        List<MapSqlParameterSource> productRows = new ArrayList<>(products.size());
+        for (ProductImportRecord p : products) {
+            productRows.add(new MapSqlParameterSource()
+                    .addValue("sku", p.getSku(), Types.NVARCHAR)
+                    .addValue("slug", p.getSlug(), Types.NVARCHAR)
+                    .addValue("defaultSlug", ImportReferenceResolver.slugify(p.getName()), Types.NVARCHAR)
+                    .addValue("name", p.getName(), Types.NVARCHAR)
+                    .addValue("shortDescription", p.getShortDescription(), Types.NVARCHAR)
+                    .addValue("longDescription", p.getLongDescription(), Types.NVARCHAR)
+                    .addValue("categoryId", p.getCategoryId(), Types.INTEGER)
+                    .addValue("price", p.getPrice(), Types.DECIMAL)
+                    .addValue("published", p.getPublished(), Types.BIT)
+                    .addValue("hasVariants", !p.getVariants().isEmpty(), Types.BIT)
+                    .addValue("now", now, Types.TIMESTAMP));
+        }
+        batch(SQL_MERGE_PRODUCT, productRows);
+        Map<ProductImportRecord, Integer> ids = productIds(products);
+
+        writeVariants(products, ids, now);
+
+        List<Integer> withAttributes = new ArrayList<>();
+        List<MapSqlParameterSource> attributeRows = new ArrayList<>();
+        List<Integer> withImages = new ArrayList<>();
+        List<MapSqlParameterSource> imageRows = new ArrayList<>();
+        for (ProductImportRecord p : products) {
+            int productId = ids.get(p);
+            if (p.getAttributeValues() != null) {
+                withAttributes.add(productId);
+                for (Map.Entry<Integer, String> a : p.getAttributeValues().entrySet()) {
+                    attributeRows.add(new MapSqlParameterSource("productId", productId)
+                            .addValue("attributeId", a.getKey()).addValue("value", a.getValue(), Types.NVARCHAR));
+                }
+            }
+            if (p.getImages() != null) {
+                withImages.add(productId);
+                for (int i = 0; i < p.getImages().size(); i++) {
+                    imageRows.add(new MapSqlParameterSource("productId", productId)
+                            .addValue("url", p.getImages().get(i), Types.NVARCHAR)
+                            .addValue("primary", i == 0, Types.BIT)
+                            .addValue("sortOrder", i)
+                            .addValue("now", now, Types.TIMESTAMP));
+                }
+            }
+        }
+        deleteIn("DELETE FROM product_attribute_values WHERE product_id IN (:ids)", withAttributes);
+        batch("INSERT INTO product_attribute_values (product_id, attribute_id, value) VALUES (:productId, :attributeId, :value)",
+                attributeRows);
+        deleteIn("DELETE FROM product_images WHERE product_id IN (:ids)", withImages);
+        batch("INSERT INTO product_images (product_id, url, is_primary, sort_order, created_at) " +
+              "VALUES (:productId, :url, :primary, :sortOrder, :now)", imageRows);
+
+        return new ArrayList<>(new LinkedHashSet<>(ids.values()));
+    }
+
+    private void writeVariants(List<ProductImportRecord> products, Map<ProductImportRecord, Integer> ids, Timestamp now) {
+        // option groups in first-seen order per product, compared case-insensitively like the collation
+        List<MapSqlParameterSource> groupRows = new ArrayList<>();
+        List<Integer> productIds = new ArrayList<>();
+        for (ProductImportRecord p : products) {
+            if (p.getVariants().isEmpty()) continue;
+            int productId = ids.get(p);
+            productIds.add(productId);
+            Set<String> seen = new LinkedHashSet<>();
+            for (VariantImportRecord v : p.getVariants()) {
+                for (String name : v.getOptions().keySet()) {
+                    if (seen.add(lower(name))) {
+                        groupRows.add(new MapSqlParameterSource("productId", productId)
+                                .addValue("name", name, Types.NVARCHAR).addValue("position", seen.size() - 1));
+                    }
+                }
+            }
+        }
+        if (productIds.isEmpty()) return;
+        batch(SQL_MERGE_GROUP, groupRows);
+        Map<String, Integer> groups = new HashMap<>();
+        for (List<Integer> chunk : chunks(productIds)) {
+            jdbc.query("SELECT id, product_id, name FROM variant_option_groups WHERE product_id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk), rs -> {
+                        groups.put(rs.getInt("product_id") + "\n" + lower(rs.getString("name")), rs.getInt("id"));
+                    });
+        }
+
+        Set<String> seenValues = new HashSet<>();
+        Map<Integer, Integer> nextPosition = new HashMap<>();
+        List<MapSqlParameterSource> valueRows = new ArrayList<>();
+        for (ProductImportRecord p : products) {
+            for (VariantImportRecord v : p.getVariants()) {
+                for (Map.Entry<String, String> o : v.getOptions().entrySet()) {
+                    int groupId = require(groups, ids.get(p) + "\n" + lower(o.getKey()), "option group " + o.getKey());
+                    String key = groupId + "\n" + lower(o.getValue());
+                    if (!seenValues.add(key)) continue;
+                    int position = nextPosition.merge(groupId, 1, Integer::sum) - 1;
+                    valueRows.add(new MapSqlParameterSource("groupId", groupId)
+                            .addValue("value", o.getValue(), Types.NVARCHAR).addValue("position", position));
+                }
+            }
+        }
+        batch(SQL_MERGE_VALUE, valueRows);
+        Map<String, Integer> values = new HashMap<>();
+        Map<Integer, Integer> parents = new HashMap<>();
+        for (List<Integer> chunk : chunks(new ArrayList<>(groups.values()))) {
+            jdbc.query("SELECT id, group_id, value, parent_value_id FROM variant_option_values WHERE group_id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk), rs -> {
+                        values.put(rs.getInt("group_id") + "\n" + lower(rs.getString("value")), rs.getInt("id"));
+                        putParent(parents, rs);
+                    });
+        }
+        loadAncestors(parents);
+
+        List<MapSqlParameterSource> variantRows = new ArrayList<>();
+        Map<String, List<Integer>> valuesBySku = new HashMap<>();
+        for (ProductImportRecord p : products) {
+            int productId = ids.get(p);
+            for (VariantImportRecord v : p.getVariants()) {
+                List<Integer> valueIds = new ArrayList<>(v.getOptions().size());
+                for (Map.Entry<String, String> o : v.getOptions().entrySet()) {
+                    int groupId = require(groups, productId + "\n" + lower(o.getKey()), "option group " + o.getKey());
+                    valueIds.add(require(values, groupId + "\n" + lower(o.getValue()), "option value " + o.getValue()));
+                }
+                valuesBySku.put(lower(v.getSku()), valueIds);
+                variantRows.add(new MapSqlParameterSource("productId", productId)
+                        .addValue("sku", v.getSku(), Types.NVARCHAR)
+                        .addValue("hash", VariantHash.ofClosure(valueIds, parents::get), Types.NVARCHAR)
+                        .addValue("price", v.getPrice(), Types.DECIMAL)
+                        .addValue("active", v.getActive(), Types.BIT)
+                        .addValue("allowBackorder", v.getAllowBackorder(), Types.BIT)
+                        .addValue("now", now, Types.TIMESTAMP));
+            }
+        }
+        batch(SQL_MERGE_VARIANT, variantRows);
+
+        Map<String, Integer> variantIds = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(valuesBySku.keySet()))) {
+            jdbc.query("SELECT id, sku FROM product_variants WHERE sku IN (:skus)", new MapSqlParameterSource("skus", chunk),
+                    rs -> {
+                        variantIds.put(lower(rs.getString("sku")), rs.getInt("id"));
+                    });
+        }
+        List<MapSqlParameterSource> linkRows = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> e : valuesBySku.entrySet()) {
+            int variantId = require(variantIds, e.getKey(), "variant " + e.getKey());
+            for (Integer valueId : e.getValue()) {
+                linkRows.add(new MapSqlParameterSource("variantId", variantId).addValue("valueId", valueId));
+            }
+        }
+        deleteIn("DELETE FROM product_variant_values WHERE variant_id IN (:ids)", new ArrayList<>(variantIds.values()));
+        batch("INSERT INTO product_variant_values (variant_id, value_id) VALUES (:variantId, :valueId)", linkRows);
+    }
+
+    /**
+     * Adds the parent chains of the loaded values, which may sit in other products' groups, so
+     * the stored hash covers the same ancestor closure the variant resolver keys on.
+     */
+    private void loadAncestors(Map<Integer, Integer> parents) {
+        Set<Integer> requested = new HashSet<>(parents.keySet());
+        for (int depth = 0; depth < VariantHash.MAX_PARENT_DEPTH; depth++) {
+            Set<Integer> missing = new HashSet<>();
+            for (Integer parent : parents.values()) {
+                if (parent != null && requested.add(parent)) missing.add(parent);
+            }
+            if (missing.isEmpty()) return;
+            for (List<Integer> chunk : chunks(missing)) {
+                jdbc.query("SELECT id, parent_value_id FROM variant_option_values WHERE id IN (:ids)",
+                        new MapSqlParameterSource("ids", chunk), rs -> {
+                            putParent(parents, rs);
+                        });
+            }
+        }
+    }
+
+    private static void putParent(Map<Integer, Integer> parents, ResultSet rs) throws SQLException {
+        int parent = rs.getInt("parent_value_id");
+        parents.put(rs.getInt("id"), rs.wasNull() ? null : parent);
+    }
+
+    private Map<ProductImportRecord, Integer> productIds(List<ProductImportRecord> products) {
+        List<String> skus = new ArrayList<>();
+        List<String> slugs = new ArrayList<>();
+        for (ProductImportRecord p : products) {
+            if (p.getSku() != null) skus.add(p.getSku());
+            else slugs.add(p.getSlug());
+        }
+        Map<String, Integer> byKey = new HashMap<>();
+        for (List<String> chunk : chunks(skus)) {
+            jdbc.query("SELECT id, sku FROM products WHERE sku IN (:v)", new MapSqlParameterSource("v", chunk), rs -> {
+                byKey.put("sku:" + lower(rs.getString("sku")), rs.getInt("id"));
+            });
+        }
+        for (List<String> chunk : chunks(slugs)) {
+            jdbc.query("SELECT id, slug FROM products WHERE slug IN (:v)", new MapSqlParameterSource("v", chunk), rs -> {
+                byKey.put("slug:" + lower(rs.getString("slug")), rs.getInt("id"));
+            });
+        }
+        Map<ProductImportRecord, Integer> ids = new IdentityHashMap<>();
+        for (ProductImportRecord p : products) {
+            Integer id = byKey.get(lower(p.key()));
+            if (id == null) throw new IllegalStateException("Product " + p.key() + " was not written");
+            ids.put(p, id);
+        }
+        return ids;
+    }
+
+    /**
+     * Looks up a row the merge just wrote; a miss (e.g. a collation that folds keys differently
+     * from {@link #lower}) fails the product instead of the whole job.
+     */
+    private static int require(Map<String, Integer> ids, String key, String what) {
+        Integer id = ids.get(key);
+        if (id == null) throw new IllegalStateException(what + " was not written");
+        return id;
+    }
+
+    private void batch(String sql, List<MapSqlParameterSource> rows) {
+        if (!rows.isEmpty()) jdbc.batchUpdate(sql, rows.toArray(new MapSqlParameterSource[0]));
+    }
+
+    private void deleteIn(String sql, List<Integer> ids) {
+        for (List<Integer> chunk : chunks(ids)) {
+            jdbc.update(sql, new MapSqlParameterSource("ids", chunk));
+        }
+    }
+
+    private void publish(List<Integer> productIds) {
+        if (productIds == null) return;
+        for (Integer id : productIds) {
+            publisher.publishEvent(CatalogueChangedEvent.product(id, "Products", CatalogueChangedEvent.Change.UPDATED));
+        }
+    }
+
+    private static Written count(List<ProductImportRecord> products) {
+        int variants = 0;
+        for (ProductImportRecord p : products) variants += p.getVariants().size();
+        return new Written(products.size(), variants);
+    }
+
+    private static void report(ProductImportRecord p, Exception e, Consumer<ImportError> errors) {
+        Throwable cause = e instanceof DataAccessException dae ? dae.getMostSpecificCause() : e;
+        errors.accept(new ImportError(p.getLine(), p.getSku() != null ? p.getSku() : p.getSlug(),
+                "write failed: " + cause.getMessage()));
+    }
+
+    private static String lower(String s) {
+        return s != null ? s.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> items) {
+        List<T> list = new ArrayList<>(items);
+        List<List<T>> out = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += IN_CHUNK) {
+            out.add(list.subList(i, Math.min(list.size(), i + IN_CHUNK)));
+        }
+        return out;
+    }
+}
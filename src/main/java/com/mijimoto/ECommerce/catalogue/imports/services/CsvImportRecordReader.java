@@ -0,0 +1,246 @@
+package com.mijimoto.ECommerce.catalogue.imports.services;
+
+import com.mijimoto.ECommerce.catalogue.imports.models.ImportError;
+import com.mijimoto.ECommerce.catalogue.imports.models.ProductImportRecord;
+import com.mijimoto.ECommerce.catalogue.imports.models.VariantImportRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * RFC 4180 CSV with a header row. One row per variant; consecutive rows with the same
+ * product_sku (or product_slug) make up one product, whose fields are taken from the first
+ * row that sets them. A row without variant_sku describes the product only.
+ *
+ * Columns (any order, case-insensitive): product_sku, product_slug, name, category, price,
+ * short_description, long_description, published, attributes, images, variant_sku,
+ * variant_price, variant_active, allow_backorder, options.
+ * attributes and options are "key=value;key=value", images are "url|url".
+ */
+class CsvImportRecordReader implements ImportRecordReader {
+
+    private static final char SEPARATOR = ',';
+
+    private final Reader in;
+    private final Consumer<ImportError> errors;
+    private final Map<String, Integer> columns = new HashMap<>();
+
+    private long line = 1;
+    private int peeked = -2;
+    private String[] lookahead;
+    private long lookaheadLine;
+
+    CsvImportRecordReader(Reader in, Consumer<ImportError> errors) throws IOException {
+        this.in = in;
+        this.errors = errors;
+        List<String> header = readRow();
+        if (header == null) throw new IOException("Empty file");
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT).replace('-', '_'), i);
+        }
+        if (!columns.containsKey("product_sku") && !columns.containsKey("product_slug")) {
+            throw new IOException("Header must contain product_sku or product_slug");
+        }
+    }
+
+    @Override
+    public ProductImportRecord next() throws IOException {
+        ProductImportRecord product = null;
+        while (true) {
+            String[] row;
+            long rowLine;
+            if (lookahead != null) {
+                row = lookahead;
+                rowLine = lookaheadLine;
+                lookahead = null;
+            } else {
+                rowLine = line;
+                List<String> fields = readRow();
+                if (fields == null) return product;
+                if (fields.size() == 1 && fields.get(0).isBlank()) continue;
+                row = fields.toArray(new String[0]);
+            }
+            String key = productKey(row);
+            if (key == null) {
+                errors.accept(new ImportError(rowLine, null, "product_sku or product_slug is required"));
+                continue;
+            }
+            if (product != null && !key.equals(product.key())) {
+                lookahead = row;
+                lookaheadLine = rowLine;
+                return product;
+            }
+            ProductImportRecord target = product;
+            if (target == null) {
+                target = new ProductImportRecord();
+                target.setLine(rowLine);
+                target.setSku(get(row, "product_sku"));
+                target.setSlug(get(row, "product_slug"));
+            }
+            try {
+                merge(target, row, rowLine);
+                product = target;
+            } catch (IllegalArgumentException e) {
+                String sku = get(row, "variant_sku");
+                errors.accept(new ImportError(rowLine, sku != null ? sku : target.getSku(), e.getMessage()));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String productKey(String[] row) {
+        String sku = get(row, "product_sku");
+        if (sku != null) return "sku:" + sku;
+        String slug = get(row, "product_slug");
+        return slug != null ? "slug:" + slug : null;
+    }
+
+    /**
+     * Fills product fields not set yet and adds the row's variant. Parses the whole row
+     * before touching the product, so a bad row leaves it unchanged.
+     */
+    private void merge(ProductImportRecord p, String[] row, long rowLine) {
+        BigDecimal price = decimal(row, "price");
+        Boolean published = bool(row, "published");
+        Map<String, String> attributes = pairs(get(row, "attributes"));
+        List<String> images = list(get(row, "images"));
+        VariantImportRecord variant = null;
+        String variantSku = get(row, "variant_sku");
+        if (variantSku != null) {
+            variant = new VariantImportRecord();
+            variant.setLine(rowLine);
+            variant.setSku(variantSku);
+            variant.setPrice(decimal(row, "variant_price"));
+            variant.setActive(bool(row, "variant_active"));
+            variant.setAllowBackorder(bool(row, "allow_backorder"));
+            Map<String, String> options = pairs(get(row, "options"));
+            if (options != null) variant.setOptions(options);
+        }
+
+        if (p.getName() == null) p.setName(get(row, "name"));
+        if (p.getSlug() == null) p.setSlug(get(row, "product_slug"));
+        if (p.getCategory() == null) p.setCategory(get(row, "category"));
+        if (p.getShortDescription() == null) p.setShortDescription(get(row, "short_description"));
+        if (p.getLongDescription() == null) p.setLongDescription(get(row, "long_description"));
+        if (p.getPrice() == null) p.setPrice(price);
+        if (p.getPublished() == null) p.setPublished(published);
+        if (p.getAttributes() == null) p.setAttributes(attributes);
+        if (p.getImages() == null) p.setImages(images);
+        if (variant != null) p.getVariants().add(variant);
+    }
+
+    private String get(String[] row, String column) {
+        Integer i = columns.get(column);
+        if (i == null || i >= row.length) return null;
+        String v = row[i].trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    private BigDecimal decimal(String[] row, String column) {
+        String v = get(row, column);
+        if (v == null) return null;
+        try {
+            return new BigDecimal(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " is not a number: " + v);
+        }
+    }
+
+    private Boolean bool(String[] row, String column) {
+        String v = get(row, column);
+        if (v == null) return null;
+        switch (v.toLowerCase(Locale.ROOT)) {
+            case "1": case "true": case "yes": case "y":
+                return Boolean.TRUE;
+            case "0": case "false": case "no": case "n":
+                return Boolean.FALSE;
+            default:
+                throw new IllegalArgumentException(column + " is not a boolean: " + v);
+        }
+    }
+
+    private static Map<String, String> pairs(String v) {
+        if (v == null) return null;
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String part : v.split(";")) {
+            if (part.isBlank()) continue;
+            int eq = part.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected key=value but got: " + part.trim());
+            out.put(part.substring(0, eq).trim(), part.substring(eq + 1).trim());
+        }
+        return out;
+    }
+
+    private static List<String> list(String v) {
+        if (v == null) return null;
+        return new ArrayList<>(Arrays.stream(v.split("\\|")).map(String::trim).filter(s -> !s.isEmpty()).toList());
+    }
+
+    /**
+     * @return the next record's fields, or null at end of input
+     */
+    private List<String> readRow() throws IOException {
+        int c = read();
+        if (c == -1) return null;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        long startLine = line;
+        while (true) {
+            if (quoted) {
+                if (c == -1) throw new IOException("Unterminated quoted field starting on line " + startLine);
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == SEPARATOR) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') read();
+                if (c != -1) line++;
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) peeked = in.read();
+        return peeked;
+    }
+}
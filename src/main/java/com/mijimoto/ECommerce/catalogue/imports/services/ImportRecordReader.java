@@ -0,0 +1,19 @@
+package com.mijimoto.ECommerce.catalogue.imports.services;
+
+import com.mijimoto.ECommerce.catalogue.imports.models.ProductImportRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams products out of an import file, one at a time. Rows that cannot be parsed are
+ * reported to the error sink given at construction and skipped.
+ */
+interface ImportRecordReader extends Closeable {
+
+    /**
+     * @return the next product, or null at end of file
+     * @throws IOException when the file itself cannot be read any further
+     */
+    ProductImportRecord next() throws IOException;
+}
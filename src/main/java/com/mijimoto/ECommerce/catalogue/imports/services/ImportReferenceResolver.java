@@ -0,0 +1,176 @@
+package com.mijimoto.ECommerce.catalogue.imports.services;
+
+import com.mijimoto.ECommerce.catalogue.imports.models.ImportError;
+import com.mijimoto.ECommerce.catalogue.imports.models.ProductImportRecord;
+import com.mijimoto.ECommerce.catalogue.imports.models.VariantImportRecord;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Validates import records and resolves category and attribute references against lookups
+ * loaded once per job. Safe to call from several validator threads; duplicates within the
+ * file are detected across all of them.
+ */
+class ImportReferenceResolver {
+
+    static final int MAX_SKU = 100;
+    static final int MAX_NAME = 255;
+    static final int MAX_SHORT_DESCRIPTION = 1000;
+    static final int MAX_ATTRIBUTE_VALUE = 1000;
+    static final int MAX_OPTION = 255;
+    static final int MAX_URL = 2000;
+
+    private final Map<Integer, Integer> categoryIds = new HashMap<>();
+    private final Map<String, Integer> categoriesBySlug = new HashMap<>();
+    private final Map<String, Integer> attributesByCode = new HashMap<>();
+
+    private final Set<String> seenProducts = ConcurrentHashMap.newKeySet();
+    private final Set<String> seenVariants = ConcurrentHashMap.newKeySet();
+
+    ImportReferenceResolver(JdbcTemplate jdbc) {
+        jdbc.query("SELECT id, slug FROM categories", rs -> {
+            int id = rs.getInt("id");
+            categoryIds.put(id, id);
+            categoriesBySlug.put(rs.getString("slug").toLowerCase(Locale.ROOT), id);
+        });
+        // code wins over name when both match different attributes
+        jdbc.query("SELECT id, name, code FROM attributes", rs -> {
+            attributesByCode.putIfAbsent(rs.getString("name").trim().toLowerCase(Locale.ROOT), rs.getInt("id"));
+        });
+        jdbc.query("SELECT id, code FROM attributes WHERE code IS NOT NULL", rs -> {
+            attributesByCode.put(rs.getString("code").trim().toLowerCase(Locale.ROOT), rs.getInt("id"));
+        });
+    }
+
+    /**
+     * Checks the product and its variants and fills the resolved fields. All problems are
+     * reported, and any one of them rejects the whole product.
+     *
+     * @return true if the product can be written
+     */
+    boolean resolve(ProductImportRecord p, Consumer<ImportError> errors) {
+        Errors e = new Errors(p, errors);
+
+        if (p.getSku() == null && p.getSlug() == null) e.add(p.getLine(), "product sku or slug is required");
+        if (p.getSku() != null && p.getSku().length() > MAX_SKU) e.add(p.getLine(), "sku is longer than " + MAX_SKU);
+        if (p.getName() == null) e.add(p.getLine(), "name is required");
+        else if (p.getName().length() > MAX_NAME) e.add(p.getLine(), "name is longer than " + MAX_NAME);
+        // without an explicit slug, new products get one derived from the name
+        String slug = p.getSlug() != null ? p.getSlug() : p.getName() != null ? slugify(p.getName()) : null;
+        if (slug != null && (slug.isEmpty() || slug.length() > MAX_NAME)) {
+            e.add(p.getLine(), "slug must be 1 to " + MAX_NAME + " characters");
+        }
+        if (p.getShortDescription() != null && p.getShortDescription().length() > MAX_SHORT_DESCRIPTION) {
+            e.add(p.getLine(), "short description is longer than " + MAX_SHORT_DESCRIPTION);
+        }
+        checkPrice(p.getPrice(), true, "price", p.getLine(), e);
+
+        if (p.getCategory() != null) {
+            Integer categoryId = resolveCategory(p.getCategory());
+            if (categoryId == null) e.add(p.getLine(), "unknown category: " + p.getCategory());
+            p.setCategoryId(categoryId);
+        }
+
+        if (p.getAttributes() != null) {
+            Map<Integer, String> resolved = new LinkedHashMap<>();
+            for (Map.Entry<String, String> a : p.getAttributes().entrySet()) {
+                Integer attributeId = attributesByCode.get(a.getKey().toLowerCase(Locale.ROOT));
+                if (attributeId == null) {
+                    e.add(p.getLine(), "unknown attribute: " + a.getKey());
+                } else if (a.getValue() != null && a.getValue().length() > MAX_ATTRIBUTE_VALUE) {
+                    e.add(p.getLine(), "value of attribute " + a.getKey() + " is longer than " + MAX_ATTRIBUTE_VALUE);
+                } else if (a.getValue() != null && !a.getValue().isEmpty()) {
+                    resolved.put(attributeId, a.getValue());
+                }
+            }
+            p.setAttributeValues(resolved);
+        }
+
+        if (p.getImages() != null) {
+            for (String url : p.getImages()) {
+                if (url.length() > MAX_URL) e.add(p.getLine(), "image url is longer than " + MAX_URL);
+            }
+        }
+
+        Set<String> combinations = new HashSet<>();
+        for (VariantImportRecord v : p.getVariants()) {
+            if (v.getSku() == null) {
+                e.add(v.getLine(), "variant sku is required");
+                continue;
+            }
+            if (v.getSku().length() > MAX_SKU) e.add(v.getLine(), "variant sku is longer than " + MAX_SKU);
+            checkPrice(v.getPrice(), false, "variant price", v.getLine(), e);
+            if (!seenVariants.add(v.getSku().toLowerCase(Locale.ROOT))) {
+                e.add(v.getLine(), "variant sku " + v.getSku() + " appears more than once in the file");
+            }
+            // group names and values compare case-insensitively, like the database collation
+            Map<String, String> normalized = new TreeMap<>();
+            for (Map.Entry<String, String> o : v.getOptions().entrySet()) {
+                if (o.getKey().isEmpty() || o.getKey().length() > MAX_OPTION) {
+                    e.add(v.getLine(), "option name must be 1 to " + MAX_OPTION + " characters");
+                } else if (o.getValue() == null || o.getValue().isEmpty() || o.getValue().length() > MAX_OPTION) {
+                    e.add(v.getLine(), "value of option " + o.getKey() + " must be 1 to " + MAX_OPTION + " characters");
+                } else {
+                    normalized.put(o.getKey().toLowerCase(Locale.ROOT), o.getValue().toLowerCase(Locale.ROOT));
+                }
+            }
+            if (!normalized.isEmpty() && !combinations.add(normalized.toString())) {
+                e.add(v.getLine(), "variant " + v.getSku() + " repeats the options of another variant");
+            }
+        }
+
+        if ((p.getSku() != null || p.getSlug() != null) && !seenProducts.add(p.key().toLowerCase(Locale.ROOT))) {
+            e.add(p.getLine(), "product " + p.key() + " appears more than once in the file");
+        }
+        return e.count == 0;
+    }
+
+    private Integer resolveCategory(String category) {
+        try {
+            return categoryIds.get(Integer.parseInt(category));
+        } catch (NumberFormatException ignored) {
+            return categoriesBySlug.get(category.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static void checkPrice(BigDecimal price, boolean required, String field, long line, Errors e) {
+        if (price == null) {
+            if (required) e.add(line, field + " is required");
+        } else if (price.signum() < 0) {
+            e.add(line, field + " must not be negative");
+        }
+    }
+
+    static String slugify(String name) {
+        String ascii = Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        String slug = ascii.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("(^-+|-+$)", "");
+        return slug.length() > MAX_NAME ? slug.substring(0, MAX_NAME) : slug;
+    }
+
+    private static final class Errors {
+        private final ProductImportRecord product;
+        private final Consumer<ImportError> sink;
+        private int count;
+
+        Errors(ProductImportRecord product, Consumer<ImportError> sink) {
+            this.product = product;
+            this.sink = sink;
+        }
+
+        void add(long line, String message) {
+            count++;
+            sink.accept(new ImportError(line, product.getSku() != null ? product.getSku() : product.getSlug(), message));
+        }
+    }
+}
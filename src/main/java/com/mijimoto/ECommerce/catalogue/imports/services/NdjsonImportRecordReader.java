@@ -0,0 +1,135 @@
+package com.mijimoto.ECommerce.catalogue.imports.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mijimoto.ECommerce.catalogue.imports.models.ImportError;
+import com.mijimoto.ECommerce.catalogue.imports.models.ProductImportRecord;
+import com.mijimoto.ECommerce.catalogue.imports.models.VariantImportRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * One JSON object per line:
+ * {"sku", "slug", "name", "category", "price", "shortDescription", "longDescription",
+ *  "published", "attributes": {code: value}, "images": [url],
+ *  "variants": [{"sku", "price", "active", "allowBackorder", "options": {group: value}}]}
+ */
+class NdjsonImportRecordReader implements ImportRecordReader {
+
+    private final BufferedReader in;
+    private final ObjectMapper mapper;
+    private final Consumer<ImportError> errors;
+    private long line;
+
+    NdjsonImportRecordReader(BufferedReader in, ObjectMapper mapper, Consumer<ImportError> errors) {
+        this.in = in;
+        this.mapper = mapper;
+        this.errors = errors;
+    }
+
+    @Override
+    public ProductImportRecord next() throws IOException {
+        String text;
+        while ((text = in.readLine()) != null) {
+            line++;
+            if (text.isBlank()) continue;
+            try {
+                return map(mapper.readTree(text));
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                String message = e instanceof JsonProcessingException jpe ? "Invalid JSON: " + jpe.getOriginalMessage() : e.getMessage();
+                errors.accept(new ImportError(line, null, message));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private ProductImportRecord map(JsonNode node) {
+        if (!node.isObject()) throw new IllegalArgumentException("Expected a JSON object");
+        ProductImportRecord p = new ProductImportRecord();
+        p.setLine(line);
+        p.setSku(text(node, "sku"));
+        p.setSlug(text(node, "slug"));
+        p.setName(text(node, "name"));
+        p.setCategory(text(node, "category"));
+        p.setPrice(decimal(node, "price"));
+        p.setShortDescription(text(node, "shortDescription"));
+        p.setLongDescription(text(node, "longDescription"));
+        p.setPublished(bool(node, "published"));
+        p.setAttributes(object(node, "attributes"));
+        JsonNode images = node.get("images");
+        if (images != null && !images.isNull()) {
+            List<String> urls = new ArrayList<>();
+            for (JsonNode url : images) {
+                if (!url.asText().isBlank()) urls.add(url.asText().trim());
+            }
+            p.setImages(urls);
+        }
+        JsonNode variants = node.get("variants");
+        if (variants != null && variants.isArray()) {
+            for (JsonNode v : variants) {
+                VariantImportRecord variant = new VariantImportRecord();
+                variant.setLine(line);
+                variant.setSku(text(v, "sku"));
+                variant.setPrice(decimal(v, "price"));
+                variant.setActive(bool(v, "active"));
+                variant.setAllowBackorder(bool(v, "allowBackorder"));
+                Map<String, String> options = object(v, "options");
+                if (options != null) variant.setOptions(options);
+                p.getVariants().add(variant);
+            }
+        }
+        return p;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) return null;
+        String s = v.asText().trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    private static BigDecimal decimal(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) return null;
+        if (v.isNumber()) return v.decimalValue();
+        try {
+            return new BigDecimal(v.asText().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a number: " + v.asText());
+        }
+    }
+
+    private static Boolean bool(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) return null;
+        if (!v.isBoolean()) throw new IllegalArgumentException(field + " is not a boolean: " + v);
+        return v.booleanValue();
+    }
+
+    private static Map<String, String> object(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) return null;
+        if (!v.isObject()) throw new IllegalArgumentException(field + " must be an object");
+        Map<String, String> out = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> it = v.fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> e = it.next();
+            out.put(e.getKey().trim(), e.getValue().isNull() ? null : e.getValue().asText().trim());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mijimoto.ECommerce.catalogue.lookup.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.mijimoto.ECommerce.catalogue.lookup.dto.SkuLookupDTO;
+import com.mijimoto.ECommerce.catalogue.lookup.services.ProductLookupService;
+
+/**
+ * SKU resolution for integrations (authenticated)
+ */
+@RestController
+@RequestMapping(value = "/api/catalogue/lookup", produces = MediaType.APPLICATION_JSON_VALUE)
+public class ProductLookupController {
+
+    private final ProductLookupService lookupService;
+
+    public ProductLookupController(ProductLookupService lookupService) {
+        this.lookupService = lookupService;
+    }
+
+    /**
+     * GET - the variant or product with this SKU, published or not
+     *
+     * @return 404 if no variant or product has it
+     */
+    @GetMapping("/sku/{sku}")
+    public ResponseEntity<SkuLookupDTO> findBySku(@PathVariable String sku) {
+        ProductLookupService.SkuMatch match = lookupService.findBySku(sku);
+        if (match == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("SKU %s not found", sku));
+        }
+        SkuLookupDTO dto = new SkuLookupDTO();
+        dto.setSku(sku);
+        dto.setProductId(match.productId());
+        dto.setVariantId(match.variantId());
+        return ResponseEntity.ok(dto);
+    }
+}
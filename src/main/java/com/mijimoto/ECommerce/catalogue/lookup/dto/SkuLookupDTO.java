@@ -0,0 +1,21 @@
+package com.mijimoto.ECommerce.catalogue.lookup.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * What a SKU identifies: a variant (and its product) or a product.
+ */
+@Data
+@NoArgsConstructor
+public class SkuLookupDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String sku;
+    private Integer productId;
+    /** null for a product-level SKU */
+    private Integer variantId;
+}
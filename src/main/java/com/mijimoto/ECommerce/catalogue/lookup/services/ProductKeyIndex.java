@@ -0,0 +1,112 @@
+package com.mijimoto.ECommerce.catalogue.lookup.services;
+
+import com.mijimoto.ECommerce.common.util.IntLongHashMap;
+import com.mijimoto.ECommerce.common.util.StringIntHashMap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Natural keys of every product in memory: published slugs, product SKUs and variant SKUs,
+ * each mapped to a primitive int id.
+ *
+ * Keys are trimmed and lower-cased, matching the database's case-insensitive collation, so an
+ * in-memory hit agrees with what the unique indexes allow.
+ *
+ * Not thread-safe; {@link ProductLookupService} guards it with a read/write lock.
+ */
+class ProductKeyIndex {
+
+    record ProductRow(int id, String slug, String sku, boolean published) {}
+
+    record VariantRow(int id, int productId, String sku) {}
+
+    // what was indexed for a product, so renames and deletes remove the old keys
+    private record Keys(String slug, String sku, int[] variantIds, String[] variantSkus) {}
+
+    private final StringIntHashMap slugs;
+    private final StringIntHashMap productSkus;
+    private final StringIntHashMap variantSkus;
+    private final IntLongHashMap variantProducts;
+    private final Map<Integer, Keys> byProduct = new HashMap<>();
+
+    ProductKeyIndex(int expectedProducts) {
+        slugs = new StringIntHashMap(expectedProducts);
+        productSkus = new StringIntHashMap(expectedProducts);
+        variantSkus = new StringIntHashMap(expectedProducts * 2);
+        variantProducts = new IntLongHashMap(expectedProducts * 2);
+    }
+
+    int size() {
+        return byProduct.size();
+    }
+
+    /**
+     * @return the published product, or {@link StringIntHashMap#NO_VALUE}
+     */
+    int productBySlug(String slug) {
+        return slugs.get(key(slug));
+    }
+
+    /**
+     * @return the product, or {@link StringIntHashMap#NO_VALUE}
+     */
+    int productBySku(String sku) {
+        return productSkus.get(key(sku));
+    }
+
+    /**
+     * @return the variant, or {@link StringIntHashMap#NO_VALUE}
+     */
+    int variantBySku(String sku) {
+        return variantSkus.get(key(sku));
+    }
+
+    /**
+     * @return the variant's product, or {@link StringIntHashMap#NO_VALUE}
+     */
+    int productOfVariant(int variantId) {
+        long productId = variantProducts.get(variantId);
+        return productId == IntLongHashMap.NO_VALUE ? StringIntHashMap.NO_VALUE : (int) productId;
+    }
+
+    /**
+     * Replaces everything known about a product.
+     */
+    void putProduct(ProductRow product, List<VariantRow> variants) {
+        removeProduct(product.id());
+        String slug = product.published() && product.slug() != null ? key(product.slug()) : null;
+        String sku = product.sku() != null && !product.sku().isBlank() ? key(product.sku()) : null;
+        if (slug != null) slugs.put(slug, product.id());
+        if (sku != null) productSkus.put(sku, product.id());
+        int[] variantIds = new int[variants.size()];
+        String[] skus = new String[variants.size()];
+        for (int i = 0; i < variants.size(); i++) {
+            VariantRow v = variants.get(i);
+            variantIds[i] = v.id();
+            skus[i] = key(v.sku());
+            variantSkus.put(skus[i], v.id());
+            variantProducts.put(v.id(), v.productId());
+        }
+        byProduct.put(product.id(), new Keys(slug, sku, variantIds, skus));
+    }
+
+    void removeProduct(int productId) {
+        Keys keys = byProduct.remove(productId);
+        if (keys == null) return;
+        // only drop a key still pointing here; another product may have taken it over meanwhile
+        if (keys.slug() != null && slugs.get(keys.slug()) == productId) slugs.remove(keys.slug());
+        if (keys.sku() != null && productSkus.get(keys.sku()) == productId) productSkus.remove(keys.sku());
+        for (int i = 0; i < keys.variantIds().length; i++) {
+            int variantId = keys.variantIds()[i];
+            if (variantSkus.get(keys.variantSkus()[i]) == variantId) variantSkus.remove(keys.variantSkus()[i]);
+            variantProducts.remove(variantId);
+        }
+    }
+
+    static String key(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,88 @@
+package com.mijimoto.ECommerce.catalogue.lookup.services;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads product and variant natural keys for {@link ProductKeyIndex}, and answers single lookups
+ * from the unique indexes while the index is not built yet or lags behind a write.
+ */
+@Component
+public class ProductKeyLoader {
+
+    private static final String SQL_PRODUCTS = "SELECT id, slug, sku, is_published FROM products ";
+    private static final String SQL_VARIANTS = "SELECT id, product_id, sku FROM product_variants ";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public ProductKeyLoader(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Streams every product with its variants.
+     */
+    void loadAll(Consumer<ProductKeyIndex.ProductRow> products, Consumer<ProductKeyIndex.VariantRow> variants) {
+        jdbc.query(SQL_PRODUCTS, rs -> {
+            products.accept(toProduct(rs));
+        });
+        jdbc.query(SQL_VARIANTS, rs -> {
+            variants.accept(toVariant(rs));
+        });
+    }
+
+    /**
+     * @return the products that still exist
+     */
+    List<ProductKeyIndex.ProductRow> loadProducts(Collection<Integer> productIds) {
+        return jdbc.query(SQL_PRODUCTS + "WHERE id IN (:ids)", new MapSqlParameterSource("ids", productIds),
+                (rs, i) -> toProduct(rs));
+    }
+
+    Map<Integer, List<ProductKeyIndex.VariantRow>> loadVariants(Collection<Integer> productIds) {
+        Map<Integer, List<ProductKeyIndex.VariantRow>> out = new HashMap<>();
+        jdbc.query(SQL_VARIANTS + "WHERE product_id IN (:ids)", new MapSqlParameterSource("ids", productIds), rs -> {
+            ProductKeyIndex.VariantRow row = toVariant(rs);
+            out.computeIfAbsent(row.productId(), k -> new ArrayList<>()).add(row);
+        });
+        return out;
+    }
+
+    Integer findPublishedBySlug(String slug) {
+        List<Integer> ids = jdbc.queryForList("SELECT id FROM products WHERE slug = :slug AND is_published = 1",
+                new MapSqlParameterSource("slug", slug.trim()), Integer.class);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /**
+     * @return variant SKUs first, then product SKUs; null if neither matches
+     */
+    ProductLookupService.SkuMatch findBySku(String sku) {
+        MapSqlParameterSource params = new MapSqlParameterSource("sku", sku.trim());
+        List<ProductLookupService.SkuMatch> variants = jdbc.query(
+                "SELECT id, product_id FROM product_variants WHERE sku = :sku", params,
+                (rs, i) -> new ProductLookupService.SkuMatch(rs.getInt("product_id"), rs.getInt("id")));
+        if (!variants.isEmpty()) return variants.get(0);
+        List<Integer> products = jdbc.queryForList("SELECT id FROM products WHERE sku = :sku", params, Integer.class);
+        return products.isEmpty() ? null : new ProductLookupService.SkuMatch(products.get(0), null);
+    }
+
+    private static ProductKeyIndex.ProductRow toProduct(ResultSet rs) throws SQLException {
+        return new ProductKeyIndex.ProductRow(rs.getInt("id"), rs.getString("slug"), rs.getString("sku"),
+                rs.getBoolean("is_published"));
+    }
+
+    private static ProductKeyIndex.VariantRow toVariant(ResultSet rs) throws SQLException {
+        return new ProductKeyIndex.VariantRow(rs.getInt("id"), rs.getInt("product_id"), rs.getString("sku"));
+    }
+}
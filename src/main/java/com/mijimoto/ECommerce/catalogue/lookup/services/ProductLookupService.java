@@ -0,0 +1,313 @@
+package com.mijimoto.ECommerce.catalogue.lookup.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.rest.services.ProductDetailService;
+import com.mijimoto.ECommerce.catalogue.snapshot.models.CatalogueSnapshot;
+import com.mijimoto.ECommerce.common.util.StringIntHashMap;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resolves storefront slugs and integration SKUs to ids.
+ *
+ * Every key lives in a {@link ProductKeyIndex} built at startup; committed writes to products
+ * and variants (local events, and other instances' through the catalogue invalidation channel)
+ * mark the product dirty and a scheduled refresh reloads dirty products, like the price table.
+ * A key missing from the index is checked once against the database (the write may not be
+ * refreshed yet) and, if it does not exist there either, remembered in a bounded negative
+ * cache, so dead URLs requested over and over never reach the database again until the entry
+ * expires. The refresh drops the negative entries of the keys it reloads, and a full
+ * invalidation clears them all, so a key created on any instance resolves once refreshed.
+ */
+@Service
+public class ProductLookupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductLookupService.class);
+
+    private static final int REFRESH_BATCH = 1000;
+    // column lengths; anything longer cannot exist
+    private static final int MAX_SLUG_LENGTH = 255;
+    private static final int MAX_SKU_LENGTH = 100;
+
+    private static final Set<String> KEY_SOURCES = Set.of("Products", "ProductVariants");
+
+    /**
+     * @param variantId null when the SKU is a product SKU
+     */
+    public record SkuMatch(int productId, Integer variantId) {}
+
+    private final ProductKeyLoader loader;
+    private final CatalogueChangeResolver resolver;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int negativeMaxEntries;
+    private final long negativeTtlNanos;
+    private final long rebuildIntervalMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile ProductKeyIndex index;
+    private volatile long builtAt;
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean(true);
+    private final LinkedHashMap<String, Long> negative = new LinkedHashMap<>(1024, 0.75f, true);
+
+    public ProductLookupService(ProductKeyLoader loader,
+                                CatalogueChangeResolver resolver,
+                                RedisMessageListenerContainer listenerContainer,
+                                @Value("${app.catalogue.lookup.negative-max-entries:100000}") int negativeMaxEntries,
+                                @Value("${app.catalogue.lookup.negative-ttl-seconds:600}") long negativeTtlSeconds,
+                                @Value("${app.catalogue.lookup.rebuild-interval-ms:3600000}") long rebuildIntervalMs) {
+        this.loader = loader;
+        this.resolver = resolver;
+        this.listenerContainer = listenerContainer;
+        this.negativeMaxEntries = negativeMaxEntries;
+        this.negativeTtlNanos = Duration.ofSeconds(negativeTtlSeconds).toNanos();
+        this.rebuildIntervalMs = rebuildIntervalMs;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this::onInvalidateMessage,
+                new ChannelTopic(ProductDetailService.CHANNEL_INVALIDATE));
+    }
+
+    /**
+     * @return the published product with this slug, or null
+     */
+    public Integer findPublishedProductIdBySlug(String slug) {
+        if (slug == null || slug.isBlank() || slug.length() > MAX_SLUG_LENGTH) return null;
+        lock.readLock().lock();
+        try {
+            if (index != null) {
+                int id = index.productBySlug(slug);
+                if (id != StringIntHashMap.NO_VALUE) return id;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        String negativeKey = "slug:" + ProductKeyIndex.key(slug);
+        if (isKnownMissing(negativeKey)) return null;
+        Integer id = loader.findPublishedBySlug(slug);
+        if (id == null) rememberMissing(negativeKey);
+        return id;
+    }
+
+    /**
+     * Variant SKUs take precedence over product SKUs.
+     *
+     * @return the match, or null
+     */
+    public SkuMatch findBySku(String sku) {
+        if (sku == null || sku.isBlank() || sku.length() > MAX_SKU_LENGTH) return null;
+        lock.readLock().lock();
+        try {
+            if (index != null) {
+                int variantId = index.variantBySku(sku);
+                if (variantId != StringIntHashMap.NO_VALUE) {
+                    return new SkuMatch(index.productOfVariant(variantId), variantId);
+                }
+                int productId = index.productBySku(sku);
+                if (productId != StringIntHashMap.NO_VALUE) return new SkuMatch(productId, null);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        String negativeKey = "sku:" + ProductKeyIndex.key(sku);
+        if (isKnownMissing(negativeKey)) return null;
+        SkuMatch match = loader.findBySku(sku);
+        if (match == null) rememberMissing(negativeKey);
+        return match;
+    }
+
+    /**
+     * Serves a catalogue snapshot until the first build from the database replaces it;
+     * does nothing once an index exists. The snapshot holds published products only, so
+     * SKUs of unpublished products fall through to the database until then.
+     */
+    public void warm(CatalogueSnapshot snapshot) {
+        Map<Integer, List<ProductKeyIndex.VariantRow>> variants = new HashMap<>();
+        for (CatalogueSnapshot.Variant v : snapshot.variants()) {
+            variants.computeIfAbsent(v.productId(), k -> new ArrayList<>(2))
+                    .add(new ProductKeyIndex.VariantRow(v.id(), v.productId(), v.sku()));
+        }
+        ProductKeyIndex warm = new ProductKeyIndex(Math.max(16, snapshot.products().size()));
+        for (CatalogueSnapshot.Product p : snapshot.products()) {
+            warm.putProduct(new ProductKeyIndex.ProductRow(p.id(), p.slug(), p.sku(), true),
+                    variants.getOrDefault(p.id(), List.of()));
+        }
+        lock.writeLock().lock();
+        try {
+            if (index == null) index = warm;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        // only products and variants carry slugs and SKUs
+        if (!KEY_SOURCES.contains(event.entity())) return;
+        CatalogueChangeResolver.Target target = resolver.resolve(event);
+        if (target.all()) {
+            requestRebuild();
+        } else if (target.productId() != null) {
+            dirty.add(target.productId());
+        }
+    }
+
+    // published by ProductDetailService on every instance's committed writes
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "").trim();
+        if ("*".equals(body)) {
+            requestRebuild();
+            return;
+        }
+        try {
+            dirty.add(Integer.parseInt(body));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed invalidation message: {}", body);
+        }
+    }
+
+    private void requestRebuild() {
+        rebuildRequested.set(true);
+        synchronized (negative) {
+            negative.clear();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogue.lookup.refresh-interval-ms:1000}")
+    public void refresh() {
+        try {
+            boolean expired = System.currentTimeMillis() - builtAt > rebuildIntervalMs;
+            if (rebuildRequested.getAndSet(false) || expired) {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    rebuildRequested.set(true);
+                    throw e;
+                }
+            }
+            while (!dirty.isEmpty()) applyDirty(drain(dirty, REFRESH_BATCH));
+        } catch (Exception e) {
+            // failed product batches were put back as dirty
+            logger.warn("Product key index refresh failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        // anything that changes from here on is replayed on top of the new index
+        dirty.clear();
+        Map<Integer, ProductKeyIndex.ProductRow> products = new LinkedHashMap<>();
+        Map<Integer, List<ProductKeyIndex.VariantRow>> variants = new LinkedHashMap<>();
+        loader.loadAll(p -> products.put(p.id(), p),
+                v -> variants.computeIfAbsent(v.productId(), k -> new ArrayList<>(2)).add(v));
+        ProductKeyIndex next = new ProductKeyIndex(Math.max(16, products.size()));
+        for (ProductKeyIndex.ProductRow p : products.values()) {
+            next.putProduct(p, variants.getOrDefault(p.id(), List.of()));
+        }
+        lock.writeLock().lock();
+        try {
+            index = next;
+            builtAt = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Product key index built: {} products in {} ms", next.size(), System.currentTimeMillis() - started);
+    }
+
+    private void applyDirty(List<Integer> productIds) {
+        List<ProductKeyIndex.ProductRow> products;
+        Map<Integer, List<ProductKeyIndex.VariantRow>> variants;
+        try {
+            products = loader.loadProducts(productIds);
+            variants = loader.loadVariants(productIds);
+        } catch (RuntimeException e) {
+            dirty.addAll(productIds);
+            throw e;
+        }
+        forgetMissing(products, variants);
+        lock.writeLock().lock();
+        try {
+            // not built yet: the first build will read these anyway
+            if (index == null) return;
+            for (Integer id : productIds) index.removeProduct(id);
+            for (ProductKeyIndex.ProductRow p : products) {
+                index.putProduct(p, variants.getOrDefault(p.id(), List.of()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isKnownMissing(String key) {
+        synchronized (negative) {
+            Long cachedAt = negative.get(key);
+            if (cachedAt == null) return false;
+            if (System.nanoTime() - cachedAt > negativeTtlNanos) {
+                negative.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private void rememberMissing(String key) {
+        synchronized (negative) {
+            negative.put(key, System.nanoTime());
+            Iterator<String> it = negative.keySet().iterator();
+            while (negative.size() > negativeMaxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private void forgetMissing(List<ProductKeyIndex.ProductRow> products,
+                               Map<Integer, List<ProductKeyIndex.VariantRow>> variants) {
+        synchronized (negative) {
+            for (ProductKeyIndex.ProductRow p : products) {
+                if (p.slug() != null) negative.remove("slug:" + ProductKeyIndex.key(p.slug()));
+                if (p.sku() != null) negative.remove("sku:" + ProductKeyIndex.key(p.sku()));
+            }
+            for (List<ProductKeyIndex.VariantRow> rows : variants.values()) {
+                for (ProductKeyIndex.VariantRow v : rows) {
+                    if (v.sku() != null) negative.remove("sku:" + ProductKeyIndex.key(v.sku()));
+                }
+            }
+        }
+    }
+
+    private static List<Integer> drain(Set<Integer> set, int max) {
+        List<Integer> batch = new ArrayList<>(Math.min(max, set.size()));
+        Iterator<Integer> it = set.iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mijimoto.ECommerce.catalogue.navigation.controllers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import com.mijimoto.ECommerce.catalogue.navigation.dto.CategoryNavigationDTO;
+import com.mijimoto.ECommerce.catalogue.navigation.dto.CategoryNodeDTO;
+import com.mijimoto.ECommerce.catalogue.navigation.services.CategoryTreeService;
+
+/**
+ * Storefront category navigation (read only)
+ */
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping(value = "/api/v1/categories", produces = MediaType.APPLICATION_JSON_VALUE)
+public class CategoryNavigationRestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryNavigationRestController.class);
+
+    private final CategoryTreeService service;
+
+    public CategoryNavigationRestController(CategoryTreeService service) {
+        this.service = service;
+    }
+
+    /**
+     * GET menu tree; the ETag changes whenever the tree is rebuilt
+     *
+     * @param maxDepth levels below the roots (default 2)
+     * @return nested categories with subtree product counts, or 304
+     */
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryNodeDTO>> tree(@RequestParam(value = "maxDepth", defaultValue = "2") int maxDepth,
+                                                      WebRequest request) {
+        logger.debug("GET - category tree: maxDepth={}", maxDepth);
+        CategoryTreeService.Menu menu = service.getMenu(maxDepth);
+        String etag = "\"" + menu.version() + "-" + maxDepth + "\"";
+        CacheControl cache = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cache).eTag(etag).build();
+        }
+        return ResponseEntity.ok().cacheControl(cache).eTag(etag).body(menu.nodes());
+    }
+
+    /**
+     * GET breadcrumbs, children and descendants of one category
+     *
+     * @param id
+     * @return navigation or 404 if not found / not published
+     */
+    @GetMapping("/{id}/navigation")
+    public ResponseEntity<CategoryNavigationDTO> navigation(@PathVariable Integer id) {
+        logger.debug("GET - category navigation: {}", id);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic())
+                .body(service.getNavigation(id));
+    }
+}
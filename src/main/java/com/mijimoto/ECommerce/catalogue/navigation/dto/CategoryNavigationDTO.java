@@ -0,0 +1,31 @@
+package com.mijimoto.ECommerce.catalogue.navigation.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything a category page needs about its place in the tree.
+ */
+@Data
+@NoArgsConstructor
+public class CategoryNavigationDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+    private String name;
+    private String slug;
+    private int depth;
+    /** published products directly in this category */
+    private long productCount;
+    /** published products in this category and below */
+    private long subtreeProductCount;
+    /** root first, parent last */
+    private List<CategoryNodeDTO> breadcrumbs = new ArrayList<>();
+    private List<CategoryNodeDTO> children = new ArrayList<>();
+    private List<Integer> descendantIds = new ArrayList<>();
+}
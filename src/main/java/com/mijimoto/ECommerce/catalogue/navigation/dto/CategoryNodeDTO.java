@@ -0,0 +1,25 @@
+package com.mijimoto.ECommerce.catalogue.navigation.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One entry of the navigation menu.
+ */
+@Data
+@NoArgsConstructor
+public class CategoryNodeDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+    private String name;
+    private String slug;
+    /** published products in this category and below */
+    private long productCount;
+    private List<CategoryNodeDTO> children = new ArrayList<>();
+}
@@ -0,0 +1,242 @@
+package com.mijimoto.ECommerce.catalogue.navigation.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the published category tree in pre-order (nested-set) numbering.
+ *
+ * Node i covers positions [i, end[i]]: its descendants are the contiguous run after it, so
+ * "is X under Y" is two comparisons and a subtree is an array slice. Product counts are
+ * rolled up per subtree at build time.
+ */
+public final class CategoryTree {
+
+    /**
+     * One row of the categories table plus its published product count.
+     */
+    public record Node(int id, Integer parentId, String name, String slug, int sortOrder, long productCount) {}
+
+    private final long version;
+    private final int[] ids;
+    private final int[] parent;
+    private final int[] end;
+    private final int[] depth;
+    private final String[] names;
+    private final String[] slugs;
+    private final long[] productCount;
+    private final long[] subtreeProductCount;
+    private final Map<Integer, Integer> positionOf;
+    private final List<Integer> roots;
+    private final int dropped;
+    private final int height;
+
+    private CategoryTree(long version, int size) {
+        this.version = version;
+        this.ids = new int[size];
+        this.parent = new int[size];
+        this.end = new int[size];
+        this.depth = new int[size];
+        this.names = new String[size];
+        this.slugs = new String[size];
+        this.productCount = new long[size];
+        this.subtreeProductCount = new long[size];
+        this.positionOf = new HashMap<>(size * 2);
+        this.roots = new ArrayList<>();
+        this.dropped = 0;
+        this.height = 0;
+    }
+
+    private CategoryTree(CategoryTree built, int dropped) {
+        this.version = built.version;
+        this.ids = Arrays.copyOf(built.ids, built.positionOf.size());
+        this.parent = Arrays.copyOf(built.parent, ids.length);
+        this.end = Arrays.copyOf(built.end, ids.length);
+        this.depth = Arrays.copyOf(built.depth, ids.length);
+        this.names = Arrays.copyOf(built.names, ids.length);
+        this.slugs = Arrays.copyOf(built.slugs, ids.length);
+        this.productCount = Arrays.copyOf(built.productCount, ids.length);
+        this.subtreeProductCount = Arrays.copyOf(built.subtreeProductCount, ids.length);
+        this.positionOf = built.positionOf;
+        this.roots = Collections.unmodifiableList(built.roots);
+        this.dropped = dropped;
+        int deepest = 0;
+        for (int d : depth) deepest = Math.max(deepest, d);
+        this.height = deepest;
+    }
+
+    /**
+     * Numbers the nodes depth-first, siblings by sort order then name.
+     * Nodes whose parent is missing become roots; nodes only reachable through a cycle are dropped.
+     */
+    public static CategoryTree build(long version, Collection<Node> nodes) {
+        Map<Integer, Node> byId = new HashMap<>();
+        for (Node n : nodes) byId.put(n.id(), n);
+        Map<Integer, List<Node>> children = new HashMap<>();
+        List<Node> rootNodes = new ArrayList<>();
+        for (Node n : nodes) {
+            if (n.parentId() == null || !byId.containsKey(n.parentId()) || n.parentId() == n.id()) {
+                rootNodes.add(n);
+            } else {
+                children.computeIfAbsent(n.parentId(), k -> new ArrayList<>()).add(n);
+            }
+        }
+        Comparator<Node> order = Comparator.comparingInt(Node::sortOrder)
+                .thenComparing(Node::name, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                .thenComparingInt(Node::id);
+        rootNodes.sort(order);
+        for (List<Node> list : children.values()) list.sort(order);
+
+        CategoryTree t = new CategoryTree(version, nodes.size());
+        int next = 0;
+        // explicit stack: {node, parent position}; a node is closed once all positions after it are its descendants
+        List<Object[]> stack = new ArrayList<>();
+        for (int r = rootNodes.size() - 1; r >= 0; r--) stack.add(new Object[]{rootNodes.get(r), -1});
+        int[] open = new int[Math.max(1, nodes.size())];
+        int openSize = 0;
+        while (!stack.isEmpty()) {
+            Object[] top = stack.remove(stack.size() - 1);
+            Node n = (Node) top[0];
+            int parentPos = (Integer) top[1];
+            if (t.positionOf.containsKey(n.id())) continue;
+            // close every open node that is not an ancestor of this one
+            while (openSize > 0 && open[openSize - 1] != parentPos) {
+                t.end[open[--openSize]] = next - 1;
+            }
+            int pos = next++;
+            t.ids[pos] = n.id();
+            t.parent[pos] = parentPos;
+            t.depth[pos] = parentPos < 0 ? 0 : t.depth[parentPos] + 1;
+            t.names[pos] = n.name();
+            t.slugs[pos] = n.slug();
+            t.productCount[pos] = n.productCount();
+            t.positionOf.put(n.id(), pos);
+            if (parentPos < 0) t.roots.add(n.id());
+            open[openSize++] = pos;
+            List<Node> kids = children.getOrDefault(n.id(), List.of());
+            for (int k = kids.size() - 1; k >= 0; k--) stack.add(new Object[]{kids.get(k), pos});
+        }
+        while (openSize > 0) t.end[open[--openSize]] = next - 1;
+
+        // children follow their parent in pre-order, so a reverse sweep rolls counts up
+        for (int i = next - 1; i >= 0; i--) {
+            t.subtreeProductCount[i] += t.productCount[i];
+            if (t.parent[i] >= 0) t.subtreeProductCount[t.parent[i]] += t.subtreeProductCount[i];
+        }
+        return new CategoryTree(t, nodes.size() - next);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return categories left out because their parent chain loops
+     */
+    public int getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return depth of the deepest category (0 when there are only roots or none)
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean contains(Integer id) {
+        return id != null && positionOf.containsKey(id);
+    }
+
+    public List<Integer> getRoots() {
+        return roots;
+    }
+
+    /**
+     * @return every category in pre-order
+     */
+    public int[] getIds() {
+        return ids.clone();
+    }
+
+    public String getName(int id) {
+        return names[position(id)];
+    }
+
+    public String getSlug(int id) {
+        return slugs[position(id)];
+    }
+
+    public int getDepth(int id) {
+        return depth[position(id)];
+    }
+
+    public Integer getParentId(int id) {
+        int p = parent[position(id)];
+        return p < 0 ? null : ids[p];
+    }
+
+    public long getProductCount(int id) {
+        return productCount[position(id)];
+    }
+
+    /**
+     * @return published products in the category and all its descendants
+     */
+    public long getSubtreeProductCount(int id) {
+        return subtreeProductCount[position(id)];
+    }
+
+    /**
+     * @return true if {@code id} is {@code ancestorId} or lies beneath it
+     */
+    public boolean isWithin(int id, int ancestorId) {
+        Integer p = positionOf.get(id);
+        Integer a = positionOf.get(ancestorId);
+        return p != null && a != null && p >= a && p <= end[a];
+    }
+
+    /**
+     * @return ancestors from the root down to the parent; empty for a root
+     */
+    public List<Integer> getAncestors(int id) {
+        int pos = position(id);
+        int[] path = new int[depth[pos]];
+        for (int p = parent[pos], i = path.length - 1; p >= 0; p = parent[p], i--) path[i] = ids[p];
+        List<Integer> out = new ArrayList<>(path.length);
+        for (int a : path) out.add(a);
+        return out;
+    }
+
+    /**
+     * @return all descendants in pre-order, excluding the category itself
+     */
+    public int[] getDescendants(int id) {
+        int pos = position(id);
+        return Arrays.copyOfRange(ids, pos + 1, end[pos] + 1);
+    }
+
+    public List<Integer> getChildren(int id) {
+        int pos = position(id);
+        List<Integer> out = new ArrayList<>();
+        // skip over each child's subtree to reach the next sibling
+        for (int c = pos + 1; c <= end[pos]; c = end[c] + 1) out.add(ids[c]);
+        return out;
+    }
+
+    private int position(int id) {
+        Integer pos = positionOf.get(id);
+        if (pos == null) throw new IllegalArgumentException("Unknown category " + id);
+        return pos;
+    }
+}
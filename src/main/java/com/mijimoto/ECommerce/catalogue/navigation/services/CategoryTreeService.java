@@ -0,0 +1,178 @@
+package com.mijimoto.ECommerce.catalogue.navigation.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.navigation.dto.CategoryNavigationDTO;
+import com.mijimoto.ECommerce.catalogue.navigation.dto.CategoryNodeDTO;
+import com.mijimoto.ECommerce.catalogue.navigation.models.CategoryTree;
+import com.mijimoto.ECommerce.catalogue.snapshot.models.CatalogueSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves category navigation from an in-memory {@link CategoryTree}.
+ *
+ * The tree (with rolled-up product counts) is loaded with one query and replaced wholesale:
+ * committed catalogue writes mark it stale and a scheduled check rebuilds it, so a burst of
+ * writes costs one reload. A max age bounds staleness for writes made on other instances.
+ * Rendered menus are memoised per snapshot.
+ */
+@Service
+public class CategoryTreeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryTreeService.class);
+
+    private static final String SQL_TREE =
+            "SELECT c.id, c.parent_id, c.name, c.slug, c.sort_order, COUNT(p.id) AS product_count " +
+            "FROM categories c LEFT JOIN products p ON p.category_id = c.id AND p.is_published = 1 " +
+            "WHERE c.is_published = 1 " +
+            "GROUP BY c.id, c.parent_id, c.name, c.slug, c.sort_order";
+
+    /**
+     * Rendered menu and the tree version it was rendered from.
+     */
+    public record Menu(long version, List<CategoryNodeDTO> nodes) {}
+
+    private record Snapshot(CategoryTree tree, long builtAtMillis, Map<Integer, Menu> menus) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxAgeMillis;
+
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean stale = new AtomicBoolean(true);
+    private long version;
+
+    public CategoryTreeService(JdbcTemplate jdbcTemplate,
+                               @Value("${app.catalogue.category-tree.max-age-seconds:300}") long maxAgeSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxAgeMillis = maxAgeSeconds * 1000;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        // product writes move counts, category writes move the tree
+        stale.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogue.category-tree.refresh-interval-ms:5000}")
+    public void refresh() {
+        Snapshot current = snapshot;
+        boolean expired = current != null && System.currentTimeMillis() - current.builtAtMillis() > maxAgeMillis;
+        if (!stale.getAndSet(false) && !expired) return;
+        try {
+            rebuild();
+        } catch (Exception e) {
+            stale.set(true);
+            logger.warn("Category tree rebuild failed, keeping the previous one: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Serves the categories of a catalogue snapshot until the first build from the database
+     * replaces it (the tree stays marked stale); does nothing once a tree exists.
+     */
+    public synchronized void warm(CatalogueSnapshot catalogue) {
+        if (snapshot != null) return;
+        List<CategoryTree.Node> nodes = new ArrayList<>(catalogue.categories().size());
+        for (CatalogueSnapshot.Category c : catalogue.categories()) {
+            nodes.add(new CategoryTree.Node(c.id(), c.parentId(), c.name(), c.slug(), c.sortOrder(), c.productCount()));
+        }
+        // older than any version built from now on
+        version = Math.max(version, catalogue.writtenAt().toEpochMilli());
+        snapshot = new Snapshot(CategoryTree.build(version, nodes), System.currentTimeMillis(), new ConcurrentHashMap<>());
+    }
+
+    public CategoryTree getTree() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) current = rebuild();
+            }
+        }
+        return current.tree();
+    }
+
+    /**
+     * @param maxDepth levels below the roots to include (0 = roots only)
+     */
+    public Menu getMenu(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "maxDepth must not be negative");
+        }
+        getTree();
+        Snapshot current = snapshot;
+        // deeper requests render the same menu: one cache entry, not one per requested depth
+        int depth = Math.min(maxDepth, current.tree().getHeight());
+        // shared between requests; callers must not modify
+        return current.menus().computeIfAbsent(depth, d -> {
+            List<CategoryNodeDTO> nodes = new ArrayList<>();
+            for (Integer root : current.tree().getRoots()) nodes.add(node(current.tree(), root, d));
+            return new Menu(current.tree().getVersion(), nodes);
+        });
+    }
+
+    public CategoryNavigationDTO getNavigation(Integer id) {
+        CategoryTree tree = getTree();
+        if (!tree.contains(id)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Category not found");
+        }
+        CategoryNavigationDTO dto = new CategoryNavigationDTO();
+        dto.setId(id);
+        dto.setName(tree.getName(id));
+        dto.setSlug(tree.getSlug(id));
+        dto.setDepth(tree.getDepth(id));
+        dto.setProductCount(tree.getProductCount(id));
+        dto.setSubtreeProductCount(tree.getSubtreeProductCount(id));
+        for (Integer ancestor : tree.getAncestors(id)) dto.getBreadcrumbs().add(node(tree, ancestor, -1));
+        for (Integer child : tree.getChildren(id)) dto.getChildren().add(node(tree, child, -1));
+        for (int d : tree.getDescendants(id)) dto.getDescendantIds().add(d);
+        return dto;
+    }
+
+    private synchronized Snapshot rebuild() {
+        List<CategoryTree.Node> nodes = jdbcTemplate.query(SQL_TREE, (rs, i) -> {
+            int parent = rs.getInt("parent_id");
+            Integer parentId = rs.wasNull() ? null : parent;
+            return new CategoryTree.Node(rs.getInt("id"), parentId, rs.getString("name"), rs.getString("slug"),
+                    rs.getInt("sort_order"), rs.getLong("product_count"));
+        });
+        // time-based so ETags from before a restart never match a new tree
+        version = Math.max(version + 1, System.currentTimeMillis());
+        CategoryTree tree = CategoryTree.build(version, nodes);
+        if (tree.getDropped() > 0) {
+            logger.warn("{} categories left out of the tree: their parent chain loops", tree.getDropped());
+        }
+        Snapshot next = new Snapshot(tree, System.currentTimeMillis(), new ConcurrentHashMap<>());
+        snapshot = next;
+        return next;
+    }
+
+    /**
+     * @param depth levels of children to include; negative for none
+     */
+    private static CategoryNodeDTO node(CategoryTree tree, int id, int depth) {
+        CategoryNodeDTO dto = new CategoryNodeDTO();
+        dto.setId(id);
+        dto.setName(tree.getName(id));
+        dto.setSlug(tree.getSlug(id));
+        dto.setProductCount(tree.getSubtreeProductCount(id));
+        if (depth > 0) {
+            for (Integer child : tree.getChildren(id)) dto.getChildren().add(node(tree, child, depth - 1));
+        }
+        return dto;
+    }
+}
@@ -9,6 +9,8 @@ import java.io.Serializable;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.util.List;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeListener;
+
 import jakarta.persistence.*;
 
 /**
@@ -20,6 +22,7 @@ import jakarta.persistence.*;
 @NoArgsConstructor
 @Entity
 @Table(name="attribute_options", schema="dbo", catalog="EcommerceDB" )
+@EntityListeners(CatalogueChangeListener.class)
 public class AttributeOptions implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -9,6 +9,8 @@ import java.io.Serializable;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.util.List;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeListener;
+
 import jakarta.persistence.*;
 
 /**
@@ -20,6 +22,7 @@ import jakarta.persistence.*;
 @NoArgsConstructor
 @Entity
 @Table(name="attributes", schema="dbo", catalog="EcommerceDB" )
+@EntityListeners(CatalogueChangeListener.class)
 public class Attributes implements Serializable {
 
     private static final long serialVersionUID = 1L;
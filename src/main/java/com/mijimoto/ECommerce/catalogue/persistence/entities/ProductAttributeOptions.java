@@ -8,6 +8,8 @@ package com.mijimoto.ECommerce.catalogue.persistence.entities;
 import java.io.Serializable;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeListener;
+
 import jakarta.persistence.*;
 
 /**
@@ -19,6 +21,7 @@ import jakarta.persistence.*;
 @NoArgsConstructor
 @Entity
 @Table(name="product_attribute_options", schema="dbo", catalog="EcommerceDB" )
+@EntityListeners(CatalogueChangeListener.class)
 public class ProductAttributeOptions implements Serializable {
 
     private static final long serialVersionUID = 1L;
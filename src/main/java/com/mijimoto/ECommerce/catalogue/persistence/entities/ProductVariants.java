@@ -15,6 +15,8 @@ import java.util.List;
 import com.mijimoto.ECommerce.inventory.persistence.entities.*;
 import com.mijimoto.ECommerce.order.persistence.entities.*;
 
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeListener;
+
 import jakarta.persistence.*;
 
 /**
@@ -25,7 +27,10 @@ import jakarta.persistence.*;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name="product_variants", schema="dbo", catalog="EcommerceDB" )
+@Table(name="product_variants", schema="dbo", catalog="EcommerceDB", indexes = {
+        @Index(name = "ux_product_variants_sku", columnList = "sku", unique = true)
+})
+@EntityListeners(CatalogueChangeListener.class)
 public class ProductVariants implements Serializable {
 
     private static final long serialVersionUID = 1L;
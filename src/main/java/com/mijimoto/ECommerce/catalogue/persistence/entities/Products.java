@@ -15,6 +15,8 @@ import java.util.List;
 import com.mijimoto.ECommerce.customer.persistence.entities.*;
 
 
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeListener;
+
 import jakarta.persistence.*;
 
 /**
@@ -25,7 +27,12 @@ import jakarta.persistence.*;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name="products", schema="dbo", catalog="EcommerceDB" )
+// sku is nullable: on SQL Server its unique index must be filtered (WHERE sku IS NOT NULL)
+@Table(name="products", schema="dbo", catalog="EcommerceDB", indexes = {
+        @Index(name = "ux_products_slug", columnList = "slug", unique = true),
+        @Index(name = "ux_products_sku", columnList = "sku", unique = true)
+})
+@EntityListeners(CatalogueChangeListener.class)
 public class Products implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,62 @@
+package com.mijimoto.ECommerce.catalogue.persistence.entities;
+
+import java.io.Serializable;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.util.Date;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeListener;
+
+import jakarta.persistence.*;
+
+/**
+ * JPA entity class for "VariantPrices": a scheduled sale or customer-group price for a variant.
+ * Without a role the price applies to everyone; without dates it is open-ended.
+ * The lowest applicable price wins (see PriceService).
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name="variant_prices", schema="dbo", catalog="EcommerceDB", indexes = {
+        @Index(name = "ix_variant_prices_variant", columnList = "variant_id")
+})
+@EntityListeners(CatalogueChangeListener.class)
+public class VariantPrices implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    
+    //--- PRIMARY KEY 
+    @Id
+    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @Column(name="id", nullable=false)
+    private Integer    id;
+
+    //--- OTHER DATA FIELDS 
+    @Column(name="variant_id", nullable=false)
+    private Integer          variantId    ;
+
+    @Column(name="role_id")
+    private Integer          roleId    ;
+
+    @Column(name="price", nullable=false)
+    private BigDecimal       price    ;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name="starts_at")
+    private Date             startsAt    ;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name="ends_at")
+    private Date             endsAt    ;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name="created_at", nullable=false)
+    private Date             createdAt    ;
+
+    //--- LINKS ( RELATIONSHIPS )
+    @ManyToOne
+    @JoinColumn(name="variant_id", referencedColumnName="id", insertable=false, updatable=false)
+    private ProductVariants productVariants;
+
+}
@@ -0,0 +1,16 @@
+package com.mijimoto.ECommerce.catalogue.persistence.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.mijimoto.ECommerce.catalogue.persistence.entities.VariantPrices;
+
+/**
+ * Spring Data JPA repository for entity "VariantPrices"
+ */
+public interface VariantPricesRepository extends JpaRepository<VariantPrices, Integer> {
+
+    List<VariantPrices> findByVariantId(Integer variantId);
+
+}
@@ -0,0 +1,46 @@
+package com.mijimoto.ECommerce.catalogue.pricing.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.catalogue.pricing.dto.PriceQuoteDTO;
+import com.mijimoto.ECommerce.catalogue.pricing.dto.PriceQuoteRequestDTO;
+import com.mijimoto.ECommerce.catalogue.pricing.services.PriceService;
+
+/**
+ * Storefront prices (public; customer-group prices apply when a token is sent)
+ */
+@RestController
+@RequestMapping(value = "/api/v1/prices", produces = MediaType.APPLICATION_JSON_VALUE)
+public class PriceRestController {
+
+    private final PriceService priceService;
+
+    public PriceRestController(PriceService priceService) {
+        this.priceService = priceService;
+    }
+
+    /**
+     * POST - effective prices of up to max-batch variants in one call (listing pages, carts)
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<PriceQuoteDTO>> quote(@RequestBody PriceQuoteRequestDTO request) {
+        return ResponseEntity.ok(priceService.quote(request.getVariantIds(), customerGroups()));
+    }
+
+    private static List<String> customerGroups() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        List<String> groups = new ArrayList<>();
+        if (auth == null || auth instanceof AnonymousAuthenticationToken) return groups;
+        for (GrantedAuthority authority : auth.getAuthorities()) groups.add(authority.getAuthority());
+        return groups;
+    }
+}
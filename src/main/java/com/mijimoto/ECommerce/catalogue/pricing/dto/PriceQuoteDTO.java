@@ -0,0 +1,29 @@
+package com.mijimoto.ECommerce.catalogue.pricing.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Effective price of one variant for the current customer.
+ */
+@Data
+@NoArgsConstructor
+public class PriceQuoteDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Source { REGULAR, SALE, GROUP }
+
+    private Integer variantId;
+    /** what the customer pays */
+    private BigDecimal price;
+    /** variant override, else product price */
+    private BigDecimal regularPrice;
+    private Source source;
+    /** when a sale or group price ends, null if open-ended or regular */
+    private OffsetDateTime validUntil;
+}
@@ -0,0 +1,17 @@
+package com.mijimoto.ECommerce.catalogue.pricing.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class PriceQuoteRequestDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<Integer> variantIds = new ArrayList<>();
+}
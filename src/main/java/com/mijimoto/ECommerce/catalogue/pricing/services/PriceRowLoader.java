@@ -0,0 +1,109 @@
+package com.mijimoto.ECommerce.catalogue.pricing.services;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads regular prices of active variants of published products, and the sale /
+ * customer-group prices that have not ended yet.
+ */
+@Component
+public class PriceRowLoader {
+
+    private static final String SQL_ROWS =
+            "SELECT v.id, v.product_id, COALESCE(v.price_override, p.price) AS price " +
+            "FROM product_variants v JOIN products p ON p.id = v.product_id " +
+            "WHERE v.is_active = 1 AND p.is_published = 1 ";
+
+    private static final String SQL_RULES =
+            "SELECT vp.variant_id, vp.role_id, r.name AS role_name, vp.price, vp.starts_at, vp.ends_at " +
+            "FROM variant_prices vp JOIN product_variants v ON v.id = vp.variant_id " +
+            "LEFT JOIN roles r ON r.id = vp.role_id " +
+            "WHERE (vp.ends_at IS NULL OR vp.ends_at > :now) ";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public PriceRowLoader(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Streams every variant's regular price.
+     */
+    void loadAllRows(Consumer<PriceTable.Row> sink) {
+        jdbc.query(SQL_ROWS, rs -> {
+            sink.accept(new PriceTable.Row(rs.getInt("id"), rs.getInt("product_id"),
+                    PriceTable.toFixed(rs.getBigDecimal("price"))));
+        });
+    }
+
+    Map<Integer, List<PriceTable.Rule>> loadAllRules() {
+        return loadRules("", new MapSqlParameterSource());
+    }
+
+    /**
+     * @return rows grouped by product; products without variants are absent
+     */
+    Map<Integer, List<PriceTable.Row>> loadRowsByProduct(Collection<Integer> productIds) {
+        Map<Integer, List<PriceTable.Row>> out = new LinkedHashMap<>();
+        jdbc.query(SQL_ROWS + "AND v.product_id IN (:ids)", new MapSqlParameterSource("ids", productIds), rs -> {
+            PriceTable.Row row = new PriceTable.Row(rs.getInt("id"), rs.getInt("product_id"),
+                    PriceTable.toFixed(rs.getBigDecimal("price")));
+            out.computeIfAbsent(row.productId(), k -> new ArrayList<>()).add(row);
+        });
+        return out;
+    }
+
+    Map<Integer, List<PriceTable.Rule>> loadRulesByProduct(Collection<Integer> productIds) {
+        return loadRules("AND v.product_id IN (:ids)", new MapSqlParameterSource("ids", productIds));
+    }
+
+    List<PriceTable.Row> loadRowsByVariant(Collection<Integer> variantIds) {
+        return jdbc.query(SQL_ROWS + "AND v.id IN (:ids)", new MapSqlParameterSource("ids", variantIds),
+                (rs, i) -> new PriceTable.Row(rs.getInt("id"), rs.getInt("product_id"),
+                        PriceTable.toFixed(rs.getBigDecimal("price"))));
+    }
+
+    Map<Integer, List<PriceTable.Rule>> loadRulesByVariant(Collection<Integer> variantIds) {
+        return loadRules("AND v.id IN (:ids)", new MapSqlParameterSource("ids", variantIds));
+    }
+
+    private Map<Integer, List<PriceTable.Rule>> loadRules(String filter, MapSqlParameterSource params) {
+        params.addValue("now", new Timestamp(System.currentTimeMillis()));
+        Map<Integer, List<PriceTable.Rule>> out = new HashMap<>();
+        jdbc.query(SQL_RULES + filter, params, rs -> {
+            rs.getInt("role_id");
+            boolean forGroup = !rs.wasNull();
+            String role = rs.getString("role_name");
+            // the role is gone: never widen its price to everyone
+            if (forGroup && role == null) return;
+            Timestamp starts = rs.getTimestamp("starts_at");
+            Timestamp ends = rs.getTimestamp("ends_at");
+            PriceTable.Rule rule = new PriceTable.Rule(forGroup ? normalizeGroup(role) : null,
+                    PriceTable.toFixed(rs.getBigDecimal("price")),
+                    starts != null ? starts.getTime() : Long.MIN_VALUE,
+                    ends != null ? ends.getTime() : Long.MAX_VALUE);
+            out.computeIfAbsent(rs.getInt("variant_id"), k -> new ArrayList<>()).add(rule);
+        });
+        return out;
+    }
+
+    /**
+     * Role names and granted authorities ("ROLE_X") compare as the bare upper-case name.
+     */
+    static String normalizeGroup(String role) {
+        String r = role.trim().toUpperCase(Locale.ROOT);
+        return r.startsWith("ROLE_") ? r.substring(5) : r;
+    }
+}
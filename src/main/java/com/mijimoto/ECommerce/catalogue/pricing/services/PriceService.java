@@ -0,0 +1,315 @@
+package com.mijimoto.ECommerce.catalogue.pricing.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.pricing.dto.PriceQuoteDTO;
+import com.mijimoto.ECommerce.catalogue.rest.services.ProductDetailService;
+import com.mijimoto.ECommerce.catalogue.snapshot.models.CatalogueSnapshot;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Effective variant prices: regular (variant override, else product price), scheduled sale
+ * prices and customer-group prices from {@code variant_prices}. The lowest applicable price wins.
+ * Customer groups are the caller's roles.
+ *
+ * Prices come from a {@link PriceTable} held in memory. It is built at startup and rebuilt
+ * periodically to drop ended sales; committed catalogue writes (local events, and other
+ * instances' through the catalogue invalidation channel) mark the product dirty and a
+ * scheduled refresh reloads dirty products in batches. Variants not in the table yet (the
+ * first build is running, or they were just created) are read from the database and added.
+ */
+@Service
+public class PriceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceService.class);
+
+    private static final int REFRESH_BATCH = 1000;
+
+    private static final Set<String> PRICE_SOURCES = Set.of("Products", "ProductVariants", "VariantPrices");
+
+    private final PriceRowLoader loader;
+    private final CatalogueChangeResolver resolver;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int maxBatch;
+    private final long rebuildIntervalMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile PriceTable table = new PriceTable(16);
+    private volatile long builtAt;
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean(true);
+    // bumped on every catalogue change; lookup-miss loads started before a bump are not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    public PriceService(PriceRowLoader loader,
+                        CatalogueChangeResolver resolver,
+                        RedisMessageListenerContainer listenerContainer,
+                        @Value("${app.catalogue.pricing.max-batch:500}") int maxBatch,
+                        @Value("${app.catalogue.pricing.rebuild-interval-ms:3600000}") long rebuildIntervalMs) {
+        this.loader = loader;
+        this.resolver = resolver;
+        this.listenerContainer = listenerContainer;
+        this.maxBatch = maxBatch;
+        this.rebuildIntervalMs = rebuildIntervalMs;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this::onInvalidateMessage,
+                new ChannelTopic(ProductDetailService.CHANNEL_INVALIDATE));
+    }
+
+    /**
+     * @param groups customer groups (role names, with or without the ROLE_ prefix)
+     * @return quotes in request order; unknown variants are left out
+     * @throws ResponseStatusException 400 without variant ids or for more than max-batch variants
+     */
+    public List<PriceQuoteDTO> quote(Collection<Integer> variantIds, Collection<String> groups) {
+        if (variantIds == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "variantIds is required");
+        }
+        if (variantIds.size() > maxBatch) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxBatch + " variants per request");
+        }
+        List<PriceQuoteDTO> out = new ArrayList<>(variantIds.size());
+        for (PriceTable.Quote q : lookup(variantIds, groups).values()) {
+            PriceQuoteDTO dto = new PriceQuoteDTO();
+            dto.setVariantId(q.variantId());
+            dto.setPrice(PriceTable.toDecimal(q.effective()));
+            dto.setRegularPrice(PriceTable.toDecimal(q.regular()));
+            dto.setSource(q.source());
+            if (q.endsAt() != Long.MAX_VALUE) {
+                dto.setValidUntil(OffsetDateTime.ofInstant(Instant.ofEpochMilli(q.endsAt()), ZoneOffset.UTC));
+            }
+            out.add(dto);
+        }
+        return out;
+    }
+
+    /**
+     * Unit prices for cart and order recalculation; not limited to max-batch.
+     *
+     * @return variant id to price, unknown variants are absent
+     */
+    public Map<Integer, BigDecimal> effectivePrices(Collection<Integer> variantIds, Collection<String> groups) {
+        Map<Integer, BigDecimal> out = new LinkedHashMap<>();
+        for (PriceTable.Quote q : lookup(variantIds, groups).values()) {
+            out.put(q.variantId(), PriceTable.toDecimal(q.effective()));
+        }
+        return out;
+    }
+
+    private Map<Integer, PriceTable.Quote> lookup(Collection<Integer> variantIds, Collection<String> groups) {
+        Set<String> normalized = new HashSet<>();
+        if (groups != null) {
+            for (String g : groups) normalized.add(PriceRowLoader.normalizeGroup(g));
+        }
+        long now = System.currentTimeMillis();
+        Map<Integer, PriceTable.Quote> quotes = new LinkedHashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            PriceTable current = table;
+            for (Integer id : new LinkedHashSet<>(variantIds)) {
+                if (id == null) continue;
+                PriceTable.Quote q = current.quote(id, normalized, now);
+                quotes.put(id, q);
+                if (q == null) misses.add(id);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!misses.isEmpty()) loadMisses(misses, normalized, now, quotes);
+        quotes.values().removeIf(q -> q == null);
+        return quotes;
+    }
+
+    private void loadMisses(List<Integer> misses, Set<String> groups, long now, Map<Integer, PriceTable.Quote> quotes) {
+        long gen = generation.get();
+        List<PriceTable.Row> rows = loader.loadRowsByVariant(misses);
+        if (rows.isEmpty()) return;
+        Map<Integer, List<PriceTable.Rule>> rules = loader.loadRulesByVariant(misses);
+        // price the misses from a private table so the answer never depends on the shared one
+        PriceTable loaded = new PriceTable(rows.size());
+        for (PriceTable.Row row : rows) {
+            loaded.putVariant(row, rules.get(row.variantId()));
+            quotes.put(row.variantId(), loaded.quote(row.variantId(), groups, now));
+        }
+        lock.writeLock().lock();
+        try {
+            if (generation.get() != gen) return;
+            for (PriceTable.Row row : rows) table.putVariant(row, rules.get(row.variantId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Serves a catalogue snapshot until the first build from the database replaces it;
+     * does nothing once a build has completed.
+     */
+    public void warm(CatalogueSnapshot snapshot) {
+        Map<Integer, List<PriceTable.Rule>> rules = new HashMap<>();
+        for (CatalogueSnapshot.PriceRule r : snapshot.priceRules()) {
+            rules.computeIfAbsent(r.variantId(), k -> new ArrayList<>(2)).add(new PriceTable.Rule(
+                    r.group() != null ? PriceRowLoader.normalizeGroup(r.group()) : null,
+                    PriceTable.toFixed(r.price()), r.startsAt(), r.endsAt()));
+        }
+        Map<Integer, List<PriceTable.Row>> byProduct = new LinkedHashMap<>();
+        for (CatalogueSnapshot.Variant v : snapshot.variants()) {
+            byProduct.computeIfAbsent(v.productId(), k -> new ArrayList<>(2))
+                    .add(new PriceTable.Row(v.id(), v.productId(), PriceTable.toFixed(v.price())));
+        }
+        PriceTable warm = new PriceTable(Math.max(16, snapshot.variants().size()));
+        for (Map.Entry<Integer, List<PriceTable.Row>> e : byProduct.entrySet()) {
+            warm.putProduct(e.getKey(), e.getValue(), rules);
+        }
+        lock.writeLock().lock();
+        try {
+            // builtAt stays unset, so the scheduled rebuild still runs
+            if (builtAt == 0) table = warm;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        // reviews, images, attributes and categories do not move prices
+        if (!PRICE_SOURCES.contains(event.entity())) return;
+        CatalogueChangeResolver.Target target = resolver.resolve(event);
+        if (target.all()) {
+            generation.incrementAndGet();
+            rebuildRequested.set(true);
+        } else if (target.productId() != null) {
+            generation.incrementAndGet();
+            dirty.add(target.productId());
+        }
+    }
+
+    // published by ProductDetailService on every instance's committed writes
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "").trim();
+        if ("*".equals(body)) {
+            generation.incrementAndGet();
+            rebuildRequested.set(true);
+            return;
+        }
+        try {
+            int productId = Integer.parseInt(body);
+            generation.incrementAndGet();
+            dirty.add(productId);
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed invalidation message: {}", body);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogue.pricing.refresh-interval-ms:1000}")
+    public void refresh() {
+        try {
+            boolean expired = System.currentTimeMillis() - builtAt > rebuildIntervalMs;
+            if (rebuildRequested.getAndSet(false) || expired) {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    rebuildRequested.set(true);
+                    throw e;
+                }
+            }
+            while (!dirty.isEmpty()) applyDirty(drain(dirty, REFRESH_BATCH));
+        } catch (Exception e) {
+            // failed product batches were put back as dirty
+            logger.warn("Price table refresh failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        // anything that changes from here on is replayed on top of the new table
+        dirty.clear();
+        Map<Integer, List<PriceTable.Rule>> rules = loader.loadAllRules();
+        Map<Integer, List<PriceTable.Row>> byProduct = new LinkedHashMap<>();
+        loader.loadAllRows(row -> byProduct.computeIfAbsent(row.productId(), k -> new ArrayList<>(2)).add(row));
+        PriceTable next = new PriceTable(Math.max(16, table.size()));
+        for (Map.Entry<Integer, List<PriceTable.Row>> e : byProduct.entrySet()) {
+            next.putProduct(e.getKey(), e.getValue(), rules);
+        }
+        lock.writeLock().lock();
+        try {
+            table = next;
+            builtAt = System.currentTimeMillis();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Price table built: {} variants, {} with sale or group prices, in {} ms",
+                next.size(), rules.size(), System.currentTimeMillis() - started);
+    }
+
+    private void applyDirty(List<Integer> productIds) {
+        Map<Integer, List<PriceTable.Row>> rows;
+        Map<Integer, List<PriceTable.Rule>> rules;
+        try {
+            rows = loader.loadRowsByProduct(productIds);
+            rules = loader.loadRulesByProduct(productIds);
+        } catch (RuntimeException e) {
+            dirty.addAll(productIds);
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Integer id : productIds) {
+                List<PriceTable.Row> productRows = rows.get(id);
+                if (productRows != null) {
+                    table.putProduct(id, productRows, rules);
+                } else {
+                    // deleted, or no variants left
+                    table.removeProduct(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<Integer> drain(Set<Integer> set, int max) {
+        List<Integer> batch = new ArrayList<>(Math.min(max, set.size()));
+        Iterator<Integer> it = set.iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,138 @@
+package com.mijimoto.ECommerce.catalogue.pricing.services;
+
+import com.mijimoto.ECommerce.catalogue.pricing.dto.PriceQuoteDTO.Source;
+import com.mijimoto.ECommerce.common.util.IntLongHashMap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed effective prices for every variant.
+ *
+ * The regular price (override, else product price) is folded into one fixed-point long per
+ * variant in a primitive hash map, so pricing a variant without sale or group prices is a
+ * single probe. Variants that have sale or customer-group prices carry a small array of
+ * rules evaluated at lookup time, which keeps scheduled prices exact to the millisecond
+ * without rebuilding the table at every start or end.
+ *
+ * Not thread-safe; {@link PriceService} guards it with a read/write lock.
+ */
+class PriceTable {
+
+    /** fixed-point scale of stored prices */
+    static final int SCALE = 4;
+
+    record Row(int variantId, int productId, long price) {}
+
+    /**
+     * @param group    customer group (role name), null for everyone
+     * @param startsAt epoch millis, Long.MIN_VALUE if open
+     * @param endsAt   epoch millis (exclusive), Long.MAX_VALUE if open
+     */
+    record Rule(String group, long price, long startsAt, long endsAt) {
+        boolean appliesTo(Collection<String> groups, long at) {
+            return at >= startsAt && at < endsAt && (group == null || groups.contains(group));
+        }
+    }
+
+    /**
+     * @param endsAt when the effective price stops applying, Long.MAX_VALUE if not scheduled
+     */
+    record Quote(int variantId, long regular, long effective, Source source, long endsAt) {}
+
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private final IntLongHashMap regular;
+    private final Map<Integer, int[]> variantsByProduct = new HashMap<>();
+    private final Map<Integer, Rule[]> rules = new HashMap<>();
+
+    PriceTable(int expectedVariants) {
+        regular = new IntLongHashMap(expectedVariants);
+    }
+
+    int size() {
+        return regular.size();
+    }
+
+    /**
+     * @return null if the variant is not in the table
+     */
+    Quote quote(int variantId, Collection<String> groups, long at) {
+        long price = regular.get(variantId);
+        if (price == IntLongHashMap.NO_VALUE) return null;
+        long effective = price;
+        Source source = Source.REGULAR;
+        long endsAt = Long.MAX_VALUE;
+        for (Rule rule : rules.getOrDefault(variantId, NO_RULES)) {
+            if (rule.price() < effective && rule.appliesTo(groups, at)) {
+                effective = rule.price();
+                source = rule.group() == null ? Source.SALE : Source.GROUP;
+                endsAt = rule.endsAt();
+            }
+        }
+        return new Quote(variantId, price, effective, source, endsAt);
+    }
+
+    /**
+     * Replaces everything known about a product; variants missing from {@code rows} are dropped.
+     */
+    void putProduct(int productId, List<Row> rows, Map<Integer, List<Rule>> rulesByVariant) {
+        removeProduct(productId);
+        int[] variantIds = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            variantIds[i] = row.variantId();
+            put(row, rulesByVariant.get(row.variantId()));
+        }
+        if (variantIds.length > 0) variantsByProduct.put(productId, variantIds);
+    }
+
+    void removeProduct(int productId) {
+        int[] variantIds = variantsByProduct.remove(productId);
+        if (variantIds == null) return;
+        for (int id : variantIds) {
+            regular.remove(id);
+            rules.remove(id);
+        }
+    }
+
+    /**
+     * Adds a single variant, e.g. one loaded on a lookup miss.
+     */
+    void putVariant(Row row, List<Rule> variantRules) {
+        put(row, variantRules);
+        int[] ids = variantsByProduct.get(row.productId());
+        if (ids == null) {
+            variantsByProduct.put(row.productId(), new int[] { row.variantId() });
+            return;
+        }
+        for (int id : ids) {
+            if (id == row.variantId()) return;
+        }
+        int[] grown = Arrays.copyOf(ids, ids.length + 1);
+        grown[ids.length] = row.variantId();
+        variantsByProduct.put(row.productId(), grown);
+    }
+
+    private void put(Row row, List<Rule> variantRules) {
+        regular.put(row.variantId(), row.price());
+        if (variantRules == null || variantRules.isEmpty()) {
+            rules.remove(row.variantId());
+        } else {
+            rules.put(row.variantId(), variantRules.toArray(NO_RULES));
+        }
+    }
+
+    static long toFixed(BigDecimal price) {
+        return price.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal toDecimal(long fixed) {
+        return BigDecimal.valueOf(fixed, SCALE);
+    }
+}
@@ -0,0 +1,48 @@
+package com.mijimoto.ECommerce.catalogue.related.controllers;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.catalogue.related.services.BoughtTogetherService;
+
+/**
+ * Frequently-bought-together maintenance (admin)
+ */
+@RestController
+@RequestMapping(value = "/api/catalogue/related", produces = MediaType.APPLICATION_JSON_VALUE)
+public class RelatedProductsAdminController {
+
+    private final BoughtTogetherService boughtTogether;
+
+    public RelatedProductsAdminController(BoughtTogetherService boughtTogether) {
+        this.boughtTogether = boughtTogether;
+    }
+
+    /**
+     * POST - recount all orders in the background (drops cancellations counted earlier)
+     *
+     * @return 202 if started, 409 if a run is already in progress
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Void> rebuild() {
+        CurrentUser.requireAdmin();
+        return ResponseEntity.status(boughtTogether.startRebuild() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * GET - whether a run is in progress, and the outcome of the last one on this instance
+     */
+    @GetMapping("/rebuild")
+    public ResponseEntity<Map<String, Object>> status() {
+        CurrentUser.requireAdmin();
+        BoughtTogetherService.RunReport last = boughtTogether.getLastReport();
+        return ResponseEntity.ok(Map.of(
+                "running", boughtTogether.isRunning(),
+                "last", last != null ? last : Map.of()));
+    }
+}
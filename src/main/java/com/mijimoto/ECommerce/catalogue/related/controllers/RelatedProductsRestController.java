@@ -0,0 +1,43 @@
+package com.mijimoto.ECommerce.catalogue.related.controllers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.catalogue.related.dto.RelatedProductsDTO;
+import com.mijimoto.ECommerce.catalogue.related.services.RelatedProductsService;
+
+/**
+ * Storefront related products
+ */
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping(value = "/api/v1/products", produces = MediaType.APPLICATION_JSON_VALUE)
+public class RelatedProductsRestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatedProductsRestController.class);
+
+    private final RelatedProductsService service;
+
+    public RelatedProductsRestController(RelatedProductsService service) {
+        this.service = service;
+    }
+
+    /**
+     * GET related products, manual and frequently bought together
+     *
+     * @param id
+     * @param type  relation type filter, e.g. BOUGHT_TOGETHER
+     * @param limit at most max-limit
+     * @return the related published products, possibly none
+     */
+    @GetMapping("/{id}/related")
+    public ResponseEntity<RelatedProductsDTO> related(@PathVariable Integer id,
+                                                      @RequestParam(value = "type", required = false) String type,
+                                                      @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        logger.debug("GET - related products: product={}, type={}, limit={}", id, type, limit);
+        return ResponseEntity.ok(service.getRelated(id, type, limit));
+    }
+}
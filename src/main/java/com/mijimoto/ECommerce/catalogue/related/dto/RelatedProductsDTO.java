@@ -0,0 +1,34 @@
+package com.mijimoto.ECommerce.catalogue.related.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Products shown next to a product: manual relations and computed BOUGHT_TOGETHER ones.
+ * Prices are not included; they depend on the customer group, see /api/v1/prices.
+ */
+@Data
+@NoArgsConstructor
+public class RelatedProductsDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer productId;
+    private List<Item> items = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer productId;
+        private String name;
+        private String slug;
+        private String relationType;
+    }
+}
@@ -0,0 +1,374 @@
+package com.mijimoto.ECommerce.catalogue.related.services;
+
+import com.mijimoto.ECommerce.common.util.RedisLock;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintains "frequently bought together" relations in {@code product_relations}.
+ *
+ * Orders are folded into {@link CoOccurrenceCounts} incrementally: each run streams only the
+ * orders above the stored watermark (keyset pages over order id, joined to their items), then
+ * recomputes the top partners of the products those orders touched and replaces their
+ * BOUGHT_TOGETHER rows. Counts and watermark are snapshotted to local disk, so a restart resumes
+ * where it stopped; only the very first run, or an explicit rebuild, scans all orders.
+ *
+ * Orders are counted once they are older than the settle delay, so late-added items are not
+ * missed, and unless their status is excluded. Cancellations after that are not subtracted;
+ * a rebuild corrects them. Runs are guarded by a Redis lock, renewed after every page and
+ * write chunk, so one instance writes at a time.
+ */
+@Service
+public class BoughtTogetherService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoughtTogetherService.class);
+
+    public static final String RELATION_TYPE = "BOUGHT_TOGETHER";
+    private static final String LOCK_KEY = "catalogue:related:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(10);
+    private static final int WRITE_CHUNK = 500;
+
+    public record RunReport(OffsetDateTime startedAt, OffsetDateTime finishedAt, boolean rebuild,
+                            long ordersScanned, long productsUpdated, long watermark, String error) {}
+
+    private static final String SQL_PAGE_END =
+            "SELECT MAX(id) FROM (SELECT TOP (:pageSize) id FROM orders " +
+            "WHERE id > :after AND created_at < :settled ORDER BY id) page";
+
+    private static final String SQL_ORDER_PRODUCTS =
+            "SELECT o.id AS order_id, v.product_id FROM orders o " +
+            "JOIN order_items oi ON oi.order_id = o.id " +
+            "JOIN product_variants v ON v.id = oi.variant_id " +
+            "WHERE o.id > :after AND o.id <= :upTo AND o.created_at < :settled " +
+            "AND (o.status IS NULL OR o.status NOT IN (:excluded)) " +
+            "ORDER BY o.id";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redis;
+    private final RelatedProductsService relatedProducts;
+    private final Path snapshotPath;
+    private final int topK;
+    private final int maxPartners;
+    private final long minTogether;
+    private final int maxOrderProducts;
+    private final int pageSize;
+    private final Duration settleDelay;
+    private final List<String> excludedStatuses;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bought-together-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+    // counts and persisted are only touched by the run holding the running flag
+    private CoOccurrenceCounts counts;
+    // last persisted list per product, so unchanged lists are not rewritten
+    private final Map<Integer, int[]> persisted = new HashMap<>();
+    private volatile RunReport lastReport;
+
+    public BoughtTogetherService(NamedParameterJdbcTemplate jdbc,
+                                 PlatformTransactionManager transactionManager,
+                                 StringRedisTemplate redis,
+                                 RelatedProductsService relatedProducts,
+                                 @Value("${app.catalogue.related.snapshot-path:./data/bought-together.snapshot}") String snapshotPath,
+                                 @Value("${app.catalogue.related.top-k:10}") int topK,
+                                 @Value("${app.catalogue.related.max-partners:200}") int maxPartners,
+                                 @Value("${app.catalogue.related.min-together:2}") long minTogether,
+                                 @Value("${app.catalogue.related.max-order-products:50}") int maxOrderProducts,
+                                 @Value("${app.catalogue.related.page-size:5000}") int pageSize,
+                                 @Value("${app.catalogue.related.settle-minutes:30}") long settleMinutes,
+                                 @Value("${app.catalogue.related.excluded-statuses:CANCELLED,CANCELED,FAILED,EXPIRED}") String excludedStatuses) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.redis = redis;
+        this.relatedProducts = relatedProducts;
+        this.snapshotPath = Paths.get(snapshotPath);
+        this.topK = topK;
+        this.maxPartners = Math.max(topK, maxPartners);
+        this.minTogether = minTogether;
+        this.maxOrderProducts = maxOrderProducts;
+        this.pageSize = pageSize;
+        this.settleDelay = Duration.ofMinutes(settleMinutes);
+        this.excludedStatuses = Arrays.stream(excludedStatuses.split(","))
+                .map(s -> s.trim().toUpperCase(Locale.ROOT))
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogue.related.interval-ms:300000}",
+               initialDelayString = "${app.catalogue.related.initial-delay-ms:60000}")
+    public void refresh() {
+        if (!running.compareAndSet(false, true)) return;
+        try {
+            runExclusive(false);
+        } catch (Exception e) {
+            logger.error("Bought-together refresh failed: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Discards the counts and rescans every order in the background.
+     *
+     * @return false if a run is already in progress on this instance
+     */
+    public boolean startRebuild() {
+        if (!running.compareAndSet(false, true)) return false;
+        rebuildExecutor.execute(() -> {
+            try {
+                if (runExclusive(true) == null) logger.info("Bought-together rebuild skipped: another instance holds the lock");
+            } catch (Exception e) {
+                logger.error("Bought-together rebuild failed: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return outcome of the last run on this instance, null if none ran
+     */
+    public RunReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * @return the report, or null if another instance holds the lock
+     */
+    private RunReport runExclusive(boolean rebuild) {
+        try (RedisLock lock = RedisLock.tryAcquire(redis, LOCK_KEY, LOCK_TTL)) {
+            if (lock == null) return null;
+            return runLocked(rebuild, lock);
+        }
+    }
+
+    private RunReport runLocked(boolean rebuild, RedisLock lock) {
+        OffsetDateTime startedAt = OffsetDateTime.now();
+        long scanned = 0;
+        Set<Integer> touched = new HashSet<>();
+        try {
+            if (rebuild || counts == null) {
+                counts = rebuild ? null : loadSnapshot();
+                if (counts == null) {
+                    counts = new CoOccurrenceCounts(maxPartners);
+                    rebuild = true;
+                }
+                if (rebuild) persisted.clear();
+            }
+            Timestamp settled = Timestamp.from(startedAt.toInstant().minus(settleDelay));
+            while (true) {
+                Long upTo = jdbc.queryForObject(SQL_PAGE_END, new MapSqlParameterSource()
+                        .addValue("pageSize", pageSize)
+                        .addValue("after", counts.getWatermark())
+                        .addValue("settled", settled), Long.class);
+                if (upTo == null) break;
+                scanned += scanPage(counts.getWatermark(), upTo, settled, touched);
+                counts.setWatermark(upTo);
+                keepLock(lock);
+            }
+            if (rebuild) {
+                // every stored list is stale, including products that no longer sell together
+                touched.addAll(storedProducts());
+            }
+            long updated = persist(touched, lock);
+            if (scanned > 0 || rebuild) counts.write(snapshotPath);
+            RunReport report = new RunReport(startedAt, OffsetDateTime.now(), rebuild, scanned, updated,
+                    counts.getWatermark(), null);
+            if (scanned > 0 || rebuild) {
+                logger.info("Bought-together refreshed: {} orders, {} products updated, watermark {}",
+                        scanned, updated, counts.getWatermark());
+            }
+            lastReport = report;
+            return report;
+        } catch (IOException | RuntimeException e) {
+            // the in-memory counts may be ahead of product_relations; start over from the snapshot
+            counts = null;
+            persisted.clear();
+            lastReport = new RunReport(startedAt, OffsetDateTime.now(), rebuild, scanned, 0,
+                    -1, e.getMessage());
+            throw e instanceof RuntimeException re ? re : new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Streams one page of orders and folds each one in as soon as its last row has been read.
+     *
+     * @return orders folded in
+     */
+    private long scanPage(long after, long upTo, Timestamp settled, Set<Integer> touched) {
+        long[] folded = {0};
+        long[] currentOrder = {-1};
+        Set<Integer> products = new LinkedHashSet<>();
+        Runnable flush = () -> {
+            if (products.isEmpty()) return;
+            if (products.size() <= maxOrderProducts) {
+                // very large orders are bulk or B2B buys, not a signal of affinity
+                int[] ids = products.stream().mapToInt(Integer::intValue).toArray();
+                counts.add(ids);
+                if (ids.length > 1) touched.addAll(products);
+                folded[0]++;
+            }
+            products.clear();
+        };
+        jdbc.query(SQL_ORDER_PRODUCTS, new MapSqlParameterSource()
+                .addValue("after", after)
+                .addValue("upTo", upTo)
+                .addValue("settled", settled)
+                .addValue("excluded", excludedStatuses.isEmpty() ? List.of("") : excludedStatuses), rs -> {
+            long orderId = rs.getLong("order_id");
+            if (orderId != currentOrder[0]) {
+                flush.run();
+                currentOrder[0] = orderId;
+            }
+            products.add(rs.getInt("product_id"));
+        });
+        flush.run();
+        return folded[0];
+    }
+
+    /**
+     * Replaces the BOUGHT_TOGETHER rows of products whose list changed.
+     *
+     * @return products whose rows were rewritten
+     */
+    private long persist(Set<Integer> productIds, RedisLock lock) {
+        dropDeleted(productIds);
+        Map<Integer, int[]> changed = new HashMap<>();
+        for (Integer id : productIds) {
+            int[] related = counts.top(id, topK, minTogether).stream()
+                    .mapToInt(CoOccurrenceCounts.Related::productId).toArray();
+            if (!Arrays.equals(related, persisted.getOrDefault(id, new int[0]))) changed.put(id, related);
+        }
+        List<Integer> ids = new ArrayList<>(changed.keySet());
+        for (int from = 0; from < ids.size(); from += WRITE_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + WRITE_CHUNK));
+            List<MapSqlParameterSource> rows = new ArrayList<>();
+            for (Integer id : chunk) {
+                for (int related : changed.get(id)) {
+                    rows.add(new MapSqlParameterSource("productId", id)
+                            .addValue("relatedId", related)
+                            .addValue("type", RELATION_TYPE));
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbc.update("DELETE FROM product_relations WHERE relation_type = :type AND product_id IN (:ids)",
+                        new MapSqlParameterSource("type", RELATION_TYPE).addValue("ids", chunk));
+                // inserted in rank order; readers order by id
+                if (!rows.isEmpty()) {
+                    jdbc.batchUpdate("INSERT INTO product_relations (product_id, related_product_id, relation_type) " +
+                                     "VALUES (:productId, :relatedId, :type)", rows.toArray(new MapSqlParameterSource[0]));
+                }
+            });
+            for (Integer id : chunk) {
+                int[] related = changed.get(id);
+                if (related.length == 0) persisted.remove(id);
+                else persisted.put(id, related);
+            }
+            relatedProducts.invalidate(chunk);
+            keepLock(lock);
+        }
+        return changed.size();
+    }
+
+    // a run that lost its lease must stop before a second instance's writes interleave with it
+    private static void keepLock(RedisLock lock) {
+        if (!lock.renew()) throw new IllegalStateException("Bought-together lock lost");
+    }
+
+    /**
+     * Forgets products that were deleted since they were counted, both as subjects and as
+     * partners, so no relation points at a missing product.
+     */
+    private void dropDeleted(Set<Integer> productIds) {
+        Set<Integer> referenced = new HashSet<>(productIds);
+        for (Integer id : productIds) {
+            for (CoOccurrenceCounts.Related r : counts.top(id, topK, minTogether)) referenced.add(r.productId());
+        }
+        List<Integer> all = new ArrayList<>(referenced);
+        Set<Integer> existing = new HashSet<>();
+        for (int from = 0; from < all.size(); from += WRITE_CHUNK) {
+            existing.addAll(jdbc.queryForList("SELECT id FROM products WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", all.subList(from, Math.min(all.size(), from + WRITE_CHUNK))),
+                    Integer.class));
+        }
+        for (Integer id : referenced) {
+            if (existing.contains(id)) continue;
+            counts.remove(id);
+            persisted.remove(id);
+            // its rows went with the product
+            productIds.remove(id);
+        }
+    }
+
+    private List<Integer> storedProducts() {
+        return jdbc.queryForList("SELECT DISTINCT product_id FROM product_relations WHERE relation_type = :type",
+                new MapSqlParameterSource("type", RELATION_TYPE), Integer.class);
+    }
+
+    private CoOccurrenceCounts loadSnapshot() {
+        try {
+            CoOccurrenceCounts loaded = CoOccurrenceCounts.read(snapshotPath, maxPartners);
+            if (loaded != null) {
+                logger.info("Bought-together counts restored: {} products, watermark {}",
+                        loaded.productCount(), loaded.getWatermark());
+                // lists written before the restart are unknown; compare against the table instead
+                loadPersisted();
+            }
+            return loaded;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable bought-together snapshot {}: {}", snapshotPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private void loadPersisted() {
+        persisted.clear();
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        jdbc.query("SELECT product_id, related_product_id FROM product_relations WHERE relation_type = :type ORDER BY id",
+                new MapSqlParameterSource("type", RELATION_TYPE), rs -> {
+                    lists.computeIfAbsent(rs.getInt("product_id"), k -> new ArrayList<>()).add(rs.getInt("related_product_id"));
+                });
+        lists.forEach((id, related) -> persisted.put(id, related.stream().mapToInt(Integer::intValue).toArray()));
+    }
+}
@@ -0,0 +1,205 @@
+package com.mijimoto.ECommerce.catalogue.related.services;
+
+import com.mijimoto.ECommerce.common.util.IntLongHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How often products are bought together, folded in one order at a time.
+ *
+ * Per product: the number of orders containing it, and a primitive map from co-bought product
+ * to the number of shared orders. Each product keeps at most a bounded number of partners;
+ * when a map overflows, the weakest partners are dropped, so memory stays proportional to
+ * catalogue size rather than to the number of distinct pairs ever seen.
+ *
+ * Not thread-safe; only the refresh job touches it.
+ */
+class CoOccurrenceCounts {
+
+    private static final int MAGIC = 0x464254; // "FBT"
+    private static final int FORMAT_VERSION = 1;
+
+    record Related(int productId, long together, double score) {}
+
+    private final int maxPartners;
+    private final IntLongHashMap orders = new IntLongHashMap(1024);
+    private final Map<Integer, IntLongHashMap> pairs = new HashMap<>();
+    private long watermark;
+
+    CoOccurrenceCounts(int maxPartners) {
+        this.maxPartners = maxPartners;
+    }
+
+    /**
+     * @return highest order id folded in so far
+     */
+    long getWatermark() {
+        return watermark;
+    }
+
+    void setWatermark(long watermark) {
+        this.watermark = watermark;
+    }
+
+    int productCount() {
+        return orders.size();
+    }
+
+    /**
+     * Folds in one order.
+     *
+     * @param productIds distinct products of the order
+     */
+    void add(int[] productIds) {
+        for (int a : productIds) {
+            long n = orders.get(a);
+            orders.put(a, n == IntLongHashMap.NO_VALUE ? 1 : n + 1);
+        }
+        if (productIds.length < 2) return;
+        for (int a : productIds) {
+            IntLongHashMap partners = pairs.computeIfAbsent(a, k -> new IntLongHashMap(8));
+            for (int b : productIds) {
+                if (a == b) continue;
+                long c = partners.get(b);
+                partners.put(b, c == IntLongHashMap.NO_VALUE ? 1 : c + 1);
+            }
+            if (partners.size() > maxPartners * 2) prune(a, partners);
+        }
+    }
+
+    /**
+     * Top partners of a product by cosine similarity of their order sets,
+     * together / sqrt(orders(a) * orders(b)), so bestsellers do not top every list.
+     *
+     * @param minTogether partners seen in fewer shared orders are ignored as noise
+     */
+    List<Related> top(int productId, int k, long minTogether) {
+        IntLongHashMap partners = pairs.get(productId);
+        if (partners == null) return List.of();
+        long na = Math.max(1, orders.get(productId));
+        List<Related> candidates = new ArrayList<>();
+        partners.forEach((b, together) -> {
+            if (together < minTogether) return;
+            long nb = Math.max(1, orders.get(b));
+            candidates.add(new Related(b, together, together / Math.sqrt((double) na * nb)));
+        });
+        candidates.sort((x, y) -> {
+            int c = Double.compare(y.score(), x.score());
+            return c != 0 ? c : Integer.compare(x.productId(), y.productId());
+        });
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+
+    /**
+     * Drops a product entirely, e.g. after it was deleted.
+     */
+    void remove(int productId) {
+        orders.remove(productId);
+        IntLongHashMap partners = pairs.remove(productId);
+        if (partners == null) return;
+        partners.forEach((b, c) -> {
+            IntLongHashMap back = pairs.get(b);
+            if (back != null) back.remove(productId);
+        });
+    }
+
+    /**
+     * Keeps the strongest {@code maxPartners} partners (by shared orders).
+     */
+    private void prune(int productId, IntLongHashMap partners) {
+        long[] counts = new long[partners.size()];
+        int[] i = {0};
+        partners.forEach((b, c) -> counts[i[0]++] = c);
+        Arrays.sort(counts);
+        long threshold = counts[counts.length - maxPartners];
+        IntLongHashMap kept = new IntLongHashMap(maxPartners * 2);
+        // ties at the threshold are kept until the cap is reached
+        partners.forEach((b, c) -> {
+            if (c > threshold || (c == threshold && kept.size() < maxPartners)) kept.put(b, c);
+        });
+        pairs.put(productId, kept);
+    }
+
+    /**
+     * Writes to a temporary file and renames it over the previous snapshot.
+     */
+    void write(Path path) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(watermark);
+                out.writeInt(orders.size());
+                IOException[] failure = {null};
+                orders.forEach((a, n) -> {
+                    if (failure[0] != null) return;
+                    try {
+                        out.writeInt(a);
+                        out.writeLong(n);
+                        IntLongHashMap partners = pairs.get(a);
+                        out.writeInt(partners != null ? partners.size() : 0);
+                        if (partners != null) {
+                            partners.forEach((b, c) -> {
+                                if (failure[0] != null) return;
+                                try {
+                                    out.writeInt(b);
+                                    out.writeLong(c);
+                                } catch (IOException e) {
+                                    failure[0] = e;
+                                }
+                            });
+                        }
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) throw failure[0];
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the counts, or null if there is no snapshot or it was written in another format
+     */
+    static CoOccurrenceCounts read(Path path, int maxPartners) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path), 64 * 1024)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            CoOccurrenceCounts counts = new CoOccurrenceCounts(maxPartners);
+            counts.watermark = in.readLong();
+            int products = in.readInt();
+            for (int i = 0; i < products; i++) {
+                int a = in.readInt();
+                counts.orders.put(a, in.readLong());
+                int partnerCount = in.readInt();
+                if (partnerCount == 0) continue;
+                IntLongHashMap partners = new IntLongHashMap(partnerCount);
+                for (int j = 0; j < partnerCount; j++) partners.put(in.readInt(), in.readLong());
+                counts.pairs.put(a, partners);
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.mijimoto.ECommerce.catalogue.related.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.related.dto.RelatedProductsDTO;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Related products of a product page: one indexed read of {@code product_relations} joined to
+ * the published related products, kept in an in-process LRU.
+ *
+ * Manual relations are evicted through catalogue change events; computed BOUGHT_TOGETHER lists
+ * are rewritten by {@link BoughtTogetherService}, which evicts the products it changed on every
+ * instance through a pub/sub channel. Names and slugs of related products may lag by the TTL.
+ */
+@Service
+public class RelatedProductsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatedProductsService.class);
+
+    public static final String CHANNEL_INVALIDATE = "catalogue:related:invalidate";
+    private static final String ALL = "*";
+
+    private static final String SQL_RELATED =
+            "SELECT r.related_product_id, r.relation_type, p.name, p.slug " +
+            "FROM product_relations r JOIN products p ON p.id = r.related_product_id " +
+            "WHERE r.product_id = :id AND p.is_published = 1 " +
+            "ORDER BY r.id";
+
+    private record LocalEntry(List<RelatedProductsDTO.Item> items, long loadedAtNanos) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final CatalogueChangeResolver resolver;
+    private final StringRedisTemplate redis;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final int maxLimit;
+
+    private final LinkedHashMap<Integer, LocalEntry> local = new LinkedHashMap<>(1024, 0.75f, true);
+    // bumped on every invalidation; loads started before a bump are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public RelatedProductsService(NamedParameterJdbcTemplate jdbc,
+                                  CatalogueChangeResolver resolver,
+                                  StringRedisTemplate redis,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  @Value("${app.catalogue.related.cache-max-entries:10000}") int maxEntries,
+                                  @Value("${app.catalogue.related.cache-ttl-seconds:300}") long ttlSeconds,
+                                  @Value("${app.catalogue.related.max-limit:50}") int maxLimit) {
+        this.jdbc = jdbc;
+        this.resolver = resolver;
+        this.redis = redis;
+        this.listenerContainer = listenerContainer;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.maxLimit = maxLimit;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this::onInvalidateMessage, new ChannelTopic(CHANNEL_INVALIDATE));
+    }
+
+    /**
+     * @param type  relation type to keep, null for all
+     * @param limit capped at max-limit
+     * @return related products in stored order (manual ones by creation, computed ones by rank)
+     */
+    public RelatedProductsDTO getRelated(int productId, String type, int limit) {
+        List<RelatedProductsDTO.Item> items = lookupLocal(productId);
+        if (items == null) items = load(productId);
+        String wanted = type != null && !type.isBlank() ? type.trim().toUpperCase(Locale.ROOT) : null;
+        int max = Math.max(0, Math.min(limit, maxLimit));
+        RelatedProductsDTO dto = new RelatedProductsDTO();
+        dto.setProductId(productId);
+        for (RelatedProductsDTO.Item item : items) {
+            if (dto.getItems().size() == max) break;
+            if (wanted == null || wanted.equalsIgnoreCase(item.getRelationType())) dto.getItems().add(item);
+        }
+        return dto;
+    }
+
+    /**
+     * Evicts on this instance and tells the others.
+     */
+    public void invalidate(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) return;
+        generation.incrementAndGet();
+        synchronized (local) {
+            for (Integer id : productIds) local.remove(id);
+        }
+        try {
+            redis.convertAndSend(CHANNEL_INVALIDATE,
+                    productIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            logger.warn("Failed to broadcast related-products invalidation: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        if ("ProductRelations".equals(event.entity())) {
+            CatalogueChangeResolver.Target target = resolver.resolve(event);
+            if (target.productId() != null) invalidate(List.of(target.productId()));
+        } else if ("Products".equals(event.entity()) && event.change() == CatalogueChangedEvent.Change.DELETED) {
+            // it may be listed under any product
+            generation.incrementAndGet();
+            synchronized (local) {
+                local.clear();
+            }
+        }
+    }
+
+    private List<RelatedProductsDTO.Item> load(int productId) {
+        long gen = generation.get();
+        List<RelatedProductsDTO.Item> items = jdbc.query(SQL_RELATED, new MapSqlParameterSource("id", productId),
+                (rs, i) -> {
+                    RelatedProductsDTO.Item item = new RelatedProductsDTO.Item();
+                    item.setProductId(rs.getInt("related_product_id"));
+                    item.setRelationType(rs.getString("relation_type"));
+                    item.setName(rs.getString("name"));
+                    item.setSlug(rs.getString("slug"));
+                    return item;
+                });
+        // a product may be related both manually and by purchases; keep the first
+        Map<Integer, RelatedProductsDTO.Item> distinct = new LinkedHashMap<>();
+        for (RelatedProductsDTO.Item item : items) distinct.putIfAbsent(item.getProductId(), item);
+        List<RelatedProductsDTO.Item> out = List.copyOf(distinct.values());
+        if (generation.get() == gen) putLocal(productId, out);
+        return out;
+    }
+
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "").trim();
+        generation.incrementAndGet();
+        synchronized (local) {
+            if (ALL.equals(body)) {
+                local.clear();
+                return;
+            }
+            for (String id : body.split(",")) {
+                try {
+                    local.remove(Integer.parseInt(id.trim()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring malformed invalidation message: {}", body);
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<RelatedProductsDTO.Item> lookupLocal(int productId) {
+        synchronized (local) {
+            LocalEntry entry = local.get(productId);
+            if (entry == null) return null;
+            if (System.nanoTime() - entry.loadedAtNanos() > ttlNanos) {
+                local.remove(productId);
+                return null;
+            }
+            return entry.items();
+        }
+    }
+
+    private void putLocal(int productId, List<RelatedProductsDTO.Item> items) {
+        synchronized (local) {
+            local.put(productId, new LocalEntry(items, System.nanoTime()));
+            var it = local.entrySet().iterator();
+            while (local.size() > maxEntries && it.hasNext()) {
+                Map.Entry<Integer, LocalEntry> e = it.next();
+                if (e.getKey() == productId) continue;
+                it.remove();
+            }
+        }
+    }
+}
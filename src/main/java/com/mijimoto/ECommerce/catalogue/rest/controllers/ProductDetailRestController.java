@@ -0,0 +1,67 @@
+package com.mijimoto.ECommerce.catalogue.rest.controllers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.mijimoto.ECommerce.catalogue.lookup.services.ProductLookupService;
+import com.mijimoto.ECommerce.catalogue.rest.dto.ProductDetailDTO;
+import com.mijimoto.ECommerce.catalogue.rest.services.ProductDetailService;
+
+/**
+ * Storefront product pages (read only)
+ */
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping(value = "/api/v1/products", produces = MediaType.APPLICATION_JSON_VALUE)
+public class ProductDetailRestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductDetailRestController.class);
+
+    private final ProductDetailService service;
+    private final ProductLookupService lookupService;
+
+    public ProductDetailRestController(ProductDetailService service, ProductLookupService lookupService) {
+        this.service = service;
+        this.lookupService = lookupService;
+    }
+
+    /**
+     * GET full product page document
+     *
+     * @param id
+     * @return product detail or 404 if not found / not published
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ProductDetailDTO> findById(@PathVariable Integer id) {
+        logger.debug("GET - product detail: {}", id);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(30, TimeUnit.SECONDS).cachePublic())
+                .body(service.getProduct(id));
+    }
+
+    /**
+     * GET full product page document by URL slug
+     *
+     * @param slug
+     * @return product detail or 404 if no published product has this slug
+     */
+    @GetMapping("/by-slug/{slug}")
+    public ResponseEntity<ProductDetailDTO> findBySlug(@PathVariable String slug) {
+        logger.debug("GET - product detail by slug: {}", slug);
+        Integer id = lookupService.findPublishedProductIdBySlug(slug);
+        if (id == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("Product %s not found", slug));
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(30, TimeUnit.SECONDS).cachePublic())
+                .body(service.getProduct(id));
+    }
+}
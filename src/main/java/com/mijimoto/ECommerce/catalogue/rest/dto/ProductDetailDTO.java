@@ -0,0 +1,116 @@
+package com.mijimoto.ECommerce.catalogue.rest.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Denormalised product page document: everything the storefront needs for one product,
+ * assembled in a fixed number of queries and cached as a whole.
+ */
+@Data
+@NoArgsConstructor
+public class ProductDetailDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+    private String sku;
+    private String name;
+    private String slug;
+    private String shortDescription;
+    private String longDescription;
+    private BigDecimal price;
+    private Boolean hasVariants;
+    private Date updatedAt;
+
+    private CategoryRef category;
+    private List<Image> images = new ArrayList<>();
+    private List<OptionGroup> optionGroups = new ArrayList<>();
+    private List<Variant> variants = new ArrayList<>();
+    private List<Attribute> attributes = new ArrayList<>();
+    private RatingSummary rating = new RatingSummary();
+
+    @Data
+    @NoArgsConstructor
+    public static class CategoryRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String name;
+        private String slug;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Image implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String url;
+        private Boolean isPrimary;
+        private Integer sortOrder;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class OptionGroup implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String name;
+        private Integer position;
+        private Boolean isRequired;
+        private List<OptionValue> values = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class OptionValue implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String value;
+        private String code;
+        private Integer position;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Variant implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String sku;
+        /** effective price: the override when set, the product price otherwise */
+        private BigDecimal price;
+        private Boolean isActive;
+        private Boolean allowBackorder;
+        /** option value ids (see {@link OptionGroup#getValues()}) */
+        private List<Integer> valueIds = new ArrayList<>();
+        private List<Image> images = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Attribute implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String code;
+        private String name;
+        private String valueType;
+        /** free-text value, if any */
+        private String value;
+        /** selected predefined options, in option order */
+        private List<String> options = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class RatingSummary implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private long count;
+        private double average;
+        /** number of approved reviews per star, index 0 = 1 star */
+        private long[] histogram = new long[5];
+    }
+}
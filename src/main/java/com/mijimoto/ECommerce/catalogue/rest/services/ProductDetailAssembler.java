@@ -0,0 +1,214 @@
+package com.mijimoto.ECommerce.catalogue.rest.services;
+
+import com.mijimoto.ECommerce.catalogue.rest.dto.ProductDetailDTO;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link ProductDetailDTO} with a fixed set of queries (one per child table, each
+ * keyed by product id), independent of how many variants, images or attributes the product has.
+ *
+ * Plain JDBC rather than entities: the generated entities eagerly load every @ManyToOne,
+ * which is exactly the relationship fan-out this read model exists to avoid.
+ */
+@Component
+public class ProductDetailAssembler {
+
+    static final String REVIEW_APPROVED = "APPROVED";
+
+    private static final String SQL_PRODUCT =
+            "SELECT p.id, p.sku, p.name, p.slug, p.short_description, p.long_description, p.price, " +
+            "       p.has_variants, p.is_published, p.updated_at, " +
+            "       c.id AS category_id, c.name AS category_name, c.slug AS category_slug " +
+            "FROM products p LEFT JOIN categories c ON c.id = p.category_id " +
+            "WHERE p.id = :id";
+
+    private static final String SQL_IMAGES =
+            "SELECT url, is_primary, sort_order FROM product_images " +
+            "WHERE product_id = :id ORDER BY is_primary DESC, sort_order, id";
+
+    private static final String SQL_OPTIONS =
+            "SELECT g.id AS group_id, g.name, g.position AS group_position, g.is_required, " +
+            "       v.id AS value_id, v.value, v.code, v.position AS value_position " +
+            "FROM variant_option_groups g LEFT JOIN variant_option_values v ON v.group_id = g.id " +
+            "WHERE g.product_id = :id ORDER BY g.position, g.id, v.position, v.id";
+
+    private static final String SQL_VARIANTS =
+            "SELECT id, sku, price_override, is_active, allow_backorder FROM product_variants " +
+            "WHERE product_id = :id ORDER BY id";
+
+    private static final String SQL_VARIANT_VALUES =
+            "SELECT pvv.variant_id, pvv.value_id FROM product_variant_values pvv " +
+            "JOIN product_variants v ON v.id = pvv.variant_id WHERE v.product_id = :id";
+
+    private static final String SQL_VARIANT_IMAGES =
+            "SELECT i.variant_id, i.url, i.is_primary, i.sort_order FROM product_variant_images i " +
+            "JOIN product_variants v ON v.id = i.variant_id WHERE v.product_id = :id " +
+            "ORDER BY i.variant_id, i.is_primary DESC, i.sort_order, i.id";
+
+    // free-text values and selected options in one pass; ordered by attribute then option order
+    private static final String SQL_ATTRIBUTES =
+            "SELECT a.id, a.code, a.name, a.value_type, pav.value, NULL AS option_value, NULL AS option_sort " +
+            "FROM product_attribute_values pav JOIN attributes a ON a.id = pav.attribute_id " +
+            "WHERE pav.product_id = :id " +
+            "UNION ALL " +
+            "SELECT a.id, a.code, a.name, a.value_type, NULL, ao.value, ao.sort_order " +
+            "FROM product_attribute_options pao " +
+            "JOIN attributes a ON a.id = pao.attribute_id " +
+            "JOIN attribute_options ao ON ao.id = pao.attribute_option_id " +
+            "WHERE pao.product_id = :id " +
+            "ORDER BY 1, 7";
+
+    private static final String SQL_RATING =
+            "SELECT rating, COUNT(*) AS n FROM product_reviews " +
+            "WHERE product_id = :id AND status = :status GROUP BY rating";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public ProductDetailAssembler(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * @return the document, or null if the product does not exist or is not published
+     */
+    public ProductDetailDTO assemble(int productId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("id", productId)
+                .addValue("status", REVIEW_APPROVED);
+
+        List<ProductDetailDTO> found = jdbc.query(SQL_PRODUCT, params, (rs, i) -> mapProduct(rs));
+        if (found.isEmpty() || found.get(0) == null) return null;
+        ProductDetailDTO dto = found.get(0);
+
+        jdbc.query(SQL_IMAGES, params, rs -> {
+            dto.getImages().add(mapImage(rs));
+        });
+
+        Map<Integer, ProductDetailDTO.OptionGroup> groups = new LinkedHashMap<>();
+        jdbc.query(SQL_OPTIONS, params, rs -> {
+            ProductDetailDTO.OptionGroup group = groups.computeIfAbsent(rs.getInt("group_id"), id -> {
+                ProductDetailDTO.OptionGroup g = new ProductDetailDTO.OptionGroup();
+                g.setId(id);
+                return g;
+            });
+            if (group.getName() == null) {
+                group.setName(rs.getString("name"));
+                group.setPosition(nullableInt(rs, "group_position"));
+                group.setIsRequired(rs.getBoolean("is_required"));
+            }
+            Integer valueId = nullableInt(rs, "value_id");
+            if (valueId != null) {
+                ProductDetailDTO.OptionValue v = new ProductDetailDTO.OptionValue();
+                v.setId(valueId);
+                v.setValue(rs.getString("value"));
+                v.setCode(rs.getString("code"));
+                v.setPosition(nullableInt(rs, "value_position"));
+                group.getValues().add(v);
+            }
+        });
+        dto.getOptionGroups().addAll(groups.values());
+
+        Map<Integer, ProductDetailDTO.Variant> variants = new LinkedHashMap<>();
+        jdbc.query(SQL_VARIANTS, params, rs -> {
+            ProductDetailDTO.Variant v = new ProductDetailDTO.Variant();
+            v.setId(rs.getInt("id"));
+            v.setSku(rs.getString("sku"));
+            BigDecimal override = rs.getBigDecimal("price_override");
+            v.setPrice(override != null ? override : dto.getPrice());
+            v.setIsActive(rs.getBoolean("is_active"));
+            v.setAllowBackorder(rs.getBoolean("allow_backorder"));
+            variants.put(v.getId(), v);
+        });
+        if (!variants.isEmpty()) {
+            jdbc.query(SQL_VARIANT_VALUES, params, rs -> {
+                ProductDetailDTO.Variant v = variants.get(rs.getInt("variant_id"));
+                if (v != null) v.getValueIds().add(rs.getInt("value_id"));
+            });
+            jdbc.query(SQL_VARIANT_IMAGES, params, rs -> {
+                ProductDetailDTO.Variant v = variants.get(rs.getInt("variant_id"));
+                if (v != null) v.getImages().add(mapImage(rs));
+            });
+        }
+        dto.getVariants().addAll(variants.values());
+
+        Map<Integer, ProductDetailDTO.Attribute> attributes = new LinkedHashMap<>();
+        jdbc.query(SQL_ATTRIBUTES, params, rs -> {
+            ProductDetailDTO.Attribute a = attributes.computeIfAbsent(rs.getInt("id"), id -> new ProductDetailDTO.Attribute());
+            if (a.getId() == null) {
+                a.setId(rs.getInt("id"));
+                a.setCode(rs.getString("code"));
+                a.setName(rs.getString("name"));
+                a.setValueType(rs.getString("value_type"));
+            }
+            String value = rs.getString("value");
+            if (value != null) a.setValue(value);
+            String option = rs.getString("option_value");
+            if (option != null) a.getOptions().add(option);
+        });
+        dto.getAttributes().addAll(attributes.values());
+
+        Map<Integer, Long> perStar = new HashMap<>();
+        jdbc.query(SQL_RATING, params, rs -> {
+            perStar.put(rs.getInt("rating"), rs.getLong("n"));
+        });
+        ProductDetailDTO.RatingSummary rating = dto.getRating();
+        long total = 0;
+        long sum = 0;
+        for (Map.Entry<Integer, Long> e : perStar.entrySet()) {
+            int star = e.getKey();
+            if (star < 1 || star > 5) continue;
+            rating.getHistogram()[star - 1] = e.getValue();
+            total += e.getValue();
+            sum += (long) star * e.getValue();
+        }
+        rating.setCount(total);
+        rating.setAverage(total == 0 ? 0.0 : (double) sum / total);
+
+        return dto;
+    }
+
+    private static ProductDetailDTO mapProduct(ResultSet rs) throws SQLException {
+        if (!rs.getBoolean("is_published")) return null;
+        ProductDetailDTO dto = new ProductDetailDTO();
+        dto.setId(rs.getInt("id"));
+        dto.setSku(rs.getString("sku"));
+        dto.setName(rs.getString("name"));
+        dto.setSlug(rs.getString("slug"));
+        dto.setShortDescription(rs.getString("short_description"));
+        dto.setLongDescription(rs.getString("long_description"));
+        dto.setPrice(rs.getBigDecimal("price"));
+        dto.setHasVariants(rs.getBoolean("has_variants"));
+        dto.setUpdatedAt(rs.getTimestamp("updated_at"));
+        Integer categoryId = nullableInt(rs, "category_id");
+        if (categoryId != null) {
+            ProductDetailDTO.CategoryRef c = new ProductDetailDTO.CategoryRef();
+            c.setId(categoryId);
+            c.setName(rs.getString("category_name"));
+            c.setSlug(rs.getString("category_slug"));
+            dto.setCategory(c);
+        }
+        return dto;
+    }
+
+    private static ProductDetailDTO.Image mapImage(ResultSet rs) throws SQLException {
+        ProductDetailDTO.Image image = new ProductDetailDTO.Image();
+        image.setUrl(rs.getString("url"));
+        image.setIsPrimary(rs.getBoolean("is_primary"));
+        image.setSortOrder(nullableInt(rs, "sort_order"));
+        return image;
+    }
+
+    private static Integer nullableInt(ResultSet rs, String column) throws SQLException {
+        int v = rs.getInt(column);
+        return rs.wasNull() ? null : v;
+    }
+}
@@ -0,0 +1,258 @@
+package com.mijimoto.ECommerce.catalogue.rest.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.rest.dto.ProductDetailDTO;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read side of the product page, cached in two tiers:
+ *  - in-process LRU (short TTL, bounded by entry count)
+ *  - Redis, shared by all instances: catalogue:product:<id>
+ *
+ * Any committed write to a contributing table evicts the product from Redis and broadcasts
+ * the id on a pub/sub channel so every instance drops its local copy. A load that overlaps an
+ * invalidation is returned but not cached, so a slow read can never re-insert stale data.
+ * Concurrent misses for the same product are coalesced into one assembly.
+ *
+ * Returned documents are shared between requests and must be treated as read-only.
+ */
+@Service
+public class ProductDetailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductDetailService.class);
+
+    public static final String PREFIX_PRODUCT = "catalogue:product:";
+    public static final String CHANNEL_INVALIDATE = "catalogue:product:invalidate";
+    private static final String ALL = "*";
+
+    private record LocalEntry(ProductDetailDTO dto, long loadedAtNanos) {}
+
+    private final ProductDetailAssembler assembler;
+    private final CatalogueChangeResolver resolver;
+    private final RedisTemplate<String, Object> redis;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int localMaxEntries;
+    private final long localTtlNanos;
+    private final Duration redisTtl;
+
+    private final LinkedHashMap<Integer, LocalEntry> local = new LinkedHashMap<>(1024, 0.75f, true);
+    private final ConcurrentHashMap<Integer, CompletableFuture<ProductDetailDTO>> inFlight = new ConcurrentHashMap<>();
+    // bumped on every invalidation; loads started before a bump are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public ProductDetailService(ProductDetailAssembler assembler,
+                                CatalogueChangeResolver resolver,
+                                RedisTemplate<String, Object> redis,
+                                RedisMessageListenerContainer listenerContainer,
+                                @Value("${app.catalogue.product-cache.local-max-entries:10000}") int localMaxEntries,
+                                @Value("${app.catalogue.product-cache.local-ttl-seconds:60}") long localTtlSeconds,
+                                @Value("${app.catalogue.product-cache.redis-ttl-seconds:600}") long redisTtlSeconds) {
+        this.assembler = assembler;
+        this.resolver = resolver;
+        this.redis = redis;
+        this.listenerContainer = listenerContainer;
+        this.localMaxEntries = localMaxEntries;
+        this.localTtlNanos = Duration.ofSeconds(localTtlSeconds).toNanos();
+        this.redisTtl = Duration.ofSeconds(redisTtlSeconds);
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this::onInvalidateMessage, new ChannelTopic(CHANNEL_INVALIDATE));
+    }
+
+    /**
+     * @throws ResponseStatusException 404 if the product does not exist or is not published
+     */
+    public ProductDetailDTO getProduct(int productId) {
+        ProductDetailDTO dto = lookupLocal(productId);
+        if (dto != null) return dto;
+
+        CompletableFuture<ProductDetailDTO> load = new CompletableFuture<>();
+        CompletableFuture<ProductDetailDTO> existing = inFlight.putIfAbsent(productId, load);
+        if (existing != null) {
+            dto = await(existing);
+        } else {
+            try {
+                dto = load(productId);
+                load.complete(dto);
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(productId, load);
+            }
+        }
+        if (dto == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    String.format("Product with id %s not found", productId));
+        }
+        return dto;
+    }
+
+    /**
+     * Evicts after commit; rolled back writes never reach the cache.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        CatalogueChangeResolver.Target target = resolver.resolve(event);
+        if (target.all()) {
+            evictAll();
+        } else if (target.productId() != null) {
+            evict(target.productId());
+        }
+    }
+
+    public void evict(int productId) {
+        generation.incrementAndGet();
+        removeLocal(productId);
+        try {
+            redis.delete(PREFIX_PRODUCT + productId);
+            redis.convertAndSend(CHANNEL_INVALIDATE, String.valueOf(productId));
+        } catch (Exception e) {
+            logger.warn("Failed to evict product {} from Redis: {}", productId, e.getMessage());
+        }
+    }
+
+    public void evictAll() {
+        generation.incrementAndGet();
+        clearLocal();
+        try {
+            List<String> batch = new ArrayList<>(500);
+            ScanOptions options = ScanOptions.scanOptions().match(PREFIX_PRODUCT + "[0-9]*").count(500).build();
+            try (Cursor<String> cursor = redis.scan(options)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() == 500) {
+                        redis.unlink(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) redis.unlink(batch);
+            redis.convertAndSend(CHANNEL_INVALIDATE, ALL);
+        } catch (Exception e) {
+            logger.warn("Failed to evict product documents from Redis: {}", e.getMessage());
+        }
+    }
+
+    private ProductDetailDTO load(int productId) {
+        long gen = generation.get();
+        String key = PREFIX_PRODUCT + productId;
+
+        ProductDetailDTO dto = null;
+        try {
+            Object cached = redis.opsForValue().get(key);
+            if (cached instanceof ProductDetailDTO d) dto = d;
+        } catch (Exception e) {
+            logger.warn("Redis read failed for {}: {}", key, e.getMessage());
+        }
+
+        boolean fromRedis = dto != null;
+        if (!fromRedis) {
+            dto = assembler.assemble(productId);
+            if (dto == null) return null;
+        }
+
+        if (generation.get() != gen) return dto;
+        putLocal(productId, dto);
+        if (!fromRedis) {
+            try {
+                redis.opsForValue().set(key, dto, redisTtl);
+            } catch (Exception e) {
+                logger.warn("Redis write failed for {}: {}", key, e.getMessage());
+            }
+        }
+        return dto;
+    }
+
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        // the payload may be JSON encoded by the value serializer
+        body = body.replace("\"", "").trim();
+        generation.incrementAndGet();
+        if (ALL.equals(body)) {
+            clearLocal();
+            return;
+        }
+        try {
+            removeLocal(Integer.parseInt(body));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed invalidation message: {}", body);
+        }
+    }
+
+    private ProductDetailDTO lookupLocal(int productId) {
+        synchronized (local) {
+            LocalEntry entry = local.get(productId);
+            if (entry == null) return null;
+            if (System.nanoTime() - entry.loadedAtNanos() > localTtlNanos) {
+                local.remove(productId);
+                return null;
+            }
+            return entry.dto();
+        }
+    }
+
+    private void putLocal(int productId, ProductDetailDTO dto) {
+        synchronized (local) {
+            local.put(productId, new LocalEntry(dto, System.nanoTime()));
+            var it = local.entrySet().iterator();
+            while (local.size() > localMaxEntries && it.hasNext()) {
+                Map.Entry<Integer, LocalEntry> e = it.next();
+                if (e.getKey() == productId) continue;
+                it.remove();
+            }
+        }
+    }
+
+    private void removeLocal(int productId) {
+        synchronized (local) {
+            local.remove(productId);
+        }
+    }
+
+    private void clearLocal() {
+        synchronized (local) {
+            local.clear();
+        }
+    }
+
+    private static ProductDetailDTO await(CompletableFuture<ProductDetailDTO> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mijimoto.ECommerce.catalogue.search.controllers;
+
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.catalogue.search.services.ProductSearchIndex;
+import com.mijimoto.ECommerce.catalogue.search.services.ProductSearchSyncService;
+
+/**
+ * Search index maintenance (reindex: admin only)
+ */
+@RestController
+@RequestMapping(value = "/api/search/products", produces = MediaType.APPLICATION_JSON_VALUE)
+public class ProductSearchAdminController {
+
+    private final ProductSearchSyncService syncService;
+    private final ProductSearchIndex index;
+
+    public ProductSearchAdminController(ProductSearchSyncService syncService, ProductSearchIndex index) {
+        this.syncService = syncService;
+        this.index = index;
+    }
+
+    /**
+     * POST - start a full reindex in the background
+     *
+     * @return 202 if started, 409 if one is already running
+     */
+    @PostMapping("/reindex")
+    public ResponseEntity<Void> reindex() {
+        CurrentUser.requireAdmin();
+        return ResponseEntity.status(syncService.startReindex() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * GET - progress of the running reindex (docs/sec, failures), or the outcome of the last one
+     */
+    @GetMapping("/reindex")
+    public ResponseEntity<Map<String, Object>> status() {
+        ProductSearchSyncService.ReindexProgress progress = syncService.getProgress();
+        return ResponseEntity.ok(Map.of(
+                "documents", index.count(),
+                "reindex", progress != null ? progress : Map.of()));
+    }
+}
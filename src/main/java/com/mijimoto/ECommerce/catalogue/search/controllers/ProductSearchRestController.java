@@ -0,0 +1,54 @@
+package com.mijimoto.ECommerce.catalogue.search.controllers;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.catalogue.search.dto.ProductSearchResultDTO;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchQuery;
+import com.mijimoto.ECommerce.catalogue.search.services.ProductSearchService;
+
+/**
+ * Storefront product search
+ */
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping(value = "/api/v1/products/search", produces = MediaType.APPLICATION_JSON_VALUE)
+public class ProductSearchRestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchRestController.class);
+
+    private final ProductSearchService service;
+
+    public ProductSearchRestController(ProductSearchService service) {
+        this.service = service;
+    }
+
+    /**
+     * GET search products
+     *
+     * @param q          free text (optional)
+     * @param categoryId category, including its subcategories
+     * @param attr       repeated "code:value" filters
+     * @param sort       relevance | price_asc | price_desc | newest | name
+     * @return one page of hits
+     */
+    @GetMapping
+    public ResponseEntity<ProductSearchResultDTO> search(@RequestParam(value = "q", required = false) String q,
+                                                         @RequestParam(value = "categoryId", required = false) Integer categoryId,
+                                                         @RequestParam(value = "minPrice", required = false) Double minPrice,
+                                                         @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+                                                         @RequestParam(value = "attr", required = false) List<String> attr,
+                                                         @RequestParam(value = "sort", required = false) String sort,
+                                                         @RequestParam(value = "page", defaultValue = "0") int page,
+                                                         @RequestParam(value = "size", defaultValue = "24") int size) {
+        logger.debug("GET - search: q={}, categoryId={}", q, categoryId);
+        ProductSearchQuery query = new ProductSearchQuery(q, categoryId, minPrice, maxPrice, attr,
+                ProductSearchQuery.Order.fromName(sort), page, size);
+        return ResponseEntity.ok(service.search(query));
+    }
+}
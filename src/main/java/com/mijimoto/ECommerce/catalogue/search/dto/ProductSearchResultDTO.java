@@ -0,0 +1,24 @@
+package com.mijimoto.ECommerce.catalogue.search.dto;
+
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchDocument;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of search hits.
+ */
+@Data
+@NoArgsConstructor
+public class ProductSearchResultDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long total;
+    private int page;
+    private int size;
+    private List<ProductSearchDocument> items = new ArrayList<>();
+}
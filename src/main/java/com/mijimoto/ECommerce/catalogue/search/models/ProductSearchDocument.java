@@ -0,0 +1,81 @@
+package com.mijimoto.ECommerce.catalogue.search.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Search document for one published product, flattened from products, variants,
+ * the category ancestry and attribute values.
+ *
+ * The index itself is managed by the search index implementation (createIndex = false),
+ * the name here is only the default.
+ */
+@Data
+@NoArgsConstructor
+@Document(indexName = "products", createIndex = false)
+public class ProductSearchDocument implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Integer id;
+
+    @Field(type = FieldType.Keyword)
+    private String sku;
+
+    @MultiField(mainField = @Field(type = FieldType.Text),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword))
+    private String name;
+
+    @Field(type = FieldType.Keyword, index = false)
+    private String slug;
+
+    @Field(type = FieldType.Text)
+    private String shortDescription;
+
+    @Field(type = FieldType.Integer)
+    private Integer categoryId;
+
+    /** the category and all its ancestors, so filtering on a parent matches its subtree */
+    @Field(type = FieldType.Integer)
+    private List<Integer> categoryPath = new ArrayList<>();
+
+    @Field(type = FieldType.Text)
+    private List<String> categoryNames = new ArrayList<>();
+
+    @Field(type = FieldType.Keyword)
+    private List<String> variantSkus = new ArrayList<>();
+
+    /** "code:value" pairs; exact match for filters, tokenised copy for full text */
+    @MultiField(mainField = @Field(type = FieldType.Keyword),
+            otherFields = @InnerField(suffix = "text", type = FieldType.Text))
+    private List<String> attributeValues = new ArrayList<>();
+
+    @Field(type = FieldType.Double)
+    private Double price;
+
+    /** lowest / highest active variant price (the product price when there are no variants) */
+    @Field(type = FieldType.Double)
+    private Double minPrice;
+
+    @Field(type = FieldType.Double)
+    private Double maxPrice;
+
+    @Field(type = FieldType.Keyword, index = false)
+    private String primaryImageUrl;
+
+    @Field(type = FieldType.Date, format = DateFormat.epoch_millis)
+    private Date createdAt;
+}
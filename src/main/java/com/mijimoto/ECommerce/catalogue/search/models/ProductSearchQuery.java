@@ -0,0 +1,54 @@
+package com.mijimoto.ECommerce.catalogue.search.models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storefront search request.
+ *
+ * @param text       free text, may be null/blank to browse
+ * @param categoryId restricts to the category and its descendants
+ * @param attributes "code:value" filters; values of the same code are OR'ed, different codes AND'ed
+ */
+public record ProductSearchQuery(String text,
+                                 Integer categoryId,
+                                 Double minPrice,
+                                 Double maxPrice,
+                                 List<String> attributes,
+                                 Order order,
+                                 int page,
+                                 int size) {
+
+    public enum Order {
+        RELEVANCE, PRICE_ASC, PRICE_DESC, NEWEST, NAME;
+
+        public static Order fromName(String name) {
+            if (name == null || name.isBlank()) return RELEVANCE;
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return RELEVANCE;
+            }
+        }
+    }
+
+    public boolean hasText() {
+        return text != null && !text.isBlank();
+    }
+
+    /**
+     * @return attribute filters grouped by key, each value still in "key:value" form
+     */
+    public Map<String, List<String>> attributesByKey() {
+        Map<String, List<String>> byKey = new LinkedHashMap<>();
+        if (attributes == null) return byKey;
+        for (String a : attributes) {
+            int sep = a.indexOf(':');
+            if (sep <= 0) continue;
+            byKey.computeIfAbsent(a.substring(0, sep), k -> new ArrayList<>()).add(a);
+        }
+        return byKey;
+    }
+}
@@ -0,0 +1,158 @@
+package com.mijimoto.ECommerce.catalogue.search.services;
+
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchDocument;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds search documents for a batch of products with a fixed number of IN queries
+ * (callers keep batches well under SQL Server's 2100 parameter limit).
+ */
+@Component
+public class ProductSearchDocumentBuilder {
+
+    private static final int MAX_CATEGORY_DEPTH = 32;
+
+    private static final String SQL_PRODUCTS =
+            "SELECT p.id, p.sku, p.name, p.slug, p.short_description, p.category_id, p.price, p.is_published, p.created_at, " +
+            "       (SELECT TOP 1 i.url FROM product_images i WHERE i.product_id = p.id " +
+            "        ORDER BY i.is_primary DESC, i.sort_order, i.id) AS image_url " +
+            "FROM products p WHERE p.id IN (:ids)";
+
+    private static final String SQL_VARIANTS =
+            "SELECT product_id, sku, price_override, is_active FROM product_variants WHERE product_id IN (:ids)";
+
+    private static final String SQL_ATTRIBUTES =
+            "SELECT pav.product_id, a.id AS attribute_id, a.code, pav.value FROM product_attribute_values pav " +
+            "JOIN attributes a ON a.id = pav.attribute_id WHERE pav.product_id IN (:ids) AND pav.value IS NOT NULL " +
+            "UNION ALL " +
+            "SELECT pao.product_id, a.id, a.code, ao.value FROM product_attribute_options pao " +
+            "JOIN attributes a ON a.id = pao.attribute_id " +
+            "JOIN attribute_options ao ON ao.id = pao.attribute_option_id WHERE pao.product_id IN (:ids)";
+
+    private static final String SQL_CATEGORIES = "SELECT id, parent_id, name FROM categories";
+
+    /**
+     * @param documents published products
+     * @param removed   ids that no longer exist or are not published; they must leave the index
+     */
+    public record Batch(List<ProductSearchDocument> documents, List<Integer> removed) {}
+
+    public record CategoryRow(Integer parentId, String name) {}
+
+    /**
+     * Every category by id, loaded once and shared by all batches of a reindex.
+     */
+    public record Categories(Map<Integer, CategoryRow> byId) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public ProductSearchDocumentBuilder(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public Batch build(Collection<Integer> productIds) {
+        return build(productIds, null);
+    }
+
+    /**
+     * @param categories category snapshot to resolve ancestry from; null loads a fresh one
+     */
+    public Batch build(Collection<Integer> productIds, Categories categories) {
+        if (productIds.isEmpty()) return new Batch(List.of(), List.of());
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", productIds);
+
+        Map<Integer, ProductSearchDocument> docs = new LinkedHashMap<>();
+        List<Integer> removed = new ArrayList<>();
+        Set<Integer> found = new HashSet<>();
+        jdbc.query(SQL_PRODUCTS, params, rs -> {
+            int id = rs.getInt("id");
+            found.add(id);
+            if (!rs.getBoolean("is_published")) {
+                removed.add(id);
+                return;
+            }
+            ProductSearchDocument d = new ProductSearchDocument();
+            d.setId(id);
+            d.setSku(rs.getString("sku"));
+            d.setName(rs.getString("name"));
+            d.setSlug(rs.getString("slug"));
+            d.setShortDescription(rs.getString("short_description"));
+            int categoryId = rs.getInt("category_id");
+            d.setCategoryId(rs.wasNull() ? null : categoryId);
+            BigDecimal price = rs.getBigDecimal("price");
+            d.setPrice(price != null ? price.doubleValue() : null);
+            d.setCreatedAt(rs.getTimestamp("created_at"));
+            d.setPrimaryImageUrl(rs.getString("image_url"));
+            docs.put(id, d);
+        });
+        for (Integer id : productIds) {
+            if (!found.contains(id)) removed.add(id);
+        }
+        if (docs.isEmpty()) return new Batch(List.of(), removed);
+
+        MapSqlParameterSource published = new MapSqlParameterSource("ids", docs.keySet());
+        jdbc.query(SQL_VARIANTS, published, rs -> {
+            ProductSearchDocument d = docs.get(rs.getInt("product_id"));
+            if (d == null) return;
+            String sku = rs.getString("sku");
+            if (sku != null) d.getVariantSkus().add(sku);
+            if (!rs.getBoolean("is_active")) return;
+            BigDecimal override = rs.getBigDecimal("price_override");
+            Double p = override != null ? Double.valueOf(override.doubleValue()) : d.getPrice();
+            if (p == null) return;
+            d.setMinPrice(d.getMinPrice() == null ? p : Math.min(d.getMinPrice(), p));
+            d.setMaxPrice(d.getMaxPrice() == null ? p : Math.max(d.getMaxPrice(), p));
+        });
+
+        jdbc.query(SQL_ATTRIBUTES, published, rs -> {
+            ProductSearchDocument d = docs.get(rs.getInt("product_id"));
+            if (d == null) return;
+            d.getAttributeValues().add(attributeKey(rs.getString("code"), rs.getInt("attribute_id")) + ":" + rs.getString("value"));
+        });
+
+        Map<Integer, CategoryRow> categoryRows = (categories != null ? categories : loadCategories()).byId();
+        for (ProductSearchDocument d : docs.values()) {
+            if (d.getMinPrice() == null) {
+                d.setMinPrice(d.getPrice());
+                d.setMaxPrice(d.getPrice());
+            }
+            Integer c = d.getCategoryId();
+            for (int depth = 0; c != null && depth < MAX_CATEGORY_DEPTH; depth++) {
+                CategoryRow row = categoryRows.get(c);
+                if (row == null) break;
+                d.getCategoryPath().add(c);
+                d.getCategoryNames().add(row.name());
+                c = row.parentId();
+            }
+        }
+        return new Batch(new ArrayList<>(docs.values()), removed);
+    }
+
+    /**
+     * Attribute key used in "key:value" filters: the code, or the id for attributes without one.
+     */
+    public static String attributeKey(String code, int attributeId) {
+        return code != null && !code.isBlank() ? code : String.valueOf(attributeId);
+    }
+
+    public Categories loadCategories() {
+        Map<Integer, CategoryRow> map = new HashMap<>();
+        jdbc.getJdbcTemplate().query(SQL_CATEGORIES, rs -> {
+            int parent = rs.getInt("parent_id");
+            map.put(rs.getInt("id"), new CategoryRow(rs.wasNull() ? null : parent, rs.getString("name")));
+        });
+        return new Categories(map);
+    }
+}
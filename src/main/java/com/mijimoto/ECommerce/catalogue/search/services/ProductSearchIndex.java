@@ -0,0 +1,63 @@
+package com.mijimoto.ECommerce.catalogue.search.services;
+
+import com.mijimoto.ECommerce.catalogue.search.dto.ProductSearchResultDTO;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchDocument;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchQuery;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Product search index. Elasticsearch in production; an in-memory implementation
+ * (app.search.backend=memory) stands in for local runs and tests.
+ */
+public interface ProductSearchIndex {
+
+    void upsert(Collection<ProductSearchDocument> documents);
+
+    void delete(Collection<Integer> productIds);
+
+    ProductSearchResultDTO search(ProductSearchQuery query);
+
+    long count();
+
+    /**
+     * Starts building a fresh copy of the index. Searches and incremental writes keep using
+     * the live index until {@link Rebuild#commit()} swaps the new copy in atomically.
+     */
+    Rebuild beginRebuild();
+
+    /**
+     * A copy of the index under construction. {@link #add} may block when writes to the
+     * backend fall behind (back-pressure); it is safe to call from several threads.
+     */
+    interface Rebuild {
+
+        String target();
+
+        void add(List<ProductSearchDocument> documents) throws InterruptedException;
+
+        void delete(Collection<Integer> productIds) throws InterruptedException;
+
+        /**
+         * Waits until everything added so far has been written.
+         */
+        void flush() throws InterruptedException;
+
+        long indexed();
+
+        long failed();
+
+        long bytes();
+
+        /**
+         * Flushes and makes this copy the live index.
+         */
+        void commit() throws InterruptedException;
+
+        /**
+         * Drops the copy; the live index is left untouched.
+         */
+        void abort();
+    }
+}
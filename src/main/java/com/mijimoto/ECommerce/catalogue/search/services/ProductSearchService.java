@@ -0,0 +1,44 @@
+package com.mijimoto.ECommerce.catalogue.search.services;
+
+import com.mijimoto.ECommerce.catalogue.search.dto.ProductSearchResultDTO;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Storefront product search, served entirely from the search index.
+ */
+@Service
+public class ProductSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchService.class);
+
+    public static final int MAX_PAGE_SIZE = 100;
+    // deep paging is expensive on Elasticsearch (from + size <= max_result_window)
+    public static final int MAX_RESULT_WINDOW = 10000;
+
+    private final ProductSearchIndex index;
+
+    public ProductSearchService(ProductSearchIndex index) {
+        this.index = index;
+    }
+
+    public ProductSearchResultDTO search(ProductSearchQuery query) {
+        if (query.page() < 0 || query.size() < 1 || query.size() > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("page must be >= 0 and size between 1 and %d", MAX_PAGE_SIZE));
+        }
+        if ((long) (query.page() + 1) * query.size() > MAX_RESULT_WINDOW) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Only the first %d results can be paged through; refine the search", MAX_RESULT_WINDOW));
+        }
+        if (query.minPrice() != null && query.maxPrice() != null && query.minPrice() > query.maxPrice()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "minPrice must not exceed maxPrice");
+        }
+        logger.debug("search({})", query);
+        return index.search(query);
+    }
+}
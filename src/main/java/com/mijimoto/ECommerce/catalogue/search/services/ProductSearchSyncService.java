@@ -0,0 +1,291 @@
+package com.mijimoto.ECommerce.catalogue.search.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the search index in step with the catalogue.
+ *
+ * Incremental: committed catalogue writes mark the affected product dirty; a scheduled flush
+ * rebuilds dirty products in batches, so a burst of writes to one product costs one index
+ * update. Ids that fail to index stay dirty and are retried on the next flush.
+ * Changes that may touch every product (categories, attributes) schedule a full reindex.
+ *
+ * Full: {@link #startReindex()} builds a fresh index next to the live one while search stays up:
+ *  1. the published id range is split into slices, each read by keyset on its own thread
+ *  2. documents go to {@link ProductSearchIndex.Rebuild} (bulk, back-pressured)
+ *  3. products written meanwhile are replayed into the new index (catch-up)
+ *  4. the new index is swapped in atomically; too many failed documents abort instead
+ */
+@Service
+public class ProductSearchSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchSyncService.class);
+
+    public enum ReindexState { RUNNING, COMPLETED, FAILED }
+
+    public record ReindexProgress(ReindexState state, String targetIndex,
+                                  OffsetDateTime startedAt, OffsetDateTime finishedAt,
+                                  long total, long read, long indexed, long failed, long bytes,
+                                  double docsPerSecond, String error) {}
+
+    private final ProductSearchIndex index;
+    private final ProductSearchDocumentBuilder builder;
+    private final CatalogueChangeResolver resolver;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final int slices;
+    private final long maxFailedDocs;
+
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean fullReindexRequested = new AtomicBoolean(false);
+    private final AtomicBoolean reindexing = new AtomicBoolean(false);
+    private final ExecutorService reindexExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "search-reindex");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // state of the running (or last) reindex
+    private volatile Set<Integer> rebuildDirty;
+    private volatile ProductSearchIndex.Rebuild rebuild;
+    private volatile ReindexProgress lastReindex;
+    private volatile OffsetDateTime reindexStartedAt;
+    private final AtomicLong reindexTotal = new AtomicLong();
+    private final AtomicLong reindexRead = new AtomicLong();
+
+    public ProductSearchSyncService(ProductSearchIndex index,
+                                    ProductSearchDocumentBuilder builder,
+                                    CatalogueChangeResolver resolver,
+                                    JdbcTemplate jdbcTemplate,
+                                    @Value("${app.search.batch-size:500}") int batchSize,
+                                    @Value("${app.search.reindex.slices:4}") int slices,
+                                    @Value("${app.search.reindex.max-failed-docs:100}") long maxFailedDocs) {
+        this.index = index;
+        this.builder = builder;
+        this.resolver = resolver;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.slices = Math.max(1, slices);
+        this.maxFailedDocs = maxFailedDocs;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reindexExecutor.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        CatalogueChangeResolver.Target target = resolver.resolve(event);
+        if (target.all()) {
+            fullReindexRequested.set(true);
+        } else if (target.productId() != null) {
+            markDirty(List.of(target.productId()));
+        }
+    }
+
+    /**
+     * Marks products for re-indexing; for writers that bypass JPA (bulk imports).
+     */
+    public void markDirty(Iterable<Integer> productIds) {
+        Set<Integer> replay = rebuildDirty;
+        for (Integer id : productIds) {
+            dirty.add(id);
+            if (replay != null) replay.add(id);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.sync-interval-ms:1000}")
+    public void flush() {
+        if (fullReindexRequested.compareAndSet(true, false) && !startReindex()) {
+            // a reindex is already running and may have missed the change
+            fullReindexRequested.set(true);
+        }
+        while (!dirty.isEmpty()) {
+            List<Integer> batch = drain(dirty, batchSize);
+            try {
+                ProductSearchDocumentBuilder.Batch built = builder.build(batch);
+                index.upsert(built.documents());
+                index.delete(built.removed());
+            } catch (Exception e) {
+                dirty.addAll(batch);
+                logger.warn("Search sync of {} products failed, will retry: {}", batch.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if a reindex is already running
+     */
+    public boolean startReindex() {
+        if (!reindexing.compareAndSet(false, true)) return false;
+        reindexExecutor.execute(() -> {
+            try {
+                reindexAll();
+            } finally {
+                reindexing.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return progress of the running reindex, else the outcome of the last one (null if none ran)
+     */
+    public ReindexProgress getProgress() {
+        ProductSearchIndex.Rebuild current = rebuild;
+        if (current != null && reindexing.get()) {
+            return snapshot(ReindexState.RUNNING, current, null, null);
+        }
+        return lastReindex;
+    }
+
+    private void reindexAll() {
+        reindexStartedAt = OffsetDateTime.now();
+        reindexRead.set(0);
+        rebuildDirty = ConcurrentHashMap.newKeySet();
+        ProductSearchIndex.Rebuild current = null;
+        try {
+            current = index.beginRebuild();
+            rebuild = current;
+
+            Map<String, Object> range = jdbcTemplate.queryForMap(
+                    "SELECT MIN(id) AS min_id, MAX(id) AS max_id, COUNT(*) AS total FROM products WHERE is_published = 1");
+            reindexTotal.set(((Number) range.get("total")).longValue());
+            if (reindexTotal.get() > 0) {
+                // one category read for the whole run instead of one per batch
+                ProductSearchDocumentBuilder.Categories categories = builder.loadCategories();
+                readSlices(current, categories,
+                        ((Number) range.get("min_id")).intValue(), ((Number) range.get("max_id")).intValue());
+            }
+            current.flush();
+
+            // products written while slices were read may have been indexed with stale data
+            Set<Integer> replay;
+            ProductSearchDocumentBuilder.Categories replayCategories = null;
+            while (!(replay = rebuildDirty).isEmpty()) {
+                List<Integer> ids = drain(replay, batchSize);
+                if (replayCategories == null) replayCategories = builder.loadCategories();
+                ProductSearchDocumentBuilder.Batch built = builder.build(ids, replayCategories);
+                current.add(built.documents());
+                current.delete(built.removed());
+            }
+
+            if (current.failed() > maxFailedDocs) {
+                throw new IllegalStateException(String.format("%d documents failed to index (limit %d)",
+                        current.failed(), maxFailedDocs));
+            }
+            current.commit();
+            // written after the last catch-up pass: possibly flushed to the old index only
+            dirty.addAll(rebuildDirty);
+            lastReindex = snapshot(ReindexState.COMPLETED, current, OffsetDateTime.now(), null);
+            logger.info("Search reindex into {} finished: {} indexed, {} failed",
+                    current.target(), current.indexed(), current.failed());
+        } catch (Exception e) {
+            if (current != null) {
+                try {
+                    current.abort();
+                } catch (Exception abortFailure) {
+                    logger.warn("Could not drop partial index {}: {}", current.target(), abortFailure.getMessage());
+                }
+            }
+            lastReindex = current != null
+                    ? snapshot(ReindexState.FAILED, current, OffsetDateTime.now(), e.getMessage())
+                    : new ReindexProgress(ReindexState.FAILED, null, reindexStartedAt, OffsetDateTime.now(),
+                            0, 0, 0, 0, 0, 0, e.getMessage());
+            logger.error("Search reindex failed, live index kept: {}", e.getMessage(), e);
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+        } finally {
+            rebuildDirty = null;
+            rebuild = null;
+        }
+    }
+
+    /**
+     * Splits [minId, maxId] into equal id ranges and reads each by keyset on its own thread.
+     */
+    private void readSlices(ProductSearchIndex.Rebuild target, ProductSearchDocumentBuilder.Categories categories,
+                            int minId, int maxId) throws Exception {
+        long span = ((long) maxId - minId) / slices + 1;
+        ExecutorService readers = Executors.newFixedThreadPool(slices, r -> {
+            Thread t = new Thread(r, "search-reindex-slice");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(slices);
+            for (int i = 0; i < slices; i++) {
+                long lo = minId + i * span;
+                if (lo > maxId) break;
+                long hi = Math.min(maxId, lo + span - 1);
+                futures.add(readers.submit(() -> {
+                    readSlice(target, categories, (int) lo, (int) hi);
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    private void readSlice(ProductSearchIndex.Rebuild target, ProductSearchDocumentBuilder.Categories categories,
+                           int lo, int hi) throws InterruptedException {
+        int after = lo - 1;
+        while (true) {
+            List<Integer> ids = jdbcTemplate.queryForList(
+                    "SELECT TOP (?) id FROM products WHERE id > ? AND id <= ? AND is_published = 1 ORDER BY id",
+                    Integer.class, batchSize, after, hi);
+            if (ids.isEmpty()) return;
+            ProductSearchDocumentBuilder.Batch built = builder.build(ids, categories);
+            target.add(built.documents());
+            reindexRead.addAndGet(ids.size());
+            after = ids.get(ids.size() - 1);
+        }
+    }
+
+    private ReindexProgress snapshot(ReindexState state, ProductSearchIndex.Rebuild current,
+                                     OffsetDateTime finishedAt, String error) {
+        OffsetDateTime started = reindexStartedAt;
+        OffsetDateTime end = finishedAt != null ? finishedAt : OffsetDateTime.now();
+        double seconds = Math.max(1, Duration.between(started, end).toMillis()) / 1000.0;
+        return new ReindexProgress(state, current.target(), started, finishedAt,
+                reindexTotal.get(), reindexRead.get(), current.indexed(), current.failed(), current.bytes(),
+                current.indexed() / seconds, error);
+    }
+
+    private static List<Integer> drain(Set<Integer> set, int max) {
+        List<Integer> batch = new ArrayList<>(Math.min(max, set.size()));
+        Iterator<Integer> it = set.iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,279 @@
+package com.mijimoto.ECommerce.catalogue.search.services.impl;
+
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchDocument;
+import com.mijimoto.ECommerce.catalogue.search.services.ProductSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Builds one versioned Elasticsearch index.
+ *
+ * Documents are serialised to JSON on a fork-join pool; the JSON is used both to size bulk
+ * requests by bytes and as the request source, so nothing is serialised twice. Full bulks are
+ * sent by a small pool whose queue is bounded: when Elasticsearch falls behind the producer
+ * sends the bulk itself (caller-runs) and stops reading. Rejections (429), of a whole bulk or of
+ * single items in a partially failed one, are retried with exponential backoff; documents
+ * that still fail are counted.
+ */
+class ElasticsearchIndexRebuild implements ProductSearchIndex.Rebuild {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticsearchIndexRebuild.class);
+
+    private static final int MAX_RETRIES = 5;
+    private static final long INITIAL_BACKOFF_MS = 200;
+
+    private record Pending(String id, String json, int bytes) {}
+
+    private final ElasticsearchOperations operations;
+    private final ElasticsearchConverter converter;
+    private final IndexCoordinates target;
+    private final long bulkMaxBytes;
+    private final int bulkMaxDocs;
+    private final Consumer<String> onCommit;
+    private final Runnable onAbort;
+
+    private final ForkJoinPool serializer;
+    private final ThreadPoolExecutor senders;
+
+    private final Object lock = new Object();
+    private List<Pending> buffer = new ArrayList<>();
+    private long bufferBytes;
+    private final List<Future<?>> inFlight = new ArrayList<>();
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    ElasticsearchIndexRebuild(ElasticsearchOperations operations, String targetIndex,
+                              long bulkMaxBytes, int bulkMaxDocs, int bulkConcurrency,
+                              Consumer<String> onCommit, Runnable onAbort) {
+        this.operations = operations;
+        this.converter = operations.getElasticsearchConverter();
+        this.target = IndexCoordinates.of(targetIndex);
+        this.bulkMaxBytes = bulkMaxBytes;
+        this.bulkMaxDocs = bulkMaxDocs;
+        this.onCommit = onCommit;
+        this.onAbort = onAbort;
+        this.serializer = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        this.senders = new ThreadPoolExecutor(bulkConcurrency, bulkConcurrency, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(bulkConcurrency), r -> {
+                    Thread t = new Thread(r, "search-bulk");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public String target() {
+        return target.getIndexName();
+    }
+
+    @Override
+    public void add(List<ProductSearchDocument> documents) throws InterruptedException {
+        if (documents.isEmpty()) return;
+        List<Pending> serialized;
+        try {
+            serialized = serializer.submit(() -> documents.parallelStream()
+                    .map(d -> {
+                        String json = converter.mapObject(d).toJson();
+                        return new Pending(String.valueOf(d.getId()), json, json.getBytes(StandardCharsets.UTF_8).length);
+                    })
+                    .toList()).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to serialise search documents", e.getCause());
+        }
+        for (Pending p : serialized) {
+            List<Pending> full = null;
+            synchronized (lock) {
+                buffer.add(p);
+                bufferBytes += p.bytes();
+                if (bufferBytes >= bulkMaxBytes || buffer.size() >= bulkMaxDocs) {
+                    full = takeBuffer();
+                }
+            }
+            if (full != null) submit(full);
+        }
+    }
+
+    @Override
+    public void delete(Collection<Integer> productIds) throws InterruptedException {
+        if (productIds.isEmpty()) return;
+        flush();
+        operations.delete(DeleteQuery.builder(new CriteriaQuery(new Criteria("id").in(productIds))).build(),
+                ProductSearchDocument.class, target);
+    }
+
+    @Override
+    public void flush() throws InterruptedException {
+        List<Pending> rest;
+        synchronized (lock) {
+            rest = takeBuffer();
+        }
+        if (!rest.isEmpty()) submit(rest);
+        List<Future<?>> waiting;
+        synchronized (inFlight) {
+            waiting = new ArrayList<>(inFlight);
+            inFlight.clear();
+        }
+        for (Future<?> f : waiting) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                // already counted as failed documents
+                logger.debug("Bulk failed: {}", e.getCause().getMessage());
+            }
+        }
+    }
+
+    @Override
+    public long indexed() {
+        return indexed.get();
+    }
+
+    @Override
+    public long failed() {
+        return failed.get();
+    }
+
+    @Override
+    public long bytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public void commit() throws InterruptedException {
+        try {
+            flush();
+            operations.indexOps(target).refresh();
+            onCommit.accept(target.getIndexName());
+        } finally {
+            shutdown();
+        }
+    }
+
+    @Override
+    public void abort() {
+        shutdown();
+        onAbort.run();
+    }
+
+    private List<Pending> takeBuffer() {
+        List<Pending> taken = buffer;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+        return taken;
+    }
+
+    private void submit(List<Pending> bulk) {
+        Future<?> f = senders.submit(() -> send(bulk));
+        synchronized (inFlight) {
+            inFlight.add(f);
+        }
+    }
+
+    private void send(List<Pending> bulk) {
+        List<Pending> pending = bulk;
+        long backoff = INITIAL_BACKOFF_MS;
+        for (int attempt = 0; ; attempt++) {
+            boolean retryable = attempt < MAX_RETRIES;
+            try {
+                operations.bulkIndex(queries(pending), target);
+                accept(pending);
+                return;
+            } catch (BulkFailureException e) {
+                // a partial failure: keep what went in, retry only the items rejected with 429
+                Map<String, BulkFailureException.FailureDetails> failures = e.getFailedDocuments();
+                List<Pending> rejected = new ArrayList<>();
+                List<Pending> ok = new ArrayList<>();
+                long broken = 0;
+                for (Pending p : pending) {
+                    BulkFailureException.FailureDetails failure = failures.get(p.id());
+                    if (failure == null) {
+                        ok.add(p);
+                    } else if (retryable && isRejected(failure)) {
+                        rejected.add(p);
+                    } else {
+                        broken++;
+                    }
+                }
+                accept(ok);
+                failed.addAndGet(broken + (retryable ? 0 : rejected.size()));
+                if (broken > 0) {
+                    logger.warn("{} of {} documents failed in bulk to {}", broken, pending.size(), target.getIndexName());
+                }
+                if (rejected.isEmpty()) return;
+                pending = rejected;
+            } catch (RuntimeException e) {
+                if (!isRejected(e) || !retryable) {
+                    failed.addAndGet(pending.size());
+                    logger.warn("Bulk of {} documents to {} failed: {}", pending.size(), target.getIndexName(), e.getMessage());
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                failed.addAndGet(pending.size());
+                return;
+            }
+            backoff *= 2;
+        }
+    }
+
+    private static List<IndexQuery> queries(List<Pending> bulk) {
+        List<IndexQuery> queries = new ArrayList<>(bulk.size());
+        for (Pending p : bulk) {
+            queries.add(new IndexQueryBuilder().withId(p.id()).withSource(p.json()).build());
+        }
+        return queries;
+    }
+
+    private void accept(List<Pending> written) {
+        long size = 0;
+        for (Pending p : written) size += p.bytes();
+        indexed.addAndGet(written.size());
+        bytes.addAndGet(size);
+    }
+
+    private static boolean isRejected(BulkFailureException.FailureDetails failure) {
+        return (failure.status() != null && failure.status() == 429)
+                || (failure.errorMessage() != null && failure.errorMessage().contains("es_rejected_execution_exception"));
+    }
+
+    private static boolean isRejected(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            String msg = t.getMessage();
+            if (msg != null && (msg.contains("429") || msg.contains("es_rejected_execution_exception"))) return true;
+        }
+        return false;
+    }
+
+    private void shutdown() {
+        senders.shutdownNow();
+        serializer.shutdownNow();
+    }
+}
@@ -0,0 +1,241 @@
+package com.mijimoto.ECommerce.catalogue.search.services.impl;
+
+import com.mijimoto.ECommerce.catalogue.search.dto.ProductSearchResultDTO;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchDocument;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchQuery;
+import com.mijimoto.ECommerce.catalogue.search.services.ProductSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Elasticsearch implementation of {@link ProductSearchIndex}.
+ *
+ * Full text goes to name, skus, category names, short description and attribute values
+ * (boosted in that order); category, price and attribute filters are exact. Writes use the
+ * bulk API; nothing is refreshed explicitly, so hits appear within the index refresh interval.
+ *
+ * Searches and writes go through an alias (app.search.index-name) that points at one
+ * versioned index, e.g. products_v1718000000000. A rebuild fills a new versioned index
+ * and then moves the alias in a single atomic _aliases call.
+ */
+@Service
+@ConditionalOnProperty(name = "app.search.backend", havingValue = "elasticsearch", matchIfMissing = true)
+public class ElasticsearchProductSearchIndex implements ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ElasticsearchProductSearchIndex.class);
+
+    private final ElasticsearchOperations operations;
+    private final String alias;
+    private final IndexCoordinates index;
+    private final long bulkMaxBytes;
+    private final int bulkMaxDocs;
+    private final int bulkConcurrency;
+    private final boolean deleteOldIndices;
+    private volatile boolean indexVerified;
+
+    public ElasticsearchProductSearchIndex(ElasticsearchOperations operations,
+                                           @Value("${app.search.index-name:products}") String indexName,
+                                           @Value("${app.search.reindex.bulk-max-bytes:5242880}") long bulkMaxBytes,
+                                           @Value("${app.search.reindex.bulk-max-docs:5000}") int bulkMaxDocs,
+                                           @Value("${app.search.reindex.bulk-concurrency:2}") int bulkConcurrency,
+                                           @Value("${app.search.reindex.delete-old-indices:true}") boolean deleteOldIndices) {
+        this.operations = operations;
+        this.alias = indexName;
+        this.index = IndexCoordinates.of(indexName);
+        this.bulkMaxBytes = bulkMaxBytes;
+        this.bulkMaxDocs = bulkMaxDocs;
+        this.bulkConcurrency = bulkConcurrency;
+        this.deleteOldIndices = deleteOldIndices;
+        ensureIndex();
+    }
+
+    @Override
+    public void upsert(Collection<ProductSearchDocument> documents) {
+        if (documents.isEmpty()) return;
+        if (!indexVerified) ensureIndex();
+        List<IndexQuery> queries = new ArrayList<>(documents.size());
+        for (ProductSearchDocument d : documents) {
+            queries.add(new IndexQueryBuilder().withId(String.valueOf(d.getId())).withObject(d).build());
+        }
+        operations.bulkIndex(queries, index);
+    }
+
+    @Override
+    public void delete(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) return;
+        Query query = new CriteriaQuery(new Criteria("id").in(productIds));
+        operations.delete(DeleteQuery.builder(query).build(), ProductSearchDocument.class, index);
+    }
+
+    @Override
+    public ProductSearchResultDTO search(ProductSearchQuery q) {
+        CriteriaQuery query = new CriteriaQuery(toCriteria(q));
+        query.setPageable(PageRequest.of(q.page(), q.size(), toSort(q)));
+        query.setTrackTotalHits(true);
+
+        SearchHits<ProductSearchDocument> hits = operations.search(query, ProductSearchDocument.class, index);
+        ProductSearchResultDTO result = new ProductSearchResultDTO();
+        result.setTotal(hits.getTotalHits());
+        result.setPage(q.page());
+        result.setSize(q.size());
+        for (SearchHit<ProductSearchDocument> hit : hits) {
+            result.getItems().add(hit.getContent());
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return operations.count(Query.findAll(), ProductSearchDocument.class, index);
+    }
+
+    @Override
+    public Rebuild beginRebuild() {
+        String target = alias + "_v" + System.currentTimeMillis();
+        createIndex(target);
+        logger.info("Building search index {} for alias {}", target, alias);
+        return new ElasticsearchIndexRebuild(operations, target, bulkMaxBytes, bulkMaxDocs, bulkConcurrency,
+                this::swapAlias,
+                () -> operations.indexOps(IndexCoordinates.of(target)).delete());
+    }
+
+    private static Criteria toCriteria(ProductSearchQuery q) {
+        Criteria criteria = new Criteria();
+        if (q.categoryId() != null) {
+            criteria = criteria.and(new Criteria("categoryPath").is(q.categoryId()));
+        }
+        // range overlap on [minPrice, maxPrice]: matches products with any variant in the range
+        if (q.minPrice() != null) {
+            criteria = criteria.and(new Criteria("maxPrice").greaterThanEqual(q.minPrice()));
+        }
+        if (q.maxPrice() != null) {
+            criteria = criteria.and(new Criteria("minPrice").lessThanEqual(q.maxPrice()));
+        }
+        for (List<String> values : q.attributesByKey().values()) {
+            criteria = criteria.and(new Criteria("attributeValues").in(values));
+        }
+        if (q.hasText()) {
+            String text = q.text().trim();
+            Criteria fullText = new Criteria("sku").is(text).boost(8f)
+                    .or(new Criteria("variantSkus").is(text).boost(8f))
+                    .or(new Criteria("name").matches(text).boost(4f))
+                    .or(new Criteria("categoryNames").matches(text).boost(2f))
+                    .or(new Criteria("shortDescription").matches(text))
+                    .or(new Criteria("attributeValues.text").matches(text));
+            criteria = criteria.subCriteria(fullText);
+        }
+        return criteria;
+    }
+
+    private static Sort toSort(ProductSearchQuery q) {
+        switch (q.order()) {
+            case PRICE_ASC:
+                return Sort.by(Sort.Order.asc("minPrice"), Sort.Order.asc("id"));
+            case PRICE_DESC:
+                return Sort.by(Sort.Order.desc("maxPrice"), Sort.Order.asc("id"));
+            case NEWEST:
+                return Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+            case NAME:
+                return Sort.by(Sort.Order.asc("name.keyword"), Sort.Order.asc("id"));
+            default:
+                return q.hasText()
+                        ? Sort.by(Sort.Order.desc("_score"), Sort.Order.asc("id"))
+                        : Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+        }
+    }
+
+    private void ensureIndex() {
+        try {
+            if (!operations.indexOps(index).exists()) {
+                String target = alias + "_v" + System.currentTimeMillis();
+                createIndex(target);
+                swapAlias(target);
+                logger.info("Created search index {} behind alias {}", target, alias);
+            }
+            indexVerified = true;
+        } catch (Exception e) {
+            // search must not keep the shop from starting; retried on the next write
+            logger.warn("Could not verify search index {}: {}", alias, e.getMessage());
+        }
+    }
+
+    private void createIndex(String name) {
+        IndexOperations ops = operations.indexOps(IndexCoordinates.of(name));
+        ops.create();
+        ops.putMapping(ops.createMapping(ProductSearchDocument.class));
+    }
+
+    /**
+     * Points the alias at {@code target} only. Indices previously behind the alias are detached
+     * in the same request (and deleted afterwards if configured); a concrete index squatting on
+     * the alias name (created before aliases were used) is removed atomically as well.
+     */
+    private void swapAlias(String target) {
+        IndexOperations aliasOps = operations.indexOps(index);
+        Set<String> previous = new HashSet<>();
+        boolean concreteIndex = false;
+        if (aliasOps.exists()) {
+            previous.addAll(currentIndices());
+            concreteIndex = previous.isEmpty();
+        }
+        previous.remove(target);
+
+        List<AliasAction> actions = new ArrayList<>();
+        actions.add(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(target).withAliases(alias).build()));
+        for (String old : previous) {
+            actions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                    .withIndices(old).withAliases(alias).build()));
+        }
+        if (concreteIndex) {
+            actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder()
+                    .withIndices(alias).build()));
+        }
+        operations.indexOps(IndexCoordinates.of(target)).alias(new AliasActions(actions.toArray(new AliasAction[0])));
+        logger.info("Alias {} now points at {} (was {})", alias, target, concreteIndex ? alias : previous);
+
+        if (deleteOldIndices) {
+            for (String old : previous) {
+                try {
+                    operations.indexOps(IndexCoordinates.of(old)).delete();
+                } catch (Exception e) {
+                    logger.warn("Could not delete old search index {}: {}", old, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Set<String> currentIndices() {
+        try {
+            return operations.indexOps(index).getAliases(alias).keySet();
+        } catch (Exception e) {
+            // no alias with that name
+            return Set.of();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.mijimoto.ECommerce.catalogue.search.services.impl;
+
+import com.mijimoto.ECommerce.catalogue.search.dto.ProductSearchResultDTO;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchDocument;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchQuery;
+import com.mijimoto.ECommerce.catalogue.search.services.ProductSearchIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap-only {@link ProductSearchIndex} for local runs and tests (app.search.backend=memory).
+ *
+ * Same filter and sort semantics as the Elasticsearch index; scoring is a simple weighted
+ * token match and every search scans all documents, so it is not meant for large catalogues.
+ */
+@Service
+@ConditionalOnProperty(name = "app.search.backend", havingValue = "memory")
+public class InMemoryProductSearchIndex implements ProductSearchIndex {
+
+    private record Scored(ProductSearchDocument doc, double score) {}
+
+    private volatile Map<Integer, ProductSearchDocument> documents = new ConcurrentHashMap<>();
+
+    @Override
+    public void upsert(Collection<ProductSearchDocument> docs) {
+        for (ProductSearchDocument d : docs) documents.put(d.getId(), d);
+    }
+
+    @Override
+    public void delete(Collection<Integer> productIds) {
+        for (Integer id : productIds) documents.remove(id);
+    }
+
+    @Override
+    public ProductSearchResultDTO search(ProductSearchQuery q) {
+        Set<String> terms = q.hasText() ? tokens(q.text()) : Set.of();
+        Map<String, List<String>> attributeFilters = q.attributesByKey();
+
+        List<Scored> matches = new ArrayList<>();
+        for (ProductSearchDocument d : documents.values()) {
+            if (q.categoryId() != null && !d.getCategoryPath().contains(q.categoryId())) continue;
+            if (q.minPrice() != null && (d.getMaxPrice() == null || d.getMaxPrice() < q.minPrice())) continue;
+            if (q.maxPrice() != null && (d.getMinPrice() == null || d.getMinPrice() > q.maxPrice())) continue;
+            if (!matchesAttributes(d, attributeFilters)) continue;
+            double score = 0;
+            if (q.hasText()) {
+                score = score(d, q.text().trim(), terms);
+                if (score == 0) continue;
+            }
+            matches.add(new Scored(d, score));
+        }
+
+        matches.sort(comparator(q));
+        ProductSearchResultDTO result = new ProductSearchResultDTO();
+        result.setTotal(matches.size());
+        result.setPage(q.page());
+        result.setSize(q.size());
+        long from = (long) q.page() * q.size();
+        for (long i = from; i < matches.size() && i < from + q.size(); i++) {
+            result.getItems().add(matches.get((int) i).doc());
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return documents.size();
+    }
+
+    /**
+     * Builds into a separate map and swaps the reference on commit.
+     */
+    @Override
+    public Rebuild beginRebuild() {
+        Map<Integer, ProductSearchDocument> next = new ConcurrentHashMap<>();
+        return new Rebuild() {
+            @Override
+            public String target() {
+                return "memory";
+            }
+
+            @Override
+            public void add(List<ProductSearchDocument> docs) {
+                for (ProductSearchDocument d : docs) next.put(d.getId(), d);
+            }
+
+            @Override
+            public void delete(Collection<Integer> productIds) {
+                for (Integer id : productIds) next.remove(id);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public long indexed() {
+                return next.size();
+            }
+
+            @Override
+            public long failed() {
+                return 0;
+            }
+
+            @Override
+            public long bytes() {
+                return 0;
+            }
+
+            @Override
+            public void commit() {
+                documents = next;
+            }
+
+            @Override
+            public void abort() {
+                next.clear();
+            }
+        };
+    }
+
+    private static boolean matchesAttributes(ProductSearchDocument d, Map<String, List<String>> filters) {
+        for (List<String> anyOf : filters.values()) {
+            boolean hit = false;
+            for (String v : anyOf) {
+                if (d.getAttributeValues().contains(v)) {
+                    hit = true;
+                    break;
+                }
+            }
+            if (!hit) return false;
+        }
+        return true;
+    }
+
+    // weights mirror the Elasticsearch boosts
+    private static double score(ProductSearchDocument d, String text, Set<String> terms) {
+        double score = 0;
+        if (text.equalsIgnoreCase(d.getSku())) score += 8;
+        for (String sku : d.getVariantSkus()) {
+            if (text.equalsIgnoreCase(sku)) score += 8;
+        }
+        score += 4 * overlap(terms, d.getName());
+        for (String c : d.getCategoryNames()) score += 2 * overlap(terms, c);
+        score += overlap(terms, d.getShortDescription());
+        for (String a : d.getAttributeValues()) score += overlap(terms, a);
+        return score;
+    }
+
+    private static int overlap(Set<String> terms, String field) {
+        if (field == null || terms.isEmpty()) return 0;
+        int n = 0;
+        for (String t : tokens(field)) {
+            if (terms.contains(t)) n++;
+        }
+        return n;
+    }
+
+    private static Set<String> tokens(String s) {
+        Set<String> out = new HashSet<>();
+        for (String t : s.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    private static Comparator<Scored> comparator(ProductSearchQuery q) {
+        Comparator<Scored> byIdAsc = Comparator.comparing(s -> s.doc().getId());
+        Comparator<Scored> newest = Comparator.comparing((Scored s) -> s.doc().getCreatedAt(),
+                Comparator.nullsFirst(Comparator.<Date>naturalOrder())).reversed()
+                .thenComparing(byIdAsc.reversed());
+        switch (q.order()) {
+            case PRICE_ASC:
+                return Comparator.comparing((Scored s) -> s.doc().getMinPrice(),
+                        Comparator.nullsLast(Comparator.<Double>naturalOrder())).thenComparing(byIdAsc);
+            case PRICE_DESC:
+                return Comparator.comparing((Scored s) -> s.doc().getMaxPrice(),
+                        Comparator.nullsLast(Comparator.<Double>reverseOrder())).thenComparing(byIdAsc);
+            case NEWEST:
+                return newest;
+            case NAME:
+                return Comparator.comparing((Scored s) -> s.doc().getName(),
+                        Comparator.nullsLast(Comparator.<String>naturalOrder())).thenComparing(byIdAsc);
+            default:
+                return q.hasText()
+                        ? Comparator.comparingDouble(Scored::score).reversed().thenComparing(byIdAsc)
+                        : newest;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.mijimoto.ECommerce.catalogue.snapshot.models;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The published catalogue as the in-process read models need it at startup: products,
+ * variants with their regular prices, sale and group prices, categories, attributes and
+ * attribute options. Lists keep the order they were read in.
+ *
+ * @param writtenAt when the data was read from the database
+ */
+public record CatalogueSnapshot(Instant writtenAt,
+                                List<Product> products,
+                                List<Variant> variants,
+                                List<PriceRule> priceRules,
+                                List<Category> categories,
+                                List<Attribute> attributes,
+                                List<AttributeOption> attributeOptions,
+                                List<ProductOption> productOptions) {
+
+    public record Product(int id, Integer categoryId, String slug, String sku, BigDecimal price) {}
+
+    /**
+     * @param price regular price: the override, else the product price
+     */
+    public record Variant(int id, int productId, String sku, BigDecimal price, boolean active) {}
+
+    /**
+     * @param group    normalized customer group, null for everyone
+     * @param startsAt epoch millis, Long.MIN_VALUE if open
+     * @param endsAt   epoch millis (exclusive), Long.MAX_VALUE if open
+     */
+    public record PriceRule(int variantId, String group, BigDecimal price, long startsAt, long endsAt) {}
+
+    /**
+     * @param productCount published products directly in the category
+     */
+    public record Category(int id, Integer parentId, String name, String slug, int sortOrder, long productCount) {}
+
+    public record Attribute(int id, String code, String name) {}
+
+    public record AttributeOption(int id, int attributeId, String value, int sortOrder) {}
+
+    public record ProductOption(int productId, int optionId) {}
+}
@@ -0,0 +1,100 @@
+package com.mijimoto.ECommerce.catalogue.snapshot.services;
+
+import com.mijimoto.ECommerce.catalogue.snapshot.models.CatalogueSnapshot;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the published catalogue for a {@link CatalogueSnapshot}, in the order each read model
+ * loads it itself.
+ */
+@Component
+public class CatalogueSnapshotLoader {
+
+    private static final String SQL_PRODUCTS =
+            "SELECT id, category_id, slug, sku, price FROM products WHERE is_published = 1 ORDER BY id";
+
+    private static final String SQL_VARIANTS =
+            "SELECT v.id, v.product_id, v.sku, COALESCE(v.price_override, p.price) AS price, v.is_active " +
+            "FROM product_variants v JOIN products p ON p.id = v.product_id " +
+            "WHERE p.is_published = 1 ORDER BY v.id";
+
+    // rules of deleted roles are left out, as the price loader does
+    private static final String SQL_PRICE_RULES =
+            "SELECT vp.variant_id, vp.role_id, r.name AS role_name, vp.price, vp.starts_at, vp.ends_at " +
+            "FROM variant_prices vp JOIN product_variants v ON v.id = vp.variant_id " +
+            "JOIN products p ON p.id = v.product_id " +
+            "LEFT JOIN roles r ON r.id = vp.role_id " +
+            "WHERE p.is_published = 1 AND (vp.ends_at IS NULL OR vp.ends_at > ?) " +
+            "AND (vp.role_id IS NULL OR r.id IS NOT NULL)";
+
+    private static final String SQL_CATEGORIES =
+            "SELECT c.id, c.parent_id, c.name, c.slug, c.sort_order, COUNT(p.id) AS product_count " +
+            "FROM categories c LEFT JOIN products p ON p.category_id = c.id AND p.is_published = 1 " +
+            "WHERE c.is_published = 1 " +
+            "GROUP BY c.id, c.parent_id, c.name, c.slug, c.sort_order " +
+            "ORDER BY c.sort_order, c.name, c.id";
+
+    private static final String SQL_PRODUCT_OPTIONS =
+            "SELECT pao.product_id, pao.attribute_option_id FROM product_attribute_options pao " +
+            "JOIN products p ON p.id = pao.product_id WHERE p.is_published = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CatalogueSnapshotLoader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public CatalogueSnapshot load() {
+        Instant readAt = Instant.now();
+        List<CatalogueSnapshot.Product> products = new ArrayList<>();
+        jdbcTemplate.query(SQL_PRODUCTS, rs -> {
+            int category = rs.getInt("category_id");
+            Integer categoryId = rs.wasNull() ? null : category;
+            products.add(new CatalogueSnapshot.Product(rs.getInt("id"), categoryId, rs.getString("slug"),
+                    rs.getString("sku"), rs.getBigDecimal("price")));
+        });
+        List<CatalogueSnapshot.Variant> variants = new ArrayList<>();
+        jdbcTemplate.query(SQL_VARIANTS, rs -> {
+            variants.add(new CatalogueSnapshot.Variant(rs.getInt("id"), rs.getInt("product_id"), rs.getString("sku"),
+                    rs.getBigDecimal("price"), rs.getBoolean("is_active")));
+        });
+        List<CatalogueSnapshot.PriceRule> rules = new ArrayList<>();
+        jdbcTemplate.query(SQL_PRICE_RULES, rs -> {
+            rs.getInt("role_id");
+            String group = rs.wasNull() ? null : rs.getString("role_name");
+            Timestamp starts = rs.getTimestamp("starts_at");
+            Timestamp ends = rs.getTimestamp("ends_at");
+            rules.add(new CatalogueSnapshot.PriceRule(rs.getInt("variant_id"), group, rs.getBigDecimal("price"),
+                    starts != null ? starts.getTime() : Long.MIN_VALUE,
+                    ends != null ? ends.getTime() : Long.MAX_VALUE));
+        }, Timestamp.from(readAt));
+        List<CatalogueSnapshot.Category> categories = new ArrayList<>();
+        jdbcTemplate.query(SQL_CATEGORIES, rs -> {
+            int parent = rs.getInt("parent_id");
+            Integer parentId = rs.wasNull() ? null : parent;
+            categories.add(new CatalogueSnapshot.Category(rs.getInt("id"), parentId, rs.getString("name"),
+                    rs.getString("slug"), rs.getInt("sort_order"), rs.getLong("product_count")));
+        });
+        List<CatalogueSnapshot.Attribute> attributes = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, code, name FROM attributes ORDER BY name, id", rs -> {
+            attributes.add(new CatalogueSnapshot.Attribute(rs.getInt("id"), rs.getString("code"), rs.getString("name")));
+        });
+        List<CatalogueSnapshot.AttributeOption> options = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, attribute_id, value, sort_order FROM attribute_options " +
+                "ORDER BY attribute_id, sort_order, id", rs -> {
+            options.add(new CatalogueSnapshot.AttributeOption(rs.getInt("id"), rs.getInt("attribute_id"),
+                    rs.getString("value"), rs.getInt("sort_order")));
+        });
+        List<CatalogueSnapshot.ProductOption> productOptions = new ArrayList<>();
+        jdbcTemplate.query(SQL_PRODUCT_OPTIONS, rs -> {
+            productOptions.add(new CatalogueSnapshot.ProductOption(rs.getInt("product_id"), rs.getInt("attribute_option_id")));
+        });
+        return new CatalogueSnapshot(readAt, products, variants, rules, categories, attributes, options, productOptions);
+    }
+}
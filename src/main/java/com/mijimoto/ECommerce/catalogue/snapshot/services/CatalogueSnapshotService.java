@@ -0,0 +1,126 @@
+package com.mijimoto.ECommerce.catalogue.snapshot.services;
+
+import com.mijimoto.ECommerce.catalogue.facets.services.FacetService;
+import com.mijimoto.ECommerce.catalogue.lookup.services.ProductLookupService;
+import com.mijimoto.ECommerce.catalogue.navigation.services.CategoryTreeService;
+import com.mijimoto.ECommerce.catalogue.pricing.services.PriceService;
+import com.mijimoto.ECommerce.catalogue.snapshot.models.CatalogueSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Cold-start warmup from a snapshot of the published catalogue.
+ *
+ * Startup: the latest snapshot is fetched from object storage (the local copy is used if storage
+ * is unreachable), memory-mapped and handed to the price table, slug/SKU index, facet index and
+ * category tree. This runs as an application runner, so the instance reports ready only after
+ * it. Each read model keeps its scheduled build from the database, which replaces the warm data
+ * in the background; until then requests are answered from memory instead of falling through
+ * to SQL Server one by one.
+ *
+ * Periodically one instance (whichever takes the Redis key first; the key is left to expire,
+ * so there is one write per interval across the cluster) reads the catalogue and writes a new
+ * snapshot to disk and storage.
+ */
+@Service
+public class CatalogueSnapshotService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogueSnapshotService.class);
+
+    private static final String WRITE_KEY = "catalogue:snapshot:written";
+
+    private final CatalogueSnapshotLoader loader;
+    private final CatalogueSnapshotStore store;
+    private final StringRedisTemplate redis;
+    private final PriceService priceService;
+    private final ProductLookupService lookupService;
+    private final FacetService facetService;
+    private final CategoryTreeService categoryTreeService;
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration maxAge;
+
+    public CatalogueSnapshotService(CatalogueSnapshotLoader loader,
+                                    CatalogueSnapshotStore store,
+                                    StringRedisTemplate redis,
+                                    PriceService priceService,
+                                    ProductLookupService lookupService,
+                                    FacetService facetService,
+                                    CategoryTreeService categoryTreeService,
+                                    @Value("${app.catalogue.snapshot.enabled:true}") boolean enabled,
+                                    @Value("${app.catalogue.snapshot.interval-ms:900000}") long intervalMs,
+                                    @Value("${app.catalogue.snapshot.max-age-hours:24}") long maxAgeHours) {
+        this.loader = loader;
+        this.store = store;
+        this.redis = redis;
+        this.priceService = priceService;
+        this.lookupService = lookupService;
+        this.facetService = facetService;
+        this.categoryTreeService = categoryTreeService;
+        this.enabled = enabled;
+        this.interval = Duration.ofMillis(intervalMs);
+        this.maxAge = Duration.ofHours(maxAgeHours);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) return;
+        long started = System.currentTimeMillis();
+        try {
+            try {
+                store.download();
+            } catch (Exception e) {
+                logger.warn("Catalogue snapshot download failed, trying the local copy: {}", e.getMessage());
+            }
+            CatalogueSnapshot snapshot = store.read();
+            if (snapshot == null) {
+                logger.info("No usable catalogue snapshot; read models will load from the database");
+                return;
+            }
+            if (snapshot.writtenAt().isBefore(Instant.now().minus(maxAge))) {
+                logger.info("Catalogue snapshot from {} is too old to serve", snapshot.writtenAt());
+                return;
+            }
+            priceService.warm(snapshot);
+            lookupService.warm(snapshot);
+            facetService.warm(snapshot);
+            categoryTreeService.warm(snapshot);
+            logger.info("Warmed from catalogue snapshot of {}: {} products, {} variants in {} ms",
+                    snapshot.writtenAt(), snapshot.products().size(), snapshot.variants().size(),
+                    System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            // never block startup; the read models load from the database as before
+            logger.warn("Catalogue warmup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalogue.snapshot.interval-ms:900000}",
+               initialDelayString = "${app.catalogue.snapshot.initial-delay-ms:300000}")
+    public void writeSnapshot() {
+        if (!enabled) return;
+        // slightly shorter than the interval, so the next run of some instance finds it expired
+        Boolean first = redis.opsForValue().setIfAbsent(WRITE_KEY,
+                String.valueOf(ProcessHandle.current().pid()), interval.multipliedBy(9).dividedBy(10));
+        if (!Boolean.TRUE.equals(first)) return;
+        try {
+            long started = System.currentTimeMillis();
+            CatalogueSnapshot snapshot = loader.load();
+            store.write(snapshot);
+            logger.info("Catalogue snapshot written: {} products, {} variants in {} ms",
+                    snapshot.products().size(), snapshot.variants().size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            // let another instance try on its next run
+            redis.delete(WRITE_KEY);
+            logger.warn("Catalogue snapshot write failed: {}", e.getMessage());
+        }
+    }
+}
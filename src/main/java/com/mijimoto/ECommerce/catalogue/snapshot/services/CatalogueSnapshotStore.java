@@ -0,0 +1,296 @@
+package com.mijimoto.ECommerce.catalogue.snapshot.services;
+
+import com.mijimoto.ECommerce.catalogue.snapshot.models.CatalogueSnapshot;
+import com.mijimoto.ECommerce.common.storage.services.StorageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary file form of a {@link CatalogueSnapshot}, on local disk and in object storage.
+ *
+ * The file is uncompressed so it can be memory-mapped and decoded straight from the page
+ * cache. Format: magic, version, written-at millis, then each list as a count followed by its
+ * records (ints, longs, length-prefixed UTF-8 strings, decimals as scale + unscaled long), and
+ * a CRC32 of everything before it, so a truncated upload or download is rejected rather than
+ * half-loaded.
+ */
+@Component
+public class CatalogueSnapshotStore {
+
+    private static final int MAGIC = 0x43415453; // "CATS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    private final StorageService storageService;
+    private final Path path;
+    private final String storageKey;
+
+    public CatalogueSnapshotStore(StorageService storageService,
+                                  @Value("${app.catalogue.snapshot.path:./data/catalogue.snapshot}") String path,
+                                  @Value("${app.catalogue.snapshot.storage-key:snapshots/catalogue.snapshot}") String storageKey) {
+        this.storageService = storageService;
+        this.path = Paths.get(path);
+        this.storageKey = storageKey;
+    }
+
+    /**
+     * Writes to a temporary file, renames it over the previous snapshot and uploads it.
+     */
+    public void write(CatalogueSnapshot snapshot) throws Exception {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream file = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         new CheckedOutputStream(file, crc), 64 * 1024))) {
+                encode(snapshot, out);
+                out.flush();
+                // the checksum itself is written past the checked stream
+                new DataOutputStream(file).writeLong(crc.getValue());
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            storageService.putObject(storageKey, in, Files.size(path), "application/octet-stream");
+        }
+    }
+
+    /**
+     * Replaces the local file with the copy in object storage, if there is one. The copy is
+     * checked before the move, so a truncated or corrupt download never replaces a good file.
+     *
+     * @return false if storage has no snapshot
+     * @throws IOException if the stored copy fails its checksum or is in another format
+     */
+    public boolean download() throws Exception {
+        Optional<InputStream> stored = storageService.openObject(storageKey);
+        if (stored.isEmpty()) return false;
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream in = stored.get()) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (!isValid(tmp)) throw new IOException("Stored snapshot " + storageKey + " is corrupt or in another format");
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return true;
+    }
+
+    /**
+     * Maps the local file and decodes it.
+     *
+     * @return the snapshot, or null if there is none, it was written in another format or it is corrupt
+     */
+    public CatalogueSnapshot read() throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = checkedBody(channel);
+            return buf != null ? decode(buf) : null;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isValid(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return checkedBody(channel) != null;
+        }
+    }
+
+    /**
+     * Maps the file and checks its CRC, magic and format version.
+     *
+     * @return the records after the header, or null if the file fails any check
+     */
+    private static ByteBuffer checkedBody(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < 24 || size > Integer.MAX_VALUE) return null;
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().limit((int) size - 8));
+        if (buf.getLong((int) size - 8) != crc.getValue()) return null;
+        buf.limit((int) size - 8);
+        if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) return null;
+        return buf;
+    }
+
+    private static void encode(CatalogueSnapshot s, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(s.writtenAt().toEpochMilli());
+        out.writeInt(s.products().size());
+        for (CatalogueSnapshot.Product p : s.products()) {
+            out.writeInt(p.id());
+            writeNullableInt(out, p.categoryId());
+            writeString(out, p.slug());
+            writeString(out, p.sku());
+            writeDecimal(out, p.price());
+        }
+        out.writeInt(s.variants().size());
+        for (CatalogueSnapshot.Variant v : s.variants()) {
+            out.writeInt(v.id());
+            out.writeInt(v.productId());
+            writeString(out, v.sku());
+            writeDecimal(out, v.price());
+            out.writeBoolean(v.active());
+        }
+        out.writeInt(s.priceRules().size());
+        for (CatalogueSnapshot.PriceRule r : s.priceRules()) {
+            out.writeInt(r.variantId());
+            writeString(out, r.group());
+            writeDecimal(out, r.price());
+            out.writeLong(r.startsAt());
+            out.writeLong(r.endsAt());
+        }
+        out.writeInt(s.categories().size());
+        for (CatalogueSnapshot.Category c : s.categories()) {
+            out.writeInt(c.id());
+            writeNullableInt(out, c.parentId());
+            writeString(out, c.name());
+            writeString(out, c.slug());
+            out.writeInt(c.sortOrder());
+            out.writeLong(c.productCount());
+        }
+        out.writeInt(s.attributes().size());
+        for (CatalogueSnapshot.Attribute a : s.attributes()) {
+            out.writeInt(a.id());
+            writeString(out, a.code());
+            writeString(out, a.name());
+        }
+        out.writeInt(s.attributeOptions().size());
+        for (CatalogueSnapshot.AttributeOption o : s.attributeOptions()) {
+            out.writeInt(o.id());
+            out.writeInt(o.attributeId());
+            writeString(out, o.value());
+            out.writeInt(o.sortOrder());
+        }
+        out.writeInt(s.productOptions().size());
+        for (CatalogueSnapshot.ProductOption po : s.productOptions()) {
+            out.writeInt(po.productId());
+            out.writeInt(po.optionId());
+        }
+    }
+
+    private static CatalogueSnapshot decode(ByteBuffer buf) {
+        Instant writtenAt = Instant.ofEpochMilli(buf.getLong());
+        int n = count(buf);
+        List<CatalogueSnapshot.Product> products = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            products.add(new CatalogueSnapshot.Product(buf.getInt(), readNullableInt(buf), readString(buf),
+                    readString(buf), readDecimal(buf)));
+        }
+        n = count(buf);
+        List<CatalogueSnapshot.Variant> variants = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            variants.add(new CatalogueSnapshot.Variant(buf.getInt(), buf.getInt(), readString(buf),
+                    readDecimal(buf), buf.get() != 0));
+        }
+        n = count(buf);
+        List<CatalogueSnapshot.PriceRule> rules = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rules.add(new CatalogueSnapshot.PriceRule(buf.getInt(), readString(buf), readDecimal(buf),
+                    buf.getLong(), buf.getLong()));
+        }
+        n = count(buf);
+        List<CatalogueSnapshot.Category> categories = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            categories.add(new CatalogueSnapshot.Category(buf.getInt(), readNullableInt(buf), readString(buf),
+                    readString(buf), buf.getInt(), buf.getLong()));
+        }
+        n = count(buf);
+        List<CatalogueSnapshot.Attribute> attributes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            attributes.add(new CatalogueSnapshot.Attribute(buf.getInt(), readString(buf), readString(buf)));
+        }
+        n = count(buf);
+        List<CatalogueSnapshot.AttributeOption> options = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            options.add(new CatalogueSnapshot.AttributeOption(buf.getInt(), buf.getInt(), readString(buf), buf.getInt()));
+        }
+        n = count(buf);
+        List<CatalogueSnapshot.ProductOption> productOptions = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            productOptions.add(new CatalogueSnapshot.ProductOption(buf.getInt(), buf.getInt()));
+        }
+        return new CatalogueSnapshot(writtenAt, products, variants, rules, categories, attributes, options, productOptions);
+    }
+
+    private static int count(ByteBuffer buf) {
+        int n = buf.getInt();
+        // every record takes at least 4 bytes; a larger count means a damaged file
+        if (n < 0 || n > buf.remaining() / 4) throw new IllegalArgumentException("bad record count " + n);
+        return n;
+    }
+
+    private static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeInt(value != null ? value : NULL_INT);
+    }
+
+    private static Integer readNullableInt(ByteBuffer buf) {
+        int value = buf.getInt();
+        return value == NULL_INT ? null : value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length == NULL_LENGTH) return null;
+        if (length < 0 || length > buf.remaining()) throw new IllegalArgumentException("bad string length " + length);
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        // money columns fit an unscaled long; NULL_INT as the scale marks null
+        out.writeInt(value != null ? value.scale() : NULL_INT);
+        out.writeLong(value != null ? value.unscaledValue().longValueExact() : 0);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buf) {
+        int scale = buf.getInt();
+        long unscaled = buf.getLong();
+        return scale == NULL_INT ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+}
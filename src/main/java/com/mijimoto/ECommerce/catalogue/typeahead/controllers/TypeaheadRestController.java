@@ -0,0 +1,46 @@
+package com.mijimoto.ECommerce.catalogue.typeahead.controllers;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.catalogue.typeahead.dto.TypeaheadResultDTO;
+import com.mijimoto.ECommerce.catalogue.typeahead.services.TypeaheadService;
+
+/**
+ * Storefront search-box suggestions
+ */
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping(value = "/api/v1/autocomplete", produces = MediaType.APPLICATION_JSON_VALUE)
+public class TypeaheadRestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TypeaheadRestController.class);
+
+    private final TypeaheadService service;
+
+    public TypeaheadRestController(TypeaheadService service) {
+        this.service = service;
+    }
+
+    /**
+     * GET suggestions for what has been typed so far
+     *
+     * @param q     prefix of a product name, word in it, or SKU
+     * @param limit per group, capped by app.typeahead.top-k
+     * @return categories and products, most popular first
+     */
+    @GetMapping
+    public ResponseEntity<TypeaheadResultDTO> suggest(@RequestParam("q") String q,
+                                                      @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        logger.trace("GET - autocomplete: q={}", q);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic())
+                .body(service.suggest(q, limit));
+    }
+}
@@ -0,0 +1,33 @@
+package com.mijimoto.ECommerce.catalogue.typeahead.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Suggestions for one keystroke, best first.
+ */
+@Data
+@NoArgsConstructor
+public class TypeaheadResultDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String query;
+    private List<Item> categories = new ArrayList<>();
+    private List<Item> products = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String label;
+        private String slug;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mijimoto.ECommerce.catalogue.typeahead.models;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Something the typeahead can offer, with the normalised keys it is found under.
+ *
+ * @param keys  normalised prefixes-to-be: the full label, each later word onwards, SKUs
+ * @param score popularity; higher ranks first
+ */
+public record Suggestion(Type type, int id, String label, String slug, double score, List<String> keys) {
+
+    public enum Type { PRODUCT, CATEGORY }
+
+    /** best first: score, then shorter label, then id for a stable order */
+    public static final Comparator<Suggestion> RANKING = Comparator.comparingDouble(Suggestion::score).reversed()
+            .thenComparingInt(s -> s.label() == null ? Integer.MAX_VALUE : s.label().length())
+            .thenComparingInt(Suggestion::id);
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MAX_WORD_KEYS = 8;
+
+    /**
+     * Builds the keys for a label: "Blue Cotton Shirt" is found by "blu", "cott" and "shi".
+     */
+    public static List<String> keysFor(String label, List<String> skus) {
+        Set<String> keys = new LinkedHashSet<>();
+        String normalized = normalize(label);
+        if (!normalized.isEmpty()) {
+            keys.add(normalized);
+            int from = 0;
+            for (int words = 1; words < MAX_WORD_KEYS; words++) {
+                int space = normalized.indexOf(' ', from);
+                if (space < 0) break;
+                from = space + 1;
+                keys.add(normalized.substring(from));
+            }
+        }
+        for (String sku : skus) {
+            String s = normalize(sku);
+            if (!s.isEmpty()) keys.add(s);
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Lower case, accents stripped, punctuation collapsed to single spaces.
+     */
+    public static String normalize(String s) {
+        if (s == null) return "";
+        String decomposed = MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFKD)).replaceAll("");
+        return NON_WORD.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,233 @@
+package com.mijimoto.ECommerce.catalogue.typeahead.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Radix (path-compressed) trie over normalised keys where every node caches the top K
+ * suggestions of its subtree, so a lookup costs one walk down the prefix and no ranking.
+ *
+ * An insert offers the suggestion to each cache on its paths. A removal recomputes, bottom-up,
+ * only the caches on its paths that held it, from the node's own suggestions and its
+ * children's caches. Emptied nodes are left in place until the trie is rebuilt.
+ * {@link #build} fills all caches in one post-order pass instead.
+ *
+ * Not thread-safe; {@code TypeaheadService} guards access.
+ */
+public final class SuggestionTrie {
+
+    private static final Suggestion[] NONE = new Suggestion[0];
+
+    private static final class Node {
+        String edge;
+        char[] firsts = new char[0];
+        Node[] children = new Node[0];
+        List<Suggestion> terminals;
+        Suggestion[] top = NONE;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(firsts, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        void putChild(Node n) {
+            char c = n.edge.charAt(0);
+            int i = Arrays.binarySearch(firsts, c);
+            if (i >= 0) {
+                children[i] = n;
+                return;
+            }
+            i = -i - 1;
+            char[] f = new char[firsts.length + 1];
+            Node[] ch = new Node[children.length + 1];
+            System.arraycopy(firsts, 0, f, 0, i);
+            System.arraycopy(children, 0, ch, 0, i);
+            f[i] = c;
+            ch[i] = n;
+            System.arraycopy(firsts, i, f, i + 1, firsts.length - i);
+            System.arraycopy(children, i, ch, i + 1, children.length - i);
+            firsts = f;
+            children = ch;
+        }
+    }
+
+    private final int k;
+    private final Node root = new Node("");
+    private int size;
+
+    public SuggestionTrie(int k) {
+        this.k = k;
+    }
+
+    /**
+     * @return number of suggestions indexed
+     */
+    public int size() {
+        return size;
+    }
+
+    public static SuggestionTrie build(int k, Iterable<Suggestion> suggestions) {
+        SuggestionTrie trie = new SuggestionTrie(k);
+        for (Suggestion s : suggestions) trie.insert(s);
+        trie.recomputeAll(trie.root);
+        return trie;
+    }
+
+    public void add(Suggestion s) {
+        for (List<Node> path : insert(s)) {
+            for (Node n : path) offer(n, s);
+        }
+    }
+
+    public void remove(Suggestion s) {
+        boolean found = false;
+        for (String key : s.keys()) {
+            List<Node> path = walkExact(key);
+            if (path == null) continue;
+            Node end = path.get(path.size() - 1);
+            if (end.terminals == null || !removeSame(end.terminals, s)) continue;
+            if (end.terminals.isEmpty()) end.terminals = null;
+            found = true;
+            for (int p = path.size() - 1; p >= 0; p--) {
+                Node n = path.get(p);
+                if (containsSame(Arrays.asList(n.top), s)) recompute(n);
+            }
+        }
+        if (found) size--;
+    }
+
+    /**
+     * @param prefix already normalised
+     * @return up to {@code limit} best suggestions whose keys start with the prefix
+     */
+    public List<Suggestion> lookup(String prefix, int limit) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node next = node.child(prefix.charAt(i));
+            if (next == null) return List.of();
+            String edge = next.edge;
+            int n = Math.min(edge.length(), prefix.length() - i);
+            if (!prefix.regionMatches(i, edge, 0, n)) return List.of();
+            i += n;
+            node = next;
+        }
+        Suggestion[] top = node.top;
+        return Arrays.asList(top).subList(0, Math.min(limit, top.length));
+    }
+
+    private List<List<Node>> insert(Suggestion s) {
+        List<List<Node>> paths = new ArrayList<>(s.keys().size());
+        for (String key : s.keys()) {
+            List<Node> path = walkCreating(key);
+            Node end = path.get(path.size() - 1);
+            if (end.terminals == null) end.terminals = new ArrayList<>(1);
+            end.terminals.add(s);
+            paths.add(path);
+        }
+        if (!paths.isEmpty()) size++;
+        return paths;
+    }
+
+    private List<Node> walkCreating(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node next = node.child(key.charAt(i));
+            if (next == null) {
+                next = new Node(key.substring(i));
+                node.putChild(next);
+                path.add(next);
+                return path;
+            }
+            String edge = next.edge;
+            int common = 0;
+            int max = Math.min(edge.length(), key.length() - i);
+            while (common < max && edge.charAt(common) == key.charAt(i + common)) common++;
+            if (common < edge.length()) {
+                // split: node -> mid(edge[0, common)) -> next(edge[common..])
+                Node mid = new Node(edge.substring(0, common));
+                next.edge = edge.substring(common);
+                mid.putChild(next);
+                mid.top = next.top;
+                node.putChild(mid);
+                next = mid;
+            }
+            i += common;
+            node = next;
+            path.add(node);
+        }
+        return path;
+    }
+
+    private List<Node> walkExact(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node next = node.child(key.charAt(i));
+            if (next == null || !key.startsWith(next.edge, i)) return null;
+            i += next.edge.length();
+            node = next;
+            path.add(node);
+        }
+        return path;
+    }
+
+    private void recomputeAll(Node n) {
+        for (Node c : n.children) recomputeAll(c);
+        recompute(n);
+    }
+
+    private void recompute(Node n) {
+        List<Suggestion> candidates = new ArrayList<>();
+        if (n.terminals != null) candidates.addAll(n.terminals);
+        for (Node c : n.children) candidates.addAll(Arrays.asList(c.top));
+        candidates.sort(Suggestion.RANKING);
+        List<Suggestion> top = new ArrayList<>(k);
+        for (Suggestion s : candidates) {
+            if (top.size() == k) break;
+            // one suggestion can sit under several keys of the same subtree
+            if (!containsSame(top, s)) top.add(s);
+        }
+        n.top = top.toArray(NONE);
+    }
+
+    private void offer(Node n, Suggestion s) {
+        Suggestion[] top = n.top;
+        if (containsSame(Arrays.asList(top), s)) return;
+        if (top.length == k && Suggestion.RANKING.compare(s, top[k - 1]) >= 0) return;
+        int pos = 0;
+        while (pos < top.length && Suggestion.RANKING.compare(top[pos], s) <= 0) pos++;
+        Suggestion[] next = new Suggestion[Math.min(k, top.length + 1)];
+        System.arraycopy(top, 0, next, 0, pos);
+        next[pos] = s;
+        System.arraycopy(top, pos, next, pos + 1, next.length - pos - 1);
+        n.top = next;
+    }
+
+    private static boolean removeSame(List<Suggestion> list, Suggestion s) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == s) {
+                list.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsSame(List<Suggestion> list, Suggestion s) {
+        for (Suggestion t : list) {
+            if (t == s) return true;
+        }
+        return false;
+    }
+}
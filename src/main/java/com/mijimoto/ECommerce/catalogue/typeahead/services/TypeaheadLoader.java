@@ -0,0 +1,106 @@
+package com.mijimoto.ECommerce.catalogue.typeahead.services;
+
+import com.mijimoto.ECommerce.catalogue.navigation.models.CategoryTree;
+import com.mijimoto.ECommerce.catalogue.navigation.services.CategoryTreeService;
+import com.mijimoto.ECommerce.catalogue.typeahead.models.Suggestion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns published products and categories into suggestions.
+ *
+ * Product popularity is units sold over a trailing window; category popularity is the
+ * number of published products beneath it.
+ */
+@Component
+public class TypeaheadLoader {
+
+    private static final String SQL_PRODUCTS =
+            "SELECT p.id, p.name, p.slug, p.sku, COALESCE(s.units, 0) AS units " +
+            "FROM products p LEFT JOIN (" +
+            "    SELECT v.product_id, SUM(oi.quantity) AS units FROM order_items oi " +
+            "    JOIN product_variants v ON v.id = oi.variant_id " +
+            "    JOIN orders o ON o.id = oi.order_id " +
+            "    WHERE o.created_at >= :since AND (o.status IS NULL OR o.status NOT IN (:excluded)) %s " +
+            "    GROUP BY v.product_id) s ON s.product_id = p.id " +
+            "WHERE p.is_published = 1 %s";
+
+    private static final String SQL_VARIANT_SKUS =
+            "SELECT v.product_id, v.sku FROM product_variants v JOIN products p ON p.id = v.product_id " +
+            "WHERE v.is_active = 1 AND p.is_published = 1 %s";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final CategoryTreeService categoryTreeService;
+    private final Duration popularityWindow;
+    private final List<String> excludedStatuses;
+
+    /**
+     * @param excludedStatuses order statuses that do not count as sales; the same list the
+     *                         bought-together counts use
+     */
+    public TypeaheadLoader(NamedParameterJdbcTemplate jdbc,
+                           CategoryTreeService categoryTreeService,
+                           @Value("${app.typeahead.popularity-window-days:90}") long popularityWindowDays,
+                           @Value("${app.catalogue.related.excluded-statuses:CANCELLED,CANCELED,FAILED,EXPIRED}") String excludedStatuses) {
+        this.jdbc = jdbc;
+        this.categoryTreeService = categoryTreeService;
+        this.popularityWindow = Duration.ofDays(popularityWindowDays);
+        this.excludedStatuses = Arrays.stream(excludedStatuses.split(","))
+                .map(s -> s.trim().toUpperCase(Locale.ROOT))
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    /**
+     * @param productIds restrict to these products; null for all published products
+     * @return suggestions keyed by product id; absent ids are unpublished or deleted
+     */
+    Map<Integer, Suggestion> loadProducts(Collection<Integer> productIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("since", Timestamp.from(Instant.now().minus(popularityWindow)))
+                .addValue("excluded", excludedStatuses.isEmpty() ? List.of("") : excludedStatuses);
+        if (productIds != null) params.addValue("ids", productIds);
+
+        Map<Integer, List<String>> skus = new HashMap<>();
+        jdbc.query(String.format(SQL_VARIANT_SKUS, productIds != null ? "AND v.product_id IN (:ids)" : ""), params, rs -> {
+            skus.computeIfAbsent(rs.getInt("product_id"), k -> new ArrayList<>()).add(rs.getString("sku"));
+        });
+
+        Map<Integer, Suggestion> out = new HashMap<>();
+        jdbc.query(String.format(SQL_PRODUCTS,
+                productIds != null ? "AND v.product_id IN (:ids)" : "",
+                productIds != null ? "AND p.id IN (:ids)" : ""), params, rs -> {
+            int id = rs.getInt("id");
+            String name = rs.getString("name");
+            List<String> codes = new ArrayList<>(skus.getOrDefault(id, List.of()));
+            String sku = rs.getString("sku");
+            if (sku != null) codes.add(sku);
+            out.put(id, new Suggestion(Suggestion.Type.PRODUCT, id, name, rs.getString("slug"),
+                    rs.getLong("units"), Suggestion.keysFor(name, codes)));
+        });
+        return out;
+    }
+
+    List<Suggestion> loadCategories() {
+        CategoryTree tree = categoryTreeService.getTree();
+        List<Suggestion> out = new ArrayList<>();
+        for (int id : tree.getIds()) {
+            String name = tree.getName(id);
+            out.add(new Suggestion(Suggestion.Type.CATEGORY, id, name, tree.getSlug(id),
+                    tree.getSubtreeProductCount(id), Suggestion.keysFor(name, List.of())));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,262 @@
+package com.mijimoto.ECommerce.catalogue.typeahead.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.navigation.services.CategoryTreeService;
+import com.mijimoto.ECommerce.catalogue.rest.services.ProductDetailService;
+import com.mijimoto.ECommerce.catalogue.typeahead.dto.TypeaheadResultDTO;
+import com.mijimoto.ECommerce.catalogue.typeahead.models.Suggestion;
+import com.mijimoto.ECommerce.catalogue.typeahead.models.SuggestionTrie;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix suggestions for the search box, from two {@link SuggestionTrie}s (products, categories).
+ *
+ * Startup serves the last disk snapshot, then a full build from the database replaces it.
+ * After that, committed product writes (this instance's events, and other instances' through
+ * the catalogue invalidation channel) are patched in by a scheduled refresh, the category
+ * trie follows the category tree, and a periodic full build refreshes popularity and the
+ * snapshot.
+ */
+@Service
+public class TypeaheadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TypeaheadService.class);
+
+    private static final int REFRESH_BATCH = 1000;
+
+    private final TypeaheadLoader loader;
+    private final TypeaheadSnapshotStore snapshotStore;
+    private final CatalogueChangeResolver resolver;
+    private final CategoryTreeService categoryTreeService;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int topK;
+    private final int minPrefixLength;
+    private final long rebuildIntervalMillis;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile SuggestionTrie products;
+    private volatile SuggestionTrie categories;
+    private Map<Integer, Suggestion> productsById = new HashMap<>();
+    private long categoryVersion = -1;
+    private long builtAtMillis;
+
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean(true);
+
+    public TypeaheadService(TypeaheadLoader loader,
+                            TypeaheadSnapshotStore snapshotStore,
+                            CatalogueChangeResolver resolver,
+                            CategoryTreeService categoryTreeService,
+                            RedisMessageListenerContainer listenerContainer,
+                            @Value("${app.typeahead.top-k:10}") int topK,
+                            @Value("${app.typeahead.min-prefix-length:1}") int minPrefixLength,
+                            @Value("${app.typeahead.rebuild-interval-ms:3600000}") long rebuildIntervalMillis) {
+        this.loader = loader;
+        this.snapshotStore = snapshotStore;
+        this.resolver = resolver;
+        this.categoryTreeService = categoryTreeService;
+        this.listenerContainer = listenerContainer;
+        this.topK = topK;
+        this.minPrefixLength = Math.max(1, minPrefixLength);
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this::onInvalidateMessage,
+                new ChannelTopic(ProductDetailService.CHANNEL_INVALIDATE));
+    }
+
+    @PostConstruct
+    public void loadSnapshot() {
+        try {
+            TypeaheadSnapshotStore.Snapshot snapshot = snapshotStore.read();
+            if (snapshot == null) return;
+            List<Suggestion> productList = new ArrayList<>();
+            List<Suggestion> categoryList = new ArrayList<>();
+            Map<Integer, Suggestion> byId = new HashMap<>();
+            for (Suggestion s : snapshot.suggestions()) {
+                if (s.type() == Suggestion.Type.PRODUCT) {
+                    productList.add(s);
+                    byId.put(s.id(), s);
+                } else {
+                    categoryList.add(s);
+                }
+            }
+            swap(SuggestionTrie.build(topK, productList), byId, SuggestionTrie.build(topK, categoryList), -1);
+            logger.info("Typeahead serving snapshot from {}: {} products, {} categories",
+                    snapshot.writtenAt(), productList.size(), categoryList.size());
+        } catch (Exception e) {
+            logger.warn("Typeahead snapshot unreadable, waiting for the first build: {}", e.getMessage());
+        }
+    }
+
+    public TypeaheadResultDTO suggest(String q, int limit) {
+        String prefix = Suggestion.normalize(q);
+        TypeaheadResultDTO result = new TypeaheadResultDTO();
+        result.setQuery(prefix);
+        if (prefix.length() < minPrefixLength) return result;
+        int n = Math.max(1, Math.min(limit, topK));
+        lock.readLock().lock();
+        try {
+            if (products == null) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Typeahead index is still loading");
+            }
+            for (Suggestion s : categories.lookup(prefix, n)) result.getCategories().add(item(s));
+            for (Suggestion s : products.lookup(prefix, n)) result.getProducts().add(item(s));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        // category changes reach the category trie through the category tree version
+        CatalogueChangeResolver.Target target = resolver.resolve(event);
+        if (!target.all() && target.productId() != null) dirty.add(target.productId());
+    }
+
+    @Scheduled(fixedDelayString = "${app.typeahead.refresh-interval-ms:1000}")
+    public void refresh() {
+        try {
+            boolean expired = System.currentTimeMillis() - builtAtMillis > rebuildIntervalMillis;
+            if (rebuildRequested.getAndSet(false) || expired) {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    rebuildRequested.set(true);
+                    throw e;
+                }
+                return;
+            }
+            if (categoryTreeService.getTree().getVersion() != categoryVersion) refreshCategories();
+            while (!dirty.isEmpty()) applyDirty(drain(dirty, REFRESH_BATCH));
+        } catch (Exception e) {
+            logger.warn("Typeahead refresh failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        long started = System.currentTimeMillis();
+        // anything that changes from here on is replayed on top of the new tries
+        dirty.clear();
+        long version = categoryTreeService.getTree().getVersion();
+        List<Suggestion> categoryList = loader.loadCategories();
+        Map<Integer, Suggestion> byId = loader.loadProducts(null);
+        swap(SuggestionTrie.build(topK, byId.values()), byId, SuggestionTrie.build(topK, categoryList), version);
+        builtAtMillis = System.currentTimeMillis();
+        logger.info("Typeahead built: {} products, {} categories in {} ms",
+                byId.size(), categoryList.size(), builtAtMillis - started);
+
+        List<Suggestion> all = new ArrayList<>(byId.size() + categoryList.size());
+        all.addAll(byId.values());
+        all.addAll(categoryList);
+        try {
+            snapshotStore.write(all);
+        } catch (Exception e) {
+            logger.warn("Could not write typeahead snapshot: {}", e.getMessage());
+        }
+    }
+
+    private void refreshCategories() {
+        long version = categoryTreeService.getTree().getVersion();
+        SuggestionTrie next = SuggestionTrie.build(topK, loader.loadCategories());
+        lock.writeLock().lock();
+        try {
+            categories = next;
+            categoryVersion = version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyDirty(List<Integer> ids) {
+        Map<Integer, Suggestion> rows;
+        try {
+            rows = loader.loadProducts(ids);
+        } catch (RuntimeException e) {
+            dirty.addAll(ids);
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Integer id : ids) {
+                Suggestion old = productsById.remove(id);
+                if (old != null) products.remove(old);
+                Suggestion fresh = rows.get(id);
+                if (fresh != null) {
+                    products.add(fresh);
+                    productsById.put(id, fresh);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void swap(SuggestionTrie productTrie, Map<Integer, Suggestion> byId, SuggestionTrie categoryTrie, long version) {
+        lock.writeLock().lock();
+        try {
+            products = productTrie;
+            productsById = byId;
+            categories = categoryTrie;
+            categoryVersion = version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // published by ProductDetailService on every instance's committed writes; "*" (everything
+    // changed) is served by the next scheduled refresh doing a full build
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "").trim();
+        if ("*".equals(body)) {
+            rebuildRequested.set(true);
+            return;
+        }
+        try {
+            dirty.add(Integer.parseInt(body));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed invalidation message: {}", body);
+        }
+    }
+
+    private static TypeaheadResultDTO.Item item(Suggestion s) {
+        return new TypeaheadResultDTO.Item(s.id(), s.label(), s.slug());
+    }
+
+    private static List<Integer> drain(Set<Integer> set, int max) {
+        List<Integer> batch = new ArrayList<>(Math.min(max, set.size()));
+        Iterator<Integer> it = set.iterator();
+        while (it.hasNext() && batch.size() < max) {
+            batch.add(it.next());
+            it.remove();
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,104 @@
+package com.mijimoto.ECommerce.catalogue.typeahead.services;
+
+import com.mijimoto.ECommerce.catalogue.typeahead.models.Suggestion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persists the suggestion set to local disk so a restarting instance can serve typeahead
+ * before it has re-read the catalogue. The trie itself is not stored: rebuilding it from
+ * the suggestions is cheap next to the database queries that produced them.
+ *
+ * Format (gzip): magic, version, written-at millis, count, then per suggestion
+ * type, id, label, slug, score, key count, keys.
+ */
+@Component
+public class TypeaheadSnapshotStore {
+
+    private static final int MAGIC = 0x54594844; // "TYHD"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * @param writtenAt when the data was read from the database
+     */
+    public record Snapshot(Instant writtenAt, List<Suggestion> suggestions) {}
+
+    private final Path path;
+
+    public TypeaheadSnapshotStore(@Value("${app.typeahead.snapshot-path:./data/typeahead.snapshot}") String path) {
+        this.path = Paths.get(path);
+    }
+
+    /**
+     * Writes to a temporary file and renames it over the previous snapshot.
+     */
+    public void write(Collection<Suggestion> suggestions) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(suggestions.size());
+                for (Suggestion s : suggestions) {
+                    out.writeByte(s.type().ordinal());
+                    out.writeInt(s.id());
+                    out.writeUTF(s.label() != null ? s.label() : "");
+                    out.writeUTF(s.slug() != null ? s.slug() : "");
+                    out.writeDouble(s.score());
+                    out.writeShort(s.keys().size());
+                    for (String k : s.keys()) out.writeUTF(k);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @return the snapshot, or null if there is none or it was written in another format
+     */
+    public Snapshot read() throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path), 64 * 1024)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            Instant writtenAt = Instant.ofEpochMilli(in.readLong());
+            int count = in.readInt();
+            Suggestion.Type[] types = Suggestion.Type.values();
+            List<Suggestion> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Suggestion.Type type = types[in.readByte()];
+                int id = in.readInt();
+                String label = in.readUTF();
+                String slug = in.readUTF();
+                double score = in.readDouble();
+                int keyCount = in.readShort();
+                List<String> keys = new ArrayList<>(keyCount);
+                for (int k = 0; k < keyCount; k++) keys.add(in.readUTF());
+                suggestions.add(new Suggestion(type, id, label, slug, score, keys));
+            }
+            return new Snapshot(writtenAt, suggestions);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.mijimoto.ECommerce.catalogue.variants.controllers;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.catalogue.variants.dto.VariantSelectionDTO;
+import com.mijimoto.ECommerce.catalogue.variants.services.VariantResolverService;
+
+/**
+ * Storefront variant picker
+ */
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping(value = "/api/v1/products", produces = MediaType.APPLICATION_JSON_VALUE)
+public class VariantResolverRestController {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantResolverRestController.class);
+
+    private final VariantResolverService service;
+
+    public VariantResolverRestController(VariantResolverService service) {
+        this.service = service;
+    }
+
+    /**
+     * GET option states for a selection, and the variant once it is complete
+     *
+     * @param id
+     * @param value repeated option value ids selected so far
+     * @return picker state, 404 if the product is not found / not published
+     */
+    @GetMapping("/{id}/variants/resolve")
+    public ResponseEntity<VariantSelectionDTO> resolve(@PathVariable Integer id,
+                                                       @RequestParam(value = "value", required = false) List<Integer> value) {
+        logger.debug("GET - resolve variant: product={}, values={}", id, value);
+        return ResponseEntity.ok(service.resolve(id, value));
+    }
+}
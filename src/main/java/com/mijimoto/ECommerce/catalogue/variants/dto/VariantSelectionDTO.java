@@ -0,0 +1,73 @@
+package com.mijimoto.ECommerce.catalogue.variants.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of the option pickers for a (possibly partial) selection.
+ */
+@Data
+@NoArgsConstructor
+public class VariantSelectionDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum ValueState {
+        /** selectable and at least one matching variant can be bought */
+        AVAILABLE,
+        /** matching variants exist but none is in stock */
+        OUT_OF_STOCK,
+        /** no active variant combines this value with the rest of the selection */
+        UNAVAILABLE,
+        /** its parent value is not selected */
+        LOCKED
+    }
+
+    private Integer productId;
+    /** the selection including implied parent values */
+    private List<Integer> selectedValueIds = new ArrayList<>();
+    /** every option group has a selection */
+    private boolean complete;
+    /** the variant for a complete selection, else null */
+    private Variant variant;
+    private List<Group> groups = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Group implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String name;
+        private boolean required;
+        private Integer selectedValueId;
+        private List<Value> values = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Value implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String value;
+        private String code;
+        private Integer parentValueId;
+        private boolean selected;
+        private ValueState state;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Variant implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Integer id;
+        private String sku;
+        private BigDecimal price;
+        private boolean available;
+        private String hash;
+    }
+}
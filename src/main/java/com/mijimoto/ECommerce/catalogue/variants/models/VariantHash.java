@@ -0,0 +1,69 @@
+package com.mijimoto.ECommerce.catalogue.variants.models;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Canonical key of an option-value combination, stored in {@code product_variants.variant_hash}.
+ *
+ * The value ids are sorted and de-duplicated, so selection order never matters:
+ * {12, 7, 40} and {40, 12, 7} both give "v1:7-12-40". Keys that would not fit the
+ * column are replaced by a SHA-256 of the same text.
+ *
+ * A variant is hashed over its values plus their ancestors ({@link #ofClosure}), so the
+ * import and the resolver must both go through that method to agree on the key.
+ */
+public final class VariantHash {
+
+    private static final String PREFIX = "v1:";
+    private static final int MAX_LENGTH = 200;
+
+    /** longest parent chain followed; a corrupt chain must not hang a request */
+    public static final int MAX_PARENT_DEPTH = 16;
+
+    private VariantHash() {
+    }
+
+    /**
+     * @param parentOf parent value id of a value, or null for a root or an unknown value
+     */
+    public static String ofClosure(Collection<Integer> valueIds, Function<Integer, Integer> parentOf) {
+        return of(closure(valueIds, parentOf));
+    }
+
+    /**
+     * @return the values plus all their ancestors
+     */
+    public static Set<Integer> closure(Collection<Integer> valueIds, Function<Integer, Integer> parentOf) {
+        Set<Integer> out = new LinkedHashSet<>();
+        for (Integer id : valueIds) {
+            Integer current = id;
+            for (int depth = 0; current != null && depth < MAX_PARENT_DEPTH && out.add(current); depth++) {
+                current = parentOf.apply(current);
+            }
+        }
+        return out;
+    }
+
+    public static String of(Collection<Integer> valueIds) {
+        String key = PREFIX + valueIds.stream()
+                .distinct()
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining("-"));
+        if (key.length() <= MAX_LENGTH) return key;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.US_ASCII));
+            return PREFIX + "sha256:" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.mijimoto.ECommerce.catalogue.variants.services;
+
+import com.mijimoto.ECommerce.catalogue.variants.dto.VariantSelectionDTO;
+import com.mijimoto.ECommerce.catalogue.variants.models.VariantHash;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Option-value combinations of one product's variants, immutable once built.
+ *
+ * Every value holds a bitset of the active variants that carry it, so narrowing a selection
+ * is a handful of ANDs over a few words. A value's state is computed against the selection
+ * in the other groups only, so the current pick in a group never greys out its alternatives.
+ * Variants are keyed by {@link VariantHash} of their values plus the values' ancestors,
+ * which is also what a complete selection hashes to.
+ */
+class VariantMatrix {
+
+    record GroupRow(int id, String name, boolean required) {}
+
+    record ValueRow(int id, int groupId, String value, String code, Integer parentValueId) {}
+
+    record VariantRow(int id, String sku, BigDecimal price, boolean available, List<Integer> valueIds) {}
+
+    private final int productId;
+    private final List<GroupRow> groups;
+    private final Map<Integer, Integer> groupIndex = new HashMap<>();
+    private final Map<Integer, ValueRow> values = new HashMap<>();
+    private final List<List<ValueRow>> valuesByGroup = new ArrayList<>();
+    private final List<VariantRow> variants;
+    private final Map<Integer, BitSet> variantsByValue = new HashMap<>();
+    private final BitSet active = new BitSet();
+    private final BitSet available = new BitSet();
+    private final Map<String, Integer> variantByHash = new HashMap<>();
+    private final List<String> conflicts = new ArrayList<>();
+
+    /**
+     * @param groups    in display order
+     * @param values    in display order; must include the ancestors of every value used
+     * @param variants  active variants only
+     */
+    VariantMatrix(int productId, List<GroupRow> groups, List<ValueRow> values, List<VariantRow> variants) {
+        this.productId = productId;
+        this.groups = groups;
+        this.variants = variants;
+        for (GroupRow g : groups) {
+            groupIndex.put(g.id(), valuesByGroup.size());
+            valuesByGroup.add(new ArrayList<>());
+        }
+        for (ValueRow v : values) {
+            this.values.put(v.id(), v);
+            Integer g = groupIndex.get(v.groupId());
+            if (g != null) valuesByGroup.get(g).add(v);
+        }
+        for (int i = 0; i < variants.size(); i++) {
+            VariantRow row = variants.get(i);
+            Set<Integer> closure = closure(row.valueIds());
+            for (Integer valueId : closure) variantsByValue.computeIfAbsent(valueId, k -> new BitSet()).set(i);
+            active.set(i);
+            if (row.available()) available.set(i);
+            String hash = VariantHash.of(closure);
+            Integer previous = variantByHash.putIfAbsent(hash, i);
+            if (previous != null) {
+                conflicts.add(String.format("variants %d and %d share combination %s",
+                        variants.get(previous).id(), row.id(), hash));
+            }
+        }
+    }
+
+    int getProductId() {
+        return productId;
+    }
+
+    /**
+     * @return active variants with the same combination; only the lowest id resolves
+     */
+    List<String> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @param selectedValueIds any subset of option values; parents are implied
+     * @throws IllegalArgumentException for unknown values or two values of one group
+     */
+    VariantSelectionDTO resolve(Collection<Integer> selectedValueIds) {
+        Set<Integer> selection = closure(selectedValueIds);
+        Map<Integer, Integer> selectedByGroup = new HashMap<>();
+        for (Integer valueId : selection) {
+            ValueRow v = values.get(valueId);
+            if (v == null || !groupIndex.containsKey(v.groupId())) {
+                throw new IllegalArgumentException("Option value " + valueId + " does not belong to product " + productId);
+            }
+            Integer other = selectedByGroup.put(v.groupId(), valueId);
+            if (other != null && !other.equals(valueId)) {
+                throw new IllegalArgumentException("Option values " + other + " and " + valueId + " are in the same group");
+            }
+        }
+
+        VariantSelectionDTO dto = new VariantSelectionDTO();
+        dto.setProductId(productId);
+        dto.getSelectedValueIds().addAll(selection);
+
+        for (int g = 0; g < groups.size(); g++) {
+            GroupRow group = groups.get(g);
+            // variants matching the selection in every other group
+            BitSet others = (BitSet) active.clone();
+            for (Map.Entry<Integer, Integer> e : selectedByGroup.entrySet()) {
+                if (e.getKey() != group.id()) others.and(bits(e.getValue()));
+            }
+            VariantSelectionDTO.Group out = new VariantSelectionDTO.Group();
+            out.setId(group.id());
+            out.setName(group.name());
+            out.setRequired(group.required());
+            out.setSelectedValueId(selectedByGroup.get(group.id()));
+            for (ValueRow v : valuesByGroup.get(g)) {
+                VariantSelectionDTO.Value value = new VariantSelectionDTO.Value();
+                value.setId(v.id());
+                value.setValue(v.value());
+                value.setCode(v.code());
+                value.setParentValueId(v.parentValueId());
+                value.setSelected(selection.contains(v.id()));
+                value.setState(state(v, selection, others));
+                out.getValues().add(value);
+            }
+            dto.getGroups().add(out);
+        }
+
+        dto.setComplete(selectedByGroup.size() == groups.size());
+        // the key a variant is stored under, so it is also the matched variant's canonical hash
+        String hash = VariantHash.of(selection);
+        Integer match = variantByHash.get(hash);
+        if (match != null) {
+            VariantRow row = variants.get(match);
+            VariantSelectionDTO.Variant variant = new VariantSelectionDTO.Variant();
+            variant.setId(row.id());
+            variant.setSku(row.sku());
+            variant.setPrice(row.price());
+            variant.setAvailable(row.available());
+            variant.setHash(hash);
+            dto.setVariant(variant);
+        }
+        return dto;
+    }
+
+    private VariantSelectionDTO.ValueState state(ValueRow v, Set<Integer> selection, BitSet others) {
+        if (v.parentValueId() != null && !selection.contains(v.parentValueId())) {
+            return VariantSelectionDTO.ValueState.LOCKED;
+        }
+        BitSet matching = (BitSet) others.clone();
+        matching.and(bits(v.id()));
+        if (matching.isEmpty()) return VariantSelectionDTO.ValueState.UNAVAILABLE;
+        return matching.intersects(available)
+                ? VariantSelectionDTO.ValueState.AVAILABLE
+                : VariantSelectionDTO.ValueState.OUT_OF_STOCK;
+    }
+
+    private BitSet bits(int valueId) {
+        BitSet b = variantsByValue.get(valueId);
+        return b != null ? b : new BitSet();
+    }
+
+    /**
+     * @return the values plus all their ancestors
+     */
+    private Set<Integer> closure(Collection<Integer> valueIds) {
+        return VariantHash.closure(valueIds, id -> {
+            ValueRow row = values.get(id);
+            return row != null ? row.parentValueId() : null;
+        });
+    }
+}
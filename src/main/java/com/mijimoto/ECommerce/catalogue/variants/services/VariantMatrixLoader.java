@@ -0,0 +1,140 @@
+package com.mijimoto.ECommerce.catalogue.variants.services;
+
+import com.mijimoto.ECommerce.catalogue.variants.models.VariantHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads one product's option groups, values and active variants. Read-only: the stored
+ * {@code product_variants.variant_hash} is written by the catalogue import.
+ */
+@Component
+public class VariantMatrixLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantMatrixLoader.class);
+
+    private static final String SQL_PUBLISHED =
+            "SELECT COUNT(*) FROM products WHERE id = :id AND is_published = 1";
+
+    // sellable = on hand minus reserved across warehouses, or backorder allowed
+    private static final String SQL_VARIANTS =
+            "SELECT v.id, v.sku, COALESCE(v.price_override, p.price) AS price, v.allow_backorder, " +
+            "       COALESCE(s.sellable, 0) AS sellable " +
+            "FROM product_variants v JOIN products p ON p.id = v.product_id " +
+            "LEFT JOIN (SELECT variant_id, SUM(quantity_on_hand - reserved_quantity) AS sellable " +
+            "           FROM inventory_levels GROUP BY variant_id) s ON s.variant_id = v.id " +
+            "WHERE v.product_id = :id AND v.is_active = 1 ORDER BY v.id";
+
+    private static final String SQL_VARIANT_VALUES =
+            "SELECT pvv.variant_id, pvv.value_id FROM product_variant_values pvv " +
+            "JOIN product_variants v ON v.id = pvv.variant_id WHERE v.product_id = :id AND v.is_active = 1";
+
+    private static final String VALUE_COLUMNS =
+            "SELECT ov.id, ov.group_id, ov.value, ov.code, ov.parent_value_id, ov.position FROM variant_option_values ov ";
+
+    // every value of the product's own groups; shared groups contribute only the values its variants use
+    private static final String SQL_VALUES =
+            VALUE_COLUMNS + "JOIN variant_option_groups g ON g.id = ov.group_id WHERE g.product_id = :id " +
+            "UNION " +
+            VALUE_COLUMNS + "JOIN product_variant_values pvv ON pvv.value_id = ov.id " +
+            "JOIN product_variants v ON v.id = pvv.variant_id WHERE v.product_id = :id AND v.is_active = 1";
+
+    private static final String SQL_VALUES_BY_ID = VALUE_COLUMNS + "WHERE ov.id IN (:ids)";
+
+    private static final String SQL_GROUPS =
+            "SELECT id, name, is_required, position FROM variant_option_groups " +
+            "WHERE product_id = :id OR id IN (:groupIds)";
+
+    private record PositionedValue(VariantMatrix.ValueRow row, int position) {}
+
+    private record PositionedGroup(VariantMatrix.GroupRow row, int position) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public VariantMatrixLoader(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * @return null if the product does not exist or is not published
+     */
+    VariantMatrix load(int productId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("id", productId);
+        Integer published = jdbc.queryForObject(SQL_PUBLISHED, params, Integer.class);
+        if (published == null || published == 0) return null;
+
+        Map<Integer, List<Integer>> valuesByVariant = new HashMap<>();
+        jdbc.query(SQL_VARIANT_VALUES, params, rs -> {
+            valuesByVariant.computeIfAbsent(rs.getInt("variant_id"), k -> new ArrayList<>()).add(rs.getInt("value_id"));
+        });
+        List<VariantMatrix.VariantRow> variants = jdbc.query(SQL_VARIANTS, params, (rs, i) -> {
+            int id = rs.getInt("id");
+            BigDecimal sellable = rs.getBigDecimal("sellable");
+            boolean available = rs.getBoolean("allow_backorder") || (sellable != null && sellable.signum() > 0);
+            return new VariantMatrix.VariantRow(id, rs.getString("sku"), rs.getBigDecimal("price"), available,
+                    valuesByVariant.getOrDefault(id, List.of()));
+        });
+
+        Map<Integer, PositionedValue> values = new LinkedHashMap<>();
+        jdbc.query(SQL_VALUES, params, rs -> {
+            PositionedValue v = mapValue(rs);
+            values.put(v.row().id(), v);
+        });
+        // parents may sit in groups the variants never reference directly
+        Set<Integer> requested = new HashSet<>();
+        for (int depth = 0; depth < VariantHash.MAX_PARENT_DEPTH; depth++) {
+            Set<Integer> missing = new HashSet<>();
+            for (PositionedValue v : values.values()) {
+                Integer parent = v.row().parentValueId();
+                if (parent != null && !values.containsKey(parent) && requested.add(parent)) missing.add(parent);
+            }
+            if (missing.isEmpty()) break;
+            jdbc.query(SQL_VALUES_BY_ID, new MapSqlParameterSource("ids", missing), rs -> {
+                PositionedValue v = mapValue(rs);
+                values.put(v.row().id(), v);
+            });
+        }
+
+        Set<Integer> groupIds = new HashSet<>();
+        for (PositionedValue v : values.values()) groupIds.add(v.row().groupId());
+        groupIds.add(-1); // keeps IN () valid for products without values
+        List<PositionedGroup> groups = jdbc.query(SQL_GROUPS,
+                new MapSqlParameterSource("id", productId).addValue("groupIds", groupIds),
+                (rs, i) -> new PositionedGroup(new VariantMatrix.GroupRow(rs.getInt("id"), rs.getString("name"),
+                        rs.getBoolean("is_required")), rs.getInt("position")));
+        groups.sort(Comparator.comparingInt(PositionedGroup::position).thenComparingInt(g -> g.row().id()));
+        List<PositionedValue> orderedValues = new ArrayList<>(values.values());
+        orderedValues.sort(Comparator.comparingInt(PositionedValue::position).thenComparingInt(v -> v.row().id()));
+
+        VariantMatrix matrix = new VariantMatrix(productId,
+                groups.stream().map(PositionedGroup::row).toList(),
+                orderedValues.stream().map(PositionedValue::row).toList(),
+                variants);
+        for (String conflict : matrix.getConflicts()) {
+            logger.warn("Product {}: {}", productId, conflict);
+        }
+        return matrix;
+    }
+
+    private static PositionedValue mapValue(ResultSet rs) throws SQLException {
+        int parent = rs.getInt("parent_value_id");
+        Integer parentId = rs.wasNull() ? null : parent;
+        return new PositionedValue(new VariantMatrix.ValueRow(rs.getInt("id"), rs.getInt("group_id"),
+                rs.getString("value"), rs.getString("code"), parentId), rs.getInt("position"));
+    }
+}
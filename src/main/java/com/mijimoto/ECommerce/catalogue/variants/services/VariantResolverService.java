@@ -0,0 +1,174 @@
+package com.mijimoto.ECommerce.catalogue.variants.services;
+
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeResolver;
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangedEvent;
+import com.mijimoto.ECommerce.catalogue.rest.services.ProductDetailService;
+import com.mijimoto.ECommerce.catalogue.variants.dto.VariantSelectionDTO;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves option selections to variants from a per-product {@link VariantMatrix}.
+ *
+ * Matrices live in a local LRU. They are evicted by committed catalogue writes and by the
+ * product invalidation channel other instances publish on; stock is not an event source,
+ * so entries also expire after a short TTL. Concurrent misses for one product share a load.
+ */
+@Service
+public class VariantResolverService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantResolverService.class);
+
+    private record Entry(VariantMatrix matrix, long loadedAtNanos) {}
+
+    private final VariantMatrixLoader loader;
+    private final CatalogueChangeResolver resolver;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<Integer, Entry> cache = new LinkedHashMap<>(1024, 0.75f, true);
+    private final ConcurrentHashMap<Integer, CompletableFuture<VariantMatrix>> inFlight = new ConcurrentHashMap<>();
+    // bumped on every invalidation; loads started before a bump are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public VariantResolverService(VariantMatrixLoader loader,
+                                  CatalogueChangeResolver resolver,
+                                  RedisMessageListenerContainer listenerContainer,
+                                  @Value("${app.catalogue.variant-resolver.max-entries:5000}") int maxEntries,
+                                  @Value("${app.catalogue.variant-resolver.ttl-seconds:30}") long ttlSeconds) {
+        this.loader = loader;
+        this.resolver = resolver;
+        this.listenerContainer = listenerContainer;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this::onInvalidateMessage,
+                new ChannelTopic(ProductDetailService.CHANNEL_INVALIDATE));
+    }
+
+    /**
+     * @param valueIds selected option values, any subset; parents of selected values are implied
+     * @throws ResponseStatusException 404 for an unknown or unpublished product,
+     *                                 400 for values that do not belong to it or clash
+     */
+    public VariantSelectionDTO resolve(int productId, Collection<Integer> valueIds) {
+        VariantMatrix matrix = getMatrix(productId);
+        if (matrix == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    String.format("Product with id %s not found", productId));
+        }
+        try {
+            return matrix.resolve(valueIds != null ? valueIds : List.of());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCatalogueChanged(CatalogueChangedEvent event) {
+        CatalogueChangeResolver.Target target = resolver.resolve(event);
+        if (target.all()) {
+            evictAll();
+        } else if (target.productId() != null) {
+            evict(target.productId());
+        }
+    }
+
+    public void evict(int productId) {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            cache.remove(productId);
+        }
+    }
+
+    public void evictAll() {
+        generation.incrementAndGet();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private VariantMatrix getMatrix(int productId) {
+        synchronized (cache) {
+            Entry entry = cache.get(productId);
+            if (entry != null && System.nanoTime() - entry.loadedAtNanos() <= ttlNanos) return entry.matrix();
+        }
+        CompletableFuture<VariantMatrix> load = new CompletableFuture<>();
+        CompletableFuture<VariantMatrix> existing = inFlight.putIfAbsent(productId, load);
+        if (existing != null) return await(existing);
+        try {
+            long gen = generation.get();
+            VariantMatrix matrix = loader.load(productId);
+            if (matrix != null && generation.get() == gen) put(productId, matrix);
+            load.complete(matrix);
+            return matrix;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(productId, load);
+        }
+    }
+
+    private void put(int productId, VariantMatrix matrix) {
+        synchronized (cache) {
+            cache.put(productId, new Entry(matrix, System.nanoTime()));
+            var it = cache.entrySet().iterator();
+            while (cache.size() > maxEntries && it.hasNext()) {
+                Map.Entry<Integer, Entry> e = it.next();
+                if (e.getKey() == productId) continue;
+                it.remove();
+            }
+        }
+    }
+
+    private void onInvalidateMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8).replace("\"", "").trim();
+        if ("*".equals(body)) {
+            evictAll();
+            return;
+        }
+        try {
+            evict(Integer.parseInt(body));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed invalidation message: {}", body);
+        }
+    }
+
+    private static VariantMatrix await(CompletableFuture<VariantMatrix> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package com.mijimoto.ECommerce.common.file.controllers;
 
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.common.file.dto.BatchUploadResultDTO;
+import com.mijimoto.ECommerce.common.file.dto.FilePageDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadCompleteRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitResponseDTO;
 import com.mijimoto.ECommerce.common.file.entities.FileEntity;
+import com.mijimoto.ECommerce.common.storage.cache.HotObjectCache;
 import com.mijimoto.ECommerce.common.storage.services.StorageService;
 import com.mijimoto.ECommerce.common.file.services.FileService;
-import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.List;
 
@@ -17,10 +27,12 @@ public class FileController {
 
     private final FileService fileService;
     private final StorageService storageService;
+    private final HotObjectCache hotObjectCache;
 
-    public FileController(FileService fileService, StorageService storageService) {
+    public FileController(FileService fileService, StorageService storageService, HotObjectCache hotObjectCache) {
         this.fileService = fileService;
         this.storageService = storageService;
+        this.hotObjectCache = hotObjectCache;
     }
 
     @PostMapping("/upload")
@@ -31,39 +43,169 @@ public class FileController {
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
 
+    @PostMapping("/upload/batch")
+    public ResponseEntity<BatchUploadResultDTO> uploadBatch(@RequestParam("files") List<MultipartFile> files,
+                                                            @RequestParam(value = "ownerId", required = false) Long ownerId,
+                                                            @RequestParam(value = "public", required = false, defaultValue = "false") boolean isPublic) throws Exception {
+        BatchUploadResultDTO result = fileService.uploadAll(files, ownerId, isPublic);
+        HttpStatus status = result.getFailed().isEmpty() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(result);
+    }
+
+    /**
+     * Direct-to-storage upload: returns presigned PUT url(s); the client uploads the bytes to MinIO
+     * and then calls the completion endpoint.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadInitResponseDTO> initiateUpload(@RequestBody UploadInitRequestDTO request,
+                                                                @RequestParam(value = "ownerId", required = false) Long ownerId) throws Exception {
+        // only the owner (or an admin, for system files) may complete or abort it later
+        CurrentUser.requireOwnerOrAdmin(ownerId);
+        UploadInitResponseDTO response = fileService.initiateUpload(request, ownerId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<FileEntity> completeUpload(@PathVariable String uploadId,
+                                                     @RequestBody(required = false) UploadCompleteRequestDTO request) throws Exception {
+        FileEntity saved = fileService.completeUpload(uploadId, request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) throws Exception {
+        fileService.abortUpload(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<FileEntity> metadata(@PathVariable Long id) {
         FileEntity f = fileService.get(id);
         return f == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(f);
     }
 
+    /**
+     * Download with HTTP caching and resume support:
+     * - ETag (from checksum) / Last-Modified (from uploadedAt), answering 304 on a conditional GET
+     * - single byte range requests served as 206 backed by a ranged MinIO GET
+     */
     @GetMapping("/{id}/download")
-    public ResponseEntity<Resource> download(@PathVariable Long id) throws Exception {
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable Long id,
+                                                          @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+                                                          @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                                                          WebRequest webRequest) {
         FileEntity f = fileService.get(id);
         if (f == null) return ResponseEntity.notFound().build();
 
-        Resource resource = storageService.downloadAsResource(f);
+        String etag = f.getChecksum() != null ? "\"" + f.getChecksum() + "\"" : null;
+        long lastModified = f.getUploadedAt().toInstant().toEpochMilli();
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        long size = f.getSize();
         HttpHeaders headers = new HttpHeaders();
         headers.setContentDisposition(ContentDisposition.attachment().filename(f.getFilename()).build());
         headers.setContentType(MediaType.parseMediaType(f.getContentType()));
-        headers.setContentLength(f.getSize());
-        return new ResponseEntity<>(resource, headers, HttpStatus.OK);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etag != null) headers.setETag(etag);
+        headers.setLastModified(lastModified);
+
+        // If-Range: only honour the range when the client still has the current representation
+        boolean rangeApplies = rangeHeader != null && (ifRange == null || ifRange.equals(etag));
+        if (rangeApplies) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // multi-range (multipart/byteranges) is not supported: fall back to the full body
+            if (ranges.size() == 1) {
+                long start;
+                long end;
+                try {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                            .build();
+                }
+                long length = end - start + 1;
+                headers.setContentLength(length);
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                StreamingResponseBody body = out -> transfer(f, start, length, out);
+                return new ResponseEntity<>(body, headers, HttpStatus.PARTIAL_CONTENT);
+            }
+        }
+
+        headers.setContentLength(size);
+        StreamingResponseBody body = out -> transfer(f, 0, size, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
+    /**
+     * Keyset-paged listing of an owner's files, newest first, without metadata/url.
+     * System files (no owner) must be asked for explicitly with system=true.
+     */
     @GetMapping
-    public ResponseEntity<List<FileEntity>> listByOwner(@RequestParam(value = "ownerId", required = false) Long ownerId) {
-        List<FileEntity> list = fileService.listByOwner(ownerId);
-        return ResponseEntity.ok(list);
+    public ResponseEntity<FilePageDTO> listByOwner(@RequestParam(value = "ownerId", required = false) Long ownerId,
+                                                   @RequestParam(value = "system", defaultValue = "false") boolean system,
+                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        if (ownerId == null && !system) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(fileService.listPage(system ? null : ownerId, cursor, limit));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Integer> deleteBatch(@RequestBody List<Long> ids) throws Exception {
+        return ResponseEntity.ok(fileService.deleteAll(ids));
+    }
+
+    @DeleteMapping("/owner/{ownerId}")
+    public ResponseEntity<Integer> deleteByOwner(@PathVariable Long ownerId) throws Exception {
+        CurrentUser.requireOwnerOrAdmin(ownerId);
+        return ResponseEntity.ok(fileService.deleteAllByOwner(ownerId));
+    }
+
+    @GetMapping("/owner/{ownerId}/export")
+    public ResponseEntity<StreamingResponseBody> exportZip(@PathVariable Long ownerId) {
+        CurrentUser.requireOwnerOrAdmin(ownerId);
+        StreamingResponseBody body = out -> fileService.exportZip(ownerId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("files-" + ownerId + ".zip").build().toString())
+                .body(body);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) throws Exception {
         FileEntity f = fileService.get(id);
         if (f == null) return ResponseEntity.notFound().build();
+        CurrentUser.requireOwnerOrAdmin(f.getOwnerId());
         fileService.delete(f);
         return ResponseEntity.noContent().build();
     }
 
+    private void transfer(FileEntity f, long offset, long length, OutputStream out) throws IOException {
+        try {
+            storageService.transferTo(f, offset, length, out);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to stream file " + f.getId(), e);
+        }
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<HotObjectCache.Stats> cacheStats() {
+        return ResponseEntity.ok(hotObjectCache.stats());
+    }
+
     @GetMapping("/{id}/presign")
     public ResponseEntity<String> presign(@PathVariable Long id,
                                           @RequestParam(value = "expiry", defaultValue = "3600") int expirySeconds) throws Exception {
@@ -0,0 +1,33 @@
+package com.mijimoto.ECommerce.common.file.dto;
+
+import com.mijimoto.ECommerce.common.file.entities.FileEntity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a multi-file upload: files are stored independently, so some may fail
+ * while the others succeed.
+ */
+@Data
+@NoArgsConstructor
+public class BatchUploadResultDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<FileEntity> uploaded = new ArrayList<>();
+    private List<Failure> failed = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String filename;
+        private String error;
+    }
+}
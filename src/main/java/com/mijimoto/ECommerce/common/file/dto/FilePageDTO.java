@@ -0,0 +1,23 @@
+package com.mijimoto.ECommerce.common.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One keyset page of file summaries, newest first.
+ * {@code nextCursor} is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilePageDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<FileSummaryDTO> items;
+    private String nextCursor;
+}
@@ -0,0 +1,30 @@
+package com.mijimoto.ECommerce.common.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+/**
+ * Lightweight listing view of a FileEntity.
+ * Deliberately leaves out {@code metadata} (NVARCHAR(MAX)) and {@code url}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileSummaryDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+    private String filename;
+    private String storageKey;
+    private String contentType;
+    private Long size;
+    private Long ownerId;
+    private String checksum;
+    private boolean isPublic;
+    private OffsetDateTime uploadedAt;
+}
@@ -0,0 +1,32 @@
+package com.mijimoto.ECommerce.common.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Request body for completing a presigned upload.
+ *
+ * {@code parts} is only meaningful for multipart uploads; when omitted the parts
+ * are listed from MinIO instead.
+ */
+@Data
+@NoArgsConstructor
+public class UploadCompleteRequestDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<CompletedPart> parts;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CompletedPart implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private int partNumber;
+        private String etag;
+    }
+}
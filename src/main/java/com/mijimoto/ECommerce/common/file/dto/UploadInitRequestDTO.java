@@ -0,0 +1,29 @@
+package com.mijimoto.ECommerce.common.file.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Request body for initiating a direct-to-storage (presigned) upload.
+ */
+@Data
+@NoArgsConstructor
+public class UploadInitRequestDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // original filename as chosen by the user
+    private String filename;
+
+    private String contentType;
+
+    // exact size in bytes the client is going to upload
+    private Long size;
+
+    // optional client-computed md5 (hex); checked against the ETag for single-part uploads
+    private String md5;
+
+    private boolean isPublic;
+}
@@ -0,0 +1,40 @@
+package com.mijimoto.ECommerce.common.file.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Response for a presigned upload initiation.
+ *
+ * Single-part uploads get one {@code url} to PUT the whole body to.
+ * Multipart uploads get one presigned URL per part in {@code parts}; the client PUTs each
+ * slice of {@code partSize} bytes and reports the returned ETags on completion.
+ */
+@Data
+@NoArgsConstructor
+public class UploadInitResponseDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String uploadId;
+    private String storageKey;
+    private boolean multipart;
+    private String url;
+    private Long partSize;
+    private List<PartUrl> parts;
+    private OffsetDateTime expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PartUrl implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private int partNumber;
+        private String url;
+    }
+}
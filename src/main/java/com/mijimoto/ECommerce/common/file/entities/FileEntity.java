@@ -7,7 +7,8 @@ import java.time.OffsetDateTime;
 @Entity
 @Table(name = "files", indexes = {
         @Index(name = "ix_files_storage_key", columnList = "storageKey"),
-        @Index(name = "ix_files_owner_id", columnList = "ownerId")
+        // composite (owner, date) index backs keyset listing; also serves owner-only lookups
+        @Index(name = "ix_files_owner_uploaded", columnList = "ownerId, uploadedAt")
 })
 @Getter
 @Setter
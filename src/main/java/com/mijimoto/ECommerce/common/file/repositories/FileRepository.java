@@ -1,11 +1,50 @@
 package com.mijimoto.ECommerce.common.file.repositories;
 
+import com.mijimoto.ECommerce.common.file.dto.FileSummaryDTO;
 import com.mijimoto.ECommerce.common.file.entities.FileEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
 import java.util.Optional;
 import java.util.List;
 
 public interface FileRepository extends JpaRepository<FileEntity, Long> {
     Optional<FileEntity> findByStorageKey(String storageKey);
     List<FileEntity> findByOwnerId(Long ownerId);
+
+    // keyset listing (newest first) served by ix_files_owner_uploaded; projections skip metadata/url
+
+    @Query("select new com.mijimoto.ECommerce.common.file.dto.FileSummaryDTO("
+            + "f.id, f.filename, f.storageKey, f.contentType, f.size, f.ownerId, f.checksum, f.isPublic, f.uploadedAt) "
+            + "from FileEntity f where f.ownerId = :ownerId "
+            + "order by f.uploadedAt desc, f.id desc")
+    List<FileSummaryDTO> findSummariesByOwner(@Param("ownerId") Long ownerId, Pageable page);
+
+    @Query("select new com.mijimoto.ECommerce.common.file.dto.FileSummaryDTO("
+            + "f.id, f.filename, f.storageKey, f.contentType, f.size, f.ownerId, f.checksum, f.isPublic, f.uploadedAt) "
+            + "from FileEntity f where f.ownerId = :ownerId "
+            + "and (f.uploadedAt < :uploadedAt or (f.uploadedAt = :uploadedAt and f.id < :id)) "
+            + "order by f.uploadedAt desc, f.id desc")
+    List<FileSummaryDTO> findSummariesByOwnerAfter(@Param("ownerId") Long ownerId,
+                                                   @Param("uploadedAt") OffsetDateTime uploadedAt,
+                                                   @Param("id") Long id,
+                                                   Pageable page);
+
+    @Query("select new com.mijimoto.ECommerce.common.file.dto.FileSummaryDTO("
+            + "f.id, f.filename, f.storageKey, f.contentType, f.size, f.ownerId, f.checksum, f.isPublic, f.uploadedAt) "
+            + "from FileEntity f where f.ownerId is null "
+            + "order by f.uploadedAt desc, f.id desc")
+    List<FileSummaryDTO> findSystemSummaries(Pageable page);
+
+    @Query("select new com.mijimoto.ECommerce.common.file.dto.FileSummaryDTO("
+            + "f.id, f.filename, f.storageKey, f.contentType, f.size, f.ownerId, f.checksum, f.isPublic, f.uploadedAt) "
+            + "from FileEntity f where f.ownerId is null "
+            + "and (f.uploadedAt < :uploadedAt or (f.uploadedAt = :uploadedAt and f.id < :id)) "
+            + "order by f.uploadedAt desc, f.id desc")
+    List<FileSummaryDTO> findSystemSummariesAfter(@Param("uploadedAt") OffsetDateTime uploadedAt,
+                                                  @Param("id") Long id,
+                                                  Pageable page);
 }
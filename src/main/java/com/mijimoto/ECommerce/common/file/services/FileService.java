@@ -1,36 +1,242 @@
 package com.mijimoto.ECommerce.common.file.services;
 
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.common.file.dto.BatchUploadResultDTO;
+import com.mijimoto.ECommerce.common.file.dto.FilePageDTO;
+import com.mijimoto.ECommerce.common.file.dto.FileSummaryDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadCompleteRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitResponseDTO;
 import com.mijimoto.ECommerce.common.file.entities.FileEntity;
 import com.mijimoto.ECommerce.common.file.repositories.FileRepository;
+import com.mijimoto.ECommerce.common.image.services.ImageDerivativeService;
 import com.mijimoto.ECommerce.common.storage.services.StorageService;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 public class FileService {
+    private static final Logger logger = LoggerFactory.getLogger(FileService.class);
+
+    public static final int MAX_PAGE_SIZE = 200;
+    // one IN list per statement; SQL Server allows at most 2100 parameters
+    public static final int MAX_BATCH_DELETE = 1000;
+
     private final StorageService storageService;
     private final FileRepository fileRepository;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ExecutorService batchUploadPool;
 
-    public FileService(StorageService storageService, FileRepository fileRepository) {
+    public FileService(StorageService storageService,
+                       FileRepository fileRepository,
+                       ImageDerivativeService imageDerivativeService,
+                       @Value("${app.file.batch-upload-threads:4}") int batchUploadThreads) {
         this.storageService = storageService;
         this.fileRepository = fileRepository;
+        this.imageDerivativeService = imageDerivativeService;
+        this.batchUploadPool = Executors.newFixedThreadPool(batchUploadThreads, r -> {
+            Thread t = new Thread(r, "file-batch-upload");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchUploadPool.shutdown();
     }
 
     public FileEntity upload(MultipartFile file, Long ownerId, boolean isPublic) throws Exception {
         return storageService.store(file, ownerId, isPublic);
     }
 
+    /**
+     * Stores several files in parallel (bounded pool). Each file succeeds or fails on its own.
+     */
+    public BatchUploadResultDTO uploadAll(List<MultipartFile> files, Long ownerId, boolean isPublic) throws InterruptedException {
+        List<Future<FileEntity>> futures = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            futures.add(batchUploadPool.submit(() -> storageService.store(file, ownerId, isPublic)));
+        }
+
+        BatchUploadResultDTO result = new BatchUploadResultDTO();
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                result.getUploaded().add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                String name = files.get(i).getOriginalFilename();
+                logger.error("Batch upload of {} failed: {}", name, e.getCause().getMessage());
+                result.getFailed().add(new BatchUploadResultDTO.Failure(name, e.getCause().getMessage()));
+            }
+        }
+        return result;
+    }
+
+    public UploadInitResponseDTO initiateUpload(UploadInitRequestDTO request, Long ownerId) throws Exception {
+        return storageService.initiateUpload(request, ownerId);
+    }
+
+    public FileEntity completeUpload(String uploadId, UploadCompleteRequestDTO request) throws Exception {
+        return storageService.completeUpload(uploadId, request);
+    }
+
+    public void abortUpload(String uploadId) throws Exception {
+        storageService.abortUpload(uploadId);
+    }
+
     public FileEntity get(Long id) {
         return fileRepository.findById(id).orElse(null);
     }
 
+    public FileEntity getByStorageKey(String storageKey) {
+        return fileRepository.findByStorageKey(storageKey).orElse(null);
+    }
+
     public List<FileEntity> listByOwner(Long ownerId) {
         return storageService.listByOwner(ownerId);
     }
 
+    /**
+     * Keyset page of an owner's files (or system files, ownerId == null), newest first.
+     *
+     * @param cursor opaque cursor from the previous page, null for the first page
+     */
+    public FilePageDTO listPage(Long ownerId, String cursor, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // fetch one extra row to know whether another page exists
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<FileSummaryDTO> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = ownerId != null
+                    ? fileRepository.findSummariesByOwner(ownerId, page)
+                    : fileRepository.findSystemSummaries(page);
+        } else {
+            Cursor position = decodeCursor(cursor);
+            rows = ownerId != null
+                    ? fileRepository.findSummariesByOwnerAfter(ownerId, position.uploadedAt(), position.id(), page)
+                    : fileRepository.findSystemSummariesAfter(position.uploadedAt(), position.id(), page);
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            FileSummaryDTO last = rows.get(size - 1);
+            nextCursor = encodeCursor(last.getUploadedAt(), last.getId());
+        }
+        return new FilePageDTO(rows, nextCursor);
+    }
+
     public void delete(FileEntity file) throws Exception {
+        imageDerivativeService.deleteRenditions(List.of(file));
         storageService.delete(file);
     }
+
+    /**
+     * Deletes up to {@link #MAX_BATCH_DELETE} files, all of which must belong to the caller
+     * (or the caller is an admin); nothing is deleted otherwise.
+     *
+     * @return number of files deleted (unknown ids are ignored)
+     */
+    public int deleteAll(List<Long> ids) throws Exception {
+        if (ids == null || ids.isEmpty()) return 0;
+        if (ids.size() > MAX_BATCH_DELETE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BATCH_DELETE + " files can be deleted per request");
+        }
+        List<FileEntity> files = fileRepository.findAllById(ids);
+        for (FileEntity f : files) CurrentUser.requireOwnerOrAdmin(f.getOwnerId());
+        imageDerivativeService.deleteRenditions(files);
+        storageService.deleteAll(files);
+        return files.size();
+    }
+
+    /**
+     * Deletes every file of an owner, one listing page at a time.
+     */
+    public int deleteAllByOwner(Long ownerId) throws Exception {
+        int deleted = 0;
+        PageRequest page = PageRequest.of(0, MAX_PAGE_SIZE);
+        List<FileSummaryDTO> rows;
+        // always re-read the first page: the previous one is gone
+        while (!(rows = fileRepository.findSummariesByOwner(ownerId, page)).isEmpty()) {
+            deleted += deleteAll(rows.stream().map(FileSummaryDTO::getId).toList());
+        }
+        return deleted;
+    }
+
+    /**
+     * Streams all files of an owner as a ZIP archive. Each entry is written while its object
+     * is being fetched, so nothing is buffered beyond the transfer buffer.
+     */
+    public void exportZip(Long ownerId, OutputStream out) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            // media is mostly compressed already; favour throughput
+            zip.setLevel(Deflater.BEST_SPEED);
+            String cursor = null;
+            do {
+                FilePageDTO page = listPage(ownerId, cursor, MAX_PAGE_SIZE);
+                List<Long> ids = page.getItems().stream().map(FileSummaryDTO::getId).toList();
+                for (FileEntity f : fileRepository.findAllById(ids)) {
+                    zip.putNextEntry(new ZipEntry(f.getId() + "-" + entryName(f.getFilename())));
+                    try {
+                        storageService.transferTo(f, 0, f.getSize(), zip);
+                    } catch (IOException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IOException("Failed to export file " + f.getId(), e);
+                    }
+                    zip.closeEntry();
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+        }
+    }
+
+    // user-chosen names may carry path segments ("../../x"): keep the base name only
+    private static String entryName(String filename) {
+        if (filename == null) return "file";
+        String name = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1).trim();
+        return name.isEmpty() || name.equals(".") || name.equals("..") ? "file" : name;
+    }
+
+    private static String encodeCursor(OffsetDateTime uploadedAt, Long id) {
+        String raw = uploadedAt.toString() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Cursor(OffsetDateTime uploadedAt, Long id) {}
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            return new Cursor(OffsetDateTime.parse(raw.substring(0, sep)), Long.valueOf(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package com.mijimoto.ECommerce.common.image.controllers;
+
+import com.mijimoto.ECommerce.common.file.entities.FileEntity;
+import com.mijimoto.ECommerce.common.file.services.FileService;
+import com.mijimoto.ECommerce.common.image.models.ImageFormat;
+import com.mijimoto.ECommerce.common.image.models.ImageRendition;
+import com.mijimoto.ECommerce.common.image.services.ImageDerivativeService;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * Public storefront endpoint for resized product images.
+ *
+ * Renditions are addressed either by file id or by the storage key embedded in
+ * ProductImages.url / ProductVariantImages.url. Only public image files are served.
+ */
+@RestController
+@RequestMapping("/api/v1/images")
+public class ImageRenditionController {
+
+    private final FileService fileService;
+    private final ImageDerivativeService imageDerivativeService;
+
+    public ImageRenditionController(FileService fileService, ImageDerivativeService imageDerivativeService) {
+        this.fileService = fileService;
+        this.imageDerivativeService = imageDerivativeService;
+    }
+
+    @GetMapping("/files/{id}/{rendition}")
+    public ResponseEntity<Resource> byFileId(@PathVariable Long id,
+                                             @PathVariable String rendition,
+                                             @RequestParam(value = "format", required = false) String format,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return serve(fileService.get(id), rendition, format, accept);
+    }
+
+    @GetMapping("/{rendition}")
+    public ResponseEntity<Resource> byStorageKey(@PathVariable String rendition,
+                                                 @RequestParam("key") String storageKey,
+                                                 @RequestParam(value = "format", required = false) String format,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return serve(fileService.getByStorageKey(storageKey), rendition, format, accept);
+    }
+
+    private ResponseEntity<Resource> serve(FileEntity file, String renditionName, String format, String accept) {
+        ImageRendition rendition = ImageRendition.fromName(renditionName);
+        if (rendition == null) return ResponseEntity.badRequest().build();
+        if (file == null || !file.isPublic()) return ResponseEntity.notFound().build();
+
+        ImageFormat imageFormat = ImageFormat.negotiate(format, accept);
+        // closed by the message converter once written, which releases the cache entry
+        InputStream body = imageDerivativeService.getRendition(file, rendition, imageFormat);
+
+        // storage keys are immutable (uuid based), so renditions can be cached aggressively
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(imageFormat.getContentType()))
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(30)).cachePublic().immutable())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .body(new InputStreamResource(body));
+    }
+}
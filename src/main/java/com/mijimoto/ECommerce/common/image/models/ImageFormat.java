@@ -0,0 +1,55 @@
+package com.mijimoto.ECommerce.common.image.models;
+
+import javax.imageio.ImageIO;
+import java.util.Locale;
+
+/**
+ * Output encodings for image renditions.
+ *
+ * WebP is only offered when an ImageIO WebP writer plugin is on the classpath;
+ * the JDK ships JPEG and PNG writers only.
+ */
+public enum ImageFormat {
+
+    WEBP("webp", "image/webp"),
+    JPEG("jpg", "image/jpeg");
+
+    private final String extension;
+    private final String contentType;
+
+    ImageFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String writerName() {
+        return this == WEBP ? "webp" : "jpeg";
+    }
+
+    public boolean isSupported() {
+        return ImageIO.getImageWritersByFormatName(writerName()).hasNext();
+    }
+
+    /**
+     * Picks the output format from an explicit request parameter or the Accept header,
+     * falling back to JPEG when WebP cannot be encoded.
+     */
+    public static ImageFormat negotiate(String requested, String acceptHeader) {
+        ImageFormat wanted = JPEG;
+        if (requested != null) {
+            String r = requested.toLowerCase(Locale.ROOT);
+            if (r.equals("webp")) wanted = WEBP;
+        } else if (acceptHeader != null && acceptHeader.contains("image/webp")) {
+            wanted = WEBP;
+        }
+        return wanted.isSupported() ? wanted : JPEG;
+    }
+}
@@ -0,0 +1,48 @@
+package com.mijimoto.ECommerce.common.image.models;
+
+import java.util.Locale;
+
+/**
+ * Standard storefront image renditions: the image is scaled to fit inside the
+ * bounding box, keeping its aspect ratio and never upscaling.
+ */
+public enum ImageRendition {
+
+    THUMBNAIL(160, 160, 0.80f),
+    CARD(480, 480, 0.82f),
+    ZOOM(1600, 1600, 0.88f);
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final float quality;
+
+    ImageRendition(int maxWidth, int maxHeight, float quality) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.quality = quality;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return the rendition for a path segment such as "card", or null if unknown
+     */
+    public static ImageRendition fromName(String name) {
+        if (name == null) return null;
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.mijimoto.ECommerce.common.image.services;
+
+import com.mijimoto.ECommerce.common.file.entities.FileEntity;
+import com.mijimoto.ECommerce.common.image.models.ImageFormat;
+import com.mijimoto.ECommerce.common.image.models.ImageRendition;
+import com.mijimoto.ECommerce.common.storage.cache.LruDiskCache;
+import com.mijimoto.ECommerce.common.storage.services.StorageService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+/**
+ * Produces resized / re-encoded renditions of uploaded images on first request.
+ *
+ * Lookup order for a rendition:
+ *  1. local LRU disk cache
+ *  2. derived object in MinIO (renditions/&lt;rendition&gt;/&lt;ext&gt;/&lt;storageKey&gt;)
+ *  3. render from the original, store back to MinIO, then cache locally
+ *
+ * Steps 2-3 run on a bounded worker pool: when the queue is full the request is
+ * rejected (503) instead of piling decoding work onto request threads. Concurrent
+ * requests for the same rendition share one in-flight job.
+ *
+ * A source is refused before decoding when its stored size or the pixel count in its header is
+ * over the limit, so a small file declaring huge dimensions cannot exhaust the heap.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    public static final String RENDITION_PREFIX = "renditions/";
+
+    private final StorageService storageService;
+    private final LruDiskCache diskCache;
+    private final ThreadPoolExecutor renderPool;
+    private final long renderTimeoutMillis;
+    private final long maxSourceBytes;
+    private final long maxSourcePixels;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public ImageDerivativeService(StorageService storageService,
+                                  @Value("${app.image.cache-dir:${java.io.tmpdir}/ecommerce-renditions}") String cacheDir,
+                                  @Value("${app.image.cache-max-bytes:1073741824}") long cacheMaxBytes,
+                                  @Value("${app.image.render-threads:2}") int renderThreads,
+                                  @Value("${app.image.render-queue:64}") int renderQueue,
+                                  @Value("${app.image.render-timeout-ms:15000}") long renderTimeoutMillis,
+                                  @Value("${app.image.max-source-bytes:52428800}") long maxSourceBytes,
+                                  @Value("${app.image.max-source-pixels:40000000}") long maxSourcePixels) throws IOException {
+        this.storageService = storageService;
+        this.diskCache = new LruDiskCache(Paths.get(cacheDir), cacheMaxBytes);
+        this.renderTimeoutMillis = renderTimeoutMillis;
+        this.maxSourceBytes = maxSourceBytes;
+        this.maxSourcePixels = maxSourcePixels;
+        this.renderPool = new ThreadPoolExecutor(renderThreads, renderThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(renderQueue),
+                r -> {
+                    Thread t = new Thread(r, "image-render");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+
+    public static String derivedKey(FileEntity original, ImageRendition rendition, ImageFormat format) {
+        return RENDITION_PREFIX + rendition.name().toLowerCase(Locale.ROOT) + "/" + format.getExtension() + "/"
+                + original.getStorageKey();
+    }
+
+    /**
+     * @return stream over the rendition bytes; the disk cache entry stays pinned until it is closed
+     */
+    public InputStream getRendition(FileEntity original, ImageRendition rendition, ImageFormat format) {
+        if (original.getContentType() == null || !original.getContentType().startsWith("image/")) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "File is not an image");
+        }
+        String key = derivedKey(original, rendition, format);
+        InputStream cached = openCached(key);
+        if (cached != null) return cached;
+
+        CompletableFuture<Path> job = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, job);
+        if (existing != null) {
+            job = existing;
+        } else {
+            dispatch(key, job, original, rendition, format);
+        }
+        try {
+            job.get(renderTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Rendition is still being generated");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ResponseStatusException rse) throw rse;
+            logger.error("Failed to produce {} : {}", key, cause != null ? cause.getMessage() : e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to produce rendition");
+        }
+
+        cached = openCached(key);
+        if (cached != null) return cached;
+        // evicted again before this request got to it: the write-back copy is still in storage
+        try {
+            return storageService.openObject(key).orElseThrow(() ->
+                    new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Rendition is being regenerated"));
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to read {} : {}", key, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to read rendition");
+        }
+    }
+
+    /**
+     * Removes every rendition of the given originals from storage and from the disk cache.
+     * Failures are logged only: a leftover rendition is never served once its original is gone.
+     */
+    public void deleteRenditions(Collection<FileEntity> originals) {
+        List<String> keys = new ArrayList<>();
+        for (FileEntity original : originals) {
+            if (original.getContentType() == null || !original.getContentType().startsWith("image/")) continue;
+            for (ImageRendition rendition : ImageRendition.values()) {
+                for (ImageFormat format : ImageFormat.values()) {
+                    String key = derivedKey(original, rendition, format);
+                    diskCache.remove(key);
+                    keys.add(key);
+                }
+            }
+        }
+        if (keys.isEmpty()) return;
+        try {
+            storageService.removeObjects(keys);
+        } catch (Exception e) {
+            logger.warn("Failed to remove {} rendition object(s): {}", keys.size(), e.getMessage());
+        }
+    }
+
+    private InputStream openCached(String key) {
+        try {
+            return diskCache.open(key);
+        } catch (IOException e) {
+            // vanished between lookup and open: treat as a miss
+            return null;
+        }
+    }
+
+    private void dispatch(String key, CompletableFuture<Path> future,
+                          FileEntity original, ImageRendition rendition, ImageFormat format) {
+        try {
+            renderPool.execute(() -> {
+                try {
+                    future.complete(produce(key, original, rendition, format));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    inFlight.remove(key, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Image rendering is busy, retry shortly"));
+        }
+    }
+
+    private Path produce(String key, FileEntity original, ImageRendition rendition, ImageFormat format) throws Exception {
+        // already rendered by this or another instance
+        Optional<InputStream> stored = storageService.openObject(key);
+        if (stored.isPresent()) {
+            try (InputStream in = stored.get()) {
+                return diskCache.put(key, in);
+            }
+        }
+
+        if (original.getSize() != null && original.getSize() > maxSourceBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Source image too large to render");
+        }
+
+        BufferedImage source;
+        try (InputStream in = storageService.downloadAsResource(original).getInputStream()) {
+            source = decode(in);
+        }
+        if (source == null) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unreadable image");
+        }
+
+        byte[] encoded = encode(scale(source, rendition), format, rendition.getQuality());
+        storageService.putObject(key, new ByteArrayInputStream(encoded), encoded.length, format.getContentType());
+        logger.debug("Rendered {} ({} bytes)", key, encoded.length);
+        return diskCache.put(key, encoded);
+    }
+
+    /**
+     * @return the first image of the stream, or null if no reader understands it
+     * @throws ResponseStatusException 413 if its header declares more pixels than allowed
+     */
+    private BufferedImage decode(InputStream in) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            if (stream == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                // dimensions come from the header; nothing is decoded yet
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxSourcePixels) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Source image has too many pixels to render");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage src, ImageRendition rendition) {
+        double ratio = Math.min(1.0, Math.min(
+                (double) rendition.getMaxWidth() / src.getWidth(),
+                (double) rendition.getMaxHeight() / src.getHeight()));
+        int targetW = Math.max(1, (int) Math.round(src.getWidth() * ratio));
+        int targetH = Math.max(1, (int) Math.round(src.getHeight() * ratio));
+
+        // step down by halves for large reductions; a single bilinear pass aliases badly
+        BufferedImage current = toRgb(src);
+        int w = current.getWidth();
+        int h = current.getHeight();
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    // JPEG has no alpha channel: flatten onto white
+    private static BufferedImage toRgb(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_INT_RGB) return src;
+        BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, src.getWidth(), src.getHeight());
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+
+    private static byte[] encode(BufferedImage image, ImageFormat format, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format.writerName()).next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (types != null && types.length > 0 && param.getCompressionType() == null) {
+                    param.setCompressionType(types[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+}
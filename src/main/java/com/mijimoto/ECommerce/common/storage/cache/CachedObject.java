@@ -0,0 +1,72 @@
+package com.mijimoto.ECommerce.common.storage.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * View of a cached object: either a heap byte array or a read-only memory-mapped file.
+ * The backing buffer is never handed out; every reader works on its own duplicate.
+ */
+public final class CachedObject {
+
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    private final ByteBuffer buffer;
+
+    private CachedObject(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public static CachedObject ofBytes(byte[] data) {
+        return new CachedObject(ByteBuffer.wrap(data));
+    }
+
+    public static CachedObject ofMapped(ByteBuffer mapped) {
+        return new CachedObject(mapped);
+    }
+
+    public long size() {
+        return buffer.capacity();
+    }
+
+    public void writeTo(long offset, long length, OutputStream out) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offset);
+        view.limit((int) Math.min(view.capacity(), offset + length));
+        if (view.hasArray()) {
+            out.write(view.array(), view.arrayOffset() + view.position(), view.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(COPY_CHUNK, view.remaining())];
+        while (view.hasRemaining()) {
+            int n = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    public InputStream openStream() {
+        ByteBuffer view = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!view.hasRemaining()) return -1;
+                int n = Math.min(len, view.remaining());
+                view.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+}
@@ -0,0 +1,227 @@
+package com.mijimoto.ECommerce.common.storage.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache in front of the object store for hot objects, keyed by storageKey.
+ *
+ * Two tiers:
+ *  - heap: LRU of byte arrays for small objects (bounded by total bytes)
+ *  - disk: {@link LruDiskCache} for larger objects, read back through read-only memory maps;
+ *    each entry is mapped once and the mapping reused until the entry leaves the disk cache
+ * Objects above the disk limit are never cached. Concurrent misses for one key are
+ * coalesced so only a single fetch reaches the object store.
+ *
+ * Storage keys are immutable (uuid based), so entries never go stale; they are only
+ * dropped by eviction or explicit {@link #invalidate(String)} on delete.
+ */
+@Component
+public class HotObjectCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotObjectCache.class);
+
+    /**
+     * Fetches the full object from the backing store on a miss.
+     */
+    @FunctionalInterface
+    public interface ObjectLoader {
+        InputStream open() throws Exception;
+    }
+
+    public record Stats(long heapHits, long diskHits, long misses, long bypassed,
+                        int heapEntries, long heapBytes, int diskEntries, long diskBytes, double hitRatio) {}
+
+    private final boolean enabled;
+    private final long heapMaxBytes;
+    private final long heapObjectMaxBytes;
+    private final long diskObjectMaxBytes;
+    private final LruDiskCache diskCache;
+
+    private final LinkedHashMap<String, byte[]> heap = new LinkedHashMap<>(256, 0.75f, true);
+    private long heapBytes;
+
+    // disk cache file -> its mapping
+    private final ConcurrentHashMap<Path, CachedObject> mapped = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, CompletableFuture<CachedObject>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+
+    public HotObjectCache(@Value("${app.storage.cache.enabled:true}") boolean enabled,
+                          @Value("${app.storage.cache.heap-max-bytes:67108864}") long heapMaxBytes,
+                          @Value("${app.storage.cache.heap-object-max-bytes:262144}") long heapObjectMaxBytes,
+                          @Value("${app.storage.cache.disk-dir:${java.io.tmpdir}/ecommerce-object-cache}") String diskDir,
+                          @Value("${app.storage.cache.disk-max-bytes:2147483648}") long diskMaxBytes,
+                          @Value("${app.storage.cache.disk-object-max-bytes:67108864}") long diskObjectMaxBytes) throws IOException {
+        this.enabled = enabled;
+        this.heapMaxBytes = heapMaxBytes;
+        this.heapObjectMaxBytes = heapObjectMaxBytes;
+        // a single mapping is limited to 2GB
+        this.diskObjectMaxBytes = Math.min(diskObjectMaxBytes, Integer.MAX_VALUE);
+        this.diskCache = enabled ? new LruDiskCache(Paths.get(diskDir), diskMaxBytes, mapped::remove) : null;
+    }
+
+    public boolean isCacheable(long size) {
+        return enabled && size <= diskObjectMaxBytes;
+    }
+
+    /**
+     * @return the cached object, loading it through {@code loader} on a miss
+     */
+    public CachedObject get(String storageKey, long size, ObjectLoader loader) throws Exception {
+        if (!isCacheable(size)) {
+            bypassed.incrementAndGet();
+            throw new IllegalArgumentException("Object " + storageKey + " is not cacheable");
+        }
+
+        CachedObject hit = lookup(storageKey);
+        if (hit != null) return hit;
+
+        CompletableFuture<CachedObject> load = new CompletableFuture<>();
+        CompletableFuture<CachedObject> existing = inFlight.putIfAbsent(storageKey, load);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        misses.incrementAndGet();
+        try {
+            CachedObject loaded = load(storageKey, size, loader);
+            load.complete(loaded);
+            return loaded;
+        } catch (Exception e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(storageKey, load);
+        }
+    }
+
+    public void invalidate(String storageKey) {
+        synchronized (heap) {
+            byte[] removed = heap.remove(storageKey);
+            if (removed != null) heapBytes -= removed.length;
+        }
+        if (diskCache != null) diskCache.remove(storageKey);
+    }
+
+    public Stats stats() {
+        long h = heapHits.get();
+        long d = diskHits.get();
+        long m = misses.get();
+        long total = h + d + m;
+        int heapEntries;
+        long heapSize;
+        synchronized (heap) {
+            heapEntries = heap.size();
+            heapSize = heapBytes;
+        }
+        return new Stats(h, d, m, bypassed.get(), heapEntries, heapSize,
+                diskCache != null ? diskCache.entryCount() : 0,
+                diskCache != null ? diskCache.sizeBytes() : 0L,
+                total == 0 ? 0.0 : (double) (h + d) / total);
+    }
+
+    private CachedObject lookup(String storageKey) throws IOException {
+        synchronized (heap) {
+            byte[] bytes = heap.get(storageKey);
+            if (bytes != null) {
+                heapHits.incrementAndGet();
+                return CachedObject.ofBytes(bytes);
+            }
+        }
+        Path path = diskCache.get(storageKey);
+        if (path == null) return null;
+        try {
+            CachedObject object = mapping(storageKey, path);
+            if (object == null) return null;
+            diskHits.incrementAndGet();
+            return object;
+        } catch (NoSuchFileException e) {
+            // evicted between index lookup and open
+            logger.debug("Cache file for {} vanished, reloading", storageKey);
+            return null;
+        }
+    }
+
+    private CachedObject load(String storageKey, long size, ObjectLoader loader) throws Exception {
+        try (InputStream in = loader.open()) {
+            if (size <= heapObjectMaxBytes) {
+                byte[] bytes = in.readAllBytes();
+                putHeap(storageKey, bytes);
+                return CachedObject.ofBytes(bytes);
+            }
+            Path path = diskCache.put(storageKey, in);
+            CachedObject object = mapping(storageKey, path);
+            // evicted straight away by a concurrent put: serve this one mapping uncached
+            return object != null ? object : map(path);
+        }
+    }
+
+    /**
+     * The shared mapping of a disk entry, created on first use. Returns null when the entry
+     * was dropped while it was being mapped, so no mapping outlives its entry in the map.
+     */
+    private CachedObject mapping(String storageKey, Path path) throws IOException {
+        CachedObject object = mapped.get(path);
+        if (object != null) return object;
+        object = map(path);
+        CachedObject raced = mapped.putIfAbsent(path, object);
+        if (raced != null) return raced;
+        if (diskCache.get(storageKey) == null) {
+            mapped.remove(path, object);
+            return null;
+        }
+        return object;
+    }
+
+    private void putHeap(String storageKey, byte[] bytes) {
+        synchronized (heap) {
+            byte[] previous = heap.put(storageKey, bytes);
+            heapBytes += bytes.length - (previous != null ? previous.length : 0);
+            Iterator<Map.Entry<String, byte[]>> it = heap.entrySet().iterator();
+            while (heapBytes > heapMaxBytes && it.hasNext()) {
+                Map.Entry<String, byte[]> e = it.next();
+                if (e.getKey().equals(storageKey)) continue;
+                heapBytes -= e.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    // the mapping stays valid after the channel is closed and even if the file is evicted later
+    private static CachedObject map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return CachedObject.ofMapped(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    private static CachedObject await(CompletableFuture<CachedObject> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+}
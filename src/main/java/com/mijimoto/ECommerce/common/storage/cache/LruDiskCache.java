@@ -0,0 +1,233 @@
+package com.mijimoto.ECommerce.common.storage.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded, least-recently-used cache of objects on local disk.
+ *
+ * Files are named after the sha-256 of their key, written to a temp file first and
+ * atomically renamed into place, so readers never see a partial entry. Entries already
+ * in the directory are re-indexed on startup (oldest first) so the cache survives restarts.
+ *
+ * Entries handed out by {@link #open} are pinned until their stream is closed: eviction
+ * skips them, and a removed entry is only deleted from disk once its last reader is done.
+ * An optional listener is told whenever an entry leaves the cache, so callers can drop
+ * anything they keep per entry.
+ */
+public class LruDiskCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LruDiskCache.class);
+
+    private final Path dir;
+    private final long maxBytes;
+    private final Consumer<Path> onDrop;
+
+    // file name -> size, in access order
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    // file name -> open streams
+    private final Map<String, Integer> pins = new HashMap<>();
+    // removed from the index while pinned; deleted on the last unpin
+    private final Set<String> doomed = new HashSet<>();
+
+    public LruDiskCache(Path dir, long maxBytes) throws IOException {
+        this(dir, maxBytes, path -> { });
+    }
+
+    /**
+     * @param onDrop called with the entry's path when it is evicted or removed (under the cache lock)
+     */
+    public LruDiskCache(Path dir, long maxBytes, Consumer<Path> onDrop) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.onDrop = onDrop;
+        Files.createDirectories(dir);
+        reindex();
+    }
+
+    /**
+     * @return the cached file for the key, or null on a miss
+     */
+    public synchronized Path get(String key) {
+        String name = fileName(key);
+        if (index.get(name) == null) return null;
+        Path path = dir.resolve(name);
+        if (!Files.exists(path)) {
+            totalBytes -= index.remove(name);
+            onDrop.accept(path);
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * Opens the cached entry for reading and pins it until the stream is closed.
+     *
+     * @return a stream over the entry, or null on a miss
+     */
+    public synchronized InputStream open(String key) throws IOException {
+        Path path = get(key);
+        if (path == null) return null;
+        String name = path.getFileName().toString();
+        InputStream in = Files.newInputStream(path);
+        pins.merge(name, 1, Integer::sum);
+        return new FilterInputStream(in) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                try {
+                    super.close();
+                } finally {
+                    unpin(name);
+                }
+            }
+        };
+    }
+
+    public Path put(String key, byte[] data) throws IOException {
+        Path tmp = Files.createTempFile(dir, "put-", ".tmp");
+        Files.write(tmp, data);
+        return commit(key, tmp);
+    }
+
+    public Path put(String key, InputStream data) throws IOException {
+        Path tmp = Files.createTempFile(dir, "put-", ".tmp");
+        try {
+            Files.copy(data, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return commit(key, tmp);
+    }
+
+    public synchronized void remove(String key) {
+        String name = fileName(key);
+        Long size = index.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+            discard(name);
+        }
+    }
+
+    public synchronized long sizeBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int entryCount() {
+        return index.size();
+    }
+
+    private Path commit(String key, Path tmp) throws IOException {
+        String name = fileName(key);
+        Path target = dir.resolve(name);
+        long size = Files.size(tmp);
+        synchronized (this) {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            doomed.remove(name);
+            Long previous = index.put(name, size);
+            totalBytes += size - (previous != null ? previous : 0L);
+            evict(name);
+        }
+        return target;
+    }
+
+    // drop least recently used entries until back under budget, never the one just written
+    // nor one being read (the budget may be exceeded while every candidate is pinned)
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            if (e.getKey().equals(keep) || pins.containsKey(e.getKey())) continue;
+            it.remove();
+            totalBytes -= e.getValue();
+            Path path = dir.resolve(e.getKey());
+            onDrop.accept(path);
+            deleteQuietly(path);
+        }
+    }
+
+    private void discard(String name) {
+        onDrop.accept(dir.resolve(name));
+        if (pins.containsKey(name)) {
+            doomed.add(name);
+        } else {
+            deleteQuietly(dir.resolve(name));
+        }
+    }
+
+    private synchronized void unpin(String name) {
+        Integer count = pins.get(name);
+        if (count == null) return;
+        if (count > 1) {
+            pins.put(name, count - 1);
+            return;
+        }
+        pins.remove(name);
+        if (doomed.remove(name) && !index.containsKey(name)) deleteQuietly(dir.resolve(name));
+    }
+
+    private synchronized void reindex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.filter(Files::isRegularFile).forEach(files::add);
+        }
+        files.sort(Comparator.comparing(LruDiskCache::lastModified));
+        for (Path p : files) {
+            String name = p.getFileName().toString();
+            if (name.endsWith(".tmp")) {
+                deleteQuietly(p);
+                continue;
+            }
+            long size = Files.size(p);
+            index.put(name, size);
+            totalBytes += size;
+        }
+        evict(null);
+        logger.info("Disk cache {} indexed: {} entries, {} bytes", dir, index.size(), totalBytes);
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class).lastModifiedTime();
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            logger.warn("Failed to delete cache file {}: {}", p, e.getMessage());
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(h.length * 2);
+            for (byte b : h) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mijimoto.ECommerce.common.storage.controllers;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.common.storage.services.impl.MinioOrphanReconciler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Manual trigger and last report of the files table / bucket reconciliation (admin).
+ */
+@RestController
+@RequestMapping("/api/files/reconcile")
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "minio", matchIfMissing = true)
+public class StorageReconcileController {
+
+    private final MinioOrphanReconciler reconciler;
+
+    public StorageReconcileController(MinioOrphanReconciler reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    @PostMapping
+    public ResponseEntity<MinioOrphanReconciler.Report> reconcile(
+            @RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun) throws Exception {
+        CurrentUser.requireAdmin();
+        MinioOrphanReconciler.Report report = reconciler.reconcile(dryRun);
+        if (report == null) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        return ResponseEntity.ok(report);
+    }
+
+    @GetMapping("/last")
+    public ResponseEntity<MinioOrphanReconciler.Report> lastReport() {
+        CurrentUser.requireAdmin();
+        MinioOrphanReconciler.Report report = reconciler.getLastReport();
+        return report == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(report);
+    }
+}
@@ -0,0 +1,29 @@
+package com.mijimoto.ECommerce.common.storage.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Pending presigned upload, kept in Redis between initiation and completion.
+ */
+@Data
+@NoArgsConstructor
+public class UploadSession implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String uploadId;
+    // MinIO multipart upload id (null for single-part uploads)
+    private String multipartUploadId;
+    private String bucket;
+    private String storageKey;
+    private String filename;
+    private String contentType;
+    private long size;
+    private String md5;
+    private Long ownerId;
+    private boolean isPublic;
+    private long createdAtEpochMillis;
+}
@@ -1,10 +1,15 @@
 package com.mijimoto.ECommerce.common.storage.services;
 
+import com.mijimoto.ECommerce.common.file.dto.UploadCompleteRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitResponseDTO;
 import com.mijimoto.ECommerce.common.file.entities.FileEntity;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
+import java.util.Collection;
 import java.util.Optional;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.net.URL;
 
@@ -16,9 +21,49 @@ public interface StorageService {
 
     Resource downloadAsResource(FileEntity file) throws Exception;
 
+    /**
+     * Streams {@code length} bytes of the object starting at {@code offset} into {@code out}.
+     * Used for ranged (206) as well as full downloads.
+     */
+    void transferTo(FileEntity file, long offset, long length, OutputStream out) throws Exception;
+
     URL presignedUrl(FileEntity file, int expirySeconds) throws Exception;
 
     void delete(FileEntity file) throws Exception;
 
+    /**
+     * Deletes many files at once: objects in bulk, then the rows with a single SQL delete.
+     */
+    void deleteAll(List<FileEntity> files) throws Exception;
+
     List<FileEntity> listByOwner(Long ownerId);
+
+    /**
+     * Starts a direct-to-storage upload: returns presigned PUT url(s) the client uploads to,
+     * bypassing the application for the object bytes.
+     */
+    UploadInitResponseDTO initiateUpload(UploadInitRequestDTO request, Long ownerId) throws Exception;
+
+    /**
+     * Finishes a direct-to-storage upload: verifies the stored object and creates its FileEntity.
+     */
+    FileEntity completeUpload(String uploadId, UploadCompleteRequestDTO request) throws Exception;
+
+    void abortUpload(String uploadId) throws Exception;
+
+    /**
+     * Writes an object that is not tracked as a FileEntity (e.g. derived image renditions)
+     * into the default bucket.
+     */
+    void putObject(String storageKey, InputStream data, long size, String contentType) throws Exception;
+
+    /**
+     * Opens an untracked object from the default bucket, or empty when it does not exist.
+     */
+    Optional<InputStream> openObject(String storageKey) throws Exception;
+
+    /**
+     * Removes untracked objects from the default bucket; keys that do not exist are ignored.
+     */
+    void removeObjects(Collection<String> storageKeys) throws Exception;
 }
@@ -0,0 +1,38 @@
+package com.mijimoto.ECommerce.common.storage.services;
+
+import com.mijimoto.ECommerce.common.storage.models.UploadSession;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Redis store for pending presigned uploads: storage:upload:&lt;uploadId&gt;
+ *
+ * Sessions expire on their own shortly after the presigned URLs do, so abandoned
+ * uploads never need explicit cleanup here.
+ */
+@Service
+public class UploadSessionStore {
+
+    public static final String PREFIX_UPLOAD = "storage:upload:";
+
+    private final RedisTemplate<String, Object> redis;
+
+    public UploadSessionStore(RedisTemplate<String, Object> redis) {
+        this.redis = redis;
+    }
+
+    public void save(UploadSession session, long ttlSeconds) {
+        redis.opsForValue().set(PREFIX_UPLOAD + session.getUploadId(), session, Duration.ofSeconds(ttlSeconds));
+    }
+
+    public UploadSession get(String uploadId) {
+        Object value = redis.opsForValue().get(PREFIX_UPLOAD + uploadId);
+        return value instanceof UploadSession s ? s : null;
+    }
+
+    public void delete(String uploadId) {
+        redis.delete(PREFIX_UPLOAD + uploadId);
+    }
+}
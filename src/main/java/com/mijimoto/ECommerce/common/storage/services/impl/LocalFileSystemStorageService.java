@@ -0,0 +1,258 @@
+package com.mijimoto.ECommerce.common.storage.services.impl;
+
+import com.mijimoto.ECommerce.common.file.dto.UploadCompleteRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitResponseDTO;
+import com.mijimoto.ECommerce.common.file.entities.FileEntity;
+import com.mijimoto.ECommerce.common.file.repositories.FileRepository;
+import com.mijimoto.ECommerce.common.storage.services.StorageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Local filesystem storage backend (app.storage.backend=local).
+ *
+ * Objects live under a sharded layout, root/&lt;h0h1&gt;/&lt;h2h3&gt;/&lt;url-encoded key&gt;, where h is the
+ * sha-256 of the key, so no directory grows unbounded. Writes go to a temp file in the target
+ * directory and are committed with an atomic rename. Data moves with FileChannel.transferFrom /
+ * transferTo, so a multipart temp file is copied by the kernel without passing through a heap buffer.
+ *
+ * Meant for tests, dev boxes, offline benchmarks and single-node deployments; presigned
+ * (direct-to-storage) uploads and urls need an object store and are not available.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local")
+public class LocalFileSystemStorageService implements StorageService {
+
+    private static final String BUCKET = "local";
+
+    private final FileRepository fileRepository;
+    private final Path root;
+
+    public LocalFileSystemStorageService(FileRepository fileRepository,
+                                         @Value("${app.storage.local.root:./data/storage}") String root) throws IOException {
+        this.fileRepository = fileRepository;
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public FileEntity store(MultipartFile file, Long ownerId, boolean isPublic) throws Exception {
+        String original = file.getOriginalFilename() != null ? file.getOriginalFilename() : "file";
+        String ext = "";
+        int idx = original.lastIndexOf('.');
+        if (idx >= 0) ext = original.substring(idx);
+
+        String prefix = ownerId != null ? "users/" + ownerId : "system";
+        String storageKey = String.format("%s/%s%s", prefix, UUID.randomUUID(), ext);
+
+        Path target = resolveForWrite(storageKey);
+        Path tmp = Files.createTempFile(target.getParent(), "upload-", ".tmp");
+        String checksum;
+        try {
+            try (InputStream in = file.getInputStream()) {
+                write(in, file.getSize(), tmp);
+            }
+            checksum = sha256(tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        FileEntity entity = FileEntity.builder()
+                .filename(original)
+                .storageKey(storageKey)
+                .bucket(BUCKET)
+                .contentType(file.getContentType() != null ? file.getContentType() : "application/octet-stream")
+                .size(file.getSize())
+                .checksum(checksum)
+                .ownerId(ownerId)
+                .uploadedAt(OffsetDateTime.now())
+                .isPublic(isPublic)
+                .build();
+        return fileRepository.save(entity);
+    }
+
+    @Override
+    public Optional<FileEntity> getFile(Long id) {
+        return fileRepository.findById(id);
+    }
+
+    @Override
+    public Resource downloadAsResource(FileEntity file) throws Exception {
+        return new FileSystemResource(resolve(file.getStorageKey()));
+    }
+
+    @Override
+    public void transferTo(FileEntity file, long offset, long length, OutputStream out) throws Exception {
+        try (FileChannel ch = FileChannel.open(resolve(file.getStorageKey()), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                long n = ch.transferTo(position, remaining, target);
+                if (n <= 0) break;
+                position += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    @Override
+    public URL presignedUrl(FileEntity file, int expirySeconds) {
+        throw unsupported();
+    }
+
+    @Override
+    public void delete(FileEntity file) throws Exception {
+        Files.deleteIfExists(resolve(file.getStorageKey()));
+        fileRepository.delete(file);
+    }
+
+    @Override
+    public void deleteAll(List<FileEntity> files) throws Exception {
+        if (files == null || files.isEmpty()) return;
+        List<Long> ids = new ArrayList<>(files.size());
+        for (FileEntity f : files) {
+            Files.deleteIfExists(resolve(f.getStorageKey()));
+            ids.add(f.getId());
+        }
+        fileRepository.deleteAllByIdInBatch(ids);
+    }
+
+    @Override
+    public List<FileEntity> listByOwner(Long ownerId) {
+        return fileRepository.findByOwnerId(ownerId);
+    }
+
+    @Override
+    public UploadInitResponseDTO initiateUpload(UploadInitRequestDTO request, Long ownerId) {
+        throw unsupported();
+    }
+
+    @Override
+    public FileEntity completeUpload(String uploadId, UploadCompleteRequestDTO request) {
+        throw unsupported();
+    }
+
+    @Override
+    public void abortUpload(String uploadId) {
+        throw unsupported();
+    }
+
+    @Override
+    public void putObject(String storageKey, InputStream data, long size, String contentType) throws Exception {
+        Path target = resolveForWrite(storageKey);
+        Path tmp = Files.createTempFile(target.getParent(), "put-", ".tmp");
+        try {
+            write(data, size, tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<InputStream> openObject(String storageKey) throws Exception {
+        Path path = resolve(storageKey);
+        if (!Files.exists(path)) return Optional.empty();
+        return Optional.of(Files.newInputStream(path));
+    }
+
+    @Override
+    public void removeObjects(Collection<String> storageKeys) throws Exception {
+        for (String key : storageKeys) Files.deleteIfExists(resolve(key));
+    }
+
+    // helpers
+    private Path resolve(String storageKey) {
+        String hash = sha256Hex(storageKey.getBytes(StandardCharsets.UTF_8));
+        Path dir = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4));
+        return dir.resolve(URLEncoder.encode(storageKey, StandardCharsets.UTF_8));
+    }
+
+    // write paths only: reads and deletes must not leave empty shard directories behind
+    private Path resolveForWrite(String storageKey) throws IOException {
+        Path path = resolve(storageKey);
+        Files.createDirectories(path.getParent());
+        return path;
+    }
+
+    // a multipart temp file is a FileInputStream: channel-to-channel copy, no heap buffer
+    private static void write(InputStream in, long size, Path tmp) throws IOException {
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ReadableByteChannel src = in instanceof FileInputStream fis ? fis.getChannel() : Channels.newChannel(in);
+            long position = 0;
+            while (position < size) {
+                long n = out.transferFrom(src, position, size - position);
+                if (n <= 0) break;
+                position += n;
+            }
+            out.force(false);
+        }
+    }
+
+    // digest straight from the mapped file instead of copying it through a byte[]
+    private static String sha256(Path path) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long position = 0;
+            while (position < size) {
+                long chunk = Math.min(Integer.MAX_VALUE, size - position);
+                md.update(ch.map(FileChannel.MapMode.READ_ONLY, position, chunk));
+                position += chunk;
+            }
+        }
+        return bytesToHex(md.digest());
+    }
+
+    private static String sha256Hex(byte[] data) {
+        try {
+            return bytesToHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static ResponseStatusException unsupported() {
+        return new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED,
+                "Not available with the local storage backend");
+    }
+}
@@ -0,0 +1,316 @@
+package com.mijimoto.ECommerce.common.storage.services.impl;
+
+import com.mijimoto.ECommerce.common.image.services.ImageDerivativeService;
+import com.mijimoto.ECommerce.common.util.RedisLock;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Background reconciliation between the {@code files} table and the MinIO bucket.
+ *
+ * Both sides are streamed in key order (bucket listing is UTF-8 byte order; the table is read
+ * with a binary collation) and merge-joined with the same byte-order comparison, so neither
+ * side is ever held in memory.
+ * Candidates are then re-checked in batches before anything is deleted:
+ *  - orphan object: object with no row -> re-check that no row exists, then removeObjects
+ *  - dangling row: row with no object -> re-check with a HEAD, then one SQL delete per batch
+ * Objects/rows younger than the grace period are left alone (uploads in flight), as are
+ * derived renditions and objects under the exempt prefixes (e.g. the catalogue snapshot), which
+ * are never tracked as rows. Batches are rate limited.
+ *
+ * Runs on a cron, guarded by a renewed Redis lock so only one instance reconciles at a time.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "minio", matchIfMissing = true)
+public class MinioOrphanReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MinioOrphanReconciler.class);
+
+    private static final String LOCK_KEY = "storage:reconcile:lock";
+    // renewed every third of its ttl while the merge runs
+    private static final Duration LOCK_TTL = Duration.ofMinutes(10);
+    private static final int SAMPLE_LIMIT = 100;
+
+    /**
+     * UTF-8 byte order, which is code point order: how S3 lists keys and how a BIN2 collation
+     * sorts them. String.compareTo compares UTF-16 units and disagrees for supplementary
+     * characters against U+E000..U+FFFF.
+     */
+    static final Comparator<String> BYTE_ORDER = (a, b) -> {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) return Integer.compare(ca, cb);
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    };
+
+    public record Report(OffsetDateTime startedAt, OffsetDateTime finishedAt, boolean dryRun,
+                         long objectsScanned, long rowsScanned,
+                         long orphanObjectsFound, long orphanObjectsDeleted,
+                         long danglingRowsFound, long danglingRowsDeleted,
+                         List<String> orphanObjectSample, List<String> danglingRowSample) {}
+
+    private record RowRef(long id, String key, OffsetDateTime uploadedAt) {}
+
+    private final MinioClient minioClient;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final StringRedisTemplate redis;
+    private final String bucket;
+    private final boolean enabled;
+    private final boolean defaultDryRun;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final double batchesPerSecond;
+    private final List<String> exemptPrefixes;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile Report lastReport;
+
+    public MinioOrphanReconciler(MinioClient minioClient,
+                                 JdbcTemplate jdbcTemplate,
+                                 NamedParameterJdbcTemplate namedJdbcTemplate,
+                                 StringRedisTemplate redis,
+                                 @Value("${minio.bucket}") String bucket,
+                                 @Value("${app.storage.reconcile.enabled:true}") boolean enabled,
+                                 @Value("${app.storage.reconcile.dry-run:true}") boolean defaultDryRun,
+                                 @Value("${app.storage.reconcile.grace-hours:24}") long graceHours,
+                                 @Value("${app.storage.reconcile.batch-size:500}") int batchSize,
+                                 @Value("${app.storage.reconcile.batches-per-second:2}") double batchesPerSecond,
+                                 @Value("${app.storage.reconcile.exempt-prefixes:snapshots/}") String[] exemptPrefixes) {
+        this.minioClient = minioClient;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.redis = redis;
+        this.bucket = bucket;
+        this.enabled = enabled;
+        this.defaultDryRun = defaultDryRun;
+        this.gracePeriod = Duration.ofHours(graceHours);
+        this.batchSize = batchSize;
+        this.batchesPerSecond = batchesPerSecond;
+        List<String> exempt = new ArrayList<>();
+        exempt.add(ImageDerivativeService.RENDITION_PREFIX);
+        for (String prefix : exemptPrefixes) {
+            if (!prefix.isBlank()) exempt.add(prefix.trim());
+        }
+        this.exemptPrefixes = List.copyOf(exempt);
+    }
+
+    @Scheduled(cron = "${app.storage.reconcile.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (!enabled) return;
+        try {
+            reconcile(defaultDryRun);
+        } catch (Exception e) {
+            logger.error("Storage reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * @return the report, or null if a reconciliation is already running (here or on another instance)
+     */
+    public Report reconcile(boolean dryRun) throws Exception {
+        if (!running.compareAndSet(false, true)) return null;
+        RedisLock lock = RedisLock.tryAcquire(redis, LOCK_KEY, LOCK_TTL);
+        if (lock == null) {
+            running.set(false);
+            return null;
+        }
+        try {
+            Report report = run(dryRun, lock);
+            lastReport = report;
+            logger.info("Storage reconciliation done (dryRun={}): {} objects / {} rows scanned, {} orphan objects, {} dangling rows",
+                    dryRun, report.objectsScanned(), report.rowsScanned(), report.orphanObjectsFound(), report.danglingRowsFound());
+            return report;
+        } finally {
+            lock.close();
+            running.set(false);
+        }
+    }
+
+    private Report run(boolean dryRun, RedisLock lock) throws Exception {
+        OffsetDateTime startedAt = OffsetDateTime.now();
+        Instant cutoff = Instant.now().minus(gracePeriod);
+
+        long objectsScanned = 0, rowsScanned = 0;
+        long orphanFound = 0, orphanDeleted = 0, danglingFound = 0, danglingDeleted = 0;
+        List<String> orphanSample = new ArrayList<>();
+        List<String> danglingSample = new ArrayList<>();
+        List<String> orphanBatch = new ArrayList<>(batchSize);
+        List<RowRef> danglingBatch = new ArrayList<>(batchSize);
+
+        Iterator<Result<Item>> objects = minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(bucket)
+                .recursive(true)
+                .build()).iterator();
+
+        // binary collation so SQL Server orders keys the way the bucket listing does
+        try (Stream<RowRef> rowStream = jdbcTemplate.queryForStream(
+                "SELECT id, storage_key, uploaded_at FROM files WHERE bucket = ? "
+                        + "ORDER BY storage_key COLLATE Latin1_General_BIN2",
+                (rs, i) -> new RowRef(rs.getLong(1), rs.getString(2), rs.getObject(3, OffsetDateTime.class)),
+                bucket)) {
+            Iterator<RowRef> rows = rowStream.iterator();
+
+            Item o = nextObject(objects);
+            RowRef r = rows.hasNext() ? rows.next() : null;
+            long renewAt = System.nanoTime() + LOCK_TTL.toNanos() / 3;
+            while (o != null || r != null) {
+                if (System.nanoTime() - renewAt >= 0) {
+                    keepLock(lock);
+                    renewAt = System.nanoTime() + LOCK_TTL.toNanos() / 3;
+                }
+                int cmp = o == null ? 1 : r == null ? -1 : BYTE_ORDER.compare(o.objectName(), r.key());
+                if (cmp == 0) {
+                    objectsScanned++;
+                    rowsScanned++;
+                    o = nextObject(objects);
+                    r = rows.hasNext() ? rows.next() : null;
+                } else if (cmp < 0) {
+                    objectsScanned++;
+                    if (isOrphanCandidate(o, cutoff)) {
+                        orphanFound++;
+                        if (orphanSample.size() < SAMPLE_LIMIT) orphanSample.add(o.objectName());
+                        orphanBatch.add(o.objectName());
+                        if (orphanBatch.size() >= batchSize) {
+                            orphanDeleted += flushOrphans(orphanBatch, dryRun);
+                        }
+                    }
+                    o = nextObject(objects);
+                } else {
+                    rowsScanned++;
+                    if (r.uploadedAt() == null || r.uploadedAt().toInstant().isBefore(cutoff)) {
+                        danglingFound++;
+                        if (danglingSample.size() < SAMPLE_LIMIT) danglingSample.add(r.key());
+                        danglingBatch.add(r);
+                        if (danglingBatch.size() >= batchSize) {
+                            danglingDeleted += flushDangling(danglingBatch, dryRun);
+                        }
+                    }
+                    r = rows.hasNext() ? rows.next() : null;
+                }
+            }
+        }
+        orphanDeleted += flushOrphans(orphanBatch, dryRun);
+        danglingDeleted += flushDangling(danglingBatch, dryRun);
+
+        return new Report(startedAt, OffsetDateTime.now(), dryRun, objectsScanned, rowsScanned,
+                orphanFound, orphanDeleted, danglingFound, danglingDeleted, orphanSample, danglingSample);
+    }
+
+    // another instance may have taken over after an expiry: stop rather than reconcile twice
+    private static void keepLock(RedisLock lock) {
+        if (!lock.renew()) throw new IllegalStateException("Reconciliation lock lost");
+    }
+
+    boolean isOrphanCandidate(Item item, Instant cutoff) {
+        for (String prefix : exemptPrefixes) {
+            if (item.objectName().startsWith(prefix)) return false;
+        }
+        return item.lastModified() != null && item.lastModified().toInstant().isBefore(cutoff);
+    }
+
+    private Item nextObject(Iterator<Result<Item>> it) throws Exception {
+        while (it.hasNext()) {
+            Item item = it.next().get();
+            if (!item.isDir()) return item;
+        }
+        return null;
+    }
+
+    private long flushOrphans(List<String> keys, boolean dryRun) throws Exception {
+        if (keys.isEmpty()) return 0;
+        try {
+            // the merge is only a candidate list: make sure no row appeared for these keys meanwhile
+            Set<String> tracked = new HashSet<>(namedJdbcTemplate.queryForList(
+                    "SELECT storage_key FROM files WHERE storage_key IN (:keys)",
+                    new MapSqlParameterSource("keys", keys), String.class));
+            List<DeleteObject> toDelete = new ArrayList<>();
+            for (String k : keys) {
+                if (!tracked.contains(k)) toDelete.add(new DeleteObject(k));
+            }
+            if (dryRun || toDelete.isEmpty()) return 0;
+
+            long failed = 0;
+            // removeObjects is lazy: the request is only sent while iterating the results
+            for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(bucket)
+                    .objects(toDelete)
+                    .build())) {
+                DeleteError error = result.get();
+                logger.warn("Failed to remove orphan object {}: {}", error.objectName(), error.message());
+                failed++;
+            }
+            throttle();
+            return toDelete.size() - failed;
+        } finally {
+            keys.clear();
+        }
+    }
+
+    private long flushDangling(List<RowRef> rows, boolean dryRun) throws Exception {
+        if (rows.isEmpty()) return 0;
+        try {
+            List<Long> ids = new ArrayList<>();
+            for (RowRef row : rows) {
+                if (!objectExists(row.key())) ids.add(row.id());
+            }
+            if (dryRun || ids.isEmpty()) return 0;
+            int deleted = namedJdbcTemplate.update("DELETE FROM files WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", ids));
+            throttle();
+            return deleted;
+        } finally {
+            rows.clear();
+        }
+    }
+
+    private boolean objectExists(String key) throws Exception {
+        try {
+            minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(key).build());
+            return true;
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) return false;
+            throw e;
+        }
+    }
+
+    private void throttle() throws InterruptedException {
+        if (batchesPerSecond > 0) {
+            Thread.sleep((long) (1000 / batchesPerSecond));
+        }
+    }
+}
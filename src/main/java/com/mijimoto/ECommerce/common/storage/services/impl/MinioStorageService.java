@@ -1,44 +1,102 @@
 package com.mijimoto.ECommerce.common.storage.services.impl;
 
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.common.file.dto.UploadCompleteRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitRequestDTO;
+import com.mijimoto.ECommerce.common.file.dto.UploadInitResponseDTO;
 import com.mijimoto.ECommerce.common.file.entities.FileEntity;
 import com.mijimoto.ECommerce.common.file.repositories.FileRepository;
+import com.mijimoto.ECommerce.common.storage.cache.CachedObject;
+import com.mijimoto.ECommerce.common.storage.cache.HotObjectCache;
+import com.mijimoto.ECommerce.common.storage.models.UploadSession;
 import com.mijimoto.ECommerce.common.storage.services.StorageService;
+import com.mijimoto.ECommerce.common.storage.services.UploadSessionStore;
+import com.mijimoto.ECommerce.config.minio.MinioMultipartClient;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
 import io.minio.GetObjectArgs;
 import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
 import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
 import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Part;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "minio", matchIfMissing = true)
 public class MinioStorageService implements StorageService {
 
+    // S3 hard limits for multipart uploads and multi-object delete
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10000;
+    private static final int MAX_DELETE_OBJECTS = 1000;
+
     private final MinioClient minioClient;
+    private final MinioMultipartClient multipartClient;
     private final FileRepository fileRepository;
+    private final UploadSessionStore uploadSessionStore;
+    private final HotObjectCache hotObjectCache;
     private final String bucket;
     private final String minioUrl;
+    private final int presignExpirySeconds;
+    private final long presignedMaxSizeBytes;
+    private final long multipartThresholdBytes;
+    private final long multipartPartSizeBytes;
+    private final int transferBufferBytes;
 
     public MinioStorageService(MinioClient minioClient,
+                               MinioMultipartClient multipartClient,
                                FileRepository fileRepository,
+                               UploadSessionStore uploadSessionStore,
+                               HotObjectCache hotObjectCache,
                                @Value("${minio.bucket}") String bucket,
-                               @Value("${minio.url}") String minioUrl) {
+                               @Value("${minio.url}") String minioUrl,
+                               @Value("${minio.presign.expiry-seconds:300}") int presignExpirySeconds,
+                               @Value("${app.file.presigned-max-size-bytes:5368709120}") long presignedMaxSizeBytes,
+                               @Value("${app.file.multipart-threshold-bytes:67108864}") long multipartThresholdBytes,
+                               @Value("${app.file.multipart-part-size-bytes:16777216}") long multipartPartSizeBytes,
+                               @Value("${app.file.transfer-buffer-bytes:262144}") int transferBufferBytes) {
         this.minioClient = minioClient;
+        this.multipartClient = multipartClient;
         this.fileRepository = fileRepository;
+        this.uploadSessionStore = uploadSessionStore;
+        this.hotObjectCache = hotObjectCache;
         this.bucket = bucket;
         this.minioUrl = minioUrl != null ? minioUrl.replaceAll("/+$", "") : null;
+        this.presignExpirySeconds = presignExpirySeconds;
+        this.presignedMaxSizeBytes = presignedMaxSizeBytes;
+        this.multipartThresholdBytes = multipartThresholdBytes;
+        this.multipartPartSizeBytes = Math.max(MIN_PART_SIZE, multipartPartSizeBytes);
+        this.transferBufferBytes = transferBufferBytes;
     }
 
     @Override
@@ -101,6 +159,9 @@ public class MinioStorageService implements StorageService {
 
     @Override
     public Resource downloadAsResource(FileEntity file) throws Exception {
+        if (isHot(file)) {
+            return new InputStreamResource(cached(file).openStream());
+        }
         InputStream is = minioClient.getObject(
                 GetObjectArgs.builder()
                         .bucket(file.getBucket())
@@ -110,6 +171,30 @@ public class MinioStorageService implements StorageService {
         return new InputStreamResource(is);
     }
 
+    @Override
+    public void transferTo(FileEntity file, long offset, long length, OutputStream out) throws Exception {
+        // the SDK rejects length(0), and there is nothing to send anyway
+        if (length <= 0) return;
+        if (isHot(file)) {
+            cached(file).writeTo(offset, length, out);
+            return;
+        }
+        // ranged GET so MinIO only sends the requested bytes; one large buffer between the two sockets
+        try (InputStream is = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(file.getBucket())
+                        .object(file.getStorageKey())
+                        .offset(offset)
+                        .length(length)
+                        .build())) {
+            byte[] buffer = new byte[transferBufferBytes];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
     @Override
     public URL presignedUrl(FileEntity file, int expirySeconds) throws Exception {
         // Use presigned GET url provided by the SDK
@@ -126,6 +211,7 @@ public class MinioStorageService implements StorageService {
 
     @Override
     public void delete(FileEntity file) throws Exception {
+        hotObjectCache.invalidate(file.getStorageKey());
         minioClient.removeObject(RemoveObjectArgs.builder()
                 .bucket(file.getBucket())
                 .object(file.getStorageKey())
@@ -133,12 +219,274 @@ public class MinioStorageService implements StorageService {
         fileRepository.delete(file);
     }
 
+    @Override
+    public void deleteAll(List<FileEntity> files) throws Exception {
+        if (files == null || files.isEmpty()) return;
+
+        // group by bucket: removeObjects works on one bucket and at most 1000 keys per request
+        Map<String, List<DeleteObject>> byBucket = new LinkedHashMap<>();
+        for (FileEntity f : files) {
+            hotObjectCache.invalidate(f.getStorageKey());
+            byBucket.computeIfAbsent(f.getBucket(), b -> new ArrayList<>()).add(new DeleteObject(f.getStorageKey()));
+        }
+
+        Set<String> failedKeys = new HashSet<>();
+        for (Map.Entry<String, List<DeleteObject>> e : byBucket.entrySet()) {
+            List<DeleteObject> objects = e.getValue();
+            for (int from = 0; from < objects.size(); from += MAX_DELETE_OBJECTS) {
+                List<DeleteObject> chunk = objects.subList(from, Math.min(objects.size(), from + MAX_DELETE_OBJECTS));
+                // lazy: the request is sent while iterating the results
+                for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                        .bucket(e.getKey())
+                        .objects(chunk)
+                        .build())) {
+                    failedKeys.add(result.get().objectName());
+                }
+            }
+        }
+
+        // keep rows whose object could not be removed so they are not left orphaned
+        List<Long> ids = new ArrayList<>(files.size());
+        for (FileEntity f : files) {
+            if (!failedKeys.contains(f.getStorageKey())) ids.add(f.getId());
+        }
+        fileRepository.deleteAllByIdInBatch(ids);
+        if (!failedKeys.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to remove " + failedKeys.size() + " object(s)");
+        }
+    }
+
     @Override
     public List<FileEntity> listByOwner(Long ownerId) {
         return fileRepository.findByOwnerId(ownerId);
     }
 
+    @Override
+    public UploadInitResponseDTO initiateUpload(UploadInitRequestDTO request, Long ownerId) throws Exception {
+        if (request == null || request.getSize() == null || request.getSize() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Upload size is required");
+        }
+        if (request.getSize() > presignedMaxSizeBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Upload exceeds maximum size of " + presignedMaxSizeBytes + " bytes");
+        }
+
+        String original = request.getFilename() != null ? request.getFilename() : "file";
+        String ext = "";
+        int idx = original.lastIndexOf('.');
+        if (idx >= 0) ext = original.substring(idx);
+        String contentType = request.getContentType() != null ? request.getContentType() : "application/octet-stream";
+
+        UploadSession session = new UploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setBucket(bucket);
+        session.setStorageKey(buildStorageKey(ownerId, ext));
+        session.setFilename(original);
+        session.setContentType(contentType);
+        session.setSize(request.getSize());
+        session.setMd5(request.getMd5());
+        session.setOwnerId(ownerId);
+        session.setPublic(request.isPublic());
+        session.setCreatedAtEpochMillis(System.currentTimeMillis());
+
+        UploadInitResponseDTO response = new UploadInitResponseDTO();
+        response.setUploadId(session.getUploadId());
+        response.setStorageKey(session.getStorageKey());
+        response.setExpiresAt(OffsetDateTime.now().plusSeconds(presignExpirySeconds));
+
+        if (request.getSize() <= multipartThresholdBytes) {
+            response.setMultipart(false);
+            response.setUrl(presignPut(session.getStorageKey(), null));
+        } else {
+            long partSize = multipartPartSizeBytes;
+            long partCount = (request.getSize() + partSize - 1) / partSize;
+            if (partCount > MAX_PARTS) {
+                partSize = (request.getSize() + MAX_PARTS - 1) / MAX_PARTS;
+                partCount = (request.getSize() + partSize - 1) / partSize;
+            }
+            String multipartUploadId = multipartClient.createMultipartUpload(bucket, session.getStorageKey(), contentType);
+            session.setMultipartUploadId(multipartUploadId);
+
+            List<UploadInitResponseDTO.PartUrl> parts = new ArrayList<>((int) partCount);
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                String url = presignPut(session.getStorageKey(), Map.of(
+                        "uploadId", multipartUploadId,
+                        "partNumber", String.valueOf(partNumber)));
+                parts.add(new UploadInitResponseDTO.PartUrl(partNumber, url));
+            }
+            response.setMultipart(true);
+            response.setPartSize(partSize);
+            response.setParts(parts);
+        }
+
+        // keep the session a little longer than the urls so a late completion still resolves
+        uploadSessionStore.save(session, presignExpirySeconds * 2L);
+        return response;
+    }
+
+    @Override
+    public FileEntity completeUpload(String uploadId, UploadCompleteRequestDTO request) throws Exception {
+        UploadSession session = uploadSessionStore.get(uploadId);
+        if (session == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload " + uploadId + " not found or expired");
+        }
+        CurrentUser.requireOwnerOrAdmin(session.getOwnerId());
+
+        if (session.getMultipartUploadId() != null) {
+            multipartClient.completeMultipartUpload(session.getBucket(), session.getStorageKey(),
+                    session.getMultipartUploadId(), resolveParts(session, request));
+        }
+
+        // HEAD the object: it must exist and match what the client declared at initiation
+        StatObjectResponse stat;
+        try {
+            stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(session.getBucket())
+                    .object(session.getStorageKey())
+                    .build());
+        } catch (ErrorResponseException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Object for upload " + uploadId + " was not uploaded");
+        }
+
+        String etag = stat.etag() != null ? stat.etag().replace("\"", "") : null;
+        boolean sizeMatches = stat.size() == session.getSize();
+        boolean md5Matches = session.getMultipartUploadId() != null
+                || session.getMd5() == null
+                || session.getMd5().equalsIgnoreCase(etag);
+        if (!sizeMatches || !md5Matches) {
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(session.getBucket())
+                    .object(session.getStorageKey())
+                    .build());
+            uploadSessionStore.delete(uploadId);
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    sizeMatches ? "Uploaded object checksum mismatch" : "Uploaded object size mismatch");
+        }
+
+        FileEntity entity = FileEntity.builder()
+                .filename(session.getFilename())
+                .storageKey(session.getStorageKey())
+                .bucket(session.getBucket())
+                .contentType(stat.contentType() != null ? stat.contentType() : session.getContentType())
+                .size(stat.size())
+                // the bytes never pass through the application, so there is no verified sha256 to store
+                .checksum(null)
+                .ownerId(session.getOwnerId())
+                .metadata(etag != null ? "{\"etag\":\"" + etag + "\"}" : null)
+                .uploadedAt(OffsetDateTime.now())
+                .isPublic(session.isPublic())
+                .build();
+
+        if (session.isPublic() && minioUrl != null) {
+            entity.setUrl(String.format("%s/%s/%s", minioUrl, session.getBucket(), session.getStorageKey()));
+        }
+
+        FileEntity saved = fileRepository.save(entity);
+        uploadSessionStore.delete(uploadId);
+        return saved;
+    }
+
+    @Override
+    public void abortUpload(String uploadId) throws Exception {
+        UploadSession session = uploadSessionStore.get(uploadId);
+        if (session == null) return;
+        CurrentUser.requireOwnerOrAdmin(session.getOwnerId());
+        if (session.getMultipartUploadId() != null) {
+            multipartClient.abortMultipartUpload(session.getBucket(), session.getStorageKey(), session.getMultipartUploadId());
+        } else {
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(session.getBucket())
+                    .object(session.getStorageKey())
+                    .build());
+        }
+        uploadSessionStore.delete(uploadId);
+    }
+
+    @Override
+    public void putObject(String storageKey, InputStream data, long size, String contentType) throws Exception {
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(bucket)
+                .object(storageKey)
+                .stream(data, size, -1)
+                .contentType(contentType)
+                .build());
+    }
+
+    @Override
+    public Optional<InputStream> openObject(String storageKey) throws Exception {
+        try {
+            return Optional.of(minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucket)
+                    .object(storageKey)
+                    .build()));
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) return Optional.empty();
+            throw e;
+        }
+    }
+
+    @Override
+    public void removeObjects(Collection<String> storageKeys) throws Exception {
+        List<DeleteObject> objects = new ArrayList<>(storageKeys.size());
+        for (String key : storageKeys) objects.add(new DeleteObject(key));
+        int failed = 0;
+        for (int from = 0; from < objects.size(); from += MAX_DELETE_OBJECTS) {
+            List<DeleteObject> chunk = objects.subList(from, Math.min(objects.size(), from + MAX_DELETE_OBJECTS));
+            for (Result<DeleteError> result : minioClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(bucket)
+                    .objects(chunk)
+                    .build())) {
+                result.get();
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to remove " + failed + " object(s)");
+        }
+    }
+
     // helpers
+    // only public objects go through the local cache: they are the ones hammered by storefront traffic
+    private boolean isHot(FileEntity file) {
+        return file.isPublic() && file.getSize() != null && hotObjectCache.isCacheable(file.getSize());
+    }
+
+    private CachedObject cached(FileEntity file) throws Exception {
+        return hotObjectCache.get(file.getStorageKey(), file.getSize(), () -> minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(file.getBucket())
+                        .object(file.getStorageKey())
+                        .build()));
+    }
+
+    private String presignPut(String storageKey, Map<String, String> extraQueryParams) throws Exception {
+        GetPresignedObjectUrlArgs.Builder args = GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket(bucket)
+                .object(storageKey)
+                .expiry(presignExpirySeconds);
+        if (extraQueryParams != null) args.extraQueryParams(extraQueryParams);
+        return minioClient.getPresignedObjectUrl(args.build());
+    }
+
+    private Part[] resolveParts(UploadSession session, UploadCompleteRequestDTO request) throws Exception {
+        List<Part> parts = new ArrayList<>();
+        if (request != null && request.getParts() != null && !request.getParts().isEmpty()) {
+            for (UploadCompleteRequestDTO.CompletedPart p : request.getParts()) {
+                parts.add(new Part(p.getPartNumber(), p.getEtag()));
+            }
+        } else {
+            parts.addAll(multipartClient.listParts(session.getBucket(), session.getStorageKey(), session.getMultipartUploadId()));
+        }
+        if (parts.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "No parts uploaded for upload " + session.getUploadId());
+        }
+        parts.sort(Comparator.comparingInt(Part::partNumber));
+        return parts.toArray(new Part[0]);
+    }
+
     private String buildStorageKey(Long ownerId, String ext) {
         String uuid = UUID.randomUUID().toString();
         String prefix = ownerId != null ? "users/" + ownerId : "system";
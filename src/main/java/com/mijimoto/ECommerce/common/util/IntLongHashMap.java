@@ -0,0 +1,154 @@
+package com.mijimoto.ECommerce.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int to long without boxing: two flat arrays, linear probing,
+ * backward-shift deletion (no tombstones). Roughly 12 bytes per slot at a load factor of
+ * at most 0.5, against ~80 bytes per entry for {@code HashMap<Integer, Long>}.
+ *
+ * Not thread-safe.
+ */
+public final class IntLongHashMap {
+
+    /** returned by {@link #get} for absent keys; cannot be stored */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    // key 0 marks a free slot, so its value is kept on the side
+    private boolean hasZero;
+    private long zeroValue;
+
+    public IntLongHashMap() {
+        this(16);
+    }
+
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size + (hasZero ? 1 : 0);
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != NO_VALUE;
+    }
+
+    /**
+     * @return the value, or {@link #NO_VALUE}
+     */
+    public long get(int key) {
+        if (key == FREE) return hasZero ? zeroValue : NO_VALUE;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) return values[i];
+            if (k == FREE) return NO_VALUE;
+        }
+    }
+
+    /**
+     * @return the previous value, or {@link #NO_VALUE}
+     */
+    public long put(int key, long value) {
+        if (value == NO_VALUE) throw new IllegalArgumentException("NO_VALUE cannot be stored");
+        if (key == FREE) {
+            long previous = hasZero ? zeroValue : NO_VALUE;
+            hasZero = true;
+            zeroValue = value;
+            return previous;
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                long previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            if (k == FREE) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 2 > keys.length) resize(keys.length * 2);
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @return the removed value, or {@link #NO_VALUE}
+     */
+    public long remove(int key) {
+        if (key == FREE) {
+            long previous = hasZero ? zeroValue : NO_VALUE;
+            hasZero = false;
+            return previous;
+        }
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == FREE) return NO_VALUE;
+            i = (i + 1) & mask;
+        }
+        long previous = values[i];
+        // pull later entries of the probe run back so lookups never stop early
+        int gap = i;
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = FREE;
+        size--;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasZero = false;
+    }
+
+    public interface Visitor {
+        void accept(int key, long value);
+    }
+
+    public void forEach(Visitor visitor) {
+        if (hasZero) visitor.accept(FREE, zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) visitor.accept(keys[i], values[i]);
+        }
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing; sequential ids would otherwise form long probe runs
+        int h = key * 0x9E3779B9;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            int k = oldKeys[i];
+            if (k == FREE) continue;
+            int j = slot(k);
+            while (keys[j] != FREE) j = (j + 1) & mask;
+            keys[j] = k;
+            values[j] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.mijimoto.ECommerce.common.util;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Single-holder lock on a Redis key: SET NX PX with a random token as the value.
+ *
+ * Renewal and release only touch the key while it still holds this token, so a holder whose
+ * lease ran out can neither extend nor delete the lock that another instance took over.
+ * Long jobs call {@link #renew()} between steps and stop when it returns false.
+ */
+public final class RedisLock implements AutoCloseable {
+
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0", Long.class);
+
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    private final StringRedisTemplate redis;
+    private final String key;
+    private final String token;
+    private final Duration ttl;
+
+    private RedisLock(StringRedisTemplate redis, String key, String token, Duration ttl) {
+        this.redis = redis;
+        this.key = key;
+        this.token = token;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the held lock, or null when another holder has it
+     */
+    public static RedisLock tryAcquire(StringRedisTemplate redis, String key, Duration ttl) {
+        String token = ProcessHandle.current().pid() + ":" + UUID.randomUUID();
+        Boolean locked = redis.opsForValue().setIfAbsent(key, token, ttl);
+        return Boolean.TRUE.equals(locked) ? new RedisLock(redis, key, token, ttl) : null;
+    }
+
+    /**
+     * Extends the lease by the full ttl.
+     *
+     * @return false when the lock has been lost (expired, possibly taken by someone else)
+     */
+    public boolean renew() {
+        Long n = redis.execute(RENEW, List.of(key), token, String.valueOf(ttl.toMillis()));
+        return n != null && n == 1;
+    }
+
+    @Override
+    public void close() {
+        redis.execute(RELEASE, List.of(key), token);
+    }
+}
@@ -0,0 +1,146 @@
+package com.mijimoto.ECommerce.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from String to int without boxing the values: parallel arrays of
+ * keys, cached key hashes and values, linear probing, backward-shift deletion (no tombstones).
+ * The cached hash is compared before {@code equals}, so a probe rarely touches another key.
+ *
+ * Not thread-safe.
+ */
+public final class StringIntHashMap {
+
+    /** returned by {@link #get} for absent keys; cannot be stored */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private String[] keys;
+    private int[] hashes;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public StringIntHashMap() {
+        this(16);
+    }
+
+    public StringIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(String key) {
+        return get(key) != NO_VALUE;
+    }
+
+    /**
+     * @return the value, or {@link #NO_VALUE}
+     */
+    public int get(String key) {
+        int h = hash(key);
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String k = keys[i];
+            if (k == null) return NO_VALUE;
+            if (hashes[i] == h && k.equals(key)) return values[i];
+        }
+    }
+
+    /**
+     * @return the previous value, or {@link #NO_VALUE}
+     */
+    public int put(String key, int value) {
+        if (value == NO_VALUE) throw new IllegalArgumentException("NO_VALUE cannot be stored");
+        int h = hash(key);
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String k = keys[i];
+            if (k == null) {
+                keys[i] = key;
+                hashes[i] = h;
+                values[i] = value;
+                if (++size * 2 > keys.length) resize(keys.length * 2);
+                return NO_VALUE;
+            }
+            if (hashes[i] == h && k.equals(key)) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return the removed value, or {@link #NO_VALUE}
+     */
+    public int remove(String key) {
+        int h = hash(key);
+        int i = h & mask;
+        while (true) {
+            String k = keys[i];
+            if (k == null) return NO_VALUE;
+            if (hashes[i] == h && k.equals(key)) break;
+            i = (i + 1) & mask;
+        }
+        int previous = values[i];
+        // pull later entries of the probe run back so lookups never stop early
+        int gap = i;
+        for (int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+            int home = hashes[j] & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                hashes[gap] = hashes[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        keys[gap] = null;
+        size--;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    public interface Visitor {
+        void accept(String key, int value);
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) visitor.accept(keys[i], values[i]);
+        }
+    }
+
+    private static int hash(String key) {
+        // String.hashCode is cached on the instance; spread it since only the low bits pick a slot
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int j = oldHashes[i] & mask;
+            while (keys[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            hashes[j] = oldHashes[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
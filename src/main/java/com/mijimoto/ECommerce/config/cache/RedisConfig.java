@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -12,6 +13,7 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
  * Redis configuration
  * - StringRedisTemplate: Auto-configured by Spring Boot for String-to-String operations (tokens)
  * - RedisTemplate<String, Object>: Custom template for complex objects (shopping carts)
+ * - RedisMessageListenerContainer: pub/sub, used to fan out cache invalidations to every instance
  */
 @Configuration
 public class RedisConfig {
@@ -50,4 +52,14 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * Shared pub/sub container; components register their own channel listeners on it
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(LettuceConnectionFactory factory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        return container;
+    }
 }
@@ -1,13 +1,16 @@
 package com.mijimoto.ECommerce.config.minio;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.MakeBucketArgs;
 import io.minio.BucketExistsArgs;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "minio", matchIfMissing = true)
 public class MinioConfig {
 
     @Value("${minio.url}")
@@ -42,4 +45,12 @@ public class MinioConfig {
 
         return client;
     }
+
+    @Bean
+    public MinioMultipartClient minioMultipartClient() {
+        return new MinioMultipartClient(MinioAsyncClient.builder()
+                .endpoint(minioUrl)
+                .credentials(accessKey, secretKey)
+                .build());
+    }
 }
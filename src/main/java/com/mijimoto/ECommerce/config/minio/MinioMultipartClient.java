@@ -0,0 +1,59 @@
+package com.mijimoto.ECommerce.config.minio;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin extension of {@link MinioAsyncClient} exposing the low-level multipart upload calls
+ * (create / list parts / complete / abort) that the SDK keeps protected.
+ *
+ * Used for presigned multipart uploads where the client PUTs each part directly to MinIO
+ * and the application only initiates and completes the upload.
+ */
+public class MinioMultipartClient extends MinioAsyncClient {
+
+    private static final int LIST_PARTS_PAGE = 1000;
+
+    public MinioMultipartClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public String createMultipartUpload(String bucket, String object, String contentType) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) headers.put("Content-Type", contentType);
+        return createMultipartUploadAsync(bucket, null, object, headers, null)
+                .get()
+                .result()
+                .uploadId();
+    }
+
+    /**
+     * All uploaded parts, following the part-number marker: S3 returns at most 1000 parts per page.
+     */
+    public List<Part> listParts(String bucket, String object, String uploadId) throws Exception {
+        List<Part> parts = new ArrayList<>();
+        int marker = 0;
+        while (true) {
+            ListPartsResult page = listPartsAsync(bucket, null, object, LIST_PARTS_PAGE, marker, uploadId, null, null)
+                    .get()
+                    .result();
+            parts.addAll(page.partList());
+            if (!page.isTruncated() || page.nextPartNumberMarker() <= marker) return parts;
+            marker = page.nextPartNumberMarker();
+        }
+    }
+
+    public void completeMultipartUpload(String bucket, String object, String uploadId, Part[] parts) throws Exception {
+        completeMultipartUploadAsync(bucket, null, object, uploadId, parts, null, null).get();
+    }
+
+    public void abortMultipartUpload(String bucket, String object, String uploadId) throws Exception {
+        abortMultipartUploadAsync(bucket, null, object, uploadId, null, null).get();
+    }
+}
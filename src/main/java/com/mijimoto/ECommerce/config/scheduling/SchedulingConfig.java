@@ -0,0 +1,12 @@
+package com.mijimoto.ECommerce.config.scheduling;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (storage reconciliation, cache refreshes, sweepers).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
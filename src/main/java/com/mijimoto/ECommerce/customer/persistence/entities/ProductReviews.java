@@ -13,6 +13,8 @@ import java.util.Date;
 import com.mijimoto.ECommerce.catalogue.persistence.entities.Products;
 import com.mijimoto.ECommerce.user.persistence.entities.Users;
 
+import com.mijimoto.ECommerce.catalogue.events.CatalogueChangeListener;
+
 import jakarta.persistence.*;
 
 /**
@@ -24,6 +26,7 @@ import jakarta.persistence.*;
 @NoArgsConstructor
 @Entity
 @Table(name="product_reviews", schema="dbo", catalog="EcommerceDB" )
+@EntityListeners(CatalogueChangeListener.class)
 public class ProductReviews implements Serializable {
 
     private static final long serialVersionUID = 1L;
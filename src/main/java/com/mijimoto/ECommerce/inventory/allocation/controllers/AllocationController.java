@@ -0,0 +1,69 @@
+package com.mijimoto.ECommerce.inventory.allocation.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.inventory.allocation.dto.AllocationBatchRequestDTO;
+import com.mijimoto.ECommerce.inventory.allocation.dto.AllocationDTO;
+import com.mijimoto.ECommerce.inventory.allocation.dto.AllocationRequestDTO;
+import com.mijimoto.ECommerce.inventory.allocation.services.AllocationService;
+
+/**
+ * Warehouse allocation for fulfilment (authenticated)
+ */
+@RestController
+@RequestMapping(value = "/api/inventory/allocation", produces = MediaType.APPLICATION_JSON_VALUE)
+public class AllocationController {
+
+    private final AllocationService allocationService;
+
+    public AllocationController(AllocationService allocationService) {
+        this.allocationService = allocationService;
+    }
+
+    /**
+     * POST - plan shipments for a basket
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AllocationDTO> allocate(@RequestBody AllocationRequestDTO request) {
+        if (request.getLines() == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one line is required");
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (AllocationRequestDTO.Line line : request.getLines()) {
+            if (line == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Each line needs a variantId and a positive quantity");
+            if (line.getVariantId() == null || line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Each line needs a variantId and a positive quantity");
+            }
+            quantities.merge(line.getVariantId(), line.getQuantity(), Integer::sum);
+        }
+        return ResponseEntity.ok(allocationService.allocate(request.getProvinceId(), quantities));
+    }
+
+    /**
+     * GET - plan shipments for an existing order (its owner or an admin)
+     */
+    @GetMapping("/orders/{orderId}")
+    public ResponseEntity<AllocationDTO> allocateOrder(@PathVariable("orderId") Long orderId) {
+        return ResponseEntity.ok(allocationService.allocateOrder(orderId));
+    }
+
+    /**
+     * POST - re-allocate a backlog oldest first: the given orders, or the oldest {@code limit} in {@code status} (admin)
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<AllocationDTO>> allocateBatch(@RequestBody AllocationBatchRequestDTO request) {
+        CurrentUser.requireAdmin();
+        if (request.getOrderIds() != null && !request.getOrderIds().isEmpty()) {
+            return ResponseEntity.ok(allocationService.allocateOrders(request.getOrderIds()));
+        }
+        int limit = request.getLimit() != null ? request.getLimit() : 100;
+        return ResponseEntity.ok(allocationService.allocateBacklog(request.getStatus(), limit));
+    }
+}
@@ -0,0 +1,22 @@
+package com.mijimoto.ECommerce.inventory.allocation.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Orders to allocate together, oldest first: the given ids, or the oldest orders in a status.
+ */
+@Data
+@NoArgsConstructor
+public class AllocationBatchRequestDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<Long> orderIds = new ArrayList<>();
+    private String status;
+    private Integer limit;
+}
@@ -0,0 +1,59 @@
+package com.mijimoto.ECommerce.inventory.allocation.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Warehouses chosen to fulfil a basket or an order, and what none of them can supply.
+ */
+@Data
+@NoArgsConstructor
+public class AllocationDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** set when allocating orders */
+    private Long orderId;
+    private Integer shippingZoneId;
+    /** estimated shipping cost over all shipments */
+    private BigDecimal cost;
+    private List<Shipment> shipments = new ArrayList<>();
+    private List<Shortage> shortages = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Shipment implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer warehouseId;
+        private String warehouseCode;
+        private BigDecimal cost;
+        private List<Line> lines = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Line implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer variantId;
+        private Integer quantity;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Shortage implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer variantId;
+        private Integer missing;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mijimoto.ECommerce.inventory.allocation.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basket to allocate to warehouses for delivery to a province.
+ */
+@Data
+@NoArgsConstructor
+public class AllocationRequestDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** destination; null when unknown (every warehouse costs the same) */
+    private Integer provinceId;
+    private List<Line> lines = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Line implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer variantId;
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,248 @@
+package com.mijimoto.ECommerce.inventory.allocation.services;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.inventory.allocation.dto.AllocationDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which warehouses fulfil a basket or an order.
+ *
+ * Stock, warehouses and shipping rates are read from an in-memory {@link AllocationSnapshot}
+ * rebuilt on an interval, so allocating touches no table; the plan is advisory, and reserving
+ * the chosen warehouses (or the counters) is what finally checks the stock. A shipment costs the
+ * destination zone's base rate, times the out-of-zone factor when the warehouse's configured home
+ * zone is another one; {@link AllocationSolver} minimises shipments, then cost.
+ *
+ * Batch mode allocates a backlog of orders oldest first against one working copy of the stock,
+ * so units given to an earlier order are not offered to a later one. An order's own active
+ * reservations are added back at the warehouses holding them, so stock it already holds is
+ * neither reported short nor looked for elsewhere.
+ */
+@Service
+public class AllocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllocationService.class);
+
+    private final AllocationSnapshotLoader loader;
+    private final AllocationSolver solver;
+    private final Map<String, Integer> homeZoneByCode;
+    private final BigDecimal outOfZoneFactor;
+    private final BigDecimal defaultRate;
+    private final int maxLines;
+    private final int maxBatch;
+
+    private volatile AllocationSnapshot snapshot = AllocationSnapshot.EMPTY;
+
+    public AllocationService(AllocationSnapshotLoader loader,
+                             @Value("${app.inventory.allocation.warehouse-zones:}") String warehouseZones,
+                             @Value("${app.inventory.allocation.out-of-zone-factor:1.5}") BigDecimal outOfZoneFactor,
+                             @Value("${app.inventory.allocation.default-rate:1}") BigDecimal defaultRate,
+                             @Value("${app.inventory.allocation.max-exact-warehouses:16}") int maxExactWarehouses,
+                             @Value("${app.inventory.allocation.max-exact-shipments:3}") int maxExactShipments,
+                             @Value("${app.inventory.allocation.max-lines:200}") int maxLines,
+                             @Value("${app.inventory.allocation.max-batch:1000}") int maxBatch) {
+        this.loader = loader;
+        this.solver = new AllocationSolver(maxExactWarehouses, maxExactShipments);
+        this.homeZoneByCode = parseZones(warehouseZones);
+        this.outOfZoneFactor = outOfZoneFactor;
+        this.defaultRate = defaultRate;
+        this.maxLines = maxLines;
+        this.maxBatch = maxBatch;
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.allocation.refresh-interval-ms:30000}")
+    public void refresh() {
+        try {
+            long started = System.currentTimeMillis();
+            AllocationSnapshot next = loader.load(homeZoneByCode);
+            snapshot = next;
+            logger.debug("Allocation snapshot built: {} warehouses, {} variants in stock in {} ms",
+                    next.warehouseIds().length, next.stock().size(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            logger.warn("Allocation snapshot refresh failed, keeping the previous one: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param quantities units per variant
+     */
+    public AllocationDTO allocate(Integer provinceId, Map<Integer, Integer> quantities) {
+        validate(quantities);
+        AllocationSnapshot s = current();
+        return allocate(s, provinceId, quantities, s::available);
+    }
+
+    /**
+     * @return the order's allocation
+     * @throws ResponseStatusException 403 unless the caller placed the order or is an admin,
+     *                                 404 if the order does not exist
+     */
+    public AllocationDTO allocateOrder(long orderId) {
+        if (!CurrentUser.isAdmin()) CurrentUser.requireOwnerOrAdmin(loader.orderOwner(orderId));
+        List<AllocationDTO> result = allocateOrders(List.of(orderId));
+        if (result.isEmpty()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found");
+        return result.get(0);
+    }
+
+    /**
+     * Allocates orders in the given order, each seeing the stock the earlier ones left.
+     */
+    public List<AllocationDTO> allocateOrders(List<Long> orderIds) {
+        if (orderIds.size() > maxBatch) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxBatch + " orders per batch");
+        }
+        if (orderIds.isEmpty()) return List.of();
+        AllocationSnapshot s = current();
+        // units taken by earlier orders of the batch, by variant
+        Map<Integer, int[]> taken = new HashMap<>();
+        List<AllocationDTO> results = new ArrayList<>(orderIds.size());
+        for (AllocationSnapshotLoader.OrderBasket basket : loader.loadOrders(orderIds)) {
+            Map<Integer, int[]> own = held(s, basket.held());
+            AllocationSolver.Stock stock = (variantId, w) -> {
+                int[] t = taken.get(variantId);
+                int[] o = own.get(variantId);
+                return s.available(variantId, w) - (t != null ? t[w] : 0) + (o != null ? o[w] : 0);
+            };
+            AllocationDTO dto = allocate(s, basket.provinceId(), basket.quantities(), stock);
+            dto.setOrderId(basket.orderId());
+            for (AllocationDTO.Shipment shipment : dto.getShipments()) {
+                int w = indexOf(s, shipment.getWarehouseId());
+                for (AllocationDTO.Line line : shipment.getLines()) {
+                    int[] o = own.get(line.getVariantId());
+                    // units the order held itself were never in the shared stock
+                    int fromOwn = o != null ? Math.min(o[w], line.getQuantity()) : 0;
+                    if (line.getQuantity() > fromOwn) {
+                        taken.computeIfAbsent(line.getVariantId(), k -> new int[s.warehouseIds().length])[w]
+                                += line.getQuantity() - fromOwn;
+                    }
+                }
+            }
+            results.add(dto);
+        }
+        return results;
+    }
+
+    /**
+     * Allocates the oldest orders in a status as one batch.
+     */
+    public List<AllocationDTO> allocateBacklog(String status, int limit) {
+        if (status == null || status.isBlank()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "status is required");
+        return allocateOrders(loader.oldestOrders(status, Math.max(1, Math.min(limit, maxBatch))));
+    }
+
+    private AllocationDTO allocate(AllocationSnapshot s, Integer provinceId, Map<Integer, Integer> quantities,
+                                   AllocationSolver.Stock stock) {
+        Integer zone = provinceId != null ? s.provinceZones().get(provinceId) : null;
+        BigDecimal[] costs = shipmentCosts(s, zone);
+        double[] cost = new double[costs.length];
+        for (int w = 0; w < costs.length; w++) cost[w] = costs[w].doubleValue();
+        List<AllocationSolver.Line> lines = new ArrayList<>(quantities.size());
+        quantities.forEach((variantId, quantity) -> {
+            if (quantity != null && quantity > 0) lines.add(new AllocationSolver.Line(variantId, quantity));
+        });
+        AllocationSolver.Result result = solver.solve(lines, cost, stock);
+
+        AllocationDTO dto = new AllocationDTO();
+        dto.setShippingZoneId(zone);
+        BigDecimal total = BigDecimal.ZERO;
+        for (AllocationSolver.Shipment shipment : result.shipments()) {
+            AllocationDTO.Shipment out = new AllocationDTO.Shipment();
+            out.setWarehouseId(s.warehouseIds()[shipment.warehouse()]);
+            out.setWarehouseCode(s.warehouseCodes()[shipment.warehouse()]);
+            out.setCost(costs[shipment.warehouse()]);
+            shipment.quantities().forEach((variantId, quantity) -> {
+                AllocationDTO.Line line = new AllocationDTO.Line();
+                line.setVariantId(variantId);
+                line.setQuantity(quantity);
+                out.getLines().add(line);
+            });
+            dto.getShipments().add(out);
+            total = total.add(out.getCost());
+        }
+        result.shortages().forEach((variantId, missing) -> {
+            AllocationDTO.Shortage shortage = new AllocationDTO.Shortage();
+            shortage.setVariantId(variantId);
+            shortage.setMissing(missing);
+            dto.getShortages().add(shortage);
+        });
+        dto.setCost(total);
+        return dto;
+    }
+
+    private BigDecimal[] shipmentCosts(AllocationSnapshot s, Integer zone) {
+        BigDecimal base = zone != null ? s.zoneRates().getOrDefault(zone, defaultRate) : defaultRate;
+        BigDecimal away = base.multiply(outOfZoneFactor).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal[] costs = new BigDecimal[s.warehouseIds().length];
+        for (int w = 0; w < costs.length; w++) {
+            // a warehouse without a home zone is treated as local everywhere
+            boolean local = zone == null || s.homeZones()[w] == null || s.homeZones()[w].equals(zone);
+            costs[w] = local ? base : away;
+        }
+        return costs;
+    }
+
+    /**
+     * @return held units by variant, indexed like the snapshot's warehouses; warehouses that
+     *         are no longer active are left out
+     */
+    private static Map<Integer, int[]> held(AllocationSnapshot s, Map<Integer, Map<Integer, Integer>> held) {
+        Map<Integer, int[]> out = new HashMap<>();
+        held.forEach((variantId, byWarehouse) -> byWarehouse.forEach((warehouseId, quantity) -> {
+            int w = find(s, warehouseId);
+            if (w >= 0) out.computeIfAbsent(variantId, k -> new int[s.warehouseIds().length])[w] += quantity;
+        }));
+        return out;
+    }
+
+    private AllocationSnapshot current() {
+        if (snapshot == AllocationSnapshot.EMPTY) refresh();
+        return snapshot;
+    }
+
+    private void validate(Map<Integer, Integer> quantities) {
+        if (quantities.isEmpty()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one line is required");
+        if (quantities.size() > maxLines) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxLines + " lines per allocation");
+        }
+    }
+
+    private static int indexOf(AllocationSnapshot s, int warehouseId) {
+        int w = find(s, warehouseId);
+        if (w < 0) throw new IllegalStateException("warehouse " + warehouseId + " is not in the snapshot");
+        return w;
+    }
+
+    private static int find(AllocationSnapshot s, int warehouseId) {
+        int[] ids = s.warehouseIds();
+        for (int i = 0; i < ids.length; i++) if (ids[i] == warehouseId) return i;
+        return -1;
+    }
+
+    /**
+     * "WH-NORTH:1,WH-SOUTH:2" to warehouse code -> shipping zone id.
+     */
+    private static Map<String, Integer> parseZones(String value) {
+        Map<String, Integer> zones = new LinkedHashMap<>();
+        if (value == null || value.isBlank()) return zones;
+        for (String entry : value.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) throw new IllegalArgumentException("app.inventory.allocation.warehouse-zones: bad entry '" + entry + "'");
+            zones.put(entry.substring(0, colon).trim(), Integer.valueOf(entry.substring(colon + 1).trim()));
+        }
+        return zones;
+    }
+}
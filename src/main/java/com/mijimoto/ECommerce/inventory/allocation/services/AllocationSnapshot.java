@@ -0,0 +1,30 @@
+package com.mijimoto.ECommerce.inventory.allocation.services;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Everything allocation reads, loaded in one go: active warehouses (by dense index), available
+ * units per variant and warehouse, the shipping zone of each province and the base rate of each
+ * zone. Immutable once built.
+ *
+ * @param stock         available units by variant, indexed like {@code warehouseIds}; variants
+ *                      with no stock anywhere are absent
+ * @param homeZones     configured shipping zone of each warehouse, null if none
+ */
+record AllocationSnapshot(int[] warehouseIds,
+                          String[] warehouseCodes,
+                          Integer[] homeZones,
+                          Map<Integer, int[]> stock,
+                          Map<Integer, Integer> provinceZones,
+                          Map<Integer, BigDecimal> zoneRates,
+                          long builtAt) {
+
+    static final AllocationSnapshot EMPTY = new AllocationSnapshot(new int[0], new String[0], new Integer[0],
+            Map.of(), Map.of(), Map.of(), 0);
+
+    int available(int variantId, int warehouse) {
+        int[] units = stock.get(variantId);
+        return units != null ? units[warehouse] : 0;
+    }
+}
@@ -0,0 +1,123 @@
+package com.mijimoto.ECommerce.inventory.allocation.services;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC reads behind allocation: the snapshot, and the lines and destinations of orders.
+ */
+@Component
+class AllocationSnapshotLoader {
+
+    /**
+     * An order's destination province (null if unknown), its quantities per variant and the
+     * units its active reservations already hold, per variant and warehouse id.
+     */
+    record OrderBasket(long orderId, Integer provinceId, Map<Integer, Integer> quantities,
+                       Map<Integer, Map<Integer, Integer>> held) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    AllocationSnapshotLoader(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * @param homeZoneByCode configured shipping zone per warehouse code
+     */
+    AllocationSnapshot load(Map<String, Integer> homeZoneByCode) {
+        List<Integer> ids = new ArrayList<>();
+        List<String> codes = new ArrayList<>();
+        jdbc.query("SELECT id, code FROM warehouses WHERE is_active = 1 ORDER BY id", rs -> {
+            ids.add(rs.getInt("id"));
+            codes.add(rs.getString("code"));
+        });
+        int[] warehouseIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        Map<Integer, Integer> indexOf = new HashMap<>();
+        Integer[] homeZones = new Integer[warehouseIds.length];
+        for (int i = 0; i < warehouseIds.length; i++) {
+            indexOf.put(warehouseIds[i], i);
+            homeZones[i] = homeZoneByCode.get(codes.get(i));
+        }
+
+        // only rows with something to sell; most variant/warehouse pairs are empty
+        Map<Integer, int[]> stock = new HashMap<>();
+        jdbc.query("SELECT variant_id, warehouse_id, quantity_on_hand - reserved_quantity AS available " +
+                   "FROM inventory_levels WHERE quantity_on_hand > reserved_quantity AND warehouse_id IS NOT NULL", rs -> {
+            Integer w = indexOf.get(rs.getInt("warehouse_id"));
+            if (w == null) return;
+            stock.computeIfAbsent(rs.getInt("variant_id"), k -> new int[warehouseIds.length])[w] += rs.getInt("available");
+        });
+
+        Map<Integer, Integer> provinceZones = new HashMap<>();
+        jdbc.query("SELECT id, shipping_zone_id FROM provinces WHERE shipping_zone_id IS NOT NULL",
+                rs -> { provinceZones.put(rs.getInt("id"), rs.getInt("shipping_zone_id")); });
+
+        // no parcel weights are recorded: a shipment costs the zone's cheapest rate
+        Map<Integer, BigDecimal> zoneRates = new HashMap<>();
+        jdbc.query("SELECT shipping_zone_id, MIN(price) AS price FROM shipping_rates GROUP BY shipping_zone_id",
+                rs -> { zoneRates.put(rs.getInt("shipping_zone_id"), rs.getBigDecimal("price")); });
+
+        return new AllocationSnapshot(warehouseIds, codes.toArray(new String[0]), homeZones, stock,
+                provinceZones, zoneRates, System.currentTimeMillis());
+    }
+
+    /**
+     * @return baskets in the order of {@code orderIds}; unknown orders are left out
+     */
+    List<OrderBasket> loadOrders(List<Long> orderIds) {
+        Map<Long, Integer> provinces = new LinkedHashMap<>();
+        Map<Long, Map<Integer, Integer>> quantities = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", orderIds);
+        jdbc.query("SELECT o.id, a.province_id FROM orders o LEFT JOIN addresses a ON a.id = o.address_id " +
+                   "WHERE o.id IN (:ids)", params, rs -> {
+            provinces.put(rs.getLong("id"), rs.getObject("province_id", Integer.class));
+        });
+        jdbc.query("SELECT order_id, variant_id, SUM(quantity) AS quantity FROM order_items " +
+                   "WHERE order_id IN (:ids) GROUP BY order_id, variant_id ORDER BY order_id, MIN(id)", params, rs -> {
+            quantities.computeIfAbsent(rs.getLong("order_id"), k -> new LinkedHashMap<>())
+                    .put(rs.getInt("variant_id"), rs.getInt("quantity"));
+        });
+        // the snapshot counts these as reserved; they are still this order's to ship
+        Map<Long, Map<Integer, Map<Integer, Integer>>> held = new HashMap<>();
+        jdbc.query("SELECT order_id, variant_id, warehouse_id, SUM(quantity) AS quantity FROM stock_reservations " +
+                   "WHERE order_id IN (:ids) AND is_active = 1 AND warehouse_id IS NOT NULL " +
+                   "GROUP BY order_id, variant_id, warehouse_id", params, rs -> {
+            held.computeIfAbsent(rs.getLong("order_id"), k -> new HashMap<>())
+                    .computeIfAbsent(rs.getInt("variant_id"), k -> new HashMap<>())
+                    .put(rs.getInt("warehouse_id"), rs.getInt("quantity"));
+        });
+        List<OrderBasket> baskets = new ArrayList<>(orderIds.size());
+        for (Long id : orderIds) {
+            if (!provinces.containsKey(id)) continue;
+            baskets.add(new OrderBasket(id, provinces.get(id), quantities.getOrDefault(id, Map.of()),
+                    held.getOrDefault(id, Map.of())));
+        }
+        return baskets;
+    }
+
+    /**
+     * @return the user who placed the order, or null if it does not exist
+     */
+    Integer orderOwner(long orderId) {
+        List<Integer> owners = jdbc.queryForList("SELECT user_id FROM orders WHERE id = :id",
+                new MapSqlParameterSource("id", orderId), Integer.class);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    /**
+     * @return ids of the oldest orders in the status
+     */
+    List<Long> oldestOrders(String status, int limit) {
+        return jdbc.queryForList("SELECT TOP (:limit) id FROM orders WHERE status = :status ORDER BY created_at, id",
+                new MapSqlParameterSource("limit", limit).addValue("status", status), Long.class);
+    }
+}
@@ -0,0 +1,193 @@
+package com.mijimoto.ECommerce.inventory.allocation.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses warehouses for one basket: fewest shipments first, then lowest shipping cost.
+ *
+ * With few warehouses the choice is exact: every set of 1, 2, ... up to max-exact-shipments
+ * warehouses is tried in turn and the cheapest set that can cover the basket wins, so a
+ * basket one warehouse can ship is never split. Otherwise (many warehouses, or a basket no small
+ * set covers) a greedy cover picks, each round, the warehouse shipping the most remaining units
+ * per unit of cost. Typical baskets (a handful of lines, tens of warehouses) take microseconds.
+ *
+ * Units no warehouse has are reported as shortages and the rest is still allocated. Keeps no
+ * state between calls.
+ */
+final class AllocationSolver {
+
+    /**
+     * Available units by variant and warehouse index.
+     */
+    interface Stock {
+        int available(int variantId, int warehouse);
+    }
+
+    record Line(int variantId, int quantity) {}
+
+    /**
+     * @param quantities units per variant, in basket order
+     */
+    record Shipment(int warehouse, double cost, Map<Integer, Integer> quantities) {}
+
+    /**
+     * @param shortages missing units per variant
+     */
+    record Result(List<Shipment> shipments, Map<Integer, Integer> shortages, double cost) {}
+
+    private final int maxExactWarehouses;
+    private final int maxExactShipments;
+
+    AllocationSolver(int maxExactWarehouses, int maxExactShipments) {
+        this.maxExactWarehouses = maxExactWarehouses;
+        this.maxExactShipments = maxExactShipments;
+    }
+
+    /**
+     * @param lines one line per variant
+     * @param cost  shipping cost of a shipment from each warehouse to the destination
+     */
+    Result solve(List<Line> lines, double[] cost, Stock stock) {
+        int n = lines.size();
+        int warehouses = cost.length;
+        int[][] available = new int[n][warehouses];
+        int[] need = new int[n];
+        Map<Integer, Integer> shortages = new LinkedHashMap<>();
+        for (int l = 0; l < n; l++) {
+            long total = 0;
+            for (int w = 0; w < warehouses; w++) {
+                available[l][w] = Math.max(0, stock.available(lines.get(l).variantId(), w));
+                total += available[l][w];
+            }
+            need[l] = (int) Math.min(lines.get(l).quantity(), total);
+            if (need[l] < lines.get(l).quantity()) {
+                shortages.put(lines.get(l).variantId(), lines.get(l).quantity() - need[l]);
+            }
+        }
+        if (Arrays.stream(need).allMatch(q -> q == 0)) return new Result(List.of(), shortages, 0);
+
+        int[] chosen = warehouses <= maxExactWarehouses ? exact(available, need, cost) : null;
+        List<Shipment> shipments = chosen != null
+                ? assign(lines, available, need, cost, chosen)
+                : greedy(lines, available, need, cost);
+        double total = 0;
+        for (Shipment s : shipments) total += s.cost();
+        return new Result(shipments, shortages, total);
+    }
+
+    /**
+     * @return the cheapest smallest set of warehouses covering every line, or null
+     */
+    private int[] exact(int[][] available, int[] need, double[] cost) {
+        int warehouses = cost.length;
+        for (int k = 1; k <= Math.min(maxExactShipments, warehouses); k++) {
+            int[] set = new int[k];
+            for (int i = 0; i < k; i++) set[i] = i;
+            int[] best = null;
+            double bestCost = Double.MAX_VALUE;
+            while (true) {
+                double c = 0;
+                for (int w : set) c += cost[w];
+                if (c < bestCost && covers(available, need, set)) {
+                    best = set.clone();
+                    bestCost = c;
+                }
+                // next combination in lexicographic order
+                int i = k - 1;
+                while (i >= 0 && set[i] == warehouses - k + i) i--;
+                if (i < 0) break;
+                set[i]++;
+                for (int j = i + 1; j < k; j++) set[j] = set[j - 1] + 1;
+            }
+            if (best != null) return best;
+        }
+        return null;
+    }
+
+    private static boolean covers(int[][] available, int[] need, int[] set) {
+        for (int l = 0; l < need.length; l++) {
+            long sum = 0;
+            for (int w : set) sum += available[l][w];
+            if (sum < need[l]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Splits each line over the chosen warehouses: the cheapest that has all of it, otherwise
+     * filled cheapest first. Warehouses left without units are dropped.
+     */
+    private static List<Shipment> assign(List<Line> lines, int[][] available, int[] need, double[] cost, int[] set) {
+        Integer[] order = new Integer[set.length];
+        for (int i = 0; i < set.length; i++) order[i] = set[i];
+        Arrays.sort(order, (a, b) -> Double.compare(cost[a], cost[b]));
+        Map<Integer, Map<Integer, Integer>> byWarehouse = new LinkedHashMap<>();
+        for (int l = 0; l < need.length; l++) {
+            if (need[l] == 0) continue;
+            int variantId = lines.get(l).variantId();
+            Integer whole = null;
+            for (Integer w : order) {
+                if (available[l][w] >= need[l]) {
+                    whole = w;
+                    break;
+                }
+            }
+            if (whole != null) {
+                byWarehouse.computeIfAbsent(whole, k -> new LinkedHashMap<>()).put(variantId, need[l]);
+                continue;
+            }
+            int remaining = need[l];
+            for (Integer w : order) {
+                int take = Math.min(remaining, available[l][w]);
+                if (take == 0) continue;
+                byWarehouse.computeIfAbsent(w, k -> new LinkedHashMap<>()).merge(variantId, take, Integer::sum);
+                remaining -= take;
+                if (remaining == 0) break;
+            }
+        }
+        return shipments(byWarehouse, cost);
+    }
+
+    private static List<Shipment> greedy(List<Line> lines, int[][] available, int[] need, double[] cost) {
+        int[] remaining = need.clone();
+        boolean[] used = new boolean[cost.length];
+        Map<Integer, Map<Integer, Integer>> byWarehouse = new LinkedHashMap<>();
+        while (Arrays.stream(remaining).anyMatch(q -> q > 0)) {
+            int pick = -1;
+            double pickScore = -1;
+            for (int w = 0; w < cost.length; w++) {
+                if (used[w]) continue;
+                long units = 0;
+                for (int l = 0; l < remaining.length; l++) units += Math.min(remaining[l], available[l][w]);
+                if (units == 0) continue;
+                double score = units / Math.max(cost[w], 1e-9);
+                if (score > pickScore || (score == pickScore && cost[w] < cost[pick])) {
+                    pick = w;
+                    pickScore = score;
+                }
+            }
+            // cannot happen: need never exceeds the units all warehouses hold
+            if (pick < 0) break;
+            used[pick] = true;
+            Map<Integer, Integer> quantities = new LinkedHashMap<>();
+            for (int l = 0; l < remaining.length; l++) {
+                int take = Math.min(remaining[l], available[l][pick]);
+                if (take == 0) continue;
+                quantities.merge(lines.get(l).variantId(), take, Integer::sum);
+                remaining[l] -= take;
+            }
+            byWarehouse.put(pick, quantities);
+        }
+        return shipments(byWarehouse, cost);
+    }
+
+    private static List<Shipment> shipments(Map<Integer, Map<Integer, Integer>> byWarehouse, double[] cost) {
+        List<Shipment> shipments = new ArrayList<>(byWarehouse.size());
+        byWarehouse.forEach((w, quantities) -> shipments.add(new Shipment(w, cost[w], quantities)));
+        return shipments;
+    }
+}
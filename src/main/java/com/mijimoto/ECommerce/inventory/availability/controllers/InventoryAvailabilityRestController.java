@@ -0,0 +1,32 @@
+package com.mijimoto.ECommerce.inventory.availability.controllers;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.inventory.availability.dto.AvailabilityDTO;
+import com.mijimoto.ECommerce.inventory.availability.services.InventoryReservationService;
+
+/**
+ * Storefront stock availability (public)
+ */
+@RestController
+@RequestMapping(value = "/api/v1/inventory/availability", produces = MediaType.APPLICATION_JSON_VALUE)
+public class InventoryAvailabilityRestController {
+
+    private final InventoryReservationService reservationService;
+
+    public InventoryAvailabilityRestController(InventoryReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * GET - available quantity of each variant, e.g. ?variantId=1&variantId=2
+     */
+    @GetMapping
+    public ResponseEntity<List<AvailabilityDTO>> availability(@RequestParam("variantId") List<Integer> variantIds) {
+        return ResponseEntity.ok(reservationService.availability(variantIds));
+    }
+}
@@ -0,0 +1,77 @@
+package com.mijimoto.ECommerce.inventory.availability.controllers;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.inventory.availability.dto.ReservationReleaseRequestDTO;
+import com.mijimoto.ECommerce.inventory.availability.dto.ReservationRequestDTO;
+import com.mijimoto.ECommerce.inventory.availability.dto.ReservationResultDTO;
+import com.mijimoto.ECommerce.inventory.availability.services.InventoryReservationService;
+import com.mijimoto.ECommerce.inventory.availability.services.ReservationExpirySweeper;
+
+/**
+ * Stock reservations for carts and checkout (authenticated; customers act on their own holds and orders, admins on any)
+ */
+@RestController
+@RequestMapping(value = "/api/inventory/reservations", produces = MediaType.APPLICATION_JSON_VALUE)
+public class InventoryReservationController {
+
+    private final InventoryReservationService reservationService;
+    private final ReservationExpirySweeper expirySweeper;
+
+    public InventoryReservationController(InventoryReservationService reservationService,
+                                          ReservationExpirySweeper expirySweeper) {
+        this.reservationService = reservationService;
+        this.expirySweeper = expirySweeper;
+    }
+
+    /**
+     * POST - hold every line or none
+     *
+     * @return 201 with the reservations, or 409 with the short lines
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ReservationResultDTO> reserve(@RequestBody ReservationRequestDTO request) {
+        ReservationResultDTO result = reservationService.reserve(request);
+        return ResponseEntity.status(result.isReserved() ? HttpStatus.CREATED : HttpStatus.CONFLICT).body(result);
+    }
+
+    /**
+     * POST - give held stock back (cart abandoned, order cancelled)
+     */
+    @PostMapping(value = "/release", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> release(@RequestBody ReservationReleaseRequestDTO request) {
+        return ResponseEntity.ok(summary(reservationService.release(request.getReservationIds(), request.getOrderId())));
+    }
+
+    /**
+     * POST - ship held stock (order paid); admin only
+     */
+    @PostMapping(value = "/commit", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> commit(@RequestBody ReservationReleaseRequestDTO request) {
+        return ResponseEntity.ok(summary(reservationService.commit(request.getReservationIds(), request.getOrderId())));
+    }
+
+    /**
+     * GET - expired reservations released by this instance since startup, and its last sweep
+     */
+    @GetMapping("/expiry")
+    public ResponseEntity<Map<String, Object>> expiry() {
+        ReservationExpirySweeper.SweepReport last = expirySweeper.getLastReport();
+        return ResponseEntity.ok(Map.of(
+                "releasedReservations", expirySweeper.getTotalReservations(),
+                "releasedUnits", expirySweeper.getTotalUnits(),
+                "last", last != null ? last : Map.of()));
+    }
+
+    private static Map<String, Object> summary(List<InventoryReservationService.Claimed> claimed) {
+        return Map.of(
+                "reservationIds", claimed.stream().map(InventoryReservationService.Claimed::id).toList(),
+                "quantity", claimed.stream().mapToInt(InventoryReservationService.Claimed::quantity).sum());
+    }
+}
@@ -0,0 +1,22 @@
+package com.mijimoto.ECommerce.inventory.availability.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Sellable stock of a variant across warehouses.
+ */
+@Data
+@NoArgsConstructor
+public class AvailabilityDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer variantId;
+    /** on hand minus reserved, summed over warehouses; never negative */
+    private Integer available;
+    /** can be ordered beyond stock */
+    private boolean backorder;
+}
@@ -0,0 +1,21 @@
+package com.mijimoto.ECommerce.inventory.availability.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reservations to release or commit: by id, or every active one of an order.
+ */
+@Data
+@NoArgsConstructor
+public class ReservationReleaseRequestDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<Integer> reservationIds = new ArrayList<>();
+    private Long orderId;
+}
@@ -0,0 +1,37 @@
+package com.mijimoto.ECommerce.inventory.availability.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stock to hold for a cart or an order; all lines are reserved or none.
+ */
+@Data
+@NoArgsConstructor
+public class ReservationRequestDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long orderId;
+    /** caller's key for the hold, e.g. the cart id; stored on each reservation */
+    private String reference;
+    /** null for the configured default */
+    private Integer ttlSeconds;
+    private List<Line> lines = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Line implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer variantId;
+        /** null to take the warehouse with the most available stock */
+        private Integer warehouseId;
+        private Integer quantity;
+    }
+}
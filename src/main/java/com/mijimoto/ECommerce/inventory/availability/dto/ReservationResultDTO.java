@@ -0,0 +1,50 @@
+package com.mijimoto.ECommerce.inventory.availability.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a reservation: either every line is held, or nothing is and the short lines are listed.
+ */
+@Data
+@NoArgsConstructor
+public class ReservationResultDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean reserved;
+    private OffsetDateTime expiresAt;
+    private List<Line> lines = new ArrayList<>();
+    private List<Shortage> shortages = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Line implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer reservationId;
+        private Integer variantId;
+        private Integer warehouseId;
+        private Integer quantity;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Shortage implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer variantId;
+        /** null if any warehouse was acceptable */
+        private Integer warehouseId;
+        private Integer requested;
+        /** best single-warehouse availability when the reservation was refused */
+        private Integer available;
+    }
+}
@@ -0,0 +1,29 @@
+package com.mijimoto.ECommerce.inventory.availability.models;
+
+/**
+ * Reason codes written to {@code inventory_transactions.reason}.
+ *
+ * The sign of {@code quantity_change} follows the column it moves:
+ *  - RESERVE / RELEASE move {@code reserved_quantity} (+ / -); EXPIRE is a RELEASE by the expiry sweeper
+ *  - COMMIT ships reserved stock: {@code quantity_on_hand} and {@code reserved_quantity} both drop by
+ *    the quantity, recorded as a negative change
+ *  - RECEIVE / ADJUST move {@code quantity_on_hand} (signed)
+ *
+ * Rows with any other reason (written before these codes) are read as ADJUST.
+ */
+public enum InventoryReason {
+    RESERVE,
+    RELEASE,
+    EXPIRE,
+    COMMIT,
+    RECEIVE,
+    ADJUST;
+
+    public boolean movesOnHand() {
+        return this == COMMIT || this == RECEIVE || this == ADJUST;
+    }
+
+    public boolean movesReserved() {
+        return this == RESERVE || this == RELEASE || this == EXPIRE || this == COMMIT;
+    }
+}
@@ -0,0 +1,502 @@
+package com.mijimoto.ECommerce.inventory.availability.services;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.inventory.availability.dto.AvailabilityDTO;
+import com.mijimoto.ECommerce.inventory.availability.dto.ReservationRequestDTO;
+import com.mijimoto.ECommerce.inventory.availability.dto.ReservationResultDTO;
+import com.mijimoto.ECommerce.inventory.availability.models.InventoryReason;
+import com.mijimoto.ECommerce.inventory.counters.services.CounterHoldService;
+import com.mijimoto.ECommerce.inventory.counters.services.StockCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Reserves, releases and commits stock in {@code inventory_levels}.
+ *
+ * Each line is one conditional UPDATE that adds to {@code reserved_quantity} only while
+ * {@code quantity_on_hand - reserved_quantity} covers it, so there is no read-modify-write and
+ * no oversell however many requests hit the same row: concurrent reservations queue on the row
+ * lock for the length of one statement plus commit, and the loser of the last unit simply
+ * updates zero rows. A cart is reserved in one transaction with its lines in (variant,
+ * warehouse) order; any short line rolls the whole cart back. Lines that leave the warehouse
+ * open pick it when they update, so two carts can still lock one variant's rows in opposite
+ * orders: the deadlock victim is rolled back by the database and its cart retried.
+ *
+ * Holds belong to the caller that placed them. Customers may hold stock for a limited time
+ * and a limited number of lines, and only for their own orders; releasing another user's
+ * holds, and committing any hold, requires the admin role.
+ *
+ * Every change is recorded in {@code inventory_transactions}; see {@link InventoryReason} for
+ * the sign conventions. Releases and commits first flip the reservation inactive with an
+ * OUTPUT clause, so a reservation is given back at most once even when a release and an
+ * expiry race.
+ */
+@Service
+public class InventoryReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryReservationService.class);
+
+    // retries when the chosen warehouse was drained between the pick and the update
+    private static final int PICK_ATTEMPTS = 3;
+    // retries of a whole cart chosen as a deadlock victim
+    private static final int DEADLOCK_ATTEMPTS = 3;
+
+    private static final String SQL_RESERVE_AT =
+            "UPDATE inventory_levels SET reserved_quantity = reserved_quantity + :qty, last_updated = :now " +
+            "OUTPUT inserted.warehouse_id " +
+            "WHERE variant_id = :variantId AND warehouse_id = :warehouseId " +
+            "AND (quantity_on_hand - reserved_quantity >= :qty OR :backorder = 1)";
+
+    // the availability test is repeated outside the pick: the row may change before it is locked
+    private static final String SQL_RESERVE_ANY =
+            "UPDATE inventory_levels SET reserved_quantity = reserved_quantity + :qty, last_updated = :now " +
+            "OUTPUT inserted.warehouse_id " +
+            "WHERE id = (SELECT TOP (1) id FROM inventory_levels WHERE variant_id = :variantId " +
+            "            AND (quantity_on_hand - reserved_quantity >= :qty OR :backorder = 1) " +
+            "            ORDER BY quantity_on_hand - reserved_quantity DESC, warehouse_id) " +
+            "AND (quantity_on_hand - reserved_quantity >= :qty OR :backorder = 1)";
+
+    private static final String SQL_INSERT_TRANSACTION =
+            "INSERT INTO inventory_transactions (variant_id, warehouse_id, quantity_change, reason, reference, created_at) " +
+            "VALUES (:variantId, :warehouseId, :change, :reason, :reference, :now)";
+
+    private static final String SQL_CLAIM =
+            "UPDATE stock_reservations SET is_active = 0 " +
+            "OUTPUT deleted.id, deleted.variant_id, deleted.warehouse_id, deleted.quantity " +
+            "WHERE is_active = 1 AND ";
+
+    // flash-sale holds go back to their Redis counters, not to inventory_levels
+    private static final String SQL_NOT_COUNTER_HOLD = " AND (reason IS NULL OR reason <> :counterReason)";
+
+    // holds placed by the caller, or for one of the caller's orders
+    private static final String SQL_OWNED =
+            " AND (user_id = :userId OR order_id IN (SELECT id FROM orders WHERE user_id = :userId))";
+
+    // the range lock keeps two concurrent carts of one user from both passing the cap
+    private static final String SQL_ACTIVE_HOLDS =
+            "SELECT COUNT(*) FROM stock_reservations WITH (UPDLOCK, HOLDLOCK) " +
+            "WHERE user_id = :userId AND is_active = 1";
+
+    private static final String SQL_RELEASE_LEVEL =
+            "UPDATE inventory_levels SET " +
+            "reserved_quantity = CASE WHEN reserved_quantity >= :qty THEN reserved_quantity - :qty ELSE 0 END, " +
+            "last_updated = :now " +
+            "WHERE variant_id = :variantId AND warehouse_id = :warehouseId";
+
+    private static final String SQL_COMMIT_LEVEL =
+            "UPDATE inventory_levels SET quantity_on_hand = quantity_on_hand - :qty, " +
+            "reserved_quantity = CASE WHEN reserved_quantity >= :qty THEN reserved_quantity - :qty ELSE 0 END, " +
+            "last_updated = :now " +
+            "WHERE variant_id = :variantId AND warehouse_id = :warehouseId";
+
+    private static final String SQL_AVAILABILITY =
+            "SELECT v.id, v.allow_backorder, " +
+            "       COALESCE(SUM(CASE WHEN il.quantity_on_hand > il.reserved_quantity " +
+            "                         THEN il.quantity_on_hand - il.reserved_quantity ELSE 0 END), 0) AS available " +
+            "FROM product_variants v LEFT JOIN inventory_levels il ON il.variant_id = v.id " +
+            "WHERE v.id IN (:ids) GROUP BY v.id, v.allow_backorder";
+
+    /**
+     * A reservation that was just made inactive.
+     */
+    public record Claimed(int id, int variantId, Integer warehouseId, int quantity) {}
+
+    private record Key(int variantId, Integer warehouseId) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final StockCounters counters;
+    private final int maxLines;
+    private final int defaultTtlSeconds;
+    private final int maxTtlSeconds;
+    private final int maxUserTtlSeconds;
+    private final int maxActivePerUser;
+
+    /**
+     * @param maxTtlSeconds     longest hold an admin may place
+     * @param maxUserTtlSeconds longest hold a customer may place
+     * @param maxActivePerUser  active reservation rows one customer may hold at once
+     */
+    public InventoryReservationService(NamedParameterJdbcTemplate jdbc,
+                                       PlatformTransactionManager transactionManager,
+                                       StockCounters counters,
+                                       @Value("${app.inventory.reservation.max-lines:100}") int maxLines,
+                                       @Value("${app.inventory.reservation.default-ttl-seconds:900}") int defaultTtlSeconds,
+                                       @Value("${app.inventory.reservation.max-ttl-seconds:86400}") int maxTtlSeconds,
+                                       @Value("${app.inventory.reservation.max-user-ttl-seconds:1800}") int maxUserTtlSeconds,
+                                       @Value("${app.inventory.reservation.max-active-per-user:100}") int maxActivePerUser) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.counters = counters;
+        this.maxLines = maxLines;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.maxUserTtlSeconds = maxUserTtlSeconds;
+        this.maxActivePerUser = maxActivePerUser;
+    }
+
+    /**
+     * Reserves every line or none.
+     *
+     * @return the held lines, or the short lines if nothing was reserved
+     * @throws ResponseStatusException 400 for an empty or malformed request, 403 for another
+     *                                 user's order, 409 for a counter-managed variant, 429 past
+     *                                 the caller's hold cap
+     */
+    public ReservationResultDTO reserve(ReservationRequestDTO request) {
+        Map<Key, Integer> lines = mergeLines(request);
+        boolean admin = CurrentUser.isAdmin();
+        Integer userId = CurrentUser.id();
+        if (!admin && userId == null) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not the owner");
+        if (!admin && request.getOrderId() != null) CurrentUser.requireOwnerOrAdmin(orderOwner(request.getOrderId()));
+        int maxTtl = admin ? maxTtlSeconds : Math.min(maxTtlSeconds, maxUserTtlSeconds);
+        int ttl = request.getTtlSeconds() != null ? request.getTtlSeconds() : Math.min(defaultTtlSeconds, maxTtl);
+        if (ttl <= 0 || ttl > maxTtl) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ttlSeconds must be between 1 and " + maxTtl);
+        }
+        Map<Integer, Boolean> backorder = backorderFlags(lines.keySet());
+        for (Key key : lines.keySet()) {
+            if (!backorder.containsKey(key.variantId())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown variant " + key.variantId());
+            }
+        }
+        for (Integer variantId : backorder.keySet()) {
+            // its stock lives in the counters; a database hold here would sell the same units twice
+            if (counters.isManaged(variantId)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Variant " + variantId + " is sold through stock counters; reserve it at /api/inventory/counters/reserve");
+            }
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return reserveOnce(request, lines, backorder, ttl, admin ? null : userId, userId);
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= DEADLOCK_ATTEMPTS) throw e;
+                logger.debug("Reservation chosen as deadlock victim, retrying: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param cappedUser the customer whose hold cap applies, null for admins
+     */
+    private ReservationResultDTO reserveOnce(ReservationRequestDTO request, Map<Key, Integer> lines,
+                                             Map<Integer, Boolean> backorder, int ttl,
+                                             Integer cappedUser, Integer userId) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(ttl);
+        ReservationResultDTO result = new ReservationResultDTO();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (cappedUser != null) checkHoldCap(cappedUser, lines.size());
+            Timestamp ts = Timestamp.from(now);
+            Map<Key, Integer> held = new LinkedHashMap<>();
+            for (Map.Entry<Key, Integer> line : lines.entrySet()) {
+                Integer warehouseId = reserveLine(line.getKey(), line.getValue(),
+                        backorder.get(line.getKey().variantId()), ts);
+                if (warehouseId == null) {
+                    ReservationResultDTO.Shortage shortage = new ReservationResultDTO.Shortage();
+                    shortage.setVariantId(line.getKey().variantId());
+                    shortage.setWarehouseId(line.getKey().warehouseId());
+                    shortage.setRequested(line.getValue());
+                    result.getShortages().add(shortage);
+                } else {
+                    held.merge(new Key(line.getKey().variantId(), warehouseId), line.getValue(), Integer::sum);
+                }
+            }
+            if (!result.getShortages().isEmpty()) {
+                // keep going above so every short line is reported, then give everything back
+                status.setRollbackOnly();
+                return;
+            }
+            insertReservations(held, request, userId, ts, Timestamp.from(expiresAt), result);
+        });
+        if (!result.getShortages().isEmpty()) {
+            result.getLines().clear();
+            fillAvailable(result.getShortages());
+            return result;
+        }
+        result.setReserved(true);
+        result.setExpiresAt(OffsetDateTime.ofInstant(expiresAt, ZoneOffset.UTC));
+        return result;
+    }
+
+    private void checkHoldCap(int userId, int newLines) {
+        Integer active = jdbc.queryForObject(SQL_ACTIVE_HOLDS, new MapSqlParameterSource("userId", userId), Integer.class);
+        if (active != null && active + newLines > maxActivePerUser) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "At most " + maxActivePerUser + " active reservations per user");
+        }
+    }
+
+    private Integer orderOwner(long orderId) {
+        List<Integer> owners = jdbc.queryForList("SELECT user_id FROM orders WHERE id = :id",
+                new MapSqlParameterSource("id", orderId), Integer.class);
+        return owners.isEmpty() ? null : owners.get(0);
+    }
+
+    /**
+     * Gives reserved stock back.
+     *
+     * @return the reservations released; already inactive ones, flash-sale holds, and other
+     *         users' ones unless the caller is an admin, are skipped
+     */
+    public List<Claimed> release(Collection<Integer> reservationIds, Long orderId) {
+        return finish(reservationIds, orderId, InventoryReason.RELEASE);
+    }
+
+    /**
+     * Turns reservations into shipped stock: on hand and reserved both drop. Admin only: a
+     * customer must not be able to ship their own hold.
+     *
+     * @return the reservations committed; already inactive ones are skipped
+     */
+    public List<Claimed> commit(Collection<Integer> reservationIds, Long orderId) {
+        CurrentUser.requireAdmin();
+        return finish(reservationIds, orderId, InventoryReason.COMMIT);
+    }
+
+    /**
+     * @return availability in request order; unknown variants are left out
+     */
+    public List<AvailabilityDTO> availability(Collection<Integer> variantIds) {
+        List<Integer> ids = variantIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) return List.of();
+        if (ids.size() > maxLines * 5) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + (maxLines * 5) + " variants per request");
+        }
+        Map<Integer, AvailabilityDTO> byId = new HashMap<>();
+        jdbc.query(SQL_AVAILABILITY, new MapSqlParameterSource("ids", ids), rs -> {
+            AvailabilityDTO dto = new AvailabilityDTO();
+            dto.setVariantId(rs.getInt("id"));
+            dto.setAvailable(rs.getInt("available"));
+            dto.setBackorder(rs.getBoolean("allow_backorder"));
+            byId.put(dto.getVariantId(), dto);
+        });
+        List<AvailabilityDTO> out = new ArrayList<>(byId.size());
+        for (Integer id : ids) {
+            AvailabilityDTO dto = byId.get(id);
+            if (dto != null) out.add(dto);
+        }
+        return out;
+    }
+
+    /**
+     * @return the warehouse that now holds the line, or null if none has enough stock
+     */
+    private Integer reserveLine(Key key, int quantity, boolean backorder, Timestamp now) {
+        MapSqlParameterSource params = new MapSqlParameterSource("qty", quantity)
+                .addValue("now", now)
+                .addValue("variantId", key.variantId())
+                .addValue("warehouseId", key.warehouseId())
+                .addValue("backorder", backorder ? 1 : 0);
+        if (key.warehouseId() != null) {
+            List<Integer> updated = jdbc.queryForList(SQL_RESERVE_AT, params, Integer.class);
+            return updated.isEmpty() ? null : updated.get(0);
+        }
+        for (int attempt = 0; attempt < PICK_ATTEMPTS; attempt++) {
+            List<Integer> updated = jdbc.queryForList(SQL_RESERVE_ANY, params, Integer.class);
+            if (!updated.isEmpty()) return updated.get(0);
+        }
+        return null;
+    }
+
+    private void insertReservations(Map<Key, Integer> held, ReservationRequestDTO request, Integer userId,
+                                    Timestamp now, Timestamp expiresAt, ReservationResultDTO result) {
+        // one multi-row insert returns every id in a single round trip
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO stock_reservations (order_id, user_id, variant_id, warehouse_id, quantity, expires_at, created_at, reason, is_active) " +
+                "OUTPUT inserted.id, inserted.variant_id, inserted.warehouse_id, inserted.quantity VALUES ");
+        MapSqlParameterSource params = new MapSqlParameterSource("orderId", request.getOrderId())
+                .addValue("userId", userId)
+                .addValue("expiresAt", expiresAt)
+                .addValue("now", now)
+                .addValue("reason", request.getReference());
+        int i = 0;
+        for (Map.Entry<Key, Integer> line : held.entrySet()) {
+            if (i > 0) sql.append(", ");
+            sql.append("(:orderId, :userId, :v").append(i).append(", :w").append(i).append(", :q").append(i)
+                    .append(", :expiresAt, :now, :reason, 1)");
+            params.addValue("v" + i, line.getKey().variantId())
+                    .addValue("w" + i, line.getKey().warehouseId())
+                    .addValue("q" + i, line.getValue());
+            i++;
+        }
+        List<MapSqlParameterSource> transactions = new ArrayList<>();
+        jdbc.query(sql.toString(), params, rs -> {
+            ReservationResultDTO.Line line = new ReservationResultDTO.Line();
+            line.setReservationId(rs.getInt("id"));
+            line.setVariantId(rs.getInt("variant_id"));
+            line.setWarehouseId(rs.getInt("warehouse_id"));
+            line.setQuantity(rs.getInt("quantity"));
+            result.getLines().add(line);
+            transactions.add(transaction(line.getVariantId(), line.getWarehouseId(), line.getQuantity(),
+                    InventoryReason.RESERVE, line.getReservationId(), now));
+        });
+        jdbc.batchUpdate(SQL_INSERT_TRANSACTION, transactions.toArray(new MapSqlParameterSource[0]));
+        result.getLines().sort(Comparator.comparing(ReservationResultDTO.Line::getReservationId));
+    }
+
+    private List<Claimed> finish(Collection<Integer> reservationIds, Long orderId, InventoryReason reason) {
+        boolean byIds = reservationIds != null && !reservationIds.isEmpty();
+        if (!byIds && orderId == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "reservationIds or orderId is required");
+        }
+        if (byIds && reservationIds.size() > maxLines * 10) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many reservations in one request");
+        }
+        MapSqlParameterSource params = byIds
+                ? new MapSqlParameterSource("ids", new LinkedHashSet<>(reservationIds))
+                : new MapSqlParameterSource("orderId", orderId);
+        String sql = SQL_CLAIM + (byIds ? "id IN (:ids)" : "order_id = :orderId");
+        if (reason == InventoryReason.RELEASE) {
+            sql += SQL_NOT_COUNTER_HOLD;
+            params.addValue("counterReason", CounterHoldService.HOLD_REASON);
+        }
+        if (!CurrentUser.isAdmin()) {
+            Integer userId = CurrentUser.id();
+            if (userId == null) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not the owner");
+            if (!byIds) CurrentUser.requireOwnerOrAdmin(orderOwner(orderId));
+            sql += SQL_OWNED;
+            params.addValue("userId", userId);
+        }
+        String claimSql = sql;
+        return transactionTemplate.execute(status -> {
+            List<Claimed> claimed = jdbc.query(claimSql, params, (rs, n) -> claimed(rs));
+            applyClaimed(claimed, reason);
+            return claimed;
+        });
+    }
+
+    /**
+     * Moves the levels of claimed reservations and records the transactions; must run in the
+     * transaction that claimed them.
+     */
+    void applyClaimed(List<Claimed> claimed, InventoryReason reason) {
+        if (claimed.isEmpty()) return;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        // one update per row, in the same (variant, warehouse) order reservations lock them
+        Map<Key, Integer> totals = new TreeMap<>(KEY_ORDER);
+        List<MapSqlParameterSource> transactions = new ArrayList<>(claimed.size());
+        for (Claimed c : claimed) {
+            if (c.warehouseId() == null) {
+                logger.warn("Reservation {} has no warehouse; nothing to give back", c.id());
+                continue;
+            }
+            totals.merge(new Key(c.variantId(), c.warehouseId()), c.quantity(), Integer::sum);
+            transactions.add(transaction(c.variantId(), c.warehouseId(),
+                    reason == InventoryReason.RESERVE ? c.quantity() : -c.quantity(), reason, c.id(), now));
+        }
+        String sql = reason == InventoryReason.COMMIT ? SQL_COMMIT_LEVEL : SQL_RELEASE_LEVEL;
+        for (Map.Entry<Key, Integer> e : totals.entrySet()) {
+            jdbc.update(sql, new MapSqlParameterSource("qty", e.getValue())
+                    .addValue("now", now)
+                    .addValue("variantId", e.getKey().variantId())
+                    .addValue("warehouseId", e.getKey().warehouseId()));
+        }
+        if (!transactions.isEmpty()) {
+            jdbc.batchUpdate(SQL_INSERT_TRANSACTION, transactions.toArray(new MapSqlParameterSource[0]));
+        }
+    }
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparingInt(Key::variantId)
+            .thenComparing(Key::warehouseId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * Validates the lines and merges duplicates, in lock order.
+     */
+    private Map<Key, Integer> mergeLines(ReservationRequestDTO request) {
+        if (request.getLines() == null || request.getLines().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one line is required");
+        }
+        if (request.getLines().size() > maxLines) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxLines + " lines per reservation");
+        }
+        if (request.getReference() != null && request.getReference().length() > 255) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "reference is longer than 255 characters");
+        }
+        if (CounterHoldService.HOLD_REASON.equals(request.getReference())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "reference " + CounterHoldService.HOLD_REASON + " is reserved");
+        }
+        Map<Key, Integer> lines = new TreeMap<>(KEY_ORDER);
+        for (ReservationRequestDTO.Line line : request.getLines()) {
+            if (line.getVariantId() == null || line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Each line needs a variantId and a positive quantity");
+            }
+            lines.merge(new Key(line.getVariantId(), line.getWarehouseId()), line.getQuantity(), Math::addExact);
+        }
+        return lines;
+    }
+
+    private Map<Integer, Boolean> backorderFlags(Collection<Key> keys) {
+        List<Integer> ids = keys.stream().map(Key::variantId).distinct().toList();
+        Map<Integer, Boolean> flags = new HashMap<>();
+        jdbc.query("SELECT id, allow_backorder FROM product_variants WHERE id IN (:ids) AND is_active = 1",
+                new MapSqlParameterSource("ids", ids), rs -> {
+                    flags.put(rs.getInt("id"), rs.getBoolean("allow_backorder"));
+                });
+        return flags;
+    }
+
+    private void fillAvailable(List<ReservationResultDTO.Shortage> shortages) {
+        List<Integer> ids = shortages.stream().map(ReservationResultDTO.Shortage::getVariantId).distinct().toList();
+        Map<Key, Integer> byWarehouse = new HashMap<>();
+        Map<Integer, Integer> best = new HashMap<>();
+        jdbc.query("SELECT variant_id, warehouse_id, quantity_on_hand - reserved_quantity AS available " +
+                   "FROM inventory_levels WHERE variant_id IN (:ids)", new MapSqlParameterSource("ids", ids), rs -> {
+            int variantId = rs.getInt("variant_id");
+            int available = Math.max(0, rs.getInt("available"));
+            byWarehouse.put(new Key(variantId, rs.getInt("warehouse_id")), available);
+            best.merge(variantId, available, Math::max);
+        });
+        for (ReservationResultDTO.Shortage s : shortages) {
+            Integer available = s.getWarehouseId() != null
+                    ? byWarehouse.get(new Key(s.getVariantId(), s.getWarehouseId()))
+                    : best.get(s.getVariantId());
+            s.setAvailable(available != null ? available : 0);
+        }
+    }
+
+    /**
+     * Maps a row of an OUTPUT deleted.id, variant_id, warehouse_id, quantity claim.
+     */
+    static Claimed claimed(ResultSet rs) throws SQLException {
+        Integer warehouseId = rs.getObject("warehouse_id", Integer.class);
+        return new Claimed(rs.getInt("id"), rs.getInt("variant_id"), warehouseId, rs.getInt("quantity"));
+    }
+
+    private static MapSqlParameterSource transaction(int variantId, Integer warehouseId, int change,
+                                                     InventoryReason reason, int reservationId, Timestamp now) {
+        return new MapSqlParameterSource("variantId", variantId)
+                .addValue("warehouseId", warehouseId)
+                .addValue("change", change)
+                .addValue("reason", reason.name())
+                .addValue("reference", "reservation:" + reservationId)
+                .addValue("now", now);
+    }
+}
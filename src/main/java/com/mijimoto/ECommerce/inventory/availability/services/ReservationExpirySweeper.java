@@ -0,0 +1,161 @@
+package com.mijimoto.ECommerce.inventory.availability.services;
+
+import com.mijimoto.ECommerce.inventory.availability.models.InventoryReason;
+import com.mijimoto.ECommerce.inventory.counters.services.CounterHoldService;
+import com.mijimoto.ECommerce.inventory.counters.services.StockCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Releases reservations that were neither committed nor released before they expired.
+ *
+ * Due reservations are found through the (is_active, expires_at) index, oldest first, in
+ * batches: each batch is one short transaction that flips up to batch-size rows inactive and
+ * gives their stock back to {@code inventory_levels} as EXPIRE transactions. Rows are claimed
+ * with UPDLOCK + READPAST, so every instance can sweep at the same time, each taking rows the
+ * others have not locked, and a reservation being released or committed by a request is skipped
+ * rather than waited for (and is inactive by the next pass). No pass ever scans the table.
+ * Flash-sale holds ({@link CounterHoldService}) go back to their Redis counters instead, once
+ * the batch has committed.
+ *
+ * Totals since startup and the last pass are kept for the admin endpoint: reservations and units
+ * released, how late the oldest released reservation was, and how late the oldest one still due
+ * is when the pass stops (the backlog; should stay near the sweep interval).
+ */
+@Service
+public class ReservationExpirySweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationExpirySweeper.class);
+
+    private static final String SQL_CLAIM_DUE =
+            "WITH due AS (SELECT TOP (:batch) id, variant_id, warehouse_id, quantity, expires_at, reason, is_active " +
+            "             FROM stock_reservations WITH (UPDLOCK, READPAST, ROWLOCK) " +
+            "             WHERE is_active = 1 AND expires_at <= :now ORDER BY expires_at) " +
+            "UPDATE due SET is_active = 0 " +
+            "OUTPUT deleted.id, deleted.variant_id, deleted.warehouse_id, deleted.quantity, deleted.expires_at, deleted.reason";
+
+    private static final String SQL_OLDEST_DUE =
+            "SELECT MIN(expires_at) FROM stock_reservations WHERE is_active = 1 AND expires_at <= :now";
+
+    public record SweepReport(OffsetDateTime startedAt, OffsetDateTime finishedAt, long reservations,
+                              long units, long maxLagMs, long backlogLagMs, String error) {}
+
+    private record Batch(int reservations, long units, long maxLagMs) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryReservationService reservationService;
+    private final StockCounters counters;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private final AtomicLong totalReservations = new AtomicLong();
+    private final AtomicLong totalUnits = new AtomicLong();
+    private volatile SweepReport lastReport;
+
+    public ReservationExpirySweeper(NamedParameterJdbcTemplate jdbc,
+                                    PlatformTransactionManager transactionManager,
+                                    InventoryReservationService reservationService,
+                                    StockCounters counters,
+                                    @Value("${app.inventory.reservation.sweep-enabled:true}") boolean enabled,
+                                    @Value("${app.inventory.reservation.sweep-batch-size:500}") int batchSize,
+                                    @Value("${app.inventory.reservation.sweep-max-batches:100}") int maxBatches) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reservationService = reservationService;
+        this.counters = counters;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.reservation.sweep-interval-ms:5000}")
+    public void sweep() {
+        if (!enabled) return;
+        OffsetDateTime started = OffsetDateTime.now();
+        long reservations = 0;
+        long units = 0;
+        long maxLag = 0;
+        long backlogLag = 0;
+        String error = null;
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                Batch batch = sweepBatch();
+                reservations += batch.reservations();
+                units += batch.units();
+                maxLag = Math.max(maxLag, batch.maxLagMs());
+                if (batch.reservations() < batchSize) break;
+            }
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            Timestamp oldest = jdbc.queryForObject(SQL_OLDEST_DUE, new MapSqlParameterSource("now", now), Timestamp.class);
+            if (oldest != null) backlogLag = now.getTime() - oldest.getTime();
+        } catch (Exception e) {
+            error = e.getMessage();
+            logger.warn("Reservation expiry sweep failed, will retry: {}", e.getMessage());
+        }
+        totalReservations.addAndGet(reservations);
+        totalUnits.addAndGet(units);
+        if (reservations > 0 || backlogLag > 0 || error != null) {
+            lastReport = new SweepReport(started, OffsetDateTime.now(), reservations, units, maxLag, backlogLag, error);
+        }
+        if (reservations > 0) {
+            logger.info("Released {} expired reservations ({} units), oldest {} ms late, backlog {} ms",
+                    reservations, units, maxLag, backlogLag);
+        }
+    }
+
+    private Batch sweepBatch() {
+        List<InventoryReservationService.Claimed> counterHolds = new ArrayList<>();
+        Batch batch = transactionTemplate.execute(status -> {
+            long now = System.currentTimeMillis();
+            List<InventoryReservationService.Claimed> claimed = new ArrayList<>();
+            long[] oldest = {now};
+            jdbc.query(SQL_CLAIM_DUE, new MapSqlParameterSource("batch", batchSize).addValue("now", new Timestamp(now)), rs -> {
+                InventoryReservationService.Claimed c = InventoryReservationService.claimed(rs);
+                if (CounterHoldService.HOLD_REASON.equals(rs.getString("reason"))) counterHolds.add(c);
+                else claimed.add(c);
+                oldest[0] = Math.min(oldest[0], rs.getTimestamp("expires_at").getTime());
+            });
+            reservationService.applyClaimed(claimed, InventoryReason.EXPIRE);
+            long units = claimed.stream().mapToLong(InventoryReservationService.Claimed::quantity).sum()
+                    + counterHolds.stream().mapToLong(InventoryReservationService.Claimed::quantity).sum();
+            return new Batch(claimed.size() + counterHolds.size(), units, now - oldest[0]);
+        });
+        for (InventoryReservationService.Claimed c : counterHolds) {
+            try {
+                counters.release(new StockCounters.Hold(c.variantId(), c.warehouseId(), c.quantity()));
+            } catch (RuntimeException e) {
+                // the row is already inactive; the units stay taken until the variant is reseeded
+                logger.error("Could not return expired counter hold {} ({} units of variant {}): {}",
+                        c.id(), c.quantity(), c.variantId(), e.getMessage());
+            }
+        }
+        return batch;
+    }
+
+    public SweepReport getLastReport() {
+        return lastReport;
+    }
+
+    public long getTotalReservations() {
+        return totalReservations.get();
+    }
+
+    public long getTotalUnits() {
+        return totalUnits.get();
+    }
+}
@@ -0,0 +1,110 @@
+package com.mijimoto.ECommerce.inventory.counters.controllers;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.inventory.counters.dto.CounterHoldDTO;
+import com.mijimoto.ECommerce.inventory.counters.services.CounterHoldService;
+import com.mijimoto.ECommerce.inventory.counters.services.StockCounterReconciler;
+
+/**
+ * Flash-sale stock counters in Redis (authenticated)
+ */
+@RestController
+@RequestMapping(value = "/api/inventory/counters", produces = MediaType.APPLICATION_JSON_VALUE)
+public class StockCounterController {
+
+    private final CounterHoldService holdService;
+    private final StockCounterReconciler reconciler;
+
+    public StockCounterController(CounterHoldService holdService, StockCounterReconciler reconciler) {
+        this.holdService = holdService;
+        this.reconciler = reconciler;
+    }
+
+    /**
+     * POST - load a variant's available stock into counters split into {@code shards} keys per warehouse
+     *
+     * @return 200 with the seeded units per warehouse, or 409 while a reconciliation runs; admin only
+     */
+    @PostMapping("/{variantId}/seed")
+    public ResponseEntity<Map<Integer, Long>> seed(@PathVariable("variantId") Integer variantId,
+                                                   @RequestParam(name = "shards", defaultValue = "1") int shards) {
+        CurrentUser.requireAdmin();
+        Map<Integer, Long> seeded;
+        try {
+            seeded = reconciler.seed(variantId, shards);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (seeded == null) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        if (seeded.isEmpty()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No inventory levels for variant " + variantId);
+        return ResponseEntity.ok(seeded);
+    }
+
+    /**
+     * DELETE - write back and drop a variant's counters
+     *
+     * @return 204, or 409 while a reconciliation runs; admin only
+     */
+    @DeleteMapping("/{variantId}")
+    public ResponseEntity<Void> disable(@PathVariable("variantId") Integer variantId) {
+        CurrentUser.requireAdmin();
+        return reconciler.disable(variantId) ? ResponseEntity.noContent().build() : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * POST - take units from the counters and record the hold; inventory levels are left to the reconciler
+     *
+     * @return 200 with the hold id, the warehouse holding the units and the expiry, 409 if the
+     *         variant is short or not managed, 429 past the caller's hold cap
+     */
+    @PostMapping(value = "/reserve", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CounterHoldDTO> reserve(@RequestBody CounterHoldDTO request) {
+        validate(request);
+        CounterHoldService.Placed placed = holdService.reserve(request.getVariantId(), request.getWarehouseId(), request.getQuantity());
+        if (placed == null) return ResponseEntity.status(HttpStatus.CONFLICT).body(request);
+        request.setHoldId(placed.holdId());
+        request.setWarehouseId(placed.hold().warehouseId());
+        request.setReserved(true);
+        request.setExpiresAt(OffsetDateTime.ofInstant(placed.expiresAt(), ZoneOffset.UTC));
+        return ResponseEntity.ok(request);
+    }
+
+    /**
+     * POST - give the units of one of the caller's holds back; only holdId is read
+     *
+     * @return 204, or 404 if the caller has no such active hold
+     */
+    @PostMapping(value = "/release", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> release(@RequestBody CounterHoldDTO request) {
+        if (request.getHoldId() == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "holdId is required");
+        if (!holdService.release(request.getHoldId())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No active hold " + request.getHoldId());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * GET - outcome of the last reconciliation on this instance
+     */
+    @GetMapping("/reconcile")
+    public ResponseEntity<Object> lastReconcile() {
+        StockCounterReconciler.RunReport last = reconciler.getLastReport();
+        return ResponseEntity.ok(last != null ? last : Map.of());
+    }
+
+    private static void validate(CounterHoldDTO request) {
+        if (request.getVariantId() == null || request.getQuantity() == null || request.getQuantity() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "variantId and a positive quantity are required");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.mijimoto.ECommerce.inventory.counters.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+/**
+ * Units of a flash-sale variant to take from its Redis counters; a release names only the hold.
+ */
+@Data
+@NoArgsConstructor
+public class CounterHoldDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** set on responses; the only field a release reads */
+    private Integer holdId;
+    private Integer variantId;
+    /** null on a reservation to take any warehouse */
+    private Integer warehouseId;
+    private Integer quantity;
+    /** set on responses */
+    private boolean reserved;
+    /** set on responses; the units go back to the counters unless released or committed first */
+    private OffsetDateTime expiresAt;
+}
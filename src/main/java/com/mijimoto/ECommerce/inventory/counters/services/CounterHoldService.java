@@ -0,0 +1,146 @@
+package com.mijimoto.ECommerce.inventory.counters.services;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Flash-sale holds: units taken from the Redis counters, each recorded as a
+ * {@code stock_reservations} row with reason {@value #HOLD_REASON}, so it has an id, an owner
+ * and an expiry like any other reservation.
+ *
+ * The row is written after the units are taken, and the units are given back if it cannot be.
+ * Customers are capped like database reservations: a hold may take at most a set number of
+ * units, and their counter holds count towards the same limit of active reservation rows,
+ * checked in the transaction that writes the row.
+ * A release first flips the row inactive and only then gives its units back to the counters,
+ * so a hold is returned at most once however a release and the expiry sweeper race; the
+ * sweeper returns expired holds to the counters the same way. The rows never move
+ * {@code inventory_levels}: the reconciler still writes the counters' net deltas.
+ */
+@Service
+public class CounterHoldService {
+
+    public static final String HOLD_REASON = "counters";
+
+    private static final String SQL_INSERT =
+            "INSERT INTO stock_reservations (user_id, variant_id, warehouse_id, quantity, expires_at, created_at, reason, is_active) " +
+            "OUTPUT inserted.id VALUES (:userId, :variantId, :warehouseId, :quantity, :expiresAt, :now, :reason, 1)";
+
+    // the range lock keeps two concurrent holds of one user from both passing the cap
+    private static final String SQL_ACTIVE_HOLDS =
+            "SELECT COUNT(*) FROM stock_reservations WITH (UPDLOCK, HOLDLOCK) " +
+            "WHERE user_id = :userId AND is_active = 1";
+
+    private static final String SQL_CLAIM =
+            "UPDATE stock_reservations SET is_active = 0 " +
+            "OUTPUT deleted.variant_id, deleted.warehouse_id, deleted.quantity " +
+            "WHERE id = :id AND is_active = 1 AND reason = :reason";
+
+    /**
+     * A hold placed in the counters and recorded in the database.
+     */
+    public record Placed(int holdId, StockCounters.Hold hold, Instant expiresAt) {}
+
+    private final StockCounters counters;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final int ttlSeconds;
+    private final int maxUserQuantity;
+    private final int maxActivePerUser;
+
+    /**
+     * @param maxUserQuantity  most units a customer may take in one hold
+     * @param maxActivePerUser active reservation rows, counter holds included, one customer may hold at once
+     */
+    public CounterHoldService(StockCounters counters,
+                              NamedParameterJdbcTemplate jdbc,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.inventory.counters.hold-ttl-seconds:600}") int ttlSeconds,
+                              @Value("${app.inventory.counters.max-user-quantity:10}") int maxUserQuantity,
+                              @Value("${app.inventory.reservation.max-active-per-user:100}") int maxActivePerUser) {
+        this.counters = counters;
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlSeconds = ttlSeconds;
+        this.maxUserQuantity = maxUserQuantity;
+        this.maxActivePerUser = maxActivePerUser;
+    }
+
+    /**
+     * @param warehouseId null to take any warehouse of the variant
+     * @return the hold, or null if the variant is not managed or short
+     * @throws ResponseStatusException 400 past the customer's quantity limit, 429 past their hold cap
+     */
+    public Placed reserve(int variantId, Integer warehouseId, int quantity) {
+        Integer userId = requireCaller();
+        boolean capped = !CurrentUser.isAdmin();
+        if (capped && quantity > maxUserQuantity) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxUserQuantity + " units per hold");
+        }
+        StockCounters.Hold hold = counters.reserve(variantId, warehouseId, quantity);
+        if (hold == null) return null;
+        Instant now = Instant.now();
+        Instant expiresAt = now.plusSeconds(ttlSeconds);
+        try {
+            Integer id = transactionTemplate.execute(status -> {
+                if (capped) checkHoldCap(userId);
+                return jdbc.queryForObject(SQL_INSERT, new MapSqlParameterSource("userId", userId)
+                        .addValue("variantId", hold.variantId())
+                        .addValue("warehouseId", hold.warehouseId())
+                        .addValue("quantity", hold.quantity())
+                        .addValue("expiresAt", Timestamp.from(expiresAt))
+                        .addValue("now", Timestamp.from(now))
+                        .addValue("reason", HOLD_REASON), Integer.class);
+            });
+            return new Placed(id, hold, expiresAt);
+        } catch (RuntimeException e) {
+            counters.release(hold);
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a hold's units back to the counters; admins may release anyone's hold.
+     *
+     * @return false if there is no such active hold of the caller
+     */
+    public boolean release(int holdId) {
+        Integer userId = requireCaller();
+        MapSqlParameterSource params = new MapSqlParameterSource("id", holdId).addValue("reason", HOLD_REASON);
+        String sql = SQL_CLAIM;
+        if (!CurrentUser.isAdmin()) {
+            sql += " AND user_id = :userId";
+            params.addValue("userId", userId);
+        }
+        List<StockCounters.Hold> claimed = jdbc.query(sql, params, (rs, i) -> new StockCounters.Hold(
+                rs.getInt("variant_id"), rs.getInt("warehouse_id"), rs.getInt("quantity")));
+        if (claimed.isEmpty()) return false;
+        counters.release(claimed.get(0));
+        return true;
+    }
+
+    private void checkHoldCap(int userId) {
+        Integer active = jdbc.queryForObject(SQL_ACTIVE_HOLDS, new MapSqlParameterSource("userId", userId), Integer.class);
+        if (active != null && active >= maxActivePerUser) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "At most " + maxActivePerUser + " active reservations per user");
+        }
+    }
+
+    private static Integer requireCaller() {
+        Integer userId = CurrentUser.id();
+        if (userId == null && !CurrentUser.isAdmin()) throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not the owner");
+        return userId;
+    }
+}
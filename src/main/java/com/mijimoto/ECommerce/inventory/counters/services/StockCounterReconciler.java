@@ -0,0 +1,258 @@
+package com.mijimoto.ECommerce.inventory.counters.services;
+
+import com.mijimoto.ECommerce.common.util.RedisLock;
+import com.mijimoto.ECommerce.inventory.availability.models.InventoryReason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keeps the Redis stock counters and {@code inventory_levels} in step.
+ *
+ * Every interval one instance (Redis lock) drains the deltas of all managed counters and writes
+ * them to the database in one transaction per batch: {@code reserved_quantity} moves by the net
+ * units taken, and one RESERVE or RELEASE row per (variant, warehouse) goes to
+ * {@code inventory_transactions}. If the transaction fails the deltas are put back, so nothing
+ * is lost or written twice.
+ *
+ * After a batch commits, the database's available units are compared with what the counters held
+ * when drained. They match unless stock moved outside the counters (receipts, adjustments,
+ * reservations through the database path); the difference is logged as drift and, unless
+ * disabled, added to the counters, which by then only differ from the database by their new deltas.
+ */
+@Service
+public class StockCounterReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockCounterReconciler.class);
+
+    private static final String LOCK_KEY = "inventory:counters:lock";
+    // renewed before every batch while a run drains the counters
+    private static final Duration LOCK_TTL = Duration.ofMinutes(1);
+    private static final int BATCH = 200;
+    private static final String REFERENCE = "counters";
+
+    private static final String SQL_APPLY =
+            "UPDATE inventory_levels SET " +
+            "reserved_quantity = CASE WHEN reserved_quantity + :delta > 0 THEN reserved_quantity + :delta ELSE 0 END, " +
+            "last_updated = :now " +
+            "OUTPUT inserted.quantity_on_hand - inserted.reserved_quantity " +
+            "WHERE variant_id = :variantId AND warehouse_id = :warehouseId";
+
+    private static final String SQL_AVAILABLE =
+            "SELECT quantity_on_hand - reserved_quantity FROM inventory_levels " +
+            "WHERE variant_id = :variantId AND warehouse_id = :warehouseId";
+
+    private static final String SQL_INSERT_TRANSACTION =
+            "INSERT INTO inventory_transactions (variant_id, warehouse_id, quantity_change, reason, reference, created_at) " +
+            "VALUES (:variantId, :warehouseId, :change, :reason, :reference, :now)";
+
+    public record RunReport(OffsetDateTime startedAt, OffsetDateTime finishedAt, int counters,
+                            long unitsWritten, int drifted, long driftUnits, String error) {}
+
+    private record Outcome(long unitsWritten, int drifted, long driftUnits) {}
+
+    private final StockCounters counters;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redis;
+    private final boolean correctDrift;
+    private final int maxShards;
+
+    private volatile RunReport lastReport;
+
+    public StockCounterReconciler(StockCounters counters,
+                                  NamedParameterJdbcTemplate jdbc,
+                                  PlatformTransactionManager transactionManager,
+                                  StringRedisTemplate redis,
+                                  @Value("${app.inventory.counters.correct-drift:true}") boolean correctDrift,
+                                  @Value("${app.inventory.counters.max-shards:64}") int maxShards) {
+        this.counters = counters;
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.redis = redis;
+        this.correctDrift = correctDrift;
+        this.maxShards = maxShards;
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.counters.reconcile-interval-ms:2000}")
+    public void reconcile() {
+        runExclusive(lock -> {
+            OffsetDateTime started = OffsetDateTime.now();
+            int seen = 0;
+            long written = 0;
+            int drifted = 0;
+            long driftUnits = 0;
+            String error = null;
+            try {
+                List<int[]> keys = new ArrayList<>();
+                for (Integer variantId : counters.managedVariants()) {
+                    for (Map.Entry<Integer, Integer> e : counters.shards(variantId).entrySet()) {
+                        keys.add(new int[] {variantId, e.getKey(), e.getValue()});
+                    }
+                }
+                seen = keys.size();
+                for (int i = 0; i < keys.size(); i += BATCH) {
+                    if (i > 0) keepLock(lock);
+                    Outcome outcome = flush(keys.subList(i, Math.min(keys.size(), i + BATCH)));
+                    written += outcome.unitsWritten();
+                    drifted += outcome.drifted();
+                    driftUnits += outcome.driftUnits();
+                }
+            } catch (Exception e) {
+                error = e.getMessage();
+                logger.warn("Stock counter reconciliation failed, will retry: {}", e.getMessage());
+            }
+            if (seen > 0) {
+                lastReport = new RunReport(started, OffsetDateTime.now(), seen, written, drifted, driftUnits, error);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Loads a variant's available stock from the database into counters, after writing back
+     * whatever its current counters still owe. Seed before a sale opens: a reservation already
+     * in flight when the old counters are detached can be lost.
+     *
+     * @return available units per warehouse, or null if a reconciliation holds the lock
+     */
+    public Map<Integer, Long> seed(int variantId, int shards) {
+        if (shards < 1 || shards > maxShards) {
+            throw new IllegalArgumentException("shards must be between 1 and " + maxShards);
+        }
+        return runExclusive(lock -> {
+            retire(variantId);
+            Map<Integer, Long> available = new LinkedHashMap<>();
+            jdbc.query("SELECT warehouse_id, quantity_on_hand - reserved_quantity AS available " +
+                       "FROM inventory_levels WHERE variant_id = :variantId AND warehouse_id IS NOT NULL ORDER BY warehouse_id",
+                    new MapSqlParameterSource("variantId", variantId),
+                    rs -> { available.put(rs.getInt("warehouse_id"), Math.max(0L, rs.getLong("available"))); });
+            for (Map.Entry<Integer, Long> e : available.entrySet()) {
+                counters.install(variantId, e.getKey(), shards, e.getValue());
+            }
+            logger.info("Stock counters seeded for variant {}: {}", variantId, available);
+            return available;
+        });
+    }
+
+    /**
+     * Writes back and removes a variant's counters; reservations go through the database again.
+     *
+     * @return false if a reconciliation holds the lock
+     */
+    public boolean disable(int variantId) {
+        return runExclusive(lock -> {
+            retire(variantId);
+            return Boolean.TRUE;
+        }) != null;
+    }
+
+    public RunReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Detaches a variant's counters, writes back what they owe and deletes them; on failure
+     * they are attached again with their deltas intact.
+     */
+    private void retire(int variantId) {
+        Map<Integer, Integer> shards = counters.detach(variantId);
+        if (shards.isEmpty()) return;
+        List<int[]> keys = new ArrayList<>();
+        shards.forEach((w, n) -> keys.add(new int[] {variantId, w, n}));
+        try {
+            flush(keys);
+        } catch (RuntimeException e) {
+            counters.attach(variantId, shards);
+            throw e;
+        }
+        counters.delete(variantId, shards);
+    }
+
+    private Outcome flush(List<int[]> keys) {
+        List<StockCounters.Drained> drained = new ArrayList<>(keys.size());
+        for (int[] k : keys) drained.add(counters.drain(k[0], k[1], k[2]));
+        // same lock order as reservations through the database
+        drained.sort(Comparator.comparingInt(StockCounters.Drained::variantId)
+                .thenComparingInt(StockCounters.Drained::warehouseId));
+        long[] dbAvailable = new long[drained.size()];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                List<MapSqlParameterSource> transactions = new ArrayList<>();
+                for (int i = 0; i < drained.size(); i++) {
+                    StockCounters.Drained d = drained.get(i);
+                    long delta = d.delta();
+                    MapSqlParameterSource params = new MapSqlParameterSource("delta", delta)
+                            .addValue("now", now)
+                            .addValue("variantId", d.variantId())
+                            .addValue("warehouseId", d.warehouseId());
+                    List<Long> available = jdbc.queryForList(delta != 0 ? SQL_APPLY : SQL_AVAILABLE, params, Long.class);
+                    // a level row deleted under the counters: nothing to compare against
+                    dbAvailable[i] = available.isEmpty() ? d.available() : available.get(0);
+                    if (delta != 0) {
+                        transactions.add(new MapSqlParameterSource("variantId", d.variantId())
+                                .addValue("warehouseId", d.warehouseId())
+                                .addValue("change", delta)
+                                .addValue("reason", (delta > 0 ? InventoryReason.RESERVE : InventoryReason.RELEASE).name())
+                                .addValue("reference", REFERENCE)
+                                .addValue("now", now));
+                    }
+                }
+                if (!transactions.isEmpty()) {
+                    jdbc.batchUpdate(SQL_INSERT_TRANSACTION, transactions.toArray(new MapSqlParameterSource[0]));
+                }
+            });
+        } catch (RuntimeException e) {
+            for (StockCounters.Drained d : drained) counters.undrain(d);
+            throw e;
+        }
+        long written = 0;
+        int drifted = 0;
+        long driftUnits = 0;
+        for (int i = 0; i < drained.size(); i++) {
+            StockCounters.Drained d = drained.get(i);
+            written += Math.abs(d.delta());
+            long drift = Math.max(0, dbAvailable[i]) - d.available();
+            if (drift == 0) continue;
+            drifted++;
+            driftUnits += Math.abs(drift);
+            logger.warn("Stock counter drift for variant {} warehouse {}: database {} units, counters {}{}",
+                    d.variantId(), d.warehouseId(), dbAvailable[i], d.available(), correctDrift ? " (corrected)" : "");
+            if (correctDrift) counters.adjust(d.variantId(), d.warehouseId(), drift);
+        }
+        return new Outcome(written, drifted, driftUnits);
+    }
+
+    /**
+     * @return the work's result, or null if another run holds the lock
+     */
+    private <T> T runExclusive(Function<RedisLock, T> work) {
+        try (RedisLock lock = RedisLock.tryAcquire(redis, LOCK_KEY, LOCK_TTL)) {
+            if (lock == null) return null;
+            return work.apply(lock);
+        }
+    }
+
+    // another instance may have taken over after an expiry: stop rather than drain alongside it
+    private static void keepLock(RedisLock lock) {
+        if (!lock.renew()) throw new IllegalStateException("Stock counter lock lost");
+    }
+}
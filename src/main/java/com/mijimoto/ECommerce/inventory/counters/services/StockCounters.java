@@ -0,0 +1,258 @@
+package com.mijimoto.ECommerce.inventory.counters.services;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Available stock of flash-sale variants, held in Redis.
+ *
+ * Each (variant, warehouse) is split into N shards. A shard is a pair of keys sharing a hash tag,
+ * so they live on the same cluster node: the units still available and the units taken since the
+ * last reconciliation (negative when more was released than taken). Every operation is a small
+ * Lua script on one pair, so a reservation is a single atomic round trip that never oversells,
+ * and N shards spread a hot SKU over N keys (and nodes) instead of serialising every buyer on one.
+ * A reservation starts at a random shard and moves on when that shard runs dry; a quantity no
+ * single shard can cover is gathered from several and handed back if they are not enough.
+ *
+ * Which variants are managed, and with how many shards per warehouse, is kept in a hash per
+ * variant. This class only touches Redis; seeding and reconciliation against SQL Server are in
+ * {@link StockCounterReconciler}, and the database record of each hold in {@link CounterHoldService}.
+ */
+@Component
+public class StockCounters {
+
+    static final String VARIANTS_KEY = "inventory:stock:variants";
+    private static final String VARIANT_PREFIX = "inventory:stock:variant:";
+
+    // take up to ARGV[1] units; ARGV[2] = 1 to take only the full quantity; returns units taken
+    private static final RedisScript<Long> TAKE = new DefaultRedisScript<>(
+            "local available = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "local want = tonumber(ARGV[1]) " +
+            "if available <= 0 or (ARGV[2] == '1' and available < want) then return 0 end " +
+            "local n = math.min(available, want) " +
+            "redis.call('DECRBY', KEYS[1], n) " +
+            "redis.call('INCRBY', KEYS[2], n) " +
+            "return n", Long.class);
+
+    // a shard that was removed (variant no longer managed) does not take units back
+    private static final RedisScript<Long> GIVE = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+            "redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+            "redis.call('DECRBY', KEYS[2], ARGV[1]) " +
+            "return 1", Long.class);
+
+    // the shard's available units and its delta, which is reset to zero
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DRAIN = new DefaultRedisScript<>(
+            "local available = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "local delta = tonumber(redis.call('GETSET', KEYS[2], '0') or '0') " +
+            "return {available, delta}", List.class);
+
+    /**
+     * Units held in Redis for one reservation.
+     */
+    public record Hold(int variantId, int warehouseId, int quantity) {}
+
+    /**
+     * State of one (variant, warehouse) at the moment its shards were drained.
+     *
+     * @param deltas per shard, taken minus released since the previous drain
+     */
+    public record Drained(int variantId, int warehouseId, long available, long[] deltas) {
+
+        public long delta() {
+            long sum = 0;
+            for (long d : deltas) sum += d;
+            return sum;
+        }
+    }
+
+    private final StringRedisTemplate redis;
+
+    public StockCounters(StringRedisTemplate redis) {
+        this.redis = redis;
+    }
+
+    /**
+     * @param warehouseId null to take any warehouse of the variant
+     * @return the hold, or null if the variant is not managed or short
+     */
+    public Hold reserve(int variantId, Integer warehouseId, int quantity) {
+        Map<Integer, Integer> warehouses = shards(variantId);
+        if (warehouseId != null) {
+            Integer n = warehouses.get(warehouseId);
+            return n != null && reserveAt(variantId, warehouseId, n, quantity) ? new Hold(variantId, warehouseId, quantity) : null;
+        }
+        List<Integer> order = new ArrayList<>(warehouses.keySet());
+        // spread buyers of a multi-warehouse variant instead of draining one warehouse first
+        Collections.shuffle(order, ThreadLocalRandom.current());
+        for (Integer w : order) {
+            if (reserveAt(variantId, w, warehouses.get(w), quantity)) return new Hold(variantId, w, quantity);
+        }
+        return null;
+    }
+
+    /**
+     * Gives units of a hold back; the caller must not release more than it reserved.
+     */
+    public void release(Hold hold) {
+        Integer n = shards(hold.variantId()).get(hold.warehouseId());
+        if (n == null) return;
+        int shard = ThreadLocalRandom.current().nextInt(n);
+        redis.execute(GIVE, shardKeys(hold.variantId(), hold.warehouseId(), shard), String.valueOf(hold.quantity()));
+    }
+
+    public boolean isManaged(int variantId) {
+        return Boolean.TRUE.equals(redis.opsForSet().isMember(VARIANTS_KEY, String.valueOf(variantId)));
+    }
+
+    /**
+     * @return variant ids with counters
+     */
+    public List<Integer> managedVariants() {
+        List<Integer> ids = new ArrayList<>();
+        for (String member : redis.opsForSet().members(VARIANTS_KEY)) ids.add(Integer.valueOf(member));
+        return ids;
+    }
+
+    /**
+     * @return shard count per warehouse; empty if the variant is not managed
+     */
+    public Map<Integer, Integer> shards(int variantId) {
+        Map<Object, Object> raw = redis.opsForHash().entries(VARIANT_PREFIX + variantId);
+        Map<Integer, Integer> shards = new HashMap<>(raw.size() * 2);
+        for (Map.Entry<Object, Object> e : raw.entrySet()) {
+            shards.put(Integer.valueOf((String) e.getKey()), Integer.valueOf((String) e.getValue()));
+        }
+        return shards;
+    }
+
+    /**
+     * Reads the available units of every shard and resets their deltas, one shard at a time.
+     * Each shard's pair is read atomically, so the deltas are exactly what the available units
+     * have moved by since the previous drain.
+     */
+    public Drained drain(int variantId, int warehouseId, int shards) {
+        long available = 0;
+        long[] deltas = new long[shards];
+        for (int s = 0; s < shards; s++) {
+            List<?> pair = redis.execute(DRAIN, shardKeys(variantId, warehouseId, s));
+            available += ((Number) pair.get(0)).longValue();
+            deltas[s] = ((Number) pair.get(1)).longValue();
+        }
+        return new Drained(variantId, warehouseId, available, deltas);
+    }
+
+    /**
+     * Puts drained deltas back after they could not be written to the database.
+     */
+    public void undrain(Drained drained) {
+        for (int s = 0; s < drained.deltas().length; s++) {
+            if (drained.deltas()[s] != 0) {
+                redis.opsForValue().increment(deltaKey(drained.variantId(), drained.warehouseId(), s), drained.deltas()[s]);
+            }
+        }
+    }
+
+    /**
+     * Moves the available units by {@code units} without touching the delta (drift correction).
+     */
+    public void adjust(int variantId, int warehouseId, long units) {
+        redis.opsForValue().increment(stockKey(variantId, warehouseId, 0), units);
+    }
+
+    /**
+     * Starts managing a warehouse of a variant: splits the units evenly over the shards and
+     * zeroes their deltas.
+     */
+    public void install(int variantId, int warehouseId, int shards, long available) {
+        long share = Math.max(0, available) / shards;
+        long rest = Math.max(0, available) % shards;
+        for (int s = 0; s < shards; s++) {
+            redis.opsForValue().set(stockKey(variantId, warehouseId, s), String.valueOf(share + (s < rest ? 1 : 0)));
+            redis.opsForValue().set(deltaKey(variantId, warehouseId, s), "0");
+        }
+        attach(variantId, Map.of(warehouseId, shards));
+    }
+
+    /**
+     * Stops new reservations of a variant; its shards stay in place to be drained.
+     *
+     * @return shard count per warehouse
+     */
+    public Map<Integer, Integer> detach(int variantId) {
+        Map<Integer, Integer> shards = shards(variantId);
+        redis.opsForSet().remove(VARIANTS_KEY, String.valueOf(variantId));
+        redis.delete(VARIANT_PREFIX + variantId);
+        return shards;
+    }
+
+    /**
+     * Makes shards of a variant reservable again.
+     */
+    public void attach(int variantId, Map<Integer, Integer> shards) {
+        if (shards.isEmpty()) return;
+        Map<String, String> fields = new HashMap<>();
+        shards.forEach((w, n) -> fields.put(String.valueOf(w), String.valueOf(n)));
+        redis.opsForHash().putAll(VARIANT_PREFIX + variantId, fields);
+        redis.opsForSet().add(VARIANTS_KEY, String.valueOf(variantId));
+    }
+
+    /**
+     * Deletes drained shards of a detached variant.
+     */
+    public void delete(int variantId, Map<Integer, Integer> shards) {
+        List<String> keys = new ArrayList<>();
+        shards.forEach((w, n) -> {
+            for (int s = 0; s < n; s++) keys.addAll(shardKeys(variantId, w, s));
+        });
+        if (!keys.isEmpty()) redis.delete(keys);
+    }
+
+    private boolean reserveAt(int variantId, int warehouseId, int shards, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            if (take(variantId, warehouseId, (start + i) % shards, quantity, true) == quantity) return true;
+        }
+        if (shards == 1) return false;
+        // no single shard covers it: gather from several, or give back what was gathered
+        long[] taken = new long[shards];
+        long total = 0;
+        for (int i = 0; i < shards && total < quantity; i++) {
+            int s = (start + i) % shards;
+            taken[s] = take(variantId, warehouseId, s, quantity - total, false);
+            total += taken[s];
+        }
+        if (total == quantity) return true;
+        for (int s = 0; s < shards; s++) {
+            if (taken[s] > 0) redis.execute(GIVE, shardKeys(variantId, warehouseId, s), String.valueOf(taken[s]));
+        }
+        return false;
+    }
+
+    private long take(int variantId, int warehouseId, int shard, long quantity, boolean all) {
+        Long n = redis.execute(TAKE, shardKeys(variantId, warehouseId, shard), String.valueOf(quantity), all ? "1" : "0");
+        return n != null ? n : 0;
+    }
+
+    private static List<String> shardKeys(int variantId, int warehouseId, int shard) {
+        return List.of(stockKey(variantId, warehouseId, shard), deltaKey(variantId, warehouseId, shard));
+    }
+
+    private static String stockKey(int variantId, int warehouseId, int shard) {
+        return "inventory:stock:{" + variantId + ":" + warehouseId + ":" + shard + "}:available";
+    }
+
+    private static String deltaKey(int variantId, int warehouseId, int shard) {
+        return "inventory:stock:{" + variantId + ":" + warehouseId + ":" + shard + "}:delta";
+    }
+}
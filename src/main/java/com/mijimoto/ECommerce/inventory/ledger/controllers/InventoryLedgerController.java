@@ -0,0 +1,79 @@
+package com.mijimoto.ECommerce.inventory.ledger.controllers;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.mijimoto.ECommerce.auth.security.CurrentUser;
+import com.mijimoto.ECommerce.inventory.ledger.dto.LedgerBalanceDTO;
+import com.mijimoto.ECommerce.inventory.ledger.services.InventoryLedgerService;
+
+/**
+ * Inventory ledger: historical balances, checkpoints and verification (authenticated)
+ */
+@RestController
+@RequestMapping(value = "/api/inventory/ledger", produces = MediaType.APPLICATION_JSON_VALUE)
+public class InventoryLedgerController {
+
+    private final InventoryLedgerService ledgerService;
+
+    public InventoryLedgerController(InventoryLedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
+    /**
+     * GET - stock of a variant per warehouse at {@code at} (ISO-8601, default now)
+     */
+    @GetMapping("/balance")
+    public ResponseEntity<List<LedgerBalanceDTO>> balance(
+            @RequestParam("variantId") Integer variantId,
+            @RequestParam(name = "at", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime at) {
+        return ResponseEntity.ok(ledgerService.balanceAt(variantId, at != null ? at.toInstant() : Instant.now()));
+    }
+
+    /**
+     * POST - fold settled transactions into checkpoints now; admin only
+     *
+     * @return 200 with the outcome, or 409 if another instance is checkpointing
+     */
+    @PostMapping("/checkpoint")
+    public ResponseEntity<InventoryLedgerService.CheckpointReport> checkpoint() {
+        CurrentUser.requireAdmin();
+        InventoryLedgerService.CheckpointReport report = ledgerService.checkpoint();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * POST - compare every level with the ledger in the background; {@code repair=LEDGER} appends
+     * correcting transactions, {@code repair=LEVELS} resets the levels to the ledger; repairs are
+     * admin-only
+     *
+     * @return 202 if started, 409 if a verification is already running
+     */
+    @PostMapping("/verify")
+    public ResponseEntity<Void> verify(
+            @RequestParam(name = "repair", defaultValue = "NONE") InventoryLedgerService.Repair repair) {
+        if (repair != InventoryLedgerService.Repair.NONE) CurrentUser.requireAdmin();
+        return ResponseEntity.status(ledgerService.startVerify(repair) ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+
+    /**
+     * GET - whether a verification is running, and the last verification and checkpoint on this instance
+     */
+    @GetMapping("/verify")
+    public ResponseEntity<Map<String, Object>> status() {
+        InventoryLedgerService.VerifyReport verify = ledgerService.getLastVerify();
+        InventoryLedgerService.CheckpointReport checkpoint = ledgerService.getLastCheckpoint();
+        return ResponseEntity.ok(Map.of(
+                "running", ledgerService.isVerifying(),
+                "lastVerify", verify != null ? verify : Map.of(),
+                "lastCheckpoint", checkpoint != null ? checkpoint : Map.of()));
+    }
+}
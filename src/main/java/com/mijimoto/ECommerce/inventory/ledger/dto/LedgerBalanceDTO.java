@@ -0,0 +1,25 @@
+package com.mijimoto.ECommerce.inventory.ledger.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+/**
+ * Stock of a variant in a warehouse at an instant, as recorded by the inventory ledger.
+ */
+@Data
+@NoArgsConstructor
+public class LedgerBalanceDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer variantId;
+    private Integer warehouseId;
+    private OffsetDateTime at;
+    private Integer quantityOnHand;
+    private Integer reservedQuantity;
+    /** checkpoint the balance started from; null if computed from the first transaction */
+    private Long checkpointTransactionId;
+}
@@ -0,0 +1,377 @@
+package com.mijimoto.ECommerce.inventory.ledger.services;
+
+import com.mijimoto.ECommerce.common.util.RedisLock;
+import com.mijimoto.ECommerce.inventory.availability.models.InventoryReason;
+import com.mijimoto.ECommerce.inventory.ledger.dto.LedgerBalanceDTO;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Reads {@code inventory_transactions} as an append-only ledger.
+ *
+ * Every write path (reservations, expiry, counters) updates {@code inventory_levels} and appends
+ * its ledger rows in one transaction, so the levels are a running total of the ledger; how each
+ * reason code moves on hand and reserved is defined by {@link InventoryReason}.
+ *
+ * Checkpoints: periodically one instance (Redis lock, renewed between chunks) folds the transactions appended since the
+ * last checkpoint into new {@code inventory_checkpoints} rows, one per variant/warehouse that
+ * moved, each carrying the previous checkpoint forward. Transactions younger than the settle delay
+ * are left for the next run, so a transaction still open when its id was assigned is not skipped.
+ *
+ * Point-in-time balance: the pair's last checkpoint at or before the instant, plus its rows after
+ * that checkpoint up to the instant (bounded by the next checkpoint), all index seeks; the work is
+ * one checkpoint interval of rows, however long the history.
+ *
+ * Verification streams inventory_levels by keyset pages and compares each row with its ledger
+ * balance (last checkpoint plus rows since). A mismatch is re-read under the row's update lock
+ * before it is reported, so a write committing mid-page is not drift. Drift can be repaired by
+ * appending correcting rows to the ledger (history from before the ledger existed) or by resetting
+ * the level to the ledger.
+ */
+@Service
+public class InventoryLedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedgerService.class);
+
+    private static final String LOCK_KEY = "inventory:ledger:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(10);
+    private static final int CHECKPOINT_CHUNK = 100_000;
+    private static final int VERIFY_PAGE = 1000;
+    private static final int MAX_REPORTED = 100;
+    private static final String REPAIR_REFERENCE = "ledger:repair";
+
+    public enum Repair { NONE, LEDGER, LEVELS }
+
+    public record Drift(int variantId, int warehouseId, int levelOnHand, int ledgerOnHand,
+                        int levelReserved, int ledgerReserved) {}
+
+    public record VerifyReport(OffsetDateTime startedAt, OffsetDateTime finishedAt, Repair repair,
+                               long checked, long drifted, long repaired, List<Drift> sample, String error) {}
+
+    public record CheckpointReport(OffsetDateTime finishedAt, long lastTransactionId, long checkpoints, long ms) {}
+
+    // unknown (older) reasons count as on-hand adjustments
+    private static final String ON_HAND =
+            "CASE WHEN t.reason IN (" + reasons(r -> !r.movesOnHand()) + ") THEN 0 ELSE t.quantity_change END";
+    private static final String RESERVED =
+            "CASE WHEN t.reason IN (" + reasons(InventoryReason::movesReserved) + ") THEN t.quantity_change ELSE 0 END";
+
+    private static final String SQL_CHECKPOINT =
+            "INSERT INTO inventory_checkpoints (variant_id, warehouse_id, last_transaction_id, as_of, " +
+            "                                   quantity_on_hand, reserved_quantity, created_at) " +
+            "SELECT d.variant_id, d.warehouse_id, :upTo, :asOf, " +
+            "       COALESCE(c.quantity_on_hand, 0) + d.on_hand, COALESCE(c.reserved_quantity, 0) + d.reserved, :now " +
+            "FROM (SELECT t.variant_id, t.warehouse_id, SUM(" + ON_HAND + ") AS on_hand, SUM(" + RESERVED + ") AS reserved " +
+            "      FROM inventory_transactions t " +
+            "      WHERE t.id > :after AND t.id <= :upTo AND t.warehouse_id IS NOT NULL " +
+            "      GROUP BY t.variant_id, t.warehouse_id) d " +
+            "OUTER APPLY (SELECT TOP (1) quantity_on_hand, reserved_quantity FROM inventory_checkpoints c " +
+            "             WHERE c.variant_id = d.variant_id AND c.warehouse_id = d.warehouse_id " +
+            "             ORDER BY c.as_of DESC, c.last_transaction_id DESC) c";
+
+    private static final String SQL_CHUNK_END =
+            "SELECT MAX(id) AS id, MAX(created_at) AS created_at FROM " +
+            "(SELECT TOP (:chunk) id, created_at FROM inventory_transactions WHERE id > :after AND id <= :upTo ORDER BY id) c";
+
+    private static final String SQL_BALANCE_AT =
+            "WITH w AS (SELECT warehouse_id FROM inventory_levels WHERE variant_id = :variantId AND warehouse_id IS NOT NULL " +
+            "           UNION SELECT warehouse_id FROM inventory_checkpoints WHERE variant_id = :variantId) " +
+            "SELECT w.warehouse_id, c.last_transaction_id, " +
+            "       COALESCE(c.quantity_on_hand, 0) + COALESCE(d.on_hand, 0) AS on_hand, " +
+            "       COALESCE(c.reserved_quantity, 0) + COALESCE(d.reserved, 0) AS reserved " +
+            "FROM w " +
+            "OUTER APPLY (SELECT TOP (1) last_transaction_id, quantity_on_hand, reserved_quantity FROM inventory_checkpoints c " +
+            "             WHERE c.variant_id = :variantId AND c.warehouse_id = w.warehouse_id AND c.as_of <= :at " +
+            "             ORDER BY c.as_of DESC, c.last_transaction_id DESC) c " +
+            "OUTER APPLY (SELECT TOP (1) last_transaction_id FROM inventory_checkpoints n " +
+            "             WHERE n.variant_id = :variantId AND n.warehouse_id = w.warehouse_id AND n.as_of > :at " +
+            "             ORDER BY n.as_of, n.last_transaction_id) n " +
+            "OUTER APPLY (SELECT SUM(" + ON_HAND + ") AS on_hand, SUM(" + RESERVED + ") AS reserved " +
+            "             FROM inventory_transactions t " +
+            "             WHERE t.variant_id = :variantId AND t.warehouse_id = w.warehouse_id " +
+            "             AND t.id > COALESCE(c.last_transaction_id, 0) " +
+            "             AND (n.last_transaction_id IS NULL OR t.id <= n.last_transaction_id) " +
+            "             AND t.created_at <= :at) d " +
+            "ORDER BY w.warehouse_id";
+
+    // a level row next to its current ledger balance; %s is the row filter and %s a table hint
+    private static final String SQL_LEVEL_VS_LEDGER =
+            "SELECT %s l.id, l.variant_id, l.warehouse_id, l.quantity_on_hand, l.reserved_quantity, " +
+            "       COALESCE(c.quantity_on_hand, 0) + COALESCE(d.on_hand, 0) AS ledger_on_hand, " +
+            "       COALESCE(c.reserved_quantity, 0) + COALESCE(d.reserved, 0) AS ledger_reserved " +
+            "FROM inventory_levels l %s " +
+            "OUTER APPLY (SELECT TOP (1) last_transaction_id, quantity_on_hand, reserved_quantity FROM inventory_checkpoints c " +
+            "             WHERE c.variant_id = l.variant_id AND c.warehouse_id = l.warehouse_id " +
+            "             ORDER BY c.as_of DESC, c.last_transaction_id DESC) c " +
+            "OUTER APPLY (SELECT SUM(" + ON_HAND + ") AS on_hand, SUM(" + RESERVED + ") AS reserved " +
+            "             FROM inventory_transactions t " +
+            "             WHERE t.variant_id = l.variant_id AND t.warehouse_id = l.warehouse_id " +
+            "             AND t.id > COALESCE(c.last_transaction_id, 0)) d ";
+
+    private static final String SQL_VERIFY_PAGE = String.format(SQL_LEVEL_VS_LEDGER, "TOP (:page)", "") +
+            "WHERE l.id > :after AND l.warehouse_id IS NOT NULL ORDER BY l.id";
+
+    private static final String SQL_LOCK_LEVEL = String.format(SQL_LEVEL_VS_LEDGER, "", "WITH (UPDLOCK, ROWLOCK)") +
+            "WHERE l.id = :id";
+
+    private static final String SQL_INSERT_TRANSACTION =
+            "INSERT INTO inventory_transactions (variant_id, warehouse_id, quantity_change, reason, reference, created_at) " +
+            "VALUES (:variantId, :warehouseId, :change, :reason, :reference, :now)";
+
+    private record Row(long id, Drift drift) {}
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redis;
+    private final Duration settle;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "inventory-ledger-verify");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean verifying = new AtomicBoolean();
+    private volatile VerifyReport lastVerify;
+    private volatile CheckpointReport lastCheckpoint;
+
+    public InventoryLedgerService(NamedParameterJdbcTemplate jdbc,
+                                  PlatformTransactionManager transactionManager,
+                                  StringRedisTemplate redis,
+                                  @Value("${app.inventory.ledger.settle-seconds:300}") long settleSeconds) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.redis = redis;
+        this.settle = Duration.ofSeconds(settleSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.ledger.checkpoint-interval-ms:3600000}",
+               initialDelayString = "${app.inventory.ledger.checkpoint-initial-delay-ms:120000}")
+    public void scheduledCheckpoint() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            logger.warn("Inventory checkpoint failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Folds settled transactions into checkpoints.
+     *
+     * @return the report, or null if another instance holds the lock
+     */
+    public CheckpointReport checkpoint() {
+        try (RedisLock lock = RedisLock.tryAcquire(redis, LOCK_KEY, LOCK_TTL)) {
+            if (lock == null) return null;
+            long started = System.currentTimeMillis();
+            Timestamp cutoff = Timestamp.from(Instant.now().minus(settle));
+            long after = jdbc.queryForObject("SELECT COALESCE(MAX(last_transaction_id), 0) FROM inventory_checkpoints",
+                    new MapSqlParameterSource(), Long.class);
+            // range seek from the watermark; never scans older history
+            Long upTo = jdbc.queryForObject("SELECT MAX(id) FROM inventory_transactions WHERE id > :after AND created_at < :cutoff",
+                    new MapSqlParameterSource("after", after).addValue("cutoff", cutoff), Long.class);
+            long written = 0;
+            while (upTo != null && after < upTo) {
+                // the first run over a long history goes in chunks, each one a checkpoint
+                keepLock(lock);
+                Map<String, Object> end = jdbc.queryForMap(SQL_CHUNK_END, new MapSqlParameterSource("chunk", CHECKPOINT_CHUNK)
+                        .addValue("after", after).addValue("upTo", upTo));
+                long chunkEnd = ((Number) end.get("id")).longValue();
+                Timestamp asOf = chunkEnd == upTo ? cutoff : (Timestamp) end.get("created_at");
+                long from = after;
+                Integer rows = transactionTemplate.execute(status -> jdbc.update(SQL_CHECKPOINT,
+                        new MapSqlParameterSource("after", from).addValue("upTo", chunkEnd)
+                                .addValue("asOf", asOf).addValue("now", new Timestamp(System.currentTimeMillis()))));
+                written += rows != null ? rows : 0;
+                after = chunkEnd;
+            }
+            CheckpointReport report = new CheckpointReport(OffsetDateTime.now(), after, written, System.currentTimeMillis() - started);
+            if (written > 0) {
+                lastCheckpoint = report;
+                logger.info("Inventory checkpoint up to transaction {}: {} balances in {} ms", after, written, report.ms());
+            }
+            return report;
+        }
+    }
+
+    // another instance may have taken over after an expiry: stop rather than fold the same range twice
+    private static void keepLock(RedisLock lock) {
+        if (!lock.renew()) throw new IllegalStateException("Checkpoint lock lost");
+    }
+
+    /**
+     * Balances of a variant per warehouse at an instant.
+     */
+    public List<LedgerBalanceDTO> balanceAt(int variantId, Instant at) {
+        OffsetDateTime asOf = OffsetDateTime.ofInstant(at, ZoneOffset.UTC);
+        return jdbc.query(SQL_BALANCE_AT, new MapSqlParameterSource("variantId", variantId).addValue("at", Timestamp.from(at)),
+                (rs, n) -> {
+                    LedgerBalanceDTO dto = new LedgerBalanceDTO();
+                    dto.setVariantId(variantId);
+                    dto.setWarehouseId(rs.getInt("warehouse_id"));
+                    dto.setAt(asOf);
+                    dto.setQuantityOnHand(rs.getInt("on_hand"));
+                    dto.setReservedQuantity(rs.getInt("reserved"));
+                    dto.setCheckpointTransactionId(rs.getObject("last_transaction_id", Long.class));
+                    return dto;
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${app.inventory.ledger.verify-interval-ms:86400000}",
+               initialDelayString = "${app.inventory.ledger.verify-initial-delay-ms:3600000}")
+    public void scheduledVerify() {
+        startVerify(Repair.NONE);
+    }
+
+    /**
+     * Starts a verification in the background.
+     *
+     * @return false if one is already running on this instance
+     */
+    public boolean startVerify(Repair repair) {
+        if (!verifying.compareAndSet(false, true)) return false;
+        executor.submit(() -> {
+            try {
+                lastVerify = verify(repair);
+            } finally {
+                verifying.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isVerifying() {
+        return verifying.get();
+    }
+
+    public VerifyReport getLastVerify() {
+        return lastVerify;
+    }
+
+    public CheckpointReport getLastCheckpoint() {
+        return lastCheckpoint;
+    }
+
+    private VerifyReport verify(Repair repair) {
+        OffsetDateTime started = OffsetDateTime.now();
+        long checked = 0;
+        long drifted = 0;
+        long repaired = 0;
+        List<Drift> sample = new ArrayList<>();
+        String error = null;
+        try {
+            long after = 0;
+            while (true) {
+                List<Row> page = jdbc.query(SQL_VERIFY_PAGE,
+                        new MapSqlParameterSource("page", VERIFY_PAGE).addValue("after", after), (rs, n) -> row(rs));
+                if (page.isEmpty()) break;
+                checked += page.size();
+                after = page.get(page.size() - 1).id();
+                for (Row row : page) {
+                    if (!isDrift(row.drift())) continue;
+                    Row confirmed = recheck(row.id(), repair);
+                    if (confirmed == null) continue;
+                    drifted++;
+                    if (repair != Repair.NONE) repaired++;
+                    if (sample.size() < MAX_REPORTED) sample.add(confirmed.drift());
+                }
+            }
+        } catch (Exception e) {
+            error = e.getMessage();
+            logger.warn("Inventory ledger verification failed: {}", e.getMessage(), e);
+        }
+        if (drifted > 0) {
+            logger.warn("Inventory ledger drift: {} of {} levels disagree with the ledger{}", drifted, checked,
+                    repair != Repair.NONE ? " (repaired: " + repair + ")" : "");
+        } else if (error == null) {
+            logger.info("Inventory ledger verified: {} levels agree", checked);
+        }
+        return new VerifyReport(started, OffsetDateTime.now(), repair, checked, drifted, repaired, sample, error);
+    }
+
+    /**
+     * Re-reads a drifted level under its update lock, which every writer takes before appending
+     * to the ledger, and repairs it there if asked.
+     *
+     * @return the row if it still disagrees
+     */
+    private Row recheck(long levelId, Repair repair) {
+        return transactionTemplate.execute(status -> {
+            List<Row> rows = jdbc.query(SQL_LOCK_LEVEL, new MapSqlParameterSource("id", levelId), (rs, n) -> row(rs));
+            if (rows.isEmpty() || !isDrift(rows.get(0).drift())) return null;
+            Row row = rows.get(0);
+            Drift d = row.drift();
+            if (repair == Repair.LEVELS) {
+                jdbc.update("UPDATE inventory_levels SET quantity_on_hand = :onHand, reserved_quantity = :reserved, " +
+                            "last_updated = :now WHERE id = :id",
+                        new MapSqlParameterSource("onHand", d.ledgerOnHand()).addValue("reserved", d.ledgerReserved())
+                                .addValue("now", new Timestamp(System.currentTimeMillis())).addValue("id", levelId));
+            } else if (repair == Repair.LEDGER) {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                List<MapSqlParameterSource> corrections = new ArrayList<>(2);
+                int onHand = d.levelOnHand() - d.ledgerOnHand();
+                int reserved = d.levelReserved() - d.ledgerReserved();
+                if (onHand != 0) corrections.add(correction(d, onHand, InventoryReason.ADJUST, now));
+                if (reserved != 0) {
+                    corrections.add(correction(d, reserved, reserved > 0 ? InventoryReason.RESERVE : InventoryReason.RELEASE, now));
+                }
+                jdbc.batchUpdate(SQL_INSERT_TRANSACTION, corrections.toArray(new MapSqlParameterSource[0]));
+            }
+            return row;
+        });
+    }
+
+    private static MapSqlParameterSource correction(Drift d, int change, InventoryReason reason, Timestamp now) {
+        return new MapSqlParameterSource("variantId", d.variantId())
+                .addValue("warehouseId", d.warehouseId())
+                .addValue("change", change)
+                .addValue("reason", reason.name())
+                .addValue("reference", REPAIR_REFERENCE)
+                .addValue("now", now);
+    }
+
+    private static Row row(ResultSet rs) throws SQLException {
+        return new Row(rs.getLong("id"), new Drift(rs.getInt("variant_id"), rs.getInt("warehouse_id"),
+                rs.getInt("quantity_on_hand"), rs.getInt("ledger_on_hand"),
+                rs.getInt("reserved_quantity"), rs.getInt("ledger_reserved")));
+    }
+
+    private static boolean isDrift(Drift d) {
+        return d.levelOnHand() != d.ledgerOnHand() || d.levelReserved() != d.ledgerReserved();
+    }
+
+    private static String reasons(Predicate<InventoryReason> filter) {
+        return Arrays.stream(InventoryReason.values()).filter(filter)
+                .map(r -> "'" + r.name() + "'").collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,71 @@
+package com.mijimoto.ECommerce.inventory.persistence.entities;
+
+import java.io.Serializable;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.Date;
+
+import com.mijimoto.ECommerce.catalogue.persistence.entities.ProductVariants;
+
+import jakarta.persistence.*;
+
+/**
+ * JPA entity class for "InventoryCheckpoints": the balance of a variant in a warehouse folded from
+ * every inventory transaction up to and including lastTransactionId. Written only by the ledger's
+ * checkpoint job (see InventoryLedgerService); never updated. A pair has at most one checkpoint per
+ * lastTransactionId, so a range folded twice fails instead of doubling the balance.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name="inventory_checkpoints", schema="dbo", catalog="EcommerceDB", indexes = {
+        @Index(name = "ix_inventory_checkpoints_pair_as_of", columnList = "variant_id, warehouse_id, as_of"),
+        @Index(name = "ix_inventory_checkpoints_last_transaction", columnList = "last_transaction_id"),
+        @Index(name = "ux_inventory_checkpoints_pair_transaction", columnList = "variant_id, warehouse_id, last_transaction_id", unique = true)
+})
+public class InventoryCheckpoints implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    
+    //--- PRIMARY KEY 
+    @Id
+    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    @Column(name="id", nullable=false)
+    private Long       id;
+
+    //--- OTHER DATA FIELDS 
+    @Column(name="variant_id", nullable=false)
+    private Integer          variantId    ;
+
+    @Column(name="warehouse_id", nullable=false)
+    private Integer          warehouseId    ;
+
+    @Column(name="last_transaction_id", nullable=false)
+    private Long             lastTransactionId    ;
+
+    // every transaction created before this instant is folded in
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name="as_of", nullable=false)
+    private Date             asOf    ;
+
+    @Column(name="quantity_on_hand", nullable=false)
+    private Integer          quantityOnHand    ;
+
+    @Column(name="reserved_quantity", nullable=false)
+    private Integer          reservedQuantity    ;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name="created_at", nullable=false)
+    private Date             createdAt    ;
+
+    //--- LINKS ( RELATIONSHIPS )
+    @ManyToOne
+    @JoinColumn(name="variant_id", referencedColumnName="id", insertable=false, updatable=false)
+    private ProductVariants productVariants;
+
+    @ManyToOne
+    @JoinColumn(name="warehouse_id", referencedColumnName="id", insertable=false, updatable=false)
+    private Warehouses warehouses;
+
+}
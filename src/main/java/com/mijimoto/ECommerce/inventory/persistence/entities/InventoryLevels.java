@@ -22,7 +22,11 @@ import jakarta.persistence.*;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name="inventory_levels", schema="dbo", catalog="EcommerceDB" )
+@Table(name="inventory_levels", schema="dbo", catalog="EcommerceDB",
+       indexes = {
+           // one row per variant and warehouse; reservations update it with a single seek
+           @Index(name="ux_inventory_levels_variant_warehouse", columnList="variant_id, warehouse_id", unique=true)
+       })
 public class InventoryLevels implements Serializable {
 
     private static final long serialVersionUID = 1L;
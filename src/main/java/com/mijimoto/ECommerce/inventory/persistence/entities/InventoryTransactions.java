@@ -22,7 +22,10 @@ import jakarta.persistence.*;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name="inventory_transactions", schema="dbo", catalog="EcommerceDB" )
+@Table(name="inventory_transactions", schema="dbo", catalog="EcommerceDB", indexes = {
+        // ledger: one variant/warehouse's rows after a checkpoint, in order
+        @Index(name = "ix_inventory_transactions_pair_id", columnList = "variant_id, warehouse_id, id")
+})
 public class InventoryTransactions implements Serializable {
 
     private static final long serialVersionUID = 1L;
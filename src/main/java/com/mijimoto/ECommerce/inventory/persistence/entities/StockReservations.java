@@ -23,7 +23,12 @@ import jakarta.persistence.*;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name="stock_reservations", schema="dbo", catalog="EcommerceDB" )
+@Table(name="stock_reservations", schema="dbo", catalog="EcommerceDB", indexes = {
+        // expiry sweeper: seek to the active reservations that are due, oldest first
+        @Index(name = "ix_stock_reservations_active_expires", columnList = "is_active, expires_at"),
+        // per-user hold cap and ownership checks
+        @Index(name = "ix_stock_reservations_user_active", columnList = "user_id, is_active")
+})
 public class StockReservations implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -39,6 +44,10 @@ public class StockReservations implements Serializable {
     @Column(name="order_id")
     private Long             orderId    ;
 
+    // the caller that placed the hold; null for holds placed by the system
+    @Column(name="user_id")
+    private Integer          userId    ;
+
     @Column(name="variant_id", nullable=false)
     private Integer          variantId    ;
 
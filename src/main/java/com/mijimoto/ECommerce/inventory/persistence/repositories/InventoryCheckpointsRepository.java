@@ -0,0 +1,12 @@
+package com.mijimoto.ECommerce.inventory.persistence.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.mijimoto.ECommerce.inventory.persistence.entities.InventoryCheckpoints;
+
+/**
+ * Spring Data JPA repository for entity "InventoryCheckpoints"
+ */
+public interface InventoryCheckpointsRepository extends JpaRepository<InventoryCheckpoints, Long> {
+
+}
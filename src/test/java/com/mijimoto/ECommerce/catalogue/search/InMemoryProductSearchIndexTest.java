@@ -0,0 +1,128 @@
+package com.mijimoto.ECommerce.catalogue.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.mijimoto.ECommerce.catalogue.search.dto.ProductSearchResultDTO;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchDocument;
+import com.mijimoto.ECommerce.catalogue.search.models.ProductSearchQuery;
+import com.mijimoto.ECommerce.catalogue.search.services.ProductSearchIndex;
+import com.mijimoto.ECommerce.catalogue.search.services.impl.InMemoryProductSearchIndex;
+
+/**
+ * Filter, scoring, ordering and rebuild semantics of the heap index.
+ */
+class InMemoryProductSearchIndexTest {
+
+    private InMemoryProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InMemoryProductSearchIndex();
+        index.upsert(List.of(
+                doc(1, "TS-RED", "Red cotton t-shirt", List.of(10, 1), 19.0, 25.0, 1_000, "color:red", "size:m"),
+                doc(2, "TS-BLUE", "Blue cotton t-shirt", List.of(10, 1), 15.0, 15.0, 2_000, "color:blue", "size:l"),
+                doc(3, "MUG-1", "Red mug", List.of(20), 8.0, 8.0, 3_000, "color:red"),
+                doc(4, "HOOD-1", "Grey hoodie", List.of(11, 1), 40.0, 55.0, 4_000, "color:grey", "size:m")));
+    }
+
+    @Test
+    void browseDefaultsToNewestFirst() {
+        assertEquals(List.of(4, 3, 2, 1), ids(index.search(query(null, null, null, null, List.of(), null))));
+    }
+
+    @Test
+    void categoryFilterMatchesDescendants() {
+        assertEquals(List.of(4, 2, 1), ids(index.search(query(null, 1, null, null, List.of(), null))));
+        assertEquals(List.of(3), ids(index.search(query(null, 20, null, null, List.of(), null))));
+    }
+
+    @Test
+    void priceFilterUsesVariantRange() {
+        // product 1 spans 19..25, so a 20..30 window still matches it
+        assertEquals(List.of(1), ids(index.search(query(null, null, 20.0, 30.0, List.of(), null))));
+    }
+
+    @Test
+    void attributeValuesOfOneKeyAreOredAndKeysAnded() {
+        assertEquals(List.of(3, 2, 1),
+                ids(index.search(query(null, null, null, null, List.of("color:red", "color:blue"), null))));
+        assertEquals(List.of(1),
+                ids(index.search(query(null, null, null, null, List.of("color:red", "size:m"), null))));
+    }
+
+    @Test
+    void textRanksByMatchedTermsThenId() {
+        assertEquals(List.of(1, 3), ids(index.search(query("red", null, null, null, List.of(), null))));
+        assertEquals(List.of(3, 1), ids(index.search(query("red mug", null, null, null, List.of(), null))));
+    }
+
+    @Test
+    void exactSkuMatches() {
+        assertEquals(List.of(2), ids(index.search(query("ts-blue", null, null, null, List.of(), null))));
+    }
+
+    @Test
+    void priceOrdering() {
+        assertEquals(List.of(3, 2, 1, 4),
+                ids(index.search(query(null, null, null, null, List.of(), ProductSearchQuery.Order.PRICE_ASC))));
+        assertEquals(List.of(4, 1, 2, 3),
+                ids(index.search(query(null, null, null, null, List.of(), ProductSearchQuery.Order.PRICE_DESC))));
+    }
+
+    @Test
+    void pagesSliceTheSortedHits() {
+        ProductSearchResultDTO page = index.search(new ProductSearchQuery(null, null, null, null, List.of(),
+                ProductSearchQuery.Order.NAME, 1, 2));
+        assertEquals(4, page.getTotal());
+        assertEquals(List.of(1, 3), ids(page));
+    }
+
+    @Test
+    void rebuildIsInvisibleUntilCommit() throws Exception {
+        ProductSearchIndex.Rebuild rebuild = index.beginRebuild();
+        rebuild.add(List.of(doc(9, "NEW", "New thing", List.of(1), 1.0, 1.0, 9_000)));
+        assertEquals(4, index.count());
+
+        rebuild.commit();
+        assertEquals(1, index.count());
+        assertEquals(List.of(9), ids(index.search(query(null, null, null, null, List.of(), null))));
+    }
+
+    @Test
+    void deleteRemovesFromResults() {
+        index.delete(List.of(3));
+        assertEquals(List.of(1), ids(index.search(query("red", null, null, null, List.of(), null))));
+    }
+
+    private static ProductSearchQuery query(String text, Integer categoryId, Double min, Double max,
+                                            List<String> attributes, ProductSearchQuery.Order order) {
+        return new ProductSearchQuery(text, categoryId, min, max, attributes,
+                order != null ? order : ProductSearchQuery.Order.RELEVANCE, 0, 20);
+    }
+
+    private static List<Integer> ids(ProductSearchResultDTO result) {
+        return result.getItems().stream().map(ProductSearchDocument::getId).toList();
+    }
+
+    private static ProductSearchDocument doc(int id, String sku, String name, List<Integer> categoryPath,
+                                             double minPrice, double maxPrice, long createdAt, String... attributes) {
+        ProductSearchDocument d = new ProductSearchDocument();
+        d.setId(id);
+        d.setSku(sku);
+        d.setName(name);
+        d.setCategoryId(categoryPath.get(0));
+        d.getCategoryPath().addAll(categoryPath);
+        d.setPrice(minPrice);
+        d.setMinPrice(minPrice);
+        d.setMaxPrice(maxPrice);
+        d.setCreatedAt(new Date(createdAt));
+        d.getAttributeValues().addAll(List.of(attributes));
+        return d;
+    }
+}
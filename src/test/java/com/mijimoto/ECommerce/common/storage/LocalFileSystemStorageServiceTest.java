@@ -0,0 +1,117 @@
+package com.mijimoto.ECommerce.common.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.mijimoto.ECommerce.common.file.entities.FileEntity;
+import com.mijimoto.ECommerce.common.file.repositories.FileRepository;
+import com.mijimoto.ECommerce.common.storage.services.impl.LocalFileSystemStorageService;
+
+/**
+ * The local backend against a temp directory; the files table is mocked.
+ */
+class LocalFileSystemStorageServiceTest {
+
+    private static final byte[] DATA = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path root;
+
+    private FileRepository fileRepository;
+    private LocalFileSystemStorageService storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileRepository = mock(FileRepository.class);
+        when(fileRepository.save(any(FileEntity.class))).thenAnswer(inv -> inv.getArgument(0));
+        storage = new LocalFileSystemStorageService(fileRepository, root.toString());
+    }
+
+    @Test
+    void storeKeepsBytesAndChecksum() throws Exception {
+        FileEntity f = storage.store(new MockMultipartFile("file", "a.txt", "text/plain", DATA), 7L, false);
+
+        assertTrue(f.getStorageKey().startsWith("users/7/"));
+        assertTrue(f.getStorageKey().endsWith(".txt"));
+        assertEquals((long) DATA.length, f.getSize());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(DATA)), f.getChecksum());
+        assertArrayEquals(DATA, read(f, 0, DATA.length));
+    }
+
+    @Test
+    void transferToHonoursRange() throws Exception {
+        FileEntity f = storage.store(new MockMultipartFile("file", "a.bin", null, DATA), null, false);
+
+        assertArrayEquals("56789".getBytes(StandardCharsets.US_ASCII), read(f, 5, 5));
+        assertArrayEquals("j".getBytes(StandardCharsets.US_ASCII), read(f, DATA.length - 1, 1));
+    }
+
+    @Test
+    void readsOfMissingKeysDoNotCreateDirectories() throws Exception {
+        assertEquals(Optional.empty(), storage.openObject("renditions/card/jpg/users/1/missing.png"));
+        FileEntity missing = FileEntity.builder().storageKey("users/1/missing.png").build();
+        storage.delete(missing);
+        storage.removeObjects(List.of("users/1/other.png"));
+
+        try (Stream<Path> entries = Files.list(root)) {
+            assertEquals(0, entries.count());
+        }
+        verify(fileRepository).delete(missing);
+    }
+
+    @Test
+    void untrackedObjectsRoundTrip() throws Exception {
+        String key = "renditions/thumbnail/jpg/users/1/x.png";
+        storage.putObject(key, new ByteArrayInputStream(DATA), DATA.length, "image/jpeg");
+
+        Optional<InputStream> opened = storage.openObject(key);
+        assertTrue(opened.isPresent());
+        try (InputStream in = opened.get()) {
+            assertArrayEquals(DATA, in.readAllBytes());
+        }
+
+        storage.removeObjects(List.of(key));
+        assertFalse(storage.openObject(key).isPresent());
+    }
+
+    @Test
+    void deleteRemovesObjectAndRow() throws Exception {
+        FileEntity f = storage.store(new MockMultipartFile("file", "a.txt", "text/plain", DATA), 1L, false);
+        Path path = storage.downloadAsResource(f).getFile().toPath();
+        assertTrue(Files.exists(path));
+
+        storage.delete(f);
+
+        assertFalse(Files.exists(path));
+        verify(fileRepository).delete(f);
+    }
+
+    private byte[] read(FileEntity f, long offset, long length) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        storage.transferTo(f, offset, length, out);
+        return out.toByteArray();
+    }
+}
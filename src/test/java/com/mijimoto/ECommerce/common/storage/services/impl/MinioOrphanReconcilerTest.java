@@ -0,0 +1,62 @@
+package com.mijimoto.ECommerce.common.storage.services.impl;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import io.minio.messages.Item;
+
+/**
+ * Which bucket objects the reconciler may treat as orphans.
+ */
+class MinioOrphanReconcilerTest {
+
+    private static final Instant CUTOFF = Instant.parse("2026-01-02T00:00:00Z");
+    private static final Instant OLD = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final MinioOrphanReconciler reconciler = new MinioOrphanReconciler(null, null, null, null,
+            "bucket", true, true, 24, 500, 2, new String[] {"snapshots/", " exports/ "});
+
+    @Test
+    void oldUntrackedObjectIsACandidate() {
+        assertTrue(reconciler.isOrphanCandidate(item("2024/01/photo.jpg", OLD), CUTOFF));
+    }
+
+    @Test
+    void objectInsideTheGracePeriodIsNot() {
+        assertFalse(reconciler.isOrphanCandidate(item("2024/01/photo.jpg", CUTOFF.plusSeconds(60)), CUTOFF));
+    }
+
+    @Test
+    void catalogueSnapshotIsNeverACandidate() {
+        assertFalse(reconciler.isOrphanCandidate(item("snapshots/catalogue.snapshot", OLD), CUTOFF));
+    }
+
+    @Test
+    void configuredPrefixesAreTrimmed() {
+        assertFalse(reconciler.isOrphanCandidate(item("exports/orders.csv", OLD), CUTOFF));
+    }
+
+    @Test
+    void renditionsStayExemptWhateverIsConfigured() {
+        MinioOrphanReconciler bare = new MinioOrphanReconciler(null, null, null, null,
+                "bucket", true, true, 24, 500, 2, new String[0]);
+
+        assertFalse(bare.isOrphanCandidate(item("renditions/thumb/webp/a.webp", OLD), CUTOFF));
+        assertTrue(bare.isOrphanCandidate(item("snapshots/catalogue.snapshot", OLD), CUTOFF));
+    }
+
+    private static Item item(String name, Instant lastModified) {
+        Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(name);
+        when(item.lastModified()).thenReturn(ZonedDateTime.ofInstant(lastModified, ZoneOffset.UTC));
+        return item;
+    }
+}
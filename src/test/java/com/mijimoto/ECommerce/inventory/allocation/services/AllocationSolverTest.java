@@ -0,0 +1,124 @@
+package com.mijimoto.ECommerce.inventory.allocation.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Warehouse choice of the exact and greedy covers, line splitting and shortages.
+ */
+class AllocationSolverTest {
+
+    private static final int A = 1;
+    private static final int B = 2;
+
+    private final AllocationSolver solver = new AllocationSolver(16, 3);
+
+    @Test
+    void basketOneWarehouseCanShipIsNotSplit() {
+        AllocationSolver.Result result = solver.solve(List.of(line(A, 2), line(B, 2)), new double[] {5, 5, 5},
+                stock(Map.of(A, new int[] {1, 2, 0}, B, new int[] {0, 2, 2})));
+
+        assertEquals(1, result.shipments().size());
+        assertEquals(1, result.shipments().get(0).warehouse());
+        assertEquals(Map.of(A, 2, B, 2), result.shipments().get(0).quantities());
+        assertTrue(result.shortages().isEmpty());
+    }
+
+    @Test
+    void cheapestWarehouseWinsAmongEqualShipmentCounts() {
+        AllocationSolver.Result result = solver.solve(List.of(line(A, 2)), new double[] {3, 1},
+                stock(Map.of(A, new int[] {5, 5})));
+
+        assertEquals(1, result.shipments().size());
+        assertEquals(1, result.shipments().get(0).warehouse());
+        assertEquals(1.0, result.cost());
+    }
+
+    @Test
+    void fewerShipmentsBeatCheaperSplit() {
+        AllocationSolver.Result result = solver.solve(List.of(line(A, 1), line(B, 1)), new double[] {10, 1, 1},
+                stock(Map.of(A, new int[] {1, 1, 0}, B, new int[] {1, 0, 1})));
+
+        assertEquals(1, result.shipments().size());
+        assertEquals(0, result.shipments().get(0).warehouse());
+        assertEquals(10.0, result.cost());
+    }
+
+    @Test
+    void lineNoWarehouseCoversIsFilledCheapestFirst() {
+        AllocationSolver.Result result = solver.solve(List.of(line(A, 5)), new double[] {1, 2},
+                stock(Map.of(A, new int[] {3, 4})));
+
+        assertEquals(2, result.shipments().size());
+        assertEquals(Map.of(A, 3), quantitiesAt(result, 0));
+        assertEquals(Map.of(A, 2), quantitiesAt(result, 1));
+        assertEquals(3.0, result.cost());
+    }
+
+    @Test
+    void missingUnitsAreReportedAndTheRestAllocated() {
+        AllocationSolver.Result result = solver.solve(List.of(line(A, 5), line(B, 1)), new double[] {1, 1},
+                stock(Map.of(A, new int[] {2, 1}, B, new int[] {1, 0})));
+
+        assertEquals(Map.of(A, 2), result.shortages());
+        int allocated = 0;
+        for (AllocationSolver.Shipment s : result.shipments()) allocated += s.quantities().getOrDefault(A, 0);
+        assertEquals(3, allocated);
+    }
+
+    @Test
+    void nothingInStockGivesNoShipments() {
+        AllocationSolver.Result result = solver.solve(List.of(line(A, 2)), new double[] {1, 1}, stock(Map.of()));
+
+        assertTrue(result.shipments().isEmpty());
+        assertEquals(Map.of(A, 2), result.shortages());
+    }
+
+    @Test
+    void greedyCoverTakesMostUnitsPerCostFirst() {
+        AllocationSolver greedy = new AllocationSolver(2, 3);
+
+        AllocationSolver.Result result = greedy.solve(List.of(line(A, 3), line(B, 1)), new double[] {1, 1, 1, 1},
+                stock(Map.of(A, new int[] {1, 1, 3, 0}, B, new int[] {0, 0, 0, 1})));
+
+        assertEquals(2, result.shipments().size());
+        assertEquals(2, result.shipments().get(0).warehouse());
+        assertEquals(Map.of(A, 3), result.shipments().get(0).quantities());
+        assertEquals(3, result.shipments().get(1).warehouse());
+        assertEquals(Map.of(B, 1), result.shipments().get(1).quantities());
+    }
+
+    @Test
+    void negativeAvailabilityCountsAsNone() {
+        AllocationSolver.Result result = solver.solve(List.of(line(A, 1)), new double[] {1, 2},
+                stock(Map.of(A, new int[] {-4, 1})));
+
+        assertEquals(1, result.shipments().size());
+        assertEquals(1, result.shipments().get(0).warehouse());
+    }
+
+    private static AllocationSolver.Line line(int variantId, int quantity) {
+        return new AllocationSolver.Line(variantId, quantity);
+    }
+
+    private static AllocationSolver.Stock stock(Map<Integer, int[]> units) {
+        Map<Integer, int[]> copy = new HashMap<>(units);
+        return (variantId, w) -> {
+            int[] u = copy.get(variantId);
+            return u != null ? u[w] : 0;
+        };
+    }
+
+    private static Map<Integer, Integer> quantitiesAt(AllocationSolver.Result result, int warehouse) {
+        for (AllocationSolver.Shipment s : result.shipments()) {
+            if (s.warehouse() == warehouse) return s.quantities();
+        }
+        return Map.of();
+    }
+}
@@ -0,0 +1,105 @@
+package com.mijimoto.ECommerce.inventory.counters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.mijimoto.ECommerce.inventory.counters.services.StockCounters;
+
+/**
+ * Thousands of buyers on one SKU against a real Redis.
+ *
+ * Run with {@code mvn test -Dtest=StockCounterLoadTest -Dloadtest=true} (Redis from
+ * {@code -Dredis.host}/{@code -Dredis.port}, default localhost:6379). Uses variant id -1, so it
+ * never touches real counters.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class StockCounterLoadTest {
+
+    private static final int VARIANT = -1;
+    private static final int WAREHOUSE = 1;
+    private static final int STOCK = 1_000;
+    private static final int BUYERS = 20_000;
+    private static final int SHARDS = 8;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StockCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(System.getProperty("redis.host", "localhost"),
+                Integer.getInteger("redis.port", 6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redis = new StringRedisTemplate(connectionFactory);
+        counters = new StockCounters(redis);
+        counters.delete(VARIANT, counters.detach(VARIANT));
+        counters.install(VARIANT, WAREHOUSE, SHARDS, STOCK);
+    }
+
+    @AfterEach
+    void tearDown() {
+        counters.delete(VARIANT, counters.detach(VARIANT));
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void neverOversellsUnderContention() throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        long elapsed;
+        try (ExecutorService buyers = Executors.newFixedThreadPool(256)) {
+            for (int i = 0; i < BUYERS; i++) {
+                // a few buyers take more than one unit, which can span shards
+                int quantity = i % 50 == 0 ? 3 : 1;
+                buyers.submit(() -> {
+                    start.await();
+                    if (counters.reserve(VARIANT, null, quantity) != null) {
+                        sold.addAndGet(quantity);
+                    } else {
+                        refused.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            buyers.shutdown();
+            buyers.awaitTermination(5, TimeUnit.MINUTES);
+            elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
+        StockCounters.Drained drained = counters.drain(VARIANT, WAREHOUSE, SHARDS);
+        System.out.printf("%d buyers, %d units sold, %d refused, %d ms (%.0f reservations/s)%n",
+                BUYERS, sold.get(), refused.get(), elapsed, BUYERS * 1000.0 / Math.max(1, elapsed));
+
+        assertEquals(STOCK, sold.get());
+        assertEquals(0, drained.available());
+        assertEquals(STOCK, drained.delta());
+    }
+
+    @Test
+    void releasedUnitsCanBeSoldAgain() {
+        List<StockCounters.Hold> holds = new ArrayList<>();
+        StockCounters.Hold hold;
+        while ((hold = counters.reserve(VARIANT, WAREHOUSE, 7)) != null) holds.add(hold);
+        for (StockCounters.Hold h : holds) counters.release(h);
+
+        StockCounters.Drained drained = counters.drain(VARIANT, WAREHOUSE, SHARDS);
+        assertEquals(STOCK, drained.available());
+        assertEquals(0, drained.delta());
+    }
+}